@@ -0,0 +1,233 @@
+package model;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Routes every encryption and decryption to the engine that an
+ * {@link EngineProfile} found fastest for the length of the text and the
+ * number of rails, and keeps count of the calls and their latencies per
+ * engine and bucket.
+ *
+ * The dispatcher starts with the given profile, usually the default one, and
+ * switches to a calibrated one through {@link #setProfile(EngineProfile)} or
+ * {@link #recalibrate()} while serving calls; {@link #recalibrateAsync()}
+ * calibrates on a background thread and never runs two calibrations at once,
+ * and {@link #cancelCalibration()} stops it.
+ * Texts the chosen engine does not
+ * support, such as non Latin-1 text for {@link CipherEngine#PARALLEL}, fall
+ * back to {@link CipherEngine#SCALAR}.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class AdaptiveCipherDispatcher {
+
+    /**
+     * The profile choosing the engines.
+     */
+    private volatile EngineProfile profile;
+
+    /**
+     * Number of calls per bucket and engine, see {@link #slot(int, int, CipherEngine)}.
+     */
+    private volatile AtomicLongArray calls;
+
+    /**
+     * Total latency of the calls per bucket and engine, in nanoseconds.
+     */
+    private volatile AtomicLongArray nanos;
+
+    /**
+     * The calibration running in the background, null if none is running.
+     */
+    private final AtomicReference<CompletableFuture<EngineProfile>> calibration = new AtomicReference<>();
+
+    /**
+     * The thread of the background calibration, null if none is running.
+     */
+    private volatile Thread calibrationThread;
+
+    /**
+     * Creates a dispatcher.
+     *
+     * @param profile The initial profile.
+     */
+    public AdaptiveCipherDispatcher(EngineProfile profile) {
+        setProfile(profile);
+    }
+
+    /**
+     * Encrypts or decrypts a text with the engine chosen by the profile.
+     *
+     * @param direction The direction of the operation.
+     * @param text The text to process.
+     * @param rails The number of rails.
+     * @return The processed text.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    public String apply(CipherDirection direction, String text, int rails) throws InvalidRailNumberException {
+        RailFenceEngine.checkRails(rails);
+        CipherEngine engine = profile.choose(text.length(), rails);
+        if (!engine.supports(text)) {
+            engine = CipherEngine.SCALAR;
+        }
+        AtomicLongArray callCounts = calls;
+        AtomicLongArray callNanos = nanos;
+        long start = System.nanoTime();
+        String result = engine.apply(direction, text, rails);
+        long elapsed = System.nanoTime() - start;
+        int slot = slot(EngineProfile.lengthBucket(text.length()), EngineProfile.railBucket(rails), engine);
+        callCounts.incrementAndGet(slot);
+        callNanos.addAndGet(slot, elapsed);
+        return result;
+    }
+
+    /**
+     * Returns a strategy applying one direction through this dispatcher.
+     *
+     * @param direction The direction of the strategy.
+     * @return The strategy.
+     */
+    public CipherStrategy strategy(CipherDirection direction) {
+        return (text, rails) -> apply(direction, text, rails);
+    }
+
+    /**
+     * Calibrates the engines on this host, switches to the new profile and
+     * resets the statistics.
+     *
+     * @return The new profile.
+     */
+    public EngineProfile recalibrate() {
+        EngineProfile calibrated = EngineProfile.calibrate();
+        setProfile(calibrated);
+        return calibrated;
+    }
+
+    /**
+     * Starts calibrating the engines on a background thread, unless a
+     * calibration is already running. The new profile is installed when the
+     * calibration finishes.
+     *
+     * @return The future of the new profile, or null if a calibration was
+     * already running.
+     */
+    public CompletableFuture<EngineProfile> recalibrateAsync() {
+        CompletableFuture<EngineProfile> started = new CompletableFuture<>();
+        if (!calibration.compareAndSet(null, started)) {
+            return null;
+        }
+        Thread thread = new Thread(() -> {
+            EngineProfile profile;
+            try {
+                profile = recalibrate();
+            } catch (RuntimeException | Error e) {
+                calibrationThread = null;
+                calibration.set(null);
+                started.completeExceptionally(e);
+                return;
+            }
+            calibrationThread = null;
+            calibration.set(null);
+            started.complete(profile);
+        }, "engine-calibration");
+        thread.setDaemon(true);
+        calibrationThread = thread;
+        thread.start();
+        return started;
+    }
+
+    /**
+     * Interrupts the background calibration, if one is running, and waits up
+     * to ten seconds for its thread to end. A cancelled calibration installs
+     * no profile and its future completes with a
+     * {@link java.util.concurrent.CancellationException}.
+     */
+    public void cancelCalibration() {
+        Thread thread = calibrationThread;
+        if (thread == null) {
+            return;
+        }
+        thread.interrupt();
+        try {
+            thread.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Tells whether a background calibration is running.
+     *
+     * @return true while {@link #recalibrateAsync()} is calibrating.
+     */
+    public boolean isCalibrating() {
+        return calibration.get() != null;
+    }
+
+    /**
+     * Switches to a profile and resets the statistics.
+     *
+     * @param profile The new profile.
+     */
+    public void setProfile(EngineProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException("Engine profile must not be null.");
+        }
+        int slots = EngineProfile.getLengthBucketCount() * EngineProfile.getRailBucketCount()
+                * CipherEngine.values().length;
+        calls = new AtomicLongArray(slots);
+        nanos = new AtomicLongArray(slots);
+        this.profile = profile;
+    }
+
+    /**
+     * Gets the current profile.
+     *
+     * @return The profile.
+     */
+    public EngineProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Gets the number of calls of a bucket served by an engine since the
+     * profile was set.
+     *
+     * @param lengthBucket The index of the length bucket.
+     * @param railBucket The index of the rail bucket.
+     * @param engine The engine.
+     * @return The number of calls.
+     */
+    public long getCalls(int lengthBucket, int railBucket, CipherEngine engine) {
+        return calls.get(slot(lengthBucket, railBucket, engine));
+    }
+
+    /**
+     * Gets the total latency of the calls of a bucket served by an engine
+     * since the profile was set.
+     *
+     * @param lengthBucket The index of the length bucket.
+     * @param railBucket The index of the rail bucket.
+     * @param engine The engine.
+     * @return The total latency in nanoseconds.
+     */
+    public long getTotalNanos(int lengthBucket, int railBucket, CipherEngine engine) {
+        return nanos.get(slot(lengthBucket, railBucket, engine));
+    }
+
+    /**
+     * Computes the index of a bucket and engine in the statistics arrays.
+     *
+     * @param lengthBucket The index of the length bucket.
+     * @param railBucket The index of the rail bucket.
+     * @param engine The engine.
+     * @return The index.
+     */
+    private static int slot(int lengthBucket, int railBucket, CipherEngine engine) {
+        return (lengthBucket * EngineProfile.getRailBucketCount() + railBucket) * CipherEngine.values().length
+                + engine.ordinal();
+    }
+}
@@ -0,0 +1,111 @@
+package model;
+
+import java.io.IOException;
+
+/**
+ * The header of a block-mode rail fence stream, shared by the byte and
+ * character streams.
+ *
+ * A block-mode stream starts with the ASCII line {@code "RFB1 <size>\n"}
+ * giving the block size, followed by the blocks. Every block holds
+ * {@code size} units (bytes, or code points for character streams) ciphered
+ * on their own, except the last one, which holds the remaining units.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+final class BlockHeader {
+
+    /**
+     * The text starting every header.
+     */
+    static final String MAGIC = "RFB1 ";
+
+    /**
+     * The default block size.
+     */
+    static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * The largest block size.
+     */
+    static final int MAX_BLOCK_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The largest number of digits of a block size.
+     */
+    private static final int MAX_DIGITS = 10;
+
+    /**
+     * A source of header units, bytes or characters.
+     */
+    interface Source {
+
+        /**
+         * Reads one unit.
+         *
+         * @return The unit, or -1 at the end of the stream.
+         * @throws IOException If the unit cannot be read.
+         */
+        int read() throws IOException;
+    }
+
+    /**
+     * Prevents instantiation.
+     */
+    private BlockHeader() {
+    }
+
+    /**
+     * Checks a block size.
+     *
+     * @param blockSize The block size.
+     * @return The block size.
+     * @throws IllegalArgumentException If the block size is not between 1
+     * and {@link #MAX_BLOCK_SIZE}.
+     */
+    static int checkBlockSize(int blockSize) {
+        if (blockSize < 1 || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Block size must be between 1 and " + MAX_BLOCK_SIZE + ".");
+        }
+        return blockSize;
+    }
+
+    /**
+     * Builds the header of a stream.
+     *
+     * @param blockSize The block size.
+     * @return The header line.
+     */
+    static String format(int blockSize) {
+        return MAGIC + blockSize + "\n";
+    }
+
+    /**
+     * Reads the header of a stream.
+     *
+     * @param source The source of the header units.
+     * @return The block size.
+     * @throws IOException If the stream does not start with a valid header.
+     */
+    static int read(Source source) throws IOException {
+        for (int i = 0; i < MAGIC.length(); i++) {
+            if (source.read() != MAGIC.charAt(i)) {
+                throw new IOException("Not a block-mode rail fence stream.");
+            }
+        }
+        long blockSize = 0;
+        int digits = 0;
+        int unit;
+        while ((unit = source.read()) != '\n') {
+            if (unit < '0' || unit > '9' || ++digits > MAX_DIGITS) {
+                throw new IOException("Invalid block size in rail fence stream header.");
+            }
+            blockSize = blockSize * 10 + (unit - '0');
+        }
+        if (digits == 0 || blockSize < 1 || blockSize > MAX_BLOCK_SIZE) {
+            throw new IOException("Invalid block size in rail fence stream header.");
+        }
+        return (int) blockSize;
+    }
+}
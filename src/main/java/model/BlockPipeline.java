@@ -0,0 +1,114 @@
+package model;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the block tasks of a block-mode rail fence stream, either on the
+ * calling thread or on a background thread of the stream, so that the next
+ * block is ciphered while the caller fills or drains the current one.
+ * Streams keep at most one task in flight, which bounds their memory to a
+ * few blocks.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+final class BlockPipeline implements AutoCloseable {
+
+    /**
+     * The background thread, null when tasks run on the calling thread.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Creates a pipeline.
+     *
+     * @param background true to run the tasks on a background thread.
+     */
+    BlockPipeline(boolean background) {
+        this.executor = background ? Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rail-fence-stream");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Tells whether tasks run on a background thread.
+     *
+     * @return true if the pipeline has a background thread.
+     */
+    boolean isBackground() {
+        return executor != null;
+    }
+
+    /**
+     * Runs a task, on the background thread if there is one.
+     *
+     * @param <T> The type of the result.
+     * @param task The task.
+     * @return The future result of the task.
+     */
+    <T> Future<T> submit(Callable<T> task) {
+        if (executor != null) {
+            return executor.submit(task);
+        }
+        try {
+            return CompletableFuture.completedFuture(task.call());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Waits for the result of a task.
+     *
+     * @param <T> The type of the result.
+     * @param future The future result, or null.
+     * @return The result, null if the future is null.
+     * @throws IOException If the task failed or the wait was interrupted.
+     */
+    static <T> T await(Future<T> future) throws IOException {
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a rail fence block.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Stops the background thread.
+     */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
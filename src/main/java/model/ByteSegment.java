@@ -0,0 +1,228 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A sequence of bytes addressed with {@code long} indices, stored off the Java
+ * heap in fixed size chunks. Each chunk is a direct or memory-mapped
+ * {@link ByteBuffer}, so a segment is not limited to the 2^31 elements of a
+ * Java array and can describe files larger than 2 GB.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class ByteSegment {
+
+    /**
+     * Default chunk size as a power of two, 1 GB per chunk.
+     */
+    static final int DEFAULT_CHUNK_SHIFT = 30;
+
+    /**
+     * The chunks holding the bytes of the segment.
+     */
+    private final ByteBuffer[] chunks;
+
+    /**
+     * The number of bits of an index that select the position inside a chunk.
+     */
+    private final int shift;
+
+    /**
+     * Mask selecting the position inside a chunk.
+     */
+    private final long mask;
+
+    /**
+     * The number of bytes in the segment.
+     */
+    private final long size;
+
+    /**
+     * Creates a segment over the given chunks.
+     *
+     * @param chunks The chunks, all but the last of size {@code 1 << shift}.
+     * @param shift The chunk size as a power of two.
+     * @param size The number of bytes in the segment.
+     */
+    private ByteSegment(ByteBuffer[] chunks, int shift, long size) {
+        this.chunks = chunks;
+        this.shift = shift;
+        this.mask = (1L << shift) - 1;
+        this.size = size;
+    }
+
+    /**
+     * Allocates a zero filled segment in direct memory.
+     *
+     * @param size The number of bytes.
+     * @return The allocated segment.
+     */
+    public static ByteSegment allocate(long size) {
+        return allocate(size, DEFAULT_CHUNK_SHIFT);
+    }
+
+    /**
+     * Allocates a zero filled segment in direct memory with the given chunk
+     * size.
+     *
+     * @param size The number of bytes.
+     * @param chunkShift The chunk size as a power of two.
+     * @return The allocated segment.
+     */
+    static ByteSegment allocate(long size, int chunkShift) {
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount(size, chunkShift)];
+        for (int c = 0; c < chunks.length; c++) {
+            chunks[c] = ByteBuffer.allocateDirect(chunkLength(size, chunkShift, c));
+        }
+        return new ByteSegment(chunks, chunkShift, size);
+    }
+
+    /**
+     * Maps the first {@code size} bytes of a file channel into memory. Mapping
+     * in {@link FileChannel.MapMode#READ_WRITE} mode grows the file to the
+     * requested size.
+     *
+     * @param channel The channel of the file to map.
+     * @param mode The mapping mode.
+     * @param size The number of bytes to map.
+     * @return The mapped segment.
+     * @throws IOException If the file cannot be mapped.
+     */
+    public static ByteSegment map(FileChannel channel, FileChannel.MapMode mode, long size) throws IOException {
+        return map(channel, mode, size, DEFAULT_CHUNK_SHIFT);
+    }
+
+    /**
+     * Maps the first {@code size} bytes of a file channel into memory with the
+     * given chunk size.
+     *
+     * @param channel The channel of the file to map.
+     * @param mode The mapping mode.
+     * @param size The number of bytes to map.
+     * @param chunkShift The chunk size as a power of two.
+     * @return The mapped segment.
+     * @throws IOException If the file cannot be mapped.
+     */
+    static ByteSegment map(FileChannel channel, FileChannel.MapMode mode, long size, int chunkShift) throws IOException {
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount(size, chunkShift)];
+        for (int c = 0; c < chunks.length; c++) {
+            chunks[c] = channel.map(mode, (long) c << chunkShift, chunkLength(size, chunkShift, c));
+        }
+        return new ByteSegment(chunks, chunkShift, size);
+    }
+
+    /**
+     * Wraps a byte array into a segment without copying it.
+     *
+     * @param bytes The bytes to wrap.
+     * @return A segment backed by the array.
+     */
+    public static ByteSegment wrap(byte[] bytes) {
+        return new ByteSegment(new ByteBuffer[]{ByteBuffer.wrap(bytes)}, DEFAULT_CHUNK_SHIFT, bytes.length);
+    }
+
+    /**
+     * Wraps the remaining bytes of a buffer into a segment without copying
+     * them. Index 0 of the segment is the current position of the buffer.
+     *
+     * @param buffer The buffer to wrap, heap or direct.
+     * @return A segment backed by the buffer.
+     */
+    public static ByteSegment wrap(ByteBuffer buffer) {
+        ByteBuffer view = buffer.slice();
+        return new ByteSegment(new ByteBuffer[]{view}, DEFAULT_CHUNK_SHIFT, view.remaining());
+    }
+
+    /**
+     * Computes the number of chunks needed for a segment.
+     *
+     * @param size The number of bytes.
+     * @param chunkShift The chunk size as a power of two.
+     * @return The number of chunks.
+     */
+    private static int chunkCount(long size, int chunkShift) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Segment size must not be negative.");
+        }
+        return (int) ((size + (1L << chunkShift) - 1) >>> chunkShift);
+    }
+
+    /**
+     * Computes the length of one chunk of a segment.
+     *
+     * @param size The number of bytes in the segment.
+     * @param chunkShift The chunk size as a power of two.
+     * @param chunk The index of the chunk.
+     * @return The number of bytes in the chunk.
+     */
+    private static int chunkLength(long size, int chunkShift, int chunk) {
+        return (int) Math.min(1L << chunkShift, size - ((long) chunk << chunkShift));
+    }
+
+    /**
+     * Gets the number of bytes in the segment.
+     *
+     * @return The size of the segment.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Reads the byte at the given index.
+     *
+     * @param index The index of the byte.
+     * @return The byte value.
+     */
+    public byte get(long index) {
+        return chunks[(int) (index >>> shift)].get((int) (index & mask));
+    }
+
+    /**
+     * Writes the byte at the given index.
+     *
+     * @param index The index of the byte.
+     * @param value The byte value.
+     */
+    public void put(long index, byte value) {
+        chunks[(int) (index >>> shift)].put((int) (index & mask), value);
+    }
+
+    /**
+     * Flushes the changes of a memory-mapped segment to the storage device.
+     * Does nothing for segments that are not mapped.
+     */
+    public void force() {
+        for (ByteBuffer chunk : chunks) {
+            if (chunk instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) chunk).force();
+            }
+        }
+    }
+
+    /**
+     * Copies the segment into a new byte array.
+     *
+     * @return The bytes of the segment.
+     * @throws IllegalStateException If the segment is too large for an array.
+     */
+    public byte[] toByteArray() {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Segment of " + size + " bytes does not fit in an array.");
+        }
+        byte[] bytes = new byte[(int) size];
+        int offset = 0;
+        for (ByteBuffer chunk : chunks) {
+            ByteBuffer view = chunk.duplicate();
+            view.clear();
+            int length = view.remaining();
+            view.get(bytes, offset, length);
+            offset += length;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,92 @@
+package model;
+
+/**
+ * Direction of a single Rail Fence Cipher operation. Each constant is a
+ * {@link CipherStrategy} on its own and can also describe its effect as a
+ * permutation of the text, which lets several operations be composed into one
+ * {@link CipherPipeline}.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public enum CipherDirection implements CipherStrategy {
+
+    /**
+     * Encryption with the Rail Fence Cipher.
+     */
+    ENCRYPT('E') {
+        @Override
+        public String apply(String text, int rails) throws InvalidRailNumberException {
+            return RailFenceEngine.encrypt(text, rails);
+        }
+
+        @Override
+        public int[] permutation(int length, int rails) {
+            return RailFenceEngine.encryptPermutation(length, rails);
+        }
+    },
+
+    /**
+     * Decryption with the Rail Fence Cipher.
+     */
+    DECRYPT('D') {
+        @Override
+        public String apply(String text, int rails) throws InvalidRailNumberException {
+            return RailFenceEngine.decrypt(text, rails);
+        }
+
+        @Override
+        public int[] permutation(int length, int rails) {
+            return RailFenceEngine.decryptPermutation(length, rails);
+        }
+    };
+
+    /**
+     * The one letter symbol of the direction used in pipeline specifications.
+     */
+    private final char symbol;
+
+    /**
+     * Creates a direction with the given symbol.
+     *
+     * @param symbol The one letter symbol of the direction.
+     */
+    CipherDirection(char symbol) {
+        this.symbol = symbol;
+    }
+
+    /**
+     * Gets the one letter symbol of the direction.
+     *
+     * @return The symbol, 'E' or 'D'.
+     */
+    public char getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Builds the gather map describing this operation on a text of the given
+     * length.
+     *
+     * @param length The number of permuted elements.
+     * @param rails The number of rails, at least 2.
+     * @return The gather map of the operation.
+     */
+    public abstract int[] permutation(int length, int rails);
+
+    /**
+     * Finds the direction with the given symbol, ignoring case.
+     *
+     * @param symbol The symbol to look up.
+     * @return The matching direction.
+     * @throws IllegalArgumentException If no direction uses the symbol.
+     */
+    public static CipherDirection fromSymbol(char symbol) {
+        for (CipherDirection direction : values()) {
+            if (direction.symbol == Character.toUpperCase(symbol)) {
+                return direction;
+            }
+        }
+        throw new IllegalArgumentException("Unknown cipher direction: " + symbol);
+    }
+}
@@ -0,0 +1,130 @@
+package model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The engines able to encrypt or decrypt a text. They all give the same
+ * result and differ only in speed, which depends on the length of the text,
+ * the number of rails and the host, so {@link AdaptiveCipherDispatcher} picks
+ * one per call from a calibrated {@link EngineProfile}.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public enum CipherEngine {
+
+    /**
+     * The single-threaded engine walking the zigzag over the most compact
+     * representation of the text.
+     */
+    SCALAR {
+        @Override
+        public String apply(CipherDirection direction, String text, int rails) throws InvalidRailNumberException {
+            return direction.apply(text, rails);
+        }
+
+        @Override
+        public boolean supports(String text) {
+            return true;
+        }
+    },
+
+    /**
+     * The engine permuting a short Latin-1 text in byte buffers kept per
+     * thread, so that a call only allocates its result.
+     */
+    SCRATCH {
+        @Override
+        public String apply(CipherDirection direction, String text, int rails) throws InvalidRailNumberException {
+            return ScratchRailFenceEngine.apply(direction, text, rails);
+        }
+
+        @Override
+        public boolean supports(String text) {
+            return ScratchRailFenceEngine.supports(text);
+        }
+    },
+
+    /**
+     * The engine applying a gather map that is computed once per text length
+     * and number of rails and then kept in the cache of
+     * {@link CipherPipeline}.
+     */
+    CACHED_PLAN {
+        @Override
+        public String apply(CipherDirection direction, String text, int rails) throws InvalidRailNumberException {
+            return new CipherPipeline(Collections.singletonList(new CipherPipeline.Stage(direction, rails)))
+                    .apply(text);
+        }
+
+        @Override
+        String calibrationApply(CipherDirection direction, String text, int rails) throws InvalidRailNumberException {
+            return new CipherPipeline(Collections.singletonList(new CipherPipeline.Stage(direction, rails)))
+                    .applyUncached(text);
+        }
+
+        @Override
+        public boolean supports(String text) {
+            return true;
+        }
+    },
+
+    /**
+     * The fork/join engine processing the rails of a Latin-1 text in parallel
+     * in the common pool.
+     */
+    PARALLEL {
+        @Override
+        public String apply(CipherDirection direction, String text, int rails) throws InvalidRailNumberException {
+            byte[] input = text.getBytes(StandardCharsets.ISO_8859_1);
+            byte[] output = new byte[input.length];
+            ParallelRailFenceTask task = ParallelRailFenceTask.of(direction, ByteSegment.wrap(input),
+                    ByteSegment.wrap(output), rails, new AtomicLong());
+            ForkJoinPool.commonPool().invoke(task);
+            return new String(output, StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public boolean supports(String text) {
+            return RailFenceEngine.isLatin1(text);
+        }
+    };
+
+    /**
+     * Encrypts or decrypts a text with this engine.
+     *
+     * @param direction The direction of the operation.
+     * @param text The text to process.
+     * @param rails The number of rails.
+     * @return The processed text.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    public abstract String apply(CipherDirection direction, String text, int rails) throws InvalidRailNumberException;
+
+    /**
+     * Tells whether this engine can process a text.
+     *
+     * @param text The text.
+     * @return true if {@link #apply(CipherDirection, String, int)} accepts the
+     * text.
+     */
+    public abstract boolean supports(String text);
+
+    /**
+     * Encrypts or decrypts a text for calibration, like
+     * {@link #apply(CipherDirection, String, int)} but without leaving state
+     * behind that would make later calls of the same shape faster.
+     *
+     * @param direction The direction of the operation.
+     * @param text The text to process.
+     * @param rails The number of rails.
+     * @return The processed text.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    String calibrationApply(CipherDirection direction, String text, int rails) throws InvalidRailNumberException {
+        return apply(direction, text, rails);
+    }
+}
@@ -0,0 +1,106 @@
+package model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for one encryption or decryption, recording the
+ * size of the input, the number of rails and the engine that processed it.
+ *
+ * The event is enabled by default. When no recording is running,
+ * {@link #record(String, long, int, String)} costs a single check, and stack
+ * traces are not collected, so the event can stay in production code.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+@Name("railfence.Cipher")
+@Label("Cipher Operation")
+@Category("Rail Fence Cipher")
+@Description("An encryption or decryption of one input by a Rail Fence Cipher engine")
+@StackTrace(false)
+public final class CipherEvent extends Event {
+
+    /**
+     * Engine permuting Latin-1 text as bytes.
+     */
+    static final String LATIN1_ENGINE = "Latin-1 bytes";
+
+    /**
+     * Engine permuting UTF-16 code units.
+     */
+    static final String CHAR_ENGINE = "UTF-16 chars";
+
+    /**
+     * Engine permuting code points of text with surrogate pairs.
+     */
+    static final String CODE_POINT_ENGINE = "code points";
+
+    /**
+     * Engine permuting bytes of direct or memory-mapped segments.
+     */
+    static final String OFF_HEAP_ENGINE = "off-heap";
+
+    /**
+     * Fork/join engine permuting segments in parallel.
+     */
+    static final String PARALLEL_ENGINE = "parallel";
+
+    /**
+     * Engine applying a composed pipeline permutation.
+     */
+    static final String PIPELINE_ENGINE = "pipeline";
+
+    /**
+     * Engine processing one text under a range of rail counts.
+     */
+    static final String FAN_OUT_ENGINE = "fan-out";
+
+    /**
+     * The operation, "Encrypt", "Decrypt" or "Pipeline".
+     */
+    @Label("Operation")
+    String operation;
+
+    /**
+     * The number of characters or bytes processed, summed over all rail
+     * counts for a fan-out.
+     */
+    @Label("Input Length")
+    @Description("Number of characters, code points or bytes processed")
+    long inputLength;
+
+    /**
+     * The number of rails, the largest one for a pipeline or a fan-out.
+     */
+    @Label("Rails")
+    int rails;
+
+    /**
+     * The engine that processed the input.
+     */
+    @Label("Engine")
+    String engine;
+
+    /**
+     * Ends the event and commits it if a recording wants it.
+     *
+     * @param operation The operation.
+     * @param inputLength The number of characters or bytes processed.
+     * @param rails The number of rails.
+     * @param engine The engine that processed the input.
+     */
+    void record(String operation, long inputLength, int rails, String engine) {
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.inputLength = inputLength;
+            this.rails = rails;
+            this.engine = engine;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package model;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An asynchronous cipher job managed by {@link CipherJobManager}. The job
+ * reads its input from a file and writes its result to another file; its
+ * state and progress can be polled while it runs.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class CipherJob {
+
+    /**
+     * The states of a job.
+     */
+    public enum State {
+
+        /**
+         * Waiting for a free slot of the executor.
+         */
+        QUEUED,
+
+        /**
+         * Being processed.
+         */
+        RUNNING,
+
+        /**
+         * Finished, the result can be downloaded until it expires.
+         */
+        DONE,
+
+        /**
+         * Failed, see {@link CipherJob#getError()}.
+         */
+        FAILED
+    }
+
+    /**
+     * The ID of the job.
+     */
+    private final String id;
+
+    /**
+     * The direction of the operation.
+     */
+    private final CipherDirection direction;
+
+    /**
+     * The number of rails.
+     */
+    private final int rails;
+
+    /**
+     * The priority of the job, higher priorities run first.
+     */
+    private final int priority;
+
+    /**
+     * Submission order, used to run jobs of equal priority in order.
+     */
+    private final long sequence;
+
+    /**
+     * The name of the submitted file.
+     */
+    private final String fileName;
+
+    /**
+     * The number of input bytes.
+     */
+    private final long size;
+
+    /**
+     * The file holding the input.
+     */
+    private final Path input;
+
+    /**
+     * The file receiving the result.
+     */
+    private final Path result;
+
+    /**
+     * The time the job was submitted.
+     */
+    private final LocalDateTime submitted;
+
+    /**
+     * The number of bytes processed so far.
+     */
+    private final AtomicLong processed = new AtomicLong();
+
+    /**
+     * The current state.
+     */
+    private volatile State state = State.QUEUED;
+
+    /**
+     * The error message of a failed job.
+     */
+    private volatile String error;
+
+    /**
+     * The time in milliseconds since the epoch at which the job finished, 0
+     * while it is not finished.
+     */
+    private volatile long finishedMillis;
+
+    /**
+     * Creates a queued job.
+     *
+     * @param id The ID of the job.
+     * @param direction The direction of the operation.
+     * @param rails The number of rails.
+     * @param priority The priority of the job.
+     * @param sequence The submission order.
+     * @param fileName The name of the submitted file.
+     * @param size The number of input bytes.
+     * @param input The file holding the input.
+     * @param result The file receiving the result.
+     */
+    CipherJob(String id, CipherDirection direction, int rails, int priority, long sequence, String fileName, long size,
+            Path input, Path result) {
+        this.id = id;
+        this.direction = direction;
+        this.rails = rails;
+        this.priority = priority;
+        this.sequence = sequence;
+        this.fileName = fileName;
+        this.size = size;
+        this.input = input;
+        this.result = result;
+        this.submitted = LocalDateTime.now();
+    }
+
+    /**
+     * Gets the ID of the job.
+     *
+     * @return The ID.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Gets the direction of the operation.
+     *
+     * @return The direction.
+     */
+    public CipherDirection getDirection() {
+        return direction;
+    }
+
+    /**
+     * Gets the number of rails.
+     *
+     * @return The number of rails.
+     */
+    public int getRails() {
+        return rails;
+    }
+
+    /**
+     * Gets the priority of the job.
+     *
+     * @return The priority, higher priorities run first.
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Gets the submission order of the job.
+     *
+     * @return The sequence number.
+     */
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the name of the submitted file.
+     *
+     * @return The file name.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Gets the number of input bytes.
+     *
+     * @return The size of the input.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the file holding the input.
+     *
+     * @return The input file.
+     */
+    Path getInput() {
+        return input;
+    }
+
+    /**
+     * Gets the file holding the result. It is complete only once the job is
+     * {@link State#DONE}.
+     *
+     * @return The result file.
+     */
+    public Path getResult() {
+        return result;
+    }
+
+    /**
+     * Gets the time the job was submitted.
+     *
+     * @return The submission time.
+     */
+    public LocalDateTime getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * Gets the current state.
+     *
+     * @return The state.
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Gets the error message of a failed job.
+     *
+     * @return The message, or null if the job has not failed.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Gets the counter of processed bytes.
+     *
+     * @return The counter.
+     */
+    AtomicLong getProcessed() {
+        return processed;
+    }
+
+    /**
+     * Gets the fraction of the input processed so far.
+     *
+     * @return The progress between 0 and 1.
+     */
+    public double getProgress() {
+        if (state == State.DONE) {
+            return 1;
+        }
+        return size == 0 ? 0 : Math.min(1, processed.get() / (double) size);
+    }
+
+    /**
+     * Gets the time at which the job finished.
+     *
+     * @return The time in milliseconds since the epoch, 0 if the job has not
+     * finished.
+     */
+    long getFinishedMillis() {
+        return finishedMillis;
+    }
+
+    /**
+     * Marks the job as running.
+     */
+    void start() {
+        state = State.RUNNING;
+    }
+
+    /**
+     * Marks the job as finished successfully.
+     */
+    void finish() {
+        finishedMillis = System.currentTimeMillis();
+        state = State.DONE;
+    }
+
+    /**
+     * Marks the job as failed.
+     *
+     * @param message The error message.
+     */
+    void fail(String message) {
+        error = message;
+        finishedMillis = System.currentTimeMillis();
+        state = State.FAILED;
+    }
+}
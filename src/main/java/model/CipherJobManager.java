@@ -0,0 +1,341 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import util.Fingerprints;
+
+/**
+ * Runs large cipher operations as asynchronous jobs.
+ *
+ * The input of a submitted job is copied to a file in the job directory and
+ * the job waits in a bounded queue ordered by priority, then by submission.
+ * At most {@code maxRunning} jobs run at a time on a work-stealing
+ * {@link ForkJoinPool}; each job maps its input and result files and splits
+ * the work into a {@link ParallelRailFenceTask}, so the workers of the pool
+ * share the rails of all running jobs. When a job finishes it is recorded in
+ * the history with the digests of its input and result, and the result is
+ * kept on disk for the configured time to live.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class CipherJobManager implements AutoCloseable {
+
+    /**
+     * Logger for logging information, warnings, and errors.
+     */
+    private static final Logger LOGGER = Logger.getLogger(CipherJobManager.class.getName());
+
+    /**
+     * Order in which queued jobs are started: higher priority first, then in
+     * submission order.
+     */
+    private static final Comparator<CipherJob> JOB_ORDER = Comparator.comparingInt(CipherJob::getPriority).reversed()
+            .thenComparingLong(CipherJob::getSequence);
+
+    /**
+     * Longest interval between two removals of expired jobs, in milliseconds.
+     */
+    private static final long MAX_SWEEP_INTERVAL_MILLIS = 60_000;
+
+    /**
+     * The directory holding the input and result files.
+     */
+    private final Path directory;
+
+    /**
+     * The largest number of jobs running at a time.
+     */
+    private final int maxRunning;
+
+    /**
+     * The largest number of jobs waiting to run.
+     */
+    private final int maxQueued;
+
+    /**
+     * How long finished jobs are kept, in milliseconds.
+     */
+    private final long ttlMillis;
+
+    /**
+     * The service recording finished jobs in the history, null to not record
+     * them.
+     */
+    private final CipherService history;
+
+    /**
+     * The work-stealing pool running the jobs.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The thread removing expired jobs.
+     */
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * All known jobs by ID.
+     */
+    private final Map<String, CipherJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * The jobs waiting to run, guarded by this manager.
+     */
+    private final PriorityQueue<CipherJob> queue = new PriorityQueue<>(JOB_ORDER);
+
+    /**
+     * Submission counter.
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * The number of running jobs, guarded by this manager.
+     */
+    private int running;
+
+    /**
+     * The number of queue slots reserved by submissions still copying their
+     * input, guarded by this manager.
+     */
+    private int reserved;
+
+    /**
+     * Whether the manager has been closed, guarded by this manager.
+     */
+    private boolean closed;
+
+    /**
+     * Creates a manager and its worker threads.
+     *
+     * @param directory The directory holding the input and result files,
+     * created if needed.
+     * @param parallelism The number of worker threads.
+     * @param maxRunning The largest number of jobs running at a time.
+     * @param maxQueued The largest number of jobs waiting to run.
+     * @param ttlMillis How long finished jobs are kept, in milliseconds.
+     * @param history The service recording finished jobs in the history, or
+     * null.
+     * @throws IOException If the directory cannot be created.
+     */
+    public CipherJobManager(Path directory, int parallelism, int maxRunning, int maxQueued, long ttlMillis,
+            CipherService history) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxRunning = maxRunning;
+        this.maxQueued = maxQueued;
+        this.ttlMillis = ttlMillis;
+        this.history = history;
+        this.pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            worker.setName("cipher-job-" + worker.getPoolIndex());
+            return worker;
+        }, null, false);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cipher-job-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, Math.min(ttlMillis, MAX_SWEEP_INTERVAL_MILLIS));
+        sweeper.scheduleWithFixedDelay(this::removeExpired, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Submits a job. The input is copied to the job directory before this
+     * method returns.
+     *
+     * @param direction The direction of the operation.
+     * @param rails The number of rails.
+     * @param priority The priority, higher priorities run first.
+     * @param fileName The name of the submitted file.
+     * @param input The stream of the input, not closed by this method.
+     * @param length The number of bytes to read from the stream.
+     * @return The queued job.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     * @throws RejectedExecutionException If the queue is full or the manager
+     * is closed.
+     * @throws IOException If the input cannot be read or stored.
+     */
+    public CipherJob submit(CipherDirection direction, int rails, int priority, String fileName, InputStream input,
+            long length) throws InvalidRailNumberException, IOException {
+        RailFenceEngine.checkRails(rails);
+        synchronized (this) {
+            if (closed) {
+                throw new RejectedExecutionException("Job manager is closed.");
+            }
+            if (queue.size() + reserved >= maxQueued) {
+                throw new RejectedExecutionException("Job queue is full.");
+            }
+            reserved++;
+        }
+        String id = UUID.randomUUID().toString();
+        CipherJob job = new CipherJob(id, direction, rails, priority, sequence.getAndIncrement(), fileName, length,
+                directory.resolve(id + ".in"), directory.resolve(id + ".out"));
+        try {
+            OffHeapRailFenceEngine.copy(input, job.getInput(), length);
+        } catch (IOException e) {
+            synchronized (this) {
+                reserved--;
+            }
+            Files.deleteIfExists(job.getInput());
+            throw e;
+        }
+        jobs.put(id, job);
+        synchronized (this) {
+            reserved--;
+            queue.add(job);
+            dispatch();
+        }
+        return job;
+    }
+
+    /**
+     * Returns a job.
+     *
+     * @param id The ID of the job.
+     * @return The job, or null if it is unknown or expired.
+     */
+    public CipherJob getJob(String id) {
+        return id == null ? null : jobs.get(id);
+    }
+
+    /**
+     * Gets the number of jobs waiting to run.
+     *
+     * @return The number of queued jobs.
+     */
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the number of running jobs.
+     *
+     * @return The number of running jobs.
+     */
+    public synchronized int getRunningCount() {
+        return running;
+    }
+
+    /**
+     * Stops the workers and deletes the files of all jobs.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            queue.clear();
+        }
+        sweeper.shutdownNow();
+        pool.shutdownNow();
+        try {
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (CipherJob job : jobs.values()) {
+            deleteFiles(job);
+        }
+        jobs.clear();
+    }
+
+    /**
+     * Starts queued jobs while there are free slots. Must be called with the
+     * lock of this manager held.
+     */
+    private void dispatch() {
+        while (!closed && running < maxRunning && !queue.isEmpty()) {
+            CipherJob job = queue.poll();
+            running++;
+            pool.execute(() -> {
+                try {
+                    process(job);
+                } finally {
+                    synchronized (this) {
+                        running--;
+                        dispatch();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs one job and records it in the history.
+     *
+     * @param job The job to run.
+     */
+    private void process(CipherJob job) {
+        job.start();
+        try {
+            try (FileChannel in = FileChannel.open(job.getInput(), StandardOpenOption.READ);
+                    FileChannel out = FileChannel.open(job.getResult(), StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteSegment source = ByteSegment.map(in, FileChannel.MapMode.READ_ONLY, job.getSize());
+                ByteSegment target = ByteSegment.map(out, FileChannel.MapMode.READ_WRITE, job.getSize());
+                ParallelRailFenceTask.of(job.getDirection(), source, target, job.getRails(), job.getProcessed()).invoke();
+                target.force();
+            }
+            String inputDigest = Fingerprints.sha256(job.getInput());
+            String resultDigest = Fingerprints.sha256(job.getResult());
+            Files.deleteIfExists(job.getInput());
+            job.finish();
+            if (history != null) {
+                history.recordOperation(job.getDirection() == CipherDirection.ENCRYPT ? "Encrypt job" : "Decrypt job",
+                        job.getFileName() + ", " + job.getSize() + " bytes, SHA-256 " + inputDigest,
+                        "SHA-256 " + resultDigest, job.getRails());
+            }
+        } catch (Throwable e) {
+            // Errors such as an OutOfMemoryError fail the job as well, so it
+            // does not stay running forever with its files left behind.
+            LOGGER.log(Level.WARNING, "Cipher job " + job.getId() + " failed", e);
+            job.fail(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            deleteFiles(job);
+        }
+    }
+
+    /**
+     * Removes the jobs that finished longer than the time to live ago.
+     */
+    private void removeExpired() {
+        long now = System.currentTimeMillis();
+        for (CipherJob job : jobs.values()) {
+            long finished = job.getFinishedMillis();
+            if (finished != 0 && now - finished >= ttlMillis && jobs.remove(job.getId(), job)) {
+                deleteFiles(job);
+            }
+        }
+    }
+
+    /**
+     * Deletes the input and result files of a job.
+     *
+     * @param job The job.
+     */
+    private static void deleteFiles(CipherJob job) {
+        try {
+            Files.deleteIfExists(job.getInput());
+            Files.deleteIfExists(job.getResult());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not delete files of cipher job " + job.getId(), e);
+        }
+    }
+
+}
@@ -0,0 +1,343 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A sequence of Rail Fence Cipher operations applied one after another, for
+ * example encryption with 3 rails followed by encryption with 5 rails.
+ *
+ * Every stage is a permutation of the text, so the whole pipeline is a single
+ * permutation as well. The composed gather map is computed once per text
+ * length, cached, and then applied in a single pass, which makes a pipeline of
+ * N stages cost about as much as one operation.
+ *
+ * A pipeline can be written as a specification string such as
+ * {@code "E3,D5,E4"}, where each stage is a direction symbol followed by the
+ * number of rails. A pipeline has at most {@link #MAX_STAGES} stages, so its
+ * specification fits in the operation type of a history record.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class CipherPipeline {
+
+    /**
+     * The largest number of stages of a pipeline.
+     */
+    public static final int MAX_STAGES = 16;
+
+    /**
+     * The longest specification string accepted by {@link #parse(String)}.
+     */
+    public static final int MAX_SPECIFICATION_LENGTH = 256;
+
+    /**
+     * Largest total size of the composed gather maps kept in the cache, in
+     * bytes. Clients choose both the specification and the text length, so
+     * the cache is bounded by size rather than by number of entries.
+     */
+    private static final long MAX_CACHE_BYTES = 4L * 1024 * 1024;
+
+    /**
+     * Texts longer than this are permuted with a freshly composed map that is
+     * not cached, so that one map takes at most a quarter of the cache.
+     */
+    private static final int MAX_CACHED_LENGTH = (int) (MAX_CACHE_BYTES / Integer.BYTES / 4);
+
+    /**
+     * Composed gather maps shared by all pipelines, keyed by the pipeline
+     * specification and the text length, in access order. Guarded by its own
+     * monitor.
+     */
+    private static final Map<String, int[]> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The total size of the maps in {@link #CACHE}, in bytes. Guarded by the
+     * monitor of the cache.
+     */
+    private static long cacheBytes;
+
+    /**
+     * The stages of the pipeline, in the order they are applied.
+     */
+    private final List<Stage> stages;
+
+    /**
+     * The canonical specification string of the pipeline.
+     */
+    private final String specification;
+
+    /**
+     * A single operation of a pipeline.
+     */
+    public static final class Stage {
+
+        /**
+         * The direction of the operation.
+         */
+        private final CipherDirection direction;
+
+        /**
+         * The number of rails used by the operation.
+         */
+        private final int rails;
+
+        /**
+         * Creates a stage.
+         *
+         * @param direction The direction of the operation.
+         * @param rails The number of rails.
+         * @throws InvalidRailNumberException If the number of rails is invalid.
+         */
+        public Stage(CipherDirection direction, int rails) throws InvalidRailNumberException {
+            RailFenceEngine.checkRails(rails);
+            if (direction == null) {
+                throw new IllegalArgumentException("Cipher direction must not be null.");
+            }
+            this.direction = direction;
+            this.rails = rails;
+        }
+
+        /**
+         * Gets the direction of the operation.
+         *
+         * @return The direction.
+         */
+        public CipherDirection getDirection() {
+            return direction;
+        }
+
+        /**
+         * Gets the number of rails used by the operation.
+         *
+         * @return The number of rails.
+         */
+        public int getRails() {
+            return rails;
+        }
+
+        /**
+         * Returns the specification of the stage, e.g. {@code "E3"}.
+         *
+         * @return The stage specification.
+         */
+        @Override
+        public String toString() {
+            return direction.getSymbol() + Integer.toString(rails);
+        }
+    }
+
+    /**
+     * Creates a pipeline from a list of stages.
+     *
+     * @param stages The stages, in the order they are applied.
+     * @throws IllegalArgumentException If the list of stages is empty or has
+     * more than {@link #MAX_STAGES} stages.
+     */
+    public CipherPipeline(List<Stage> stages) {
+        if (stages == null || stages.isEmpty()) {
+            throw new IllegalArgumentException("A pipeline needs at least one stage.");
+        }
+        if (stages.size() > MAX_STAGES) {
+            throw new IllegalArgumentException("A pipeline has at most " + MAX_STAGES + " stages.");
+        }
+        this.stages = Collections.unmodifiableList(new ArrayList<>(stages));
+        StringBuilder spec = new StringBuilder();
+        for (Stage stage : this.stages) {
+            if (spec.length() > 0) {
+                spec.append(',');
+            }
+            spec.append(stage);
+        }
+        this.specification = spec.toString();
+    }
+
+    /**
+     * Parses a pipeline specification such as {@code "E3,D5,E4"}. Stages are
+     * separated by commas or whitespace and the direction symbol is case
+     * insensitive.
+     *
+     * @param specification The specification to parse.
+     * @return The parsed pipeline.
+     * @throws InvalidRailNumberException If a stage uses an invalid number of
+     * rails.
+     * @throws IllegalArgumentException If the specification is malformed,
+     * longer than {@link #MAX_SPECIFICATION_LENGTH} characters or has more
+     * than {@link #MAX_STAGES} stages.
+     */
+    public static CipherPipeline parse(String specification) throws InvalidRailNumberException {
+        if (specification == null || specification.isBlank()) {
+            throw new IllegalArgumentException("Pipeline specification must not be empty.");
+        }
+        if (specification.length() > MAX_SPECIFICATION_LENGTH) {
+            throw new IllegalArgumentException("Pipeline specification is longer than "
+                    + MAX_SPECIFICATION_LENGTH + " characters.");
+        }
+        List<Stage> stages = new ArrayList<>();
+        for (String token : specification.trim().split("[,\\s]+")) {
+            if (token.length() < 2) {
+                throw new IllegalArgumentException("Invalid pipeline stage: " + token);
+            }
+            CipherDirection direction = CipherDirection.fromSymbol(token.charAt(0));
+            int rails;
+            try {
+                rails = Integer.parseInt(token.substring(1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number of rails in stage: " + token, e);
+            }
+            stages.add(new Stage(direction, rails));
+        }
+        return new CipherPipeline(stages);
+    }
+
+    /**
+     * Gets the stages of the pipeline.
+     *
+     * @return An unmodifiable list of the stages.
+     */
+    public List<Stage> getStages() {
+        return stages;
+    }
+
+    /**
+     * Gets the largest number of rails used by any stage.
+     *
+     * @return The largest number of rails.
+     */
+    public int getMaxRails() {
+        int max = 0;
+        for (Stage stage : stages) {
+            max = Math.max(max, stage.getRails());
+        }
+        return max;
+    }
+
+    /**
+     * Applies all stages of the pipeline to the text in a single pass.
+     *
+     * @param text The text to process.
+     * @return The processed text.
+     */
+    public String apply(String text) {
+        CipherEvent event = new CipherEvent();
+        event.begin();
+        int length = RailFenceEngine.permutedLength(text);
+        String result = RailFenceEngine.gather(text, permutation(length));
+        event.record("Pipeline", length, getMaxRails(), CipherEvent.PIPELINE_ENGINE);
+        return result;
+    }
+
+    /**
+     * Applies all stages of the pipeline like {@link #apply(String)}, but
+     * composes the gather map without reading or filling the cache, so that
+     * calibration times a cache miss and leaves the cache to real traffic.
+     *
+     * @param text The text to process.
+     * @return The processed text.
+     */
+    String applyUncached(String text) {
+        return RailFenceEngine.gather(text, compose(RailFenceEngine.permutedLength(text)));
+    }
+
+    /**
+     * Drops all composed gather maps from the cache, for example when the
+     * application is stopped.
+     */
+    public static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+            cacheBytes = 0;
+        }
+    }
+
+    /**
+     * Gets the number of composed gather maps in the cache.
+     *
+     * @return The number of cached maps.
+     */
+    static int getCacheSize() {
+        synchronized (CACHE) {
+            return CACHE.size();
+        }
+    }
+
+    /**
+     * Gets the total size of the composed gather maps in the cache.
+     *
+     * @return The size in bytes.
+     */
+    static long getCacheBytes() {
+        synchronized (CACHE) {
+            return cacheBytes;
+        }
+    }
+
+    /**
+     * Returns the composed gather map of the pipeline for the given length,
+     * from the cache when possible.
+     *
+     * @param length The number of permuted elements.
+     * @return The composed gather map. Callers must not modify it.
+     */
+    public int[] permutation(int length) {
+        if (length > MAX_CACHED_LENGTH) {
+            return compose(length);
+        }
+        String key = specification + '/' + length;
+        synchronized (CACHE) {
+            int[] cached = CACHE.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        int[] map = compose(length);
+        synchronized (CACHE) {
+            if (CACHE.putIfAbsent(key, map) == null) {
+                cacheBytes += (long) map.length * Integer.BYTES;
+                Iterator<int[]> eldest = CACHE.values().iterator();
+                while (cacheBytes > MAX_CACHE_BYTES) {
+                    cacheBytes -= (long) eldest.next().length * Integer.BYTES;
+                    eldest.remove();
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Composes the gather maps of all stages. If stage A is followed by stage
+     * B, the output element {@code j} is {@code input[a[b[j]]]}.
+     *
+     * @param length The number of permuted elements.
+     * @return The composed gather map.
+     */
+    private int[] compose(int length) {
+        int[] composed = null;
+        for (Stage stage : stages) {
+            int[] map = stage.getDirection().permutation(length, stage.getRails());
+            if (composed != null) {
+                for (int j = 0; j < length; j++) {
+                    map[j] = composed[map[j]];
+                }
+            }
+            composed = map;
+        }
+        return composed;
+    }
+
+    /**
+     * Returns the canonical specification of the pipeline, e.g.
+     * {@code "E3,D5,E4"}.
+     *
+     * @return The pipeline specification.
+     */
+    @Override
+    public String toString() {
+        return specification;
+    }
+}
@@ -0,0 +1,300 @@
+package model;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import util.EntityManagerFactoryListener;
+
+/**
+ * Application-wide cipher service injected into the servlets and listeners.
+ * It keeps the cipher operations apart from the persistence of their history:
+ * the encryptions and decryptions run on the engine dispatcher of the
+ * service, and the history is written and read through a
+ * {@link RailFenceModel} bound to the history databases once they are
+ * available. The service owns the engine dispatcher and the in-memory views
+ * of the history (version, text index and read model) and hands them to its
+ * model, so they live and die with the application rather than the class.
+ *
+ * The service is safe for concurrent use by any number of request threads.
+ * Every operation goes through its {@link AdaptiveCipherDispatcher},
+ * which is counted per engine and, until a calibration says otherwise,
+ * permutes short Latin-1 texts in thread-local scratch buffers so that such a
+ * request only allocates its result. The history databases are looked
+ * up on first use rather than when a servlet is created, so the service does
+ * not depend on the order in which the container starts its components; while
+ * they are unavailable, operations are not recorded and listings are empty.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+@ApplicationScoped
+public class CipherService {
+
+    /**
+     * Logger for logging information, warnings, and errors.
+     */
+    private static final Logger LOGGER = Logger.getLogger(CipherService.class.getName());
+
+    /**
+     * The history databases given at construction, null to use those opened
+     * by {@link EntityManagerFactoryListener}.
+     */
+    private final HistoryShards shards;
+
+    /**
+     * The dispatcher running the cipher operations.
+     */
+    private final AdaptiveCipherDispatcher engines = new AdaptiveCipherDispatcher(EngineProfile.defaults());
+
+    /**
+     * In-memory version of the history table.
+     */
+    private final HistoryVersion historyVersion = new HistoryVersion();
+
+    /**
+     * Trigram index over the history texts.
+     */
+    private final HistoryTextIndex historyIndex = new HistoryTextIndex(RailFenceModel.HISTORY_INDEX_BYTES);
+
+    /**
+     * In-memory view of the most recent history records.
+     */
+    private final HistoryReadModel readModel = new HistoryReadModel(RailFenceModel.READ_MODEL_CAPACITY);
+
+    /**
+     * The model writing and reading the history, null until the history
+     * databases are available.
+     */
+    private volatile RailFenceModel history;
+
+    /**
+     * Whether the service is started.
+     */
+    private volatile boolean running;
+
+    /**
+     * Creates a service using the history databases opened by
+     * {@link EntityManagerFactoryListener}. Used by the container.
+     */
+    public CipherService() {
+        this(null);
+    }
+
+    /**
+     * Creates a service using the given history databases.
+     *
+     * @param shards The databases holding the operation history.
+     */
+    public CipherService(HistoryShards shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Starts the service. Called by the container before the service is first
+     * used.
+     */
+    @PostConstruct
+    public void start() {
+        running = true;
+        LOGGER.log(Level.INFO, "Cipher service started, engines calibrated: {0}",
+                engines.getProfile().isCalibrated());
+    }
+
+    /**
+     * Stops the service and drops the cached pipeline plans. Called by the
+     * container when the application is stopped.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        engines.cancelCalibration();
+        history = null;
+        CipherPipeline.clearCache();
+        LOGGER.info("Cipher service stopped");
+    }
+
+    /**
+     * Tells whether the service is started.
+     *
+     * @return true between {@link #start()} and {@link #stop()}.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Provides the dispatcher choosing the engine of every encryption and
+     * decryption, to install a calibrated profile or inspect its choices.
+     *
+     * @return The dispatcher of this service.
+     */
+    public AdaptiveCipherDispatcher getEngineDispatcher() {
+        return engines;
+    }
+
+    /**
+     * Returns the model writing and reading the history, sharing the history
+     * views of this service, to warm them or to replay the history log into
+     * them.
+     *
+     * @return The model, or null while the history databases are
+     * unavailable.
+     * @throws IllegalStateException If the service is stopped.
+     */
+    public RailFenceModel getHistoryModel() {
+        return history();
+    }
+
+    /**
+     * Encrypts a text.
+     *
+     * @param text The text to encrypt.
+     * @param rails The number of rails.
+     * @return The encrypted text.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     * @throws IllegalStateException If the service is stopped.
+     */
+    public String encrypt(String text, int rails) throws InvalidRailNumberException {
+        return running().apply(CipherDirection.ENCRYPT, text, rails);
+    }
+
+    /**
+     * Decrypts a text.
+     *
+     * @param text The text to decrypt.
+     * @param rails The number of rails.
+     * @return The decrypted text.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     * @throws IllegalStateException If the service is stopped.
+     */
+    public String decrypt(String text, int rails) throws InvalidRailNumberException {
+        return running().apply(CipherDirection.DECRYPT, text, rails);
+    }
+
+    /**
+     * Applies a pipeline of operations to a text.
+     *
+     * @param text The text to process.
+     * @param pipeline The pipeline.
+     * @return The processed text.
+     * @throws IllegalStateException If the service is stopped.
+     */
+    public String applyPipeline(String text, CipherPipeline pipeline) {
+        running();
+        return pipeline.apply(text);
+    }
+
+    /**
+     * Records an operation in the history. Nothing is recorded while the
+     * history databases are unavailable.
+     *
+     * @param type The type of operation.
+     * @param original The original text.
+     * @param processed The processed text.
+     * @param rails The number of rails.
+     * @throws IllegalStateException If the service is stopped.
+     */
+    public void recordOperation(String type, String original, String processed, int rails) {
+        RailFenceModel model = history();
+        if (model == null) {
+            LOGGER.log(Level.WARNING, "History database unavailable, {0} operation not recorded", type);
+            return;
+        }
+        model.createOperationHistory(type, original, processed, rails);
+    }
+
+    /**
+     * Retrieves one page of the operation history, see
+     * {@link RailFenceModel#getOperationHistoryPage(int, int)}.
+     *
+     * @param page The index of the page, 0 for the most recent operations.
+     * @param pageSize The number of operations per page.
+     * @return The operations of the page, oldest first, empty while the
+     * history databases are not set up, or null if they could not be read.
+     * @throws IllegalStateException If the service is stopped.
+     */
+    public List<HistorySummary> getOperationHistoryPage(int page, int pageSize) {
+        RailFenceModel model = history();
+        return model == null ? new ArrayList<>() : model.getOperationHistoryPage(page, pageSize);
+    }
+
+    /**
+     * Retrieves one operation history record with its full texts.
+     *
+     * @param id The ID of the record.
+     * @return The record, or null if there is none or the history databases
+     * are unavailable.
+     * @throws IllegalStateException If the service is stopped.
+     */
+    public OperationHistory getOperationHistory(long id) {
+        RailFenceModel model = history();
+        return model == null ? null : model.getOperationHistory(id);
+    }
+
+    /**
+     * Finds the operations whose texts contain a query, ignoring case.
+     *
+     * @param query The text to search for.
+     * @return The matching operations, empty while the history databases are
+     * unavailable.
+     * @throws IllegalStateException If the service is stopped.
+     */
+    public List<HistorySummary> searchOperationHistory(String query) {
+        RailFenceModel model = history();
+        return model == null ? new ArrayList<>() : model.searchOperationHistory(query);
+    }
+
+    /**
+     * Returns the version of the history table.
+     *
+     * @return The history version, null while the history databases are
+     * unavailable.
+     * @throws IllegalStateException If the service is stopped.
+     */
+    public HistoryVersion getHistoryVersion() {
+        RailFenceModel model = history();
+        return model == null ? null : model.getHistoryVersion();
+    }
+
+    /**
+     * Returns the dispatcher of a started service.
+     *
+     * @return The dispatcher.
+     * @throws IllegalStateException If the service is stopped.
+     */
+    private AdaptiveCipherDispatcher running() {
+        if (!running) {
+            throw new IllegalStateException("Cipher service is not running.");
+        }
+        return engines;
+    }
+
+    /**
+     * Returns the model of the history, binding it to the history databases
+     * on first use.
+     *
+     * @return The model, or null while the history databases are unavailable.
+     * @throws IllegalStateException If the service is stopped.
+     */
+    private RailFenceModel history() {
+        running();
+        RailFenceModel model = history;
+        if (model == null) {
+            HistoryShards databases = shards != null ? shards : EntityManagerFactoryListener.getHistoryShards();
+            if (databases != null) {
+                synchronized (this) {
+                    model = history;
+                    if (model == null) {
+                        model = new RailFenceModel(databases, engines, historyVersion, historyIndex, readModel);
+                        history = model;
+                    }
+                }
+            }
+        }
+        return model;
+    }
+}
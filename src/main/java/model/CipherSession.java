@@ -0,0 +1,195 @@
+package model;
+
+import java.time.LocalDateTime;
+
+/**
+ * An incremental cipher session managed by {@link CipherSessionManager}. An
+ * encrypting session feeds its chunks to a {@link RailFenceEncoder}, a
+ * decrypting session to a {@link RailFenceDecoder} created for the announced
+ * length of the ciphertext. The methods of a session are synchronized, so
+ * chunks sent concurrently are appended one after the other.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class CipherSession {
+
+    /**
+     * The ID of the session.
+     */
+    private final String id;
+
+    /**
+     * The direction of the operation.
+     */
+    private final CipherDirection direction;
+
+    /**
+     * The largest number of characters the session accepts.
+     */
+    private final int maxLength;
+
+    /**
+     * The encoder of an encrypting session, null otherwise.
+     */
+    private final RailFenceEncoder encoder;
+
+    /**
+     * The decoder of a decrypting session, null otherwise.
+     */
+    private final RailFenceDecoder decoder;
+
+    /**
+     * The time the session was opened.
+     */
+    private final LocalDateTime opened = LocalDateTime.now();
+
+    /**
+     * The time in milliseconds since the epoch of the last access.
+     */
+    private volatile long lastAccessMillis = System.currentTimeMillis();
+
+    /**
+     * Creates a session.
+     *
+     * @param id The ID of the session.
+     * @param direction The direction of the operation.
+     * @param rails The number of rails.
+     * @param length The final number of characters of the ciphertext of a
+     * decrypting session, ignored when encrypting.
+     * @param maxLength The largest number of characters the session accepts.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     * @throws IllegalArgumentException If the length of a decrypting session
+     * is negative or larger than the largest length.
+     */
+    CipherSession(String id, CipherDirection direction, int rails, int length, int maxLength)
+            throws InvalidRailNumberException {
+        this.id = id;
+        this.direction = direction;
+        this.maxLength = maxLength;
+        if (direction == CipherDirection.ENCRYPT) {
+            this.encoder = new RailFenceEncoder(rails);
+            this.decoder = null;
+        } else {
+            if (length > maxLength) {
+                throw new IllegalArgumentException("Length must not exceed " + maxLength + " characters.");
+            }
+            this.encoder = null;
+            this.decoder = new RailFenceDecoder(rails, length);
+        }
+    }
+
+    /**
+     * Appends a chunk of the text.
+     *
+     * @param chunk The chunk.
+     * @return The plaintext decoded from the chunk by a decrypting session,
+     * an empty string for an encrypting session.
+     * @throws IllegalArgumentException If the text grows beyond the largest
+     * or the announced length; the chunk is then ignored.
+     */
+    public synchronized String append(String chunk) {
+        touch();
+        if (encoder != null) {
+            if ((long) encoder.length() + chunk.length() > maxLength) {
+                throw new IllegalArgumentException("Text must not exceed " + maxLength + " characters.");
+            }
+            encoder.append(chunk);
+            return "";
+        }
+        return decoder.append(chunk);
+    }
+
+    /**
+     * Returns the result so far: the ciphertext of an encrypting session or
+     * the decoded plaintext of a decrypting session.
+     *
+     * @return The text.
+     */
+    public synchronized String getText() {
+        touch();
+        return encoder != null ? encoder.ciphertext() : decoder.plaintext();
+    }
+
+    /**
+     * Gets the number of characters received so far: UTF-16 units of the
+     * plaintext when encrypting, code points of the ciphertext when
+     * decrypting.
+     *
+     * @return The received length.
+     */
+    public synchronized int getReceivedLength() {
+        return encoder != null ? encoder.length() : decoder.getReceivedLength();
+    }
+
+    /**
+     * Gets the announced length of the ciphertext of a decrypting session.
+     *
+     * @return The length, -1 for an encrypting session.
+     */
+    public int getLength() {
+        return decoder != null ? decoder.getLength() : -1;
+    }
+
+    /**
+     * Tells whether a decrypting session has decoded its whole ciphertext.
+     * An encrypting session is never complete; it ends when it is closed.
+     *
+     * @return true if the plaintext is complete.
+     */
+    public synchronized boolean isComplete() {
+        return decoder != null && decoder.isComplete();
+    }
+
+    /**
+     * Gets the ID of the session.
+     *
+     * @return The ID.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Gets the direction of the operation.
+     *
+     * @return The direction.
+     */
+    public CipherDirection getDirection() {
+        return direction;
+    }
+
+    /**
+     * Gets the number of rails.
+     *
+     * @return The number of rails.
+     */
+    public int getRails() {
+        return encoder != null ? encoder.getRails() : decoder.getRails();
+    }
+
+    /**
+     * Gets the time the session was opened.
+     *
+     * @return The opening time.
+     */
+    public LocalDateTime getOpened() {
+        return opened;
+    }
+
+    /**
+     * Gets the time of the last access.
+     *
+     * @return The time in milliseconds since the epoch.
+     */
+    long getLastAccessMillis() {
+        return lastAccessMillis;
+    }
+
+    /**
+     * Records an access, postponing the eviction of the session.
+     */
+    void touch() {
+        lastAccessMillis = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,188 @@
+package model;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the incremental cipher sessions of clients that send their text in
+ * chunks.
+ *
+ * Sessions are held in memory by ID. A session that is not accessed for the
+ * idle timeout is evicted by a background thread, and at most
+ * {@code maxSessions} sessions are open at a time.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class CipherSessionManager implements AutoCloseable {
+
+    /**
+     * Logger for logging information, warnings, and errors.
+     */
+    private static final Logger LOGGER = Logger.getLogger(CipherSessionManager.class.getName());
+
+    /**
+     * Longest interval between two evictions of idle sessions, in
+     * milliseconds.
+     */
+    private static final long MAX_SWEEP_INTERVAL_MILLIS = 30_000;
+
+    /**
+     * How long a session is kept without being accessed, in milliseconds.
+     */
+    private final long idleMillis;
+
+    /**
+     * The largest number of open sessions.
+     */
+    private final int maxSessions;
+
+    /**
+     * The largest number of characters of one session.
+     */
+    private final int maxLength;
+
+    /**
+     * The thread evicting idle sessions.
+     */
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * All open sessions by ID.
+     */
+    private final Map<String, CipherSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * The number of open sessions and of sessions being opened.
+     */
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * Whether the manager has been closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Creates a manager and its eviction thread.
+     *
+     * @param idleMillis How long a session is kept without being accessed,
+     * in milliseconds.
+     * @param maxSessions The largest number of open sessions.
+     * @param maxLength The largest number of characters of one session.
+     */
+    public CipherSessionManager(long idleMillis, int maxSessions, int maxLength) {
+        this.idleMillis = idleMillis;
+        this.maxSessions = maxSessions;
+        this.maxLength = maxLength;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cipher-session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, Math.min(idleMillis, MAX_SWEEP_INTERVAL_MILLIS));
+        sweeper.scheduleWithFixedDelay(this::evictIdle, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens a session.
+     *
+     * @param direction The direction of the operation.
+     * @param rails The number of rails.
+     * @param length The final number of characters of the ciphertext when
+     * decrypting, ignored when encrypting.
+     * @return The new session.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     * @throws IllegalArgumentException If the length is invalid.
+     * @throws RejectedExecutionException If too many sessions are open or the
+     * manager is closed.
+     */
+    public CipherSession open(CipherDirection direction, int rails, int length) throws InvalidRailNumberException {
+        if (closed) {
+            throw new RejectedExecutionException("Session manager is closed.");
+        }
+        if (count.incrementAndGet() > maxSessions) {
+            count.decrementAndGet();
+            throw new RejectedExecutionException("Too many open sessions.");
+        }
+        boolean opened = false;
+        try {
+            CipherSession session = new CipherSession(UUID.randomUUID().toString(), direction, rails, length,
+                    maxLength);
+            sessions.put(session.getId(), session);
+            opened = true;
+            return session;
+        } finally {
+            if (!opened) {
+                count.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns a session and records the access.
+     *
+     * @param id The ID of the session.
+     * @return The session, or null if it is unknown, closed or evicted.
+     */
+    public CipherSession getSession(String id) {
+        CipherSession session = id == null ? null : sessions.get(id);
+        if (session != null) {
+            session.touch();
+        }
+        return session;
+    }
+
+    /**
+     * Closes a session.
+     *
+     * @param id The ID of the session.
+     * @return The closed session, or null if it is unknown, closed or evicted.
+     */
+    public CipherSession remove(String id) {
+        CipherSession session = id == null ? null : sessions.remove(id);
+        if (session != null) {
+            count.decrementAndGet();
+        }
+        return session;
+    }
+
+    /**
+     * Gets the number of open sessions.
+     *
+     * @return The number of sessions.
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Stops the eviction thread and drops all sessions.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        sweeper.shutdownNow();
+        sessions.clear();
+        count.set(0);
+    }
+
+    /**
+     * Drops the sessions not accessed for the idle timeout.
+     */
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (CipherSession session : sessions.values()) {
+            if (now - session.getLastAccessMillis() >= idleMillis && sessions.remove(session.getId(), session)) {
+                count.decrementAndGet();
+                LOGGER.fine(() -> "Evicted idle cipher session " + session.getId());
+            }
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+
+/**
+ * The fastest {@link CipherEngine} on this host for every combination of a
+ * text length bucket and a rail count bucket, together with the times measured
+ * during calibration.
+ *
+ * A profile is either the default one, which chooses
+ * {@link CipherEngine#SCRATCH} up to its largest text and
+ * {@link CipherEngine#SCALAR} beyond, or produced by {@link #calibrate()},
+ * which encrypts and decrypts synthetic Latin-1 texts of lengths spread over
+ * every bucket with every engine supporting them and keeps the fastest. No length repeats within a
+ * cell and the cached plan engine bypasses its cache, so an engine that
+ * caches per length is not timed on hits real traffic would rarely see, and
+ * the cache is not filled with synthetic lengths. Calibration takes a few
+ * seconds in a fresh JVM, most of it spent compiling the engines. A profile
+ * can be saved to a properties file and loaded again, so that it is not
+ * repeated on every start. Profiles are immutable.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class EngineProfile {
+
+    /**
+     * Largest text length of every length bucket. Longer texts fall in the
+     * last bucket.
+     */
+    static final int[] LENGTH_BOUNDS = {64, 256, 1024, 4096, 16384, 65536, 262144, 1048576};
+
+    /**
+     * Largest number of rails of every rail bucket. More rails fall in the
+     * last bucket.
+     */
+    static final int[] RAIL_BOUNDS = {2, 4, 16, 64};
+
+    /**
+     * Number of characters processed by every engine in a cell during
+     * calibration, spread over several repetitions.
+     */
+    private static final int CALIBRATION_CHARACTERS = 128 * 1024;
+
+    /**
+     * Smallest number of timed repetitions per engine and cell.
+     */
+    private static final int MIN_REPETITIONS = 3;
+
+    /**
+     * Largest number of timed repetitions per engine and cell.
+     */
+    private static final int MAX_REPETITIONS = 100;
+
+    /**
+     * Number of characters processed by every engine before calibration, so
+     * that the timed runs see compiled code.
+     */
+    private static final int WARM_UP_CHARACTERS = 1024 * 1024;
+
+    /**
+     * The chosen engine per length bucket and rail bucket.
+     */
+    private final CipherEngine[][] choices;
+
+    /**
+     * The best time of an encryption plus a decryption per length bucket,
+     * rail bucket and engine ordinal, scaled to the largest length of the
+     * bucket, in nanoseconds, -1 if not measured.
+     */
+    private final long[][][] nanos;
+
+    /**
+     * The number of processors of the host when the profile was made.
+     */
+    private final int processors;
+
+    /**
+     * Creates a profile.
+     *
+     * @param choices The chosen engines.
+     * @param nanos The measured times.
+     * @param processors The number of processors of the host.
+     */
+    private EngineProfile(CipherEngine[][] choices, long[][][] nanos, int processors) {
+        this.choices = choices;
+        this.nanos = nanos;
+        this.processors = processors;
+    }
+
+    /**
+     * Returns the profile choosing {@link CipherEngine#SCRATCH} for the
+     * buckets it covers and {@link CipherEngine#SCALAR} for longer texts, used
+     * until a calibrated profile is available. Texts the scratch engine does
+     * not support fall back to the scalar engine in the dispatcher.
+     *
+     * @return The default profile.
+     */
+    public static EngineProfile defaults() {
+        CipherEngine[][] choices = new CipherEngine[LENGTH_BOUNDS.length][RAIL_BOUNDS.length];
+        long[][][] nanos = new long[LENGTH_BOUNDS.length][RAIL_BOUNDS.length][CipherEngine.values().length];
+        for (int i = 0; i < LENGTH_BOUNDS.length; i++) {
+            for (int j = 0; j < RAIL_BOUNDS.length; j++) {
+                choices[i][j] = LENGTH_BOUNDS[i] <= ScratchRailFenceEngine.SCRATCH_LIMIT
+                        ? CipherEngine.SCRATCH : CipherEngine.SCALAR;
+                Arrays.fill(nanos[i][j], -1);
+            }
+        }
+        return new EngineProfile(choices, nanos, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Measures every engine on this host and returns the profile choosing the
+     * fastest one per bucket. Repetitions of the engines are interleaved, each
+     * repetition with another length of the bucket, and the best time scaled
+     * to the largest length is kept, so a pause hits all engines alike and
+     * does not count. Engines not supporting the texts of a bucket are not
+     * measured there. The interrupt status of the calling thread is checked
+     * between the buckets.
+     *
+     * @return The calibrated profile.
+     * @throws CancellationException If the calling thread is interrupted.
+     */
+    public static EngineProfile calibrate() {
+        CipherEngine[] engines = CipherEngine.values();
+        String sample = sample(LENGTH_BOUNDS[3]);
+        try {
+            for (CipherEngine engine : engines) {
+                for (int done = 0; done < WARM_UP_CHARACTERS; done += sample.length()) {
+                    engine.calibrationApply(CipherDirection.DECRYPT,
+                            engine.calibrationApply(CipherDirection.ENCRYPT, sample, 3), 3);
+                }
+            }
+            CipherEngine[][] choices = new CipherEngine[LENGTH_BOUNDS.length][RAIL_BOUNDS.length];
+            long[][][] nanos = new long[LENGTH_BOUNDS.length][RAIL_BOUNDS.length][engines.length];
+            for (int i = 0; i < LENGTH_BOUNDS.length; i++) {
+                int bound = LENGTH_BOUNDS[i];
+                int lower = i == 0 ? 1 : LENGTH_BOUNDS[i - 1] + 1;
+                String full = sample(bound);
+                int repetitions = Math.min(bound - lower + 1, Math.max(MIN_REPETITIONS,
+                        Math.min(MAX_REPETITIONS, CALIBRATION_CHARACTERS / bound)));
+                for (int j = 0; j < RAIL_BOUNDS.length; j++) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new CancellationException("Engine calibration was interrupted.");
+                    }
+                    long[] best = nanos[i][j];
+                    Arrays.fill(best, Long.MAX_VALUE);
+                    for (int r = 0; r < repetitions; r++) {
+                        int length = bound - (int) ((long) r * (bound - lower) / repetitions);
+                        String text = full.substring(0, length);
+                        for (CipherEngine engine : engines) {
+                            if (!engine.supports(full)) {
+                                continue;
+                            }
+                            long start = System.nanoTime();
+                            String encrypted = engine.calibrationApply(CipherDirection.ENCRYPT, text, RAIL_BOUNDS[j]);
+                            engine.calibrationApply(CipherDirection.DECRYPT, encrypted, RAIL_BOUNDS[j]);
+                            long scaled = (System.nanoTime() - start) * bound / length;
+                            best[engine.ordinal()] = Math.min(best[engine.ordinal()], scaled);
+                        }
+                    }
+                    for (int e = 0; e < best.length; e++) {
+                        if (best[e] == Long.MAX_VALUE) {
+                            best[e] = -1;
+                        }
+                    }
+                    choices[i][j] = fastest(best);
+                }
+            }
+            return new EngineProfile(choices, nanos, Runtime.getRuntime().availableProcessors());
+        } catch (InvalidRailNumberException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Builds a Latin-1 text of the given length.
+     *
+     * @param length The length of the text.
+     * @return The text.
+     */
+    private static String sample(int length) {
+        char[] text = new char[length];
+        for (int i = 0; i < length; i++) {
+            text[i] = (char) ('a' + i % 26);
+        }
+        return new String(text);
+    }
+
+    /**
+     * Finds the engine with the smallest time.
+     *
+     * @param nanos The times per engine ordinal, -1 if not measured.
+     * @return The fastest engine, {@link CipherEngine#SCALAR} if none was
+     * measured.
+     */
+    private static CipherEngine fastest(long[] nanos) {
+        CipherEngine fastest = CipherEngine.SCALAR;
+        long best = Long.MAX_VALUE;
+        for (CipherEngine engine : CipherEngine.values()) {
+            long time = nanos[engine.ordinal()];
+            if (time >= 0 && time < best) {
+                best = time;
+                fastest = engine;
+            }
+        }
+        return fastest;
+    }
+
+    /**
+     * Finds the length bucket of a text.
+     *
+     * @param length The length of the text.
+     * @return The index of the bucket.
+     */
+    static int lengthBucket(int length) {
+        int i = 0;
+        while (i < LENGTH_BOUNDS.length - 1 && length > LENGTH_BOUNDS[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Finds the rail bucket of a number of rails.
+     *
+     * @param rails The number of rails.
+     * @return The index of the bucket.
+     */
+    static int railBucket(int rails) {
+        int j = 0;
+        while (j < RAIL_BOUNDS.length - 1 && rails > RAIL_BOUNDS[j]) {
+            j++;
+        }
+        return j;
+    }
+
+    /**
+     * Chooses the engine for a text.
+     *
+     * @param length The length of the text.
+     * @param rails The number of rails.
+     * @return The fastest engine for the bucket of the text.
+     */
+    public CipherEngine choose(int length, int rails) {
+        return choices[lengthBucket(length)][railBucket(rails)];
+    }
+
+    /**
+     * Gets the number of length buckets.
+     *
+     * @return The number of length buckets.
+     */
+    public static int getLengthBucketCount() {
+        return LENGTH_BOUNDS.length;
+    }
+
+    /**
+     * Gets the number of rail buckets.
+     *
+     * @return The number of rail buckets.
+     */
+    public static int getRailBucketCount() {
+        return RAIL_BOUNDS.length;
+    }
+
+    /**
+     * Gets the largest text length of a length bucket.
+     *
+     * @param lengthBucket The index of the bucket.
+     * @return The largest length, unbounded for the last bucket.
+     */
+    public static int getLengthBound(int lengthBucket) {
+        return LENGTH_BOUNDS[lengthBucket];
+    }
+
+    /**
+     * Gets the largest number of rails of a rail bucket.
+     *
+     * @param railBucket The index of the bucket.
+     * @return The largest number of rails, unbounded for the last bucket.
+     */
+    public static int getRailBound(int railBucket) {
+        return RAIL_BOUNDS[railBucket];
+    }
+
+    /**
+     * Gets the engine chosen for a bucket.
+     *
+     * @param lengthBucket The index of the length bucket.
+     * @param railBucket The index of the rail bucket.
+     * @return The chosen engine.
+     */
+    public CipherEngine getChoice(int lengthBucket, int railBucket) {
+        return choices[lengthBucket][railBucket];
+    }
+
+    /**
+     * Gets the best time an engine took to encrypt and decrypt the sample text
+     * of a bucket during calibration.
+     *
+     * @param lengthBucket The index of the length bucket.
+     * @param railBucket The index of the rail bucket.
+     * @param engine The engine.
+     * @return The time in nanoseconds, -1 if the profile is not calibrated or
+     * the engine does not support the texts of the bucket.
+     */
+    public long getCalibrationNanos(int lengthBucket, int railBucket, CipherEngine engine) {
+        return nanos[lengthBucket][railBucket][engine.ordinal()];
+    }
+
+    /**
+     * Tells whether the profile comes from a calibration.
+     *
+     * @return false for the default profile.
+     */
+    public boolean isCalibrated() {
+        return nanos[0][0][0] >= 0;
+    }
+
+    /**
+     * Gets the number of processors of the host the profile was made on.
+     *
+     * @return The number of processors.
+     */
+    public int getProcessors() {
+        return processors;
+    }
+
+    /**
+     * Saves the profile to a properties file.
+     *
+     * @param file The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void save(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("processors", Integer.toString(processors));
+        properties.setProperty("lengths", join(LENGTH_BOUNDS));
+        properties.setProperty("rails", join(RAIL_BOUNDS));
+        for (int i = 0; i < LENGTH_BOUNDS.length; i++) {
+            for (int j = 0; j < RAIL_BOUNDS.length; j++) {
+                String cell = i + "." + j;
+                properties.setProperty("choice." + cell, choices[i][j].name());
+                StringBuilder times = new StringBuilder();
+                for (long time : nanos[i][j]) {
+                    times.append(times.length() == 0 ? "" : ",").append(time);
+                }
+                properties.setProperty("nanos." + cell, times.toString());
+            }
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (OutputStream out = Files.newOutputStream(file)) {
+            properties.store(out, "Rail Fence Cipher engine calibration");
+        }
+    }
+
+    /**
+     * Loads a profile saved by {@link #save(Path)}.
+     *
+     * @param file The file to read.
+     * @return The profile.
+     * @throws IOException If the file cannot be read, is malformed or was
+     * saved with different buckets or engines.
+     */
+    public static EngineProfile load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        if (!join(LENGTH_BOUNDS).equals(properties.getProperty("lengths"))
+                || !join(RAIL_BOUNDS).equals(properties.getProperty("rails"))) {
+            throw new IOException("Engine profile " + file + " uses different buckets.");
+        }
+        CipherEngine[][] choices = new CipherEngine[LENGTH_BOUNDS.length][RAIL_BOUNDS.length];
+        long[][][] nanos = new long[LENGTH_BOUNDS.length][RAIL_BOUNDS.length][];
+        try {
+            int processors = Integer.parseInt(properties.getProperty("processors", ""));
+            for (int i = 0; i < LENGTH_BOUNDS.length; i++) {
+                for (int j = 0; j < RAIL_BOUNDS.length; j++) {
+                    String cell = i + "." + j;
+                    choices[i][j] = CipherEngine.valueOf(properties.getProperty("choice." + cell, ""));
+                    nanos[i][j] = Arrays.stream(properties.getProperty("nanos." + cell, "").split(","))
+                            .mapToLong(Long::parseLong).toArray();
+                    if (nanos[i][j].length != CipherEngine.values().length) {
+                        throw new IOException("Engine profile " + file + " uses different engines.");
+                    }
+                }
+            }
+            return new EngineProfile(choices, nanos, processors);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed engine profile " + file, e);
+        }
+    }
+
+    /**
+     * Joins numbers with commas.
+     *
+     * @param values The numbers.
+     * @return The joined numbers.
+     */
+    private static String join(int[] values) {
+        StringBuilder joined = new StringBuilder();
+        for (int value : values) {
+            joined.append(joined.length() == 0 ? "" : ",").append(value);
+        }
+        return joined.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder event for one access to the operation history,
+ * recording the number of rows written or read and the time spent in the
+ * database transaction or queries. The duration of the event also covers the
+ * in-memory work around them.
+ *
+ * The event is enabled by default and does not collect stack traces.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+@Name("railfence.History")
+@Label("History Access")
+@Category("Rail Fence Cipher")
+@Description("A write or read of the operation history")
+@StackTrace(false)
+public final class HistoryEvent extends Event {
+
+    /**
+     * The access, "create", "replay", "read", "page", "detail" or "search".
+     */
+    @Label("Operation")
+    String operation;
+
+    /**
+     * Where the rows came from or went to: "database", "log", "read model" or
+     * "index".
+     */
+    @Label("Source")
+    String source;
+
+    /**
+     * The number of rows written or returned.
+     */
+    @Label("Rows")
+    int rows;
+
+    /**
+     * The time spent in the database, or waiting for the history log to be
+     * synced, 0 if neither was used.
+     */
+    @Label("Transaction Time")
+    @Description("Time spent in the database transaction or queries, or waiting for the history log sync")
+    @Timespan(Timespan.NANOSECONDS)
+    long transactionTime;
+
+    /**
+     * Whether the access succeeded.
+     */
+    @Label("Succeeded")
+    boolean succeeded;
+
+    /**
+     * Ends the event and commits it if a recording wants it.
+     *
+     * @param operation The access.
+     * @param source Where the rows came from.
+     * @param rows The number of rows written or returned.
+     * @param transactionTime The time spent in the database, in nanoseconds.
+     * @param succeeded Whether the access succeeded.
+     */
+    void record(String operation, String source, int rows, long transactionTime, boolean succeeded) {
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.source = source;
+            this.rows = rows;
+            this.transactionTime = transactionTime;
+            this.succeeded = succeeded;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package model;
+
+/**
+ * Listener notified by {@link RailFenceModel} after a new operation history
+ * record has been committed to the database.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface HistoryListener {
+
+    /**
+     * Called after an operation history record has been committed.
+     * Implementations must return quickly, they run on the thread that
+     * stored the record.
+     *
+     * @param history The committed record, with its generated ID.
+     */
+    void historyCreated(OperationHistory history);
+}
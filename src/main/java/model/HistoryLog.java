@@ -0,0 +1,1029 @@
+package model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of the operation history, kept in memory-mapped
+ * segment files on local disk.
+ *
+ * Every record is written to the mapped segment as a 16 byte header (the
+ * length of the payload, its CRC-32 and the sequence number of the record)
+ * followed by the payload, and {@link #append(OperationHistory)} returns once
+ * the record is on disk. The segments are forced by one background thread
+ * with group commit: a sync runs as soon as {@code syncRecords} records are
+ * pending or the oldest pending record has waited {@code syncMillis}
+ * milliseconds, so concurrent writers share the cost of one fsync. A failed
+ * sync is retried until it succeeds: once a record is in a segment it belongs
+ * to the log and will be replayed, so it must not be reported as failed and
+ * stored elsewhere. While the last sync has failed, new records are refused
+ * before they enter a segment, so their writers store them elsewhere instead
+ * of waiting for the disk to recover. A segment is named after the sequence number of its first
+ * record and is forced when the next one is started.
+ *
+ * The records are moved to the history databases by a {@link HistoryReplayer}
+ * reading them with {@link #read(int)}. It reports the last stored record with
+ * {@link #checkpoint(long)}, which is saved in the "checkpoint" file and
+ * deletes the segments holding only stored records. When a log is opened,
+ * its segments are scanned and the log is cut at the first record that is
+ * incomplete, fails its checksum or breaks the sequence, which are the traces
+ * of a crash; reading then resumes after the checkpoint, or at the first
+ * remaining segment if segments were deleted for a later checkpoint that did
+ * not reach the disk.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class HistoryLog implements AutoCloseable {
+
+    /**
+     * Logger for logging information, warnings, and errors.
+     */
+    private static final Logger LOGGER = Logger.getLogger(HistoryLog.class.getName());
+
+    /**
+     * The default size of a segment file, in bytes.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The smallest size of a segment file, in bytes.
+     */
+    public static final int MIN_SEGMENT_SIZE = 4096;
+
+    /**
+     * The size of a record header: payload length, checksum and sequence
+     * number.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * How long the sync thread waits before retrying a failed sync, in
+     * milliseconds.
+     */
+    private static final long SYNC_RETRY_MILLIS = 1000;
+
+    /**
+     * The name of the checkpoint file.
+     */
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    /**
+     * The prefix of the segment file names.
+     */
+    private static final String SEGMENT_PREFIX = "history-";
+
+    /**
+     * The suffix of the segment file names.
+     */
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    /**
+     * The directory holding the segments and the checkpoint.
+     */
+    private final Path directory;
+
+    /**
+     * The size of a new segment, in bytes.
+     */
+    private final int segmentSize;
+
+    /**
+     * The number of pending records starting a sync at once.
+     */
+    private final int syncRecords;
+
+    /**
+     * The longest time a record waits for a sync, in nanoseconds.
+     */
+    private final long syncNanos;
+
+    /**
+     * Guards the segments, the write position and the statistics.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signalled when a record is appended or the log is closed.
+     */
+    private final Condition appended = lock.newCondition();
+
+    /**
+     * Signalled when a sync has completed or failed.
+     */
+    private final Condition synced = lock.newCondition();
+
+    /**
+     * The segments in sequence order, the last one being written.
+     */
+    private final List<Segment> segments = new ArrayList<>();
+
+    /**
+     * The thread forcing the segments to disk.
+     */
+    private final Thread syncer;
+
+    /**
+     * When the log was opened, from {@link System#nanoTime()}.
+     */
+    private final long openedNanos;
+
+    /**
+     * The number of records found after the checkpoint when the log was
+     * opened.
+     */
+    private final long recoveredRecords;
+
+    /**
+     * The position of the next record in the last segment.
+     */
+    private int position;
+
+    /**
+     * The sequence number of the next record.
+     */
+    private long nextSequence;
+
+    /**
+     * When the oldest record not yet on disk was appended, from
+     * {@link System#nanoTime()}.
+     */
+    private long pendingSince;
+
+    /**
+     * The sequence number of the last record known to be on disk.
+     */
+    private volatile long syncedSequence;
+
+    /**
+     * The sequence number of the last record stored in the databases.
+     */
+    private volatile long checkpoint;
+
+    /**
+     * The failure of the last sync, null if it succeeded.
+     */
+    private volatile IOException syncFailure;
+
+    /**
+     * Whether the log has been closed.
+     */
+    private boolean closed;
+
+    /**
+     * The segment holding the next record to read.
+     */
+    private Segment readSegment;
+
+    /**
+     * The position of the next record to read in its segment.
+     */
+    private int readPosition;
+
+    /**
+     * The sequence number of the next record to read.
+     */
+    private long readSequence;
+
+    /**
+     * The number of records appended since the log was opened.
+     */
+    private long appendedRecords;
+
+    /**
+     * The number of completed syncs.
+     */
+    private long syncCount;
+
+    /**
+     * The total time spent in completed syncs, in nanoseconds.
+     */
+    private long totalSyncNanos;
+
+    /**
+     * The longest completed sync, in nanoseconds.
+     */
+    private long maxSyncNanos;
+
+    /**
+     * Opens a log, recovering the records left by an earlier run, and starts
+     * its sync thread.
+     *
+     * @param directory The directory holding the segments, created if needed.
+     * @param segmentSize The size of a new segment, in bytes.
+     * @param syncRecords The number of pending records starting a sync at
+     * once.
+     * @param syncMillis The longest time a record waits for a sync, in
+     * milliseconds.
+     * @throws IllegalArgumentException If a size or limit is invalid.
+     * @throws IOException If the directory or a segment cannot be opened.
+     */
+    public HistoryLog(Path directory, int segmentSize, int syncRecords, long syncMillis) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE || syncRecords <= 0 || syncMillis < 0) {
+            throw new IllegalArgumentException("Invalid history log settings.");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.syncRecords = syncRecords;
+        this.syncNanos = TimeUnit.MILLISECONDS.toNanos(syncMillis);
+        this.checkpoint = readCheckpoint();
+        this.nextSequence = recover();
+        if (!segments.isEmpty() && segments.get(0).firstSequence > checkpoint + 1) {
+            checkpoint = segments.get(0).firstSequence - 1;
+        }
+        if (segments.isEmpty() || nextSequence <= checkpoint) {
+            nextSequence = Math.max(nextSequence, checkpoint + 1);
+            segments.add(Segment.create(segmentFile(nextSequence), nextSequence, segmentSize));
+            position = 0;
+        }
+        this.syncedSequence = nextSequence - 1;
+        this.recoveredRecords = nextSequence - 1 - checkpoint;
+        this.readSequence = checkpoint + 1;
+        this.readSegment = segments.get(0);
+        for (Segment segment : segments) {
+            if (segment.firstSequence <= readSequence) {
+                readSegment = segment;
+            }
+        }
+        deleteReplayedSegments();
+        if (recoveredRecords > 0) {
+            LOGGER.log(Level.INFO, "History log recovered {0} records not yet stored", recoveredRecords);
+        }
+        this.openedNanos = System.nanoTime();
+        this.syncer = new Thread(this::runSyncer, "history-wal-sync");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+
+    /**
+     * Appends a record and waits until it is on disk. A record appended
+     * before a sync fails waits for the retry; if the log is closed first,
+     * the record is left in its segment and recovered when the log is next
+     * opened, as after a crash. While the last sync has failed, the record is
+     * refused.
+     *
+     * @param history The record, with its timestamp set.
+     * @return The sequence number of the record.
+     * @throws IOException If the log is closed, cannot be synced or a new
+     * segment cannot be started. The record is then not in the log and may be
+     * stored elsewhere.
+     */
+    public long append(OperationHistory history) throws IOException {
+        byte[] payload = encode(history);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        int size = HEADER_SIZE + payload.length;
+        long sequence;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("History log closed.");
+            }
+            IOException failure = syncFailure;
+            if (failure != null) {
+                throw new IOException("History log cannot be synced.", failure);
+            }
+            Segment segment = segments.get(segments.size() - 1);
+            if (position + size > segment.capacity()) {
+                segment.force();
+                segment = Segment.create(segmentFile(nextSequence), nextSequence, Math.max(segmentSize, size));
+                segments.add(segment);
+                position = 0;
+            }
+            sequence = nextSequence++;
+            ByteBuffer buffer = segment.buffer.duplicate();
+            buffer.position(position + 4);
+            buffer.putInt((int) crc.getValue());
+            buffer.putLong(sequence);
+            buffer.put(payload);
+            segment.buffer.putInt(position, payload.length);
+            position += size;
+            appendedRecords++;
+            if (sequence == syncedSequence + 1) {
+                pendingSince = System.nanoTime();
+            }
+            appended.signal();
+            while (syncedSequence < sequence && !closed) {
+                synced.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return sequence;
+    }
+
+    /**
+     * Reads the next records on disk that have not been read yet, starting
+     * after the checkpoint. Only called by one thread at a time.
+     *
+     * @param max The largest number of records to read.
+     * @return The records in sequence order, with their sequence numbers set,
+     * empty if there are none. They end before a record that cannot be read.
+     * @throws IllegalStateException If the first record to read is missing
+     * from the log.
+     */
+    public List<OperationHistory> read(int max) {
+        List<OperationHistory> records = new ArrayList<>();
+        long durable = syncedSequence;
+        try {
+            readRecords(records, max, durable);
+        } catch (RuntimeException e) {
+            if (records.isEmpty()) {
+                throw e;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Reads records on disk into a list, stopping before a record that cannot
+     * be read so that the next read starts with it again.
+     *
+     * @param records The list receiving the records.
+     * @param max The largest number of records in the list.
+     * @param durable The sequence number of the last record on disk.
+     * @throws IllegalStateException If a record is missing from the log.
+     */
+    private void readRecords(List<OperationHistory> records, int max, long durable) {
+        while (records.size() < max && readSequence <= durable) {
+            ByteBuffer buffer = readSegment.buffer;
+            int length = readPosition + HEADER_SIZE <= readSegment.capacity() ? buffer.getInt(readPosition) : 0;
+            if (length == 0) {
+                readSegment = nextSegment(readSegment);
+                readPosition = 0;
+                continue;
+            }
+            long sequence = buffer.getLong(readPosition + 8);
+            if (sequence > readSequence) {
+                throw new IllegalStateException("History log record " + readSequence + " is missing.");
+            }
+            if (sequence == readSequence) {
+                OperationHistory history = decode(buffer, readPosition + HEADER_SIZE, length);
+                history.setWalSequence(sequence);
+                records.add(history);
+                readSequence++;
+            }
+            readPosition += HEADER_SIZE + length;
+        }
+    }
+
+    /**
+     * Waits until there are records on disk that have not been read yet.
+     *
+     * @param timeoutMillis The longest time to wait, in milliseconds.
+     * @return true if such records are available.
+     * @throws InterruptedException If the thread is interrupted.
+     */
+    public boolean awaitRecords(long timeoutMillis) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            while (syncedSequence < readSequence && remaining > 0 && !closed) {
+                remaining = synced.awaitNanos(remaining);
+            }
+            return syncedSequence >= readSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records that all records up to a sequence number are stored in the
+     * databases, and deletes the segments holding only such records.
+     *
+     * @param sequence The sequence number of the last stored record.
+     * @throws IOException If the checkpoint cannot be saved.
+     */
+    public void checkpoint(long sequence) throws IOException {
+        if (sequence <= checkpoint) {
+            return;
+        }
+        Path temporary = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.writeString(temporary, Long.toString(sequence), StandardCharsets.US_ASCII);
+        Files.move(temporary, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        checkpoint = sequence;
+        lock.lock();
+        try {
+            deleteReplayedSegments();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the directory of the log.
+     *
+     * @return The directory holding the segments and the checkpoint.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the sequence number of the last record stored in the databases.
+     *
+     * @return The sequence number of the checkpoint.
+     */
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Gets the sequence number of the last record on disk.
+     *
+     * @return The sequence number.
+     */
+    public long getSyncedSequence() {
+        return syncedSequence;
+    }
+
+    /**
+     * Gets the number of records found after the checkpoint when the log was
+     * opened.
+     *
+     * @return The number of recovered records.
+     */
+    public long getRecoveredRecords() {
+        return recoveredRecords;
+    }
+
+    /**
+     * Gets the number of segment files.
+     *
+     * @return The number of segments.
+     */
+    public int getSegmentCount() {
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of records appended since the log was opened.
+     *
+     * @return The number of records.
+     */
+    public long getAppendedRecords() {
+        lock.lock();
+        try {
+            return appendedRecords;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the mean number of records appended per second since the log was
+     * opened.
+     *
+     * @return The records per second.
+     */
+    public double getAppendedRecordsPerSecond() {
+        double seconds = (System.nanoTime() - openedNanos) / 1e9;
+        return seconds > 0 ? getAppendedRecords() / seconds : 0;
+    }
+
+    /**
+     * Gets the number of completed syncs.
+     *
+     * @return The number of syncs.
+     */
+    public long getSyncCount() {
+        lock.lock();
+        try {
+            return syncCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the mean time of a completed sync.
+     *
+     * @return The mean sync time in nanoseconds, 0 before the first sync.
+     */
+    public long getAverageSyncNanos() {
+        lock.lock();
+        try {
+            return syncCount == 0 ? 0 : totalSyncNanos / syncCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the longest completed sync.
+     *
+     * @return The longest sync time in nanoseconds.
+     */
+    public long getMaxSyncNanos() {
+        lock.lock();
+        try {
+            return maxSyncNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tells whether the last sync failed. Writers already waiting wait until
+     * a retry succeeds, and new records are refused until then.
+     *
+     * @return true while the log cannot be synced.
+     */
+    public boolean isSyncFailing() {
+        return syncFailure != null;
+    }
+
+    /**
+     * Syncs the pending records, stops the sync thread and closes the
+     * segments. Records not yet stored in the databases are kept on disk and
+     * read again when the log is next opened.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            appended.signalAll();
+            synced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            syncer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            for (Segment segment : segments) {
+                segment.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Body of the sync thread: forces the last segment whenever enough
+     * records are pending or the oldest one has waited long enough, and
+     * wakes up the writers waiting for them.
+     */
+    private void runSyncer() {
+        lock.lock();
+        try {
+            while (true) {
+                long target = nextSequence - 1;
+                if (target == syncedSequence) {
+                    if (closed) {
+                        return;
+                    }
+                    appended.await();
+                    continue;
+                }
+                long waited = System.nanoTime() - pendingSince;
+                if (!closed && target - syncedSequence < syncRecords && waited < syncNanos) {
+                    appended.awaitNanos(syncNanos - waited);
+                    continue;
+                }
+                Segment segment = segments.get(segments.size() - 1);
+                lock.unlock();
+                long started = System.nanoTime();
+                IOException failure = null;
+                try {
+                    segment.force();
+                } catch (IOException e) {
+                    failure = e;
+                }
+                long elapsed = System.nanoTime() - started;
+                lock.lock();
+                syncFailure = failure;
+                if (failure == null) {
+                    syncedSequence = target;
+                    syncCount++;
+                    totalSyncNanos += elapsed;
+                    maxSyncNanos = Math.max(maxSyncNanos, elapsed);
+                    pendingSince = started;
+                    synced.signalAll();
+                } else {
+                    LOGGER.log(Level.SEVERE, "Error syncing history log, retrying", failure);
+                    if (closed) {
+                        LOGGER.log(Level.SEVERE, "History log closed with records {0} to {1} not synced",
+                                new Object[] {syncedSequence + 1, target});
+                        synced.signalAll();
+                        return;
+                    }
+                    appended.await(SYNC_RETRY_MILLIS, TimeUnit.MILLISECONDS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Opens the existing segments, cuts the log at the first damaged record
+     * and deletes the segments after it.
+     *
+     * @return The sequence number of the next record, 0 if there are no
+     * segments.
+     * @throws IOException If a segment cannot be opened or repaired.
+     */
+    private long recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> firstSequence(file) > 0)
+                    .sorted((a, b) -> Long.compare(firstSequence(a), firstSequence(b)))
+                    .collect(Collectors.toList());
+        }
+        long expected = 0;
+        boolean damaged = false;
+        for (Path file : files) {
+            long first = firstSequence(file);
+            if (damaged || (expected != 0 && first != expected)) {
+                LOGGER.log(Level.WARNING, "Deleting history log segment {0} after a damaged record", file);
+                Files.delete(file);
+                continue;
+            }
+            Segment segment = Segment.open(file, first);
+            segments.add(segment);
+            expected = first;
+            int offset = 0;
+            while (offset + HEADER_SIZE <= segment.capacity()) {
+                int length = segment.buffer.getInt(offset);
+                if (length == 0) {
+                    break;
+                }
+                if (length < 0 || length > segment.capacity() - offset - HEADER_SIZE
+                        || segment.buffer.getLong(offset + 8) != expected
+                        || segment.buffer.getInt(offset + 4) != checksum(segment.buffer, offset + HEADER_SIZE, length)) {
+                    LOGGER.log(Level.WARNING, "History log cut at damaged record {0}", expected);
+                    damaged = true;
+                    break;
+                }
+                offset += HEADER_SIZE + length;
+                expected++;
+            }
+            position = offset;
+            clear(segment, offset);
+        }
+        return expected;
+    }
+
+    /**
+     * Zeroes the end of a segment if it holds anything, so that only valid
+     * records are followed by written bytes.
+     *
+     * @param segment The segment.
+     * @param from The end of the valid records.
+     * @throws IOException If the segment cannot be forced.
+     */
+    private static void clear(Segment segment, int from) throws IOException {
+        boolean dirty = false;
+        for (int i = from; i < segment.capacity(); i++) {
+            if (segment.buffer.get(i) != 0) {
+                segment.buffer.put(i, (byte) 0);
+                dirty = true;
+            }
+        }
+        if (dirty) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Deletes the segments whose records are all stored in the databases,
+     * keeping the last segment and the one being read. Called with the lock
+     * held or from the constructor.
+     */
+    private void deleteReplayedSegments() {
+        while (segments.size() > 1 && segments.get(1).firstSequence <= checkpoint + 1
+                && segments.get(0) != readSegment) {
+            Segment segment = segments.remove(0);
+            segment.close();
+            try {
+                Files.deleteIfExists(segment.file);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Cannot delete history log segment " + segment.file, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the segment after a segment that has been read to its end.
+     *
+     * @param segment The segment.
+     * @return The next segment.
+     * @throws IllegalStateException If there is no next segment, which means
+     * the log is damaged.
+     */
+    private Segment nextSegment(Segment segment) {
+        lock.lock();
+        try {
+            int index = segments.indexOf(segment);
+            if (index < 0 || index + 1 == segments.size()) {
+                throw new IllegalStateException("History log record " + readSequence + " is missing.");
+            }
+            return segments.get(index + 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the checkpoint file.
+     *
+     * @return The sequence number of the checkpoint, 0 if there is none.
+     * @throws IOException If the file cannot be read.
+     */
+    private long readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        String value = Files.readString(file, StandardCharsets.US_ASCII).trim();
+        try {
+            return Math.max(0, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Invalid history log checkpoint {0}, replaying the whole log", value);
+            return 0;
+        }
+    }
+
+    /**
+     * Builds the file name of a segment.
+     *
+     * @param firstSequence The sequence number of the first record of the
+     * segment.
+     * @return The path of the segment file.
+     */
+    private Path segmentFile(long firstSequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Parses the sequence number of the first record from the name of a
+     * segment file.
+     *
+     * @param file The file.
+     * @return The sequence number, or -1 if the file is not a segment.
+     */
+    private static long firstSequence(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Computes the checksum of a payload in a segment.
+     *
+     * @param buffer The buffer of the segment.
+     * @param offset The offset of the payload.
+     * @param length The length of the payload.
+     * @return The CRC-32 of the payload.
+     */
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(offset);
+        payload.limit(offset + length);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Encodes a record: the number of rails, the timestamp as seconds and
+     * nanoseconds, then the operation type and both texts in UTF-8, each
+     * preceded by its length or -1 for null.
+     *
+     * @param history The record.
+     * @return The payload.
+     */
+    private static byte[] encode(OperationHistory history) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                64 + 3 * (history.getOriginalLength() + history.getProcessedLength()));
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            LocalDateTime timestamp = history.getTimestamp();
+            out.writeInt(history.getRails());
+            out.writeLong(timestamp == null ? 0 : timestamp.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(timestamp == null ? -1 : timestamp.getNano());
+            writeText(out, history.getOperationType());
+            writeText(out, history.getOriginalText());
+            writeText(out, history.getProcessedText());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a text of a payload.
+     *
+     * @param out The payload being written.
+     * @param text The text, may be null.
+     * @throws IOException Never, the payload is in memory.
+     */
+    private static void writeText(DataOutputStream out, String text) throws IOException {
+        if (text == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Decodes a record written by {@link #encode(OperationHistory)}.
+     *
+     * @param buffer The buffer of the segment.
+     * @param offset The offset of the payload.
+     * @param length The length of the payload.
+     * @return The record.
+     */
+    private static OperationHistory decode(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(offset);
+        in.limit(offset + length);
+        int rails = in.getInt();
+        long seconds = in.getLong();
+        int nanos = in.getInt();
+        String type = readText(in);
+        String original = readText(in);
+        String processed = readText(in);
+        OperationHistory history = new OperationHistory(type, original, processed, rails);
+        history.setTimestamp(nanos < 0 ? null : LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC));
+        return history;
+    }
+
+    /**
+     * Reads a text of a payload.
+     *
+     * @param in The payload being read.
+     * @return The text, may be null.
+     */
+    private static String readText(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * One memory-mapped segment file.
+     */
+    private static final class Segment {
+
+        /**
+         * The segment file.
+         */
+        private final Path file;
+
+        /**
+         * The sequence number of the first record of the segment.
+         */
+        private final long firstSequence;
+
+        /**
+         * The open channel of the file.
+         */
+        private final FileChannel channel;
+
+        /**
+         * The mapping of the whole file.
+         */
+        private final MappedByteBuffer buffer;
+
+        /**
+         * Creates a segment.
+         *
+         * @param file The segment file.
+         * @param firstSequence The sequence number of the first record.
+         * @param channel The open channel of the file.
+         * @param size The size of the file.
+         * @throws IOException If the file cannot be mapped.
+         */
+        private Segment(Path file, long firstSequence, FileChannel channel, long size) throws IOException {
+            this.file = file;
+            this.firstSequence = firstSequence;
+            this.channel = channel;
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        /**
+         * Creates a new segment file of the given size and maps it. The size
+         * of the file is forced to disk along with its directory entry.
+         *
+         * @param file The segment file.
+         * @param firstSequence The sequence number of the first record.
+         * @param size The size of the file.
+         * @return The segment.
+         * @throws IOException If the file cannot be created or mapped.
+         */
+        private static Segment create(Path file, long firstSequence, int size) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            try {
+                Segment segment = new Segment(file, firstSequence, channel, size);
+                channel.force(true);
+                return segment;
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Maps an existing segment file.
+         *
+         * @param file The segment file.
+         * @param firstSequence The sequence number of the first record.
+         * @return The segment.
+         * @throws IOException If the file cannot be opened or mapped.
+         */
+        private static Segment open(Path file, long firstSequence) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                return new Segment(file, firstSequence, channel, channel.size());
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Gets the size of the segment.
+         *
+         * @return The size in bytes.
+         */
+        private int capacity() {
+            return buffer.capacity();
+        }
+
+        /**
+         * Forces the segment to disk.
+         *
+         * @throws IOException If the segment cannot be forced.
+         */
+        private void force() throws IOException {
+            try {
+                buffer.force();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Closes the channel of the segment. The mapping stays valid until it
+         * is garbage collected.
+         */
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Cannot close history log segment " + file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bounded in-memory view of the most recent operation history records, used
+ * to answer history page requests without a database query.
+ *
+ * Records are kept in a ring of parallel columns: primitive arrays for the
+ * ID, the number of rails, the timestamp, the text lengths and a dictionary
+ * code of the operation type, and reference arrays only for the two text
+ * previews, so the view does not retain the texts themselves. The view is
+ * warmed from the database at startup and then kept in sync by the write path;
+ * once the ring is full the oldest records are evicted, and pages reaching
+ * past the retained window have to be read from the database.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class HistoryReadModel {
+
+    /**
+     * Number of records the ring can hold.
+     */
+    private final int capacity;
+
+    /**
+     * IDs of the records, 0 for records without an ID.
+     */
+    private final long[] ids;
+
+    /**
+     * Timestamps of the records as nanoseconds since the epoch, in UTC.
+     */
+    private final long[] timestamps;
+
+    /**
+     * Numbers of rails of the records.
+     */
+    private final int[] rails;
+
+    /**
+     * Dictionary codes of the operation types of the records.
+     */
+    private final int[] types;
+
+    /**
+     * Lengths of the original texts of the records.
+     */
+    private final int[] originalLengths;
+
+    /**
+     * Lengths of the processed texts of the records.
+     */
+    private final int[] processedLengths;
+
+    /**
+     * Previews of the original texts of the records.
+     */
+    private final String[] originalPreviews;
+
+    /**
+     * Previews of the processed texts of the records.
+     */
+    private final String[] processedPreviews;
+
+    /**
+     * Operation types by dictionary code.
+     */
+    private final List<String> typeDictionary = new ArrayList<>();
+
+    /**
+     * Dictionary codes by operation type.
+     */
+    private final Map<String, Integer> typeCodes = new HashMap<>();
+
+    /**
+     * Lock guarding all columns and counters.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Index of the slot receiving the next record.
+     */
+    private int next;
+
+    /**
+     * Number of records currently held.
+     */
+    private int size;
+
+    /**
+     * Whether the view holds every record of the history, which is true until
+     * the first eviction if the warm-up loaded the whole table.
+     */
+    private boolean complete;
+
+    /**
+     * Whether the view has been warmed from the database.
+     */
+    private boolean ready;
+
+    /**
+     * Creates an empty view.
+     *
+     * @param capacity The number of records to retain.
+     */
+    public HistoryReadModel(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Read model capacity must be positive.");
+        }
+        this.capacity = capacity;
+        this.ids = new long[capacity];
+        this.timestamps = new long[capacity];
+        this.rails = new int[capacity];
+        this.types = new int[capacity];
+        this.originalLengths = new int[capacity];
+        this.processedLengths = new int[capacity];
+        this.originalPreviews = new String[capacity];
+        this.processedPreviews = new String[capacity];
+    }
+
+    /**
+     * Gets the number of records the view can hold.
+     *
+     * @return The capacity of the view.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Loads the most recent records from the database. Records appended while
+     * they were being loaded are kept after them.
+     *
+     * @param recent The summaries of the most recent records, oldest first,
+     * at most {@link #getCapacity()} of them.
+     * @param wholeTable Whether the list holds every record of the history.
+     */
+    public void warm(List<HistorySummary> recent, boolean wholeTable) {
+        lock.writeLock().lock();
+        try {
+            List<HistorySummary> appended = snapshot(0, size);
+            Set<Long> loaded = new HashSet<>();
+            next = 0;
+            size = 0;
+            complete = wholeTable;
+            for (HistorySummary history : recent) {
+                loaded.add(history.getId());
+                store(history);
+            }
+            for (HistorySummary history : appended) {
+                if (!loaded.contains(history.getId())) {
+                    store(history);
+                }
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends a newly committed record, evicting the oldest one if the view is
+     * full.
+     *
+     * @param history The committed record.
+     */
+    public void append(OperationHistory history) {
+        lock.writeLock().lock();
+        try {
+            store(HistorySummary.of(history));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a page of the history, counting pages from the most recent
+     * records. The records of a page are ordered oldest first.
+     *
+     * @param page The index of the page, 0 for the most recent records.
+     * @param pageSize The number of records per page.
+     * @return The summaries of the records of the page, or null if the page
+     * is not within the retained window and has to be read from the database.
+     * @throws IllegalArgumentException If the page is negative or the page
+     * size is not positive.
+     */
+    public List<HistorySummary> page(int page, int pageSize) {
+        if (page < 0 || pageSize <= 0) {
+            throw new IllegalArgumentException("Invalid history page " + page + " of size " + pageSize + ".");
+        }
+        lock.readLock().lock();
+        try {
+            if (!ready) {
+                return null;
+            }
+            long newestOffset = (long) page * pageSize;
+            long end = size - newestOffset;
+            long start = end - pageSize;
+            if (start < 0 && !complete) {
+                return null;
+            }
+            if (end <= 0) {
+                return new ArrayList<>();
+            }
+            return snapshot((int) Math.max(0, start), (int) end);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of records currently held.
+     *
+     * @return The number of records.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores a record in the next slot. Must be called with the write lock
+     * held.
+     *
+     * @param history The summary of the record to store.
+     */
+    private void store(HistorySummary history) {
+        if (size == capacity) {
+            complete = false;
+        } else {
+            size++;
+        }
+        int slot = next;
+        next = (next + 1) % capacity;
+        ids[slot] = history.getId() == null ? 0 : history.getId();
+        LocalDateTime timestamp = history.getTimestamp();
+        timestamps[slot] = timestamp == null ? Long.MIN_VALUE
+                : timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + timestamp.getNano();
+        rails[slot] = history.getRails();
+        types[slot] = typeCode(history.getOperationType());
+        originalLengths[slot] = history.getOriginalLength();
+        processedLengths[slot] = history.getProcessedLength();
+        originalPreviews[slot] = history.getOriginalPreview();
+        processedPreviews[slot] = history.getProcessedPreview();
+    }
+
+    /**
+     * Returns the dictionary code of an operation type, adding it if needed.
+     * Must be called with the write lock held.
+     *
+     * @param type The operation type.
+     * @return The dictionary code.
+     */
+    private int typeCode(String type) {
+        Integer code = typeCodes.get(type);
+        if (code == null) {
+            code = typeDictionary.size();
+            typeDictionary.add(type);
+            typeCodes.put(type, code);
+        }
+        return code;
+    }
+
+    /**
+     * Materializes a range of the held records, counted from the oldest.
+     * Must be called with a lock held.
+     *
+     * @param from The position of the first record, inclusive.
+     * @param to The position of the last record, exclusive.
+     * @return New summaries of the records.
+     */
+    private List<HistorySummary> snapshot(int from, int to) {
+        int oldest = Math.floorMod(next - size, capacity);
+        List<HistorySummary> records = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            int slot = (oldest + i) % capacity;
+            long nanos = timestamps[slot];
+            LocalDateTime timestamp = nanos == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(
+                    Math.floorDiv(nanos, 1_000_000_000L), (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+            records.add(new HistorySummary(ids[slot] == 0 ? null : ids[slot], typeDictionary.get(types[slot]),
+                    rails[slot], timestamp, originalLengths[slot], processedLengths[slot], originalPreviews[slot],
+                    processedPreviews[slot]));
+        }
+        return records;
+    }
+
+    /**
+     * Returns the IDs currently held, oldest first.
+     *
+     * @return The IDs of the held records.
+     */
+    long[] heldIds() {
+        lock.readLock().lock();
+        try {
+            int oldest = Math.floorMod(next - size, capacity);
+            long[] held = new long[size];
+            for (int i = 0; i < size; i++) {
+                held[i] = ids[(oldest + i) % capacity];
+            }
+            return held;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a short description of the view for logging.
+     *
+     * @return The number of held records and the retained IDs.
+     */
+    @Override
+    public String toString() {
+        long[] held = heldIds();
+        return "HistoryReadModel{size=" + held.length + ", capacity=" + capacity
+                + (held.length > 0 ? ", ids=" + held[0] + ".." + held[held.length - 1] : "") + '}';
+    }
+}
@@ -0,0 +1,286 @@
+package model;
+
+import jakarta.persistence.PersistenceException;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Moves the records of a {@link HistoryLog} to the history databases on a
+ * background thread.
+ *
+ * The records are read in batches and stored with one transaction per shard,
+ * then the last record of the batch becomes the checkpoint of the log. A
+ * record carries its log sequence number into the database, so after a crash
+ * between a commit and the checkpoint the records already stored are found
+ * and skipped rather than stored twice. While the databases are unavailable
+ * the batch is retried with an exponential backoff, and the records wait in
+ * the log. Any other failure, such as a record the log cannot read, is
+ * retried the same way and reported by {@link #getLastFailure()} until the
+ * replay succeeds again, so the replay never stops on its own.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class HistoryReplayer implements AutoCloseable {
+
+    /**
+     * Logger for logging information, warnings, and errors.
+     */
+    private static final Logger LOGGER = Logger.getLogger(HistoryReplayer.class.getName());
+
+    /**
+     * The default number of records stored per batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * How long the thread waits for new records before checking whether it
+     * was stopped, in milliseconds.
+     */
+    private static final long IDLE_WAIT_MILLIS = 200;
+
+    /**
+     * The first wait after a failed batch, in milliseconds.
+     */
+    private static final long MIN_BACKOFF_MILLIS = 250;
+
+    /**
+     * The longest wait after a failed batch, in milliseconds.
+     */
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    /**
+     * The log to replay.
+     */
+    private final HistoryLog log;
+
+    /**
+     * The model storing the records.
+     */
+    private final RailFenceModel model;
+
+    /**
+     * The largest number of records stored per batch.
+     */
+    private final int batchSize;
+
+    /**
+     * The thread replaying the log.
+     */
+    private final Thread thread;
+
+    /**
+     * Whether the replayer is running.
+     */
+    private volatile boolean running;
+
+    /**
+     * The number of records stored since the replayer was started.
+     */
+    private volatile long replayedRecords;
+
+    /**
+     * The number of records skipped because they were already stored.
+     */
+    private volatile long skippedRecords;
+
+    /**
+     * The time spent storing batches, in nanoseconds.
+     */
+    private volatile long replayNanos;
+
+    /**
+     * The number of failed batches.
+     */
+    private volatile long failedBatches;
+
+    /**
+     * The failure of the last batch, null if it succeeded.
+     */
+    private volatile Exception lastFailure;
+
+    /**
+     * Creates a replayer.
+     *
+     * @param log The log to replay.
+     * @param model The model storing the records.
+     * @param batchSize The largest number of records stored per batch.
+     */
+    public HistoryReplayer(HistoryLog log, RailFenceModel model, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        this.log = log;
+        this.model = model;
+        this.batchSize = batchSize;
+        this.thread = new Thread(this::run, "history-wal-replay");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the replay thread.
+     */
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Stops the replay thread after its current batch. The records not yet
+     * stored stay in the log.
+     */
+    @Override
+    public void close() {
+        running = false;
+        synchronized (this) {
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the number of records stored since the replayer was started.
+     *
+     * @return The number of records.
+     */
+    public long getReplayedRecords() {
+        return replayedRecords;
+    }
+
+    /**
+     * Gets the number of records skipped because they were already stored.
+     *
+     * @return The number of records.
+     */
+    public long getSkippedRecords() {
+        return skippedRecords;
+    }
+
+    /**
+     * Gets the number of failed batches.
+     *
+     * @return The number of failures.
+     */
+    public long getFailedBatches() {
+        return failedBatches;
+    }
+
+    /**
+     * Gets the failure of the last batch.
+     *
+     * @return The failure, null while the replay succeeds.
+     */
+    public Exception getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Gets the number of records stored per second of database work.
+     *
+     * @return The records per second, 0 before the first batch.
+     */
+    public double getReplayedRecordsPerSecond() {
+        long nanos = replayNanos;
+        return nanos == 0 ? 0 : replayedRecords * 1e9 / nanos;
+    }
+
+    /**
+     * Gets the number of records on disk in the log but not yet stored.
+     *
+     * @return The number of records.
+     */
+    public long getLag() {
+        return Math.max(0, log.getSyncedSequence() - log.getCheckpoint());
+    }
+
+    /**
+     * Body of the replay thread.
+     */
+    private void run() {
+        long verifiedUpTo = -1;
+        long backoff = MIN_BACKOFF_MILLIS;
+        boolean failing = false;
+        List<OperationHistory> batch = null;
+        while (running) {
+            try {
+                if (batch == null) {
+                    batch = log.read(batchSize);
+                    if (batch.isEmpty()) {
+                        batch = null;
+                        log.awaitRecords(IDLE_WAIT_MILLIS);
+                        continue;
+                    }
+                }
+                long first = batch.get(0).getWalSequence();
+                long last = batch.get(batch.size() - 1).getWalSequence();
+                if (verifiedUpTo < 0) {
+                    verifiedUpTo = model.getLastReplayedSequence();
+                }
+                if (first <= verifiedUpTo) {
+                    Set<Long> stored = model.getReplayedSequences(first, last);
+                    batch.removeIf(history -> stored.contains(history.getWalSequence()));
+                    skippedRecords += stored.size();
+                }
+                long started = System.nanoTime();
+                if (!batch.isEmpty()) {
+                    model.replayOperationHistory(batch);
+                }
+                replayNanos += System.nanoTime() - started;
+                replayedRecords += batch.size();
+                batch = null;
+                backoff = MIN_BACKOFF_MILLIS;
+                if (failing) {
+                    LOGGER.info("History log replay succeeded again, resuming");
+                    failing = false;
+                    lastFailure = null;
+                }
+                log.checkpoint(last);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Error saving history log checkpoint", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                failedBatches++;
+                lastFailure = e;
+                if (!failing) {
+                    LOGGER.log(e instanceof PersistenceException ? Level.WARNING : Level.SEVERE,
+                            "Error replaying history log, retrying", e);
+                    failing = true;
+                }
+                if (batch != null) {
+                    verifiedUpTo = Math.max(verifiedUpTo, batch.get(batch.size() - 1).getWalSequence());
+                }
+                pause(backoff);
+                backoff = Math.min(2 * backoff, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Waits before retrying a failed batch, returning early when the
+     * replayer is stopped or the thread is interrupted.
+     *
+     * @param millis The time to wait, in milliseconds.
+     */
+    private synchronized void pause(long millis) {
+        long end = System.currentTimeMillis() + millis;
+        long remaining = millis;
+        try {
+            while (running && remaining > 0) {
+                wait(remaining);
+                remaining = end - System.currentTimeMillis();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package model;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceException;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The set of databases holding the operation history. Each shard is a separate
+ * database with its own EntityManagerFactory. New records are routed to one
+ * shard, either by a hash of a write sequence number or by time bucket, and
+ * reads run on all shards in parallel and are merged afterwards.
+ *
+ * Record IDs stay unique across shards because the identity column of shard
+ * {@code k} starts at {@code k << SHARD_ID_BITS}, which also lets a record be
+ * located from its ID alone. A shard whose IDs come within
+ * {@link #ID_HEADROOM} of the next range takes no new records, so its IDs
+ * never run into the range of the next shard; the last shard has no upper
+ * limit. With a single shard the history behaves exactly like one database.
+ *
+ * History tables created before the texts became LOBs with separate length
+ * and preview columns, or before the history log sequence column, are
+ * upgraded when the shards are opened.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class HistoryShards implements AutoCloseable {
+
+    /**
+     * Number of low bits of a record ID available to each shard. The limit of
+     * {@link #MAX_SHARDS} shards keeps all IDs within the range of an int.
+     */
+    public static final int SHARD_ID_BITS = 27;
+
+    /**
+     * Number of IDs left unused at the end of the range of a shard, enough
+     * for the records written concurrently while the shard is being closed.
+     */
+    static final long ID_HEADROOM = 1 << 20;
+
+    /**
+     * The largest supported number of shards.
+     */
+    public static final int MAX_SHARDS = 16;
+
+    /**
+     * Length of a time bucket used by {@link Routing#TIME_BUCKET}, in seconds.
+     */
+    private static final long TIME_BUCKET_SECONDS = 3600;
+
+    /**
+     * Logger for logging information, warnings, and errors.
+     */
+    private static final Logger LOGGER = Logger.getLogger(HistoryShards.class.getName());
+
+    /**
+     * Statements upgrading a history table with VARCHAR text columns: the
+     * length and preview columns are added and filled, and every text column
+     * is replaced by a CLOB column with the same content and name.
+     */
+    private static final String[] SCHEMA_UPGRADE = {
+        "ALTER TABLE OPERATIONHISTORY ADD COLUMN ORIGINALLENGTH INTEGER DEFAULT 0",
+        "ALTER TABLE OPERATIONHISTORY ADD COLUMN PROCESSEDLENGTH INTEGER DEFAULT 0",
+        "ALTER TABLE OPERATIONHISTORY ADD COLUMN ORIGINALPREVIEW VARCHAR(" + OperationHistory.PREVIEW_LENGTH + ")",
+        "ALTER TABLE OPERATIONHISTORY ADD COLUMN PROCESSEDPREVIEW VARCHAR(" + OperationHistory.PREVIEW_LENGTH + ")",
+        "ALTER TABLE OPERATIONHISTORY ADD COLUMN ORIGINALTEXT_LOB CLOB(" + OperationHistory.MAX_TEXT_LENGTH + ")",
+        "ALTER TABLE OPERATIONHISTORY ADD COLUMN PROCESSEDTEXT_LOB CLOB(" + OperationHistory.MAX_TEXT_LENGTH + ")",
+        "UPDATE OPERATIONHISTORY SET "
+        + "ORIGINALLENGTH = COALESCE(LENGTH(ORIGINALTEXT), 0), "
+        + "PROCESSEDLENGTH = COALESCE(LENGTH(PROCESSEDTEXT), 0), "
+        + "ORIGINALPREVIEW = CASE WHEN LENGTH(ORIGINALTEXT) > " + OperationHistory.PREVIEW_LENGTH
+        + " THEN SUBSTR(ORIGINALTEXT, 1, " + OperationHistory.PREVIEW_LENGTH + ") ELSE ORIGINALTEXT END, "
+        + "PROCESSEDPREVIEW = CASE WHEN LENGTH(PROCESSEDTEXT) > " + OperationHistory.PREVIEW_LENGTH
+        + " THEN SUBSTR(PROCESSEDTEXT, 1, " + OperationHistory.PREVIEW_LENGTH + ") ELSE PROCESSEDTEXT END, "
+        + "ORIGINALTEXT_LOB = ORIGINALTEXT, "
+        + "PROCESSEDTEXT_LOB = PROCESSEDTEXT",
+        "ALTER TABLE OPERATIONHISTORY DROP COLUMN ORIGINALTEXT",
+        "ALTER TABLE OPERATIONHISTORY DROP COLUMN PROCESSEDTEXT",
+        "RENAME COLUMN OPERATIONHISTORY.ORIGINALTEXT_LOB TO ORIGINALTEXT",
+        "RENAME COLUMN OPERATIONHISTORY.PROCESSEDTEXT_LOB TO PROCESSEDTEXT"
+    };
+
+    /**
+     * Statements adding the indexed history log sequence column to a history
+     * table created before the history log existed.
+     */
+    private static final String[] WAL_SEQUENCE_UPGRADE = {
+        "ALTER TABLE OPERATIONHISTORY ADD COLUMN WALSEQUENCE BIGINT",
+        "CREATE INDEX " + OperationHistory.WAL_SEQUENCE_INDEX + " ON OPERATIONHISTORY (WALSEQUENCE)"
+    };
+
+    /**
+     * How new records are assigned to shards.
+     */
+    public enum Routing {
+
+        /**
+         * Spread records evenly by a hash of a write sequence number.
+         */
+        HASH,
+
+        /**
+         * Keep records of the same hour together, rotating shards hourly.
+         */
+        TIME_BUCKET
+    }
+
+    /**
+     * The factories of the shards, shard {@code k} at index {@code k}.
+     */
+    private final List<EntityManagerFactory> factories;
+
+    /**
+     * The routing of new records.
+     */
+    private final Routing routing;
+
+    /**
+     * Sequence number of writes, used by hash routing.
+     */
+    private final AtomicLong writes = new AtomicLong();
+
+    /**
+     * Shards that reached the end of their ID range and take no new records.
+     */
+    private final Set<Integer> closed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Threads running the per-shard parts of reads, null for a single shard.
+     */
+    private final ExecutorService readers;
+
+    /**
+     * Creates the shard set, upgrades the history tables if needed and
+     * prepares the ID ranges of empty shards.
+     *
+     * @param factories The factories of the shards.
+     * @param routing The routing of new records.
+     */
+    public HistoryShards(List<EntityManagerFactory> factories, Routing routing) {
+        if (factories.isEmpty() || factories.size() > MAX_SHARDS) {
+            throw new IllegalArgumentException("Number of history shards must be between 1 and " + MAX_SHARDS + ".");
+        }
+        this.factories = Collections.unmodifiableList(new ArrayList<>(factories));
+        this.routing = routing;
+        for (int shard = 0; shard < factories.size(); shard++) {
+            upgradeSchema(shard);
+        }
+        if (factories.size() > 1) {
+            this.readers = Executors.newFixedThreadPool(factories.size(), runnable -> {
+                Thread thread = new Thread(runnable, "history-shard-reader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            for (int shard = 0; shard < factories.size(); shard++) {
+                prepareIdRange(shard);
+            }
+        } else {
+            this.readers = null;
+        }
+    }
+
+    /**
+     * Gets the number of shards.
+     *
+     * @return The number of shards.
+     */
+    public int size() {
+        return factories.size();
+    }
+
+    /**
+     * Gets the factory of a shard.
+     *
+     * @param shard The index of the shard.
+     * @return The factory of the shard.
+     */
+    public EntityManagerFactory getFactory(int shard) {
+        return factories.get(shard);
+    }
+
+    /**
+     * Chooses the shard for a new record. A closed shard passes the record on
+     * to the next open one.
+     *
+     * @param history The record to store.
+     * @return The index of the shard.
+     */
+    public int route(OperationHistory history) {
+        int n = factories.size();
+        if (n == 1) {
+            return 0;
+        }
+        int shard;
+        if (routing == Routing.TIME_BUCKET && history.getTimestamp() != null) {
+            long bucket = history.getTimestamp().toEpochSecond(ZoneOffset.UTC) / TIME_BUCKET_SECONDS;
+            shard = (int) Math.floorMod(bucket, (long) n);
+        } else {
+            long h = writes.getAndIncrement() * 0x9E3779B97F4A7C15L;
+            shard = (int) Math.floorMod(h ^ (h >>> 32), (long) n);
+        }
+        while (closed.contains(shard)) {
+            shard = (shard + 1) % n;
+        }
+        return shard;
+    }
+
+    /**
+     * Checks the ID of a record stored in a shard against the range of the
+     * shard, and closes the shard once the ID comes within
+     * {@link #ID_HEADROOM} of the end of the range.
+     *
+     * @param shard The index of the shard.
+     * @param id The ID of the stored record, ignored if null.
+     */
+    public void recordInserted(int shard, Long id) {
+        if (id == null || shard == factories.size() - 1) {
+            return;
+        }
+        long end = (long) (shard + 1) << SHARD_ID_BITS;
+        if (id >= end) {
+            LOGGER.log(Level.SEVERE, "History shard {0} stored ID {1} beyond its range", new Object[] {shard, id});
+        }
+        if (id >= end - ID_HEADROOM && closed.add(shard)) {
+            LOGGER.log(Level.WARNING, "History shard {0} is near the end of its ID range, closed to new records", shard);
+        }
+    }
+
+    /**
+     * Returns the shard holding the record with the given ID.
+     *
+     * @param id The ID of the record.
+     * @return The index of the shard.
+     */
+    public int shardOf(long id) {
+        return (int) Math.min(id >>> SHARD_ID_BITS, factories.size() - 1);
+    }
+
+    /**
+     * Runs a query on every shard in parallel and collects the results in
+     * shard order.
+     *
+     * @param <T> The type of the per-shard result.
+     * @param query The query to run with an EntityManager of each shard.
+     * @return The results of the shards.
+     * @throws PersistenceException If the query fails on any shard.
+     */
+    public <T> List<T> scatter(Function<EntityManager, T> query) {
+        List<T> results = new ArrayList<>(factories.size());
+        if (readers == null) {
+            results.add(runOn(factories.get(0), query));
+            return results;
+        }
+        List<Future<T>> futures = new ArrayList<>(factories.size());
+        for (EntityManagerFactory factory : factories) {
+            futures.add(readers.submit(() -> runOn(factory, query)));
+        }
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PersistenceException("Interrupted while reading history shards", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof PersistenceException) {
+                    throw (PersistenceException) e.getCause();
+                }
+                throw new PersistenceException("Error reading history shard", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Merges lists that are each sorted by the comparator into one sorted
+     * list, taking the smallest head of all lists at every step.
+     *
+     * @param <T> The type of the elements.
+     * @param lists The sorted lists.
+     * @param order The order of the elements.
+     * @return The merged list.
+     */
+    public static <T> List<T> merge(List<List<T>> lists, Comparator<? super T> order) {
+        int total = 0;
+        for (List<T> list : lists) {
+            total += list.size();
+        }
+        List<T> merged = new ArrayList<>(total);
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>((a, b) -> order.compare(a.value, b.value));
+        for (List<T> list : lists) {
+            Iterator<T> iterator = list.iterator();
+            if (iterator.hasNext()) {
+                heads.add(new Head<>(iterator.next(), iterator));
+            }
+        }
+        while (!heads.isEmpty()) {
+            Head<T> head = heads.poll();
+            merged.add(head.value);
+            if (head.rest.hasNext()) {
+                heads.add(new Head<>(head.rest.next(), head.rest));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Stops the reader threads. The factories are owned and closed by the
+     * caller.
+     */
+    @Override
+    public void close() {
+        if (readers != null) {
+            readers.shutdownNow();
+        }
+    }
+
+    /**
+     * The current element of one list being merged.
+     *
+     * @param <T> The type of the elements.
+     */
+    private static final class Head<T> {
+
+        /**
+         * The current element.
+         */
+        private final T value;
+
+        /**
+         * The remaining elements of the list.
+         */
+        private final Iterator<T> rest;
+
+        /**
+         * Creates a head.
+         *
+         * @param value The current element.
+         * @param rest The remaining elements.
+         */
+        private Head(T value, Iterator<T> rest) {
+            this.value = value;
+            this.rest = rest;
+        }
+    }
+
+    /**
+     * Runs a query with a new EntityManager of the given factory.
+     *
+     * @param <T> The type of the result.
+     * @param factory The factory of the shard.
+     * @param query The query to run.
+     * @return The result of the query.
+     */
+    private static <T> T runOn(EntityManagerFactory factory, Function<EntityManager, T> query) {
+        EntityManager em = factory.createEntityManager();
+        try {
+            return query.apply(em);
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Upgrades the history table of a shard that has no preview columns yet,
+     * in one transaction.
+     *
+     * @param shard The index of the shard.
+     */
+    private void upgradeSchema(int shard) {
+        EntityManager em = factories.get(shard).createEntityManager();
+        try {
+            if (!hasColumn(em, "ORIGINALPREVIEW")) {
+                LOGGER.log(Level.INFO, "Upgrading history table of shard {0}", shard);
+                em.getTransaction().begin();
+                for (String statement : SCHEMA_UPGRADE) {
+                    em.createNativeQuery(statement).executeUpdate();
+                }
+                em.getTransaction().commit();
+            }
+            if (!hasColumn(em, "WALSEQUENCE")) {
+                LOGGER.log(Level.INFO, "Adding history log sequence column to shard {0}", shard);
+                em.getTransaction().begin();
+                for (String statement : WAL_SEQUENCE_UPGRADE) {
+                    em.createNativeQuery(statement).executeUpdate();
+                }
+                em.getTransaction().commit();
+            }
+        } catch (PersistenceException e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            LOGGER.log(Level.SEVERE, "Error upgrading history table of shard " + shard, e);
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Tells whether the history table of a shard has a column.
+     *
+     * @param em The entity manager of the shard.
+     * @param column The name of the column, in upper case.
+     * @return true if the column exists.
+     */
+    private static boolean hasColumn(EntityManager em, String column) {
+        Number count = (Number) em.createNativeQuery("SELECT COUNT(*) FROM SYS.SYSCOLUMNS c, SYS.SYSTABLES t "
+                + "WHERE c.REFERENCEID = t.TABLEID AND t.TABLENAME = 'OPERATIONHISTORY' "
+                + "AND c.COLUMNNAME = ? "
+                + "AND t.SCHEMAID = (SELECT SCHEMAID FROM SYS.SYSSCHEMAS WHERE SCHEMANAME = CURRENT SCHEMA)")
+                .setParameter(1, column)
+                .getSingleResult();
+        return count.intValue() > 0;
+    }
+
+    /**
+     * Moves the identity column of an empty shard to the start of its ID
+     * range. Shards that already hold records in their range are left alone,
+     * and closed if their range is nearly used up.
+     *
+     * @param shard The index of the shard.
+     */
+    private void prepareIdRange(int shard) {
+        long start = (long) shard << SHARD_ID_BITS;
+        EntityManager em = factories.get(shard).createEntityManager();
+        try {
+            Number maxId = em.createQuery("SELECT MAX(h.id) FROM OperationHistory h", Number.class).getSingleResult();
+            if (maxId != null) {
+                recordInserted(shard, maxId.longValue());
+            }
+            if (shard > 0 && (maxId == null || maxId.longValue() < start)) {
+                if (maxId != null) {
+                    LOGGER.log(Level.WARNING, "History shard {0} holds IDs outside of its range", shard);
+                }
+                em.getTransaction().begin();
+                em.createNativeQuery("ALTER TABLE OPERATIONHISTORY ALTER COLUMN ID RESTART WITH " + (start + 1))
+                        .executeUpdate();
+                em.getTransaction().commit();
+            }
+        } catch (PersistenceException e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            LOGGER.log(Level.SEVERE, "Error preparing ID range of history shard " + shard, e);
+        } finally {
+            em.close();
+        }
+    }
+}
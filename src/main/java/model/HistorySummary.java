@@ -0,0 +1,207 @@
+package model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only projection of an {@link OperationHistory} record for history
+ * listings. It carries the lengths and previews of the texts instead of the
+ * texts themselves, so listing a page reads a few hundred bytes per record
+ * however large the texts are. The full record is loaded by
+ * {@link RailFenceModel#getOperationHistory(long)} for the detail view.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class HistorySummary {
+
+    /**
+     * The JPQL select clause building summaries from the preview columns,
+     * followed by the FROM clause with the alias "h".
+     */
+    static final String SELECT = "SELECT NEW model.HistorySummary(h.id, h.operationType, h.rails, h.timestamp, "
+            + "h.originalLength, h.processedLength, h.originalPreview, h.processedPreview) FROM OperationHistory h";
+
+    /**
+     * The ID of the record.
+     */
+    private final Long id;
+
+    /**
+     * The type of operation.
+     */
+    private final String operationType;
+
+    /**
+     * The number of rails.
+     */
+    private final int rails;
+
+    /**
+     * The timestamp of the operation.
+     */
+    private final LocalDateTime timestamp;
+
+    /**
+     * The number of characters of the original text.
+     */
+    private final int originalLength;
+
+    /**
+     * The number of characters of the processed text.
+     */
+    private final int processedLength;
+
+    /**
+     * The first characters of the original text.
+     */
+    private final String originalPreview;
+
+    /**
+     * The first characters of the processed text.
+     */
+    private final String processedPreview;
+
+    /**
+     * Creates a summary. Used by the JPQL constructor expression in
+     * {@link #SELECT}.
+     *
+     * @param id The ID of the record.
+     * @param operationType The type of operation.
+     * @param rails The number of rails.
+     * @param timestamp The timestamp of the operation.
+     * @param originalLength The number of characters of the original text.
+     * @param processedLength The number of characters of the processed text.
+     * @param originalPreview The first characters of the original text.
+     * @param processedPreview The first characters of the processed text.
+     */
+    public HistorySummary(Long id, String operationType, int rails, LocalDateTime timestamp, int originalLength,
+            int processedLength, String originalPreview, String processedPreview) {
+        this.id = id;
+        this.operationType = operationType;
+        this.rails = rails;
+        this.timestamp = timestamp;
+        this.originalLength = originalLength;
+        this.processedLength = processedLength;
+        this.originalPreview = originalPreview;
+        this.processedPreview = processedPreview;
+    }
+
+    /**
+     * Creates the summary of a record.
+     *
+     * @param history The record.
+     * @return The summary.
+     */
+    public static HistorySummary of(OperationHistory history) {
+        return new HistorySummary(history.getId(), history.getOperationType(), history.getRails(),
+                history.getTimestamp(), history.getOriginalLength(), history.getProcessedLength(),
+                history.getOriginalPreview(), history.getProcessedPreview());
+    }
+
+    /**
+     * Gets the ID of the record.
+     *
+     * @return The ID, null if the record was not stored.
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * Gets the type of operation.
+     *
+     * @return The operation type.
+     */
+    public String getOperationType() {
+        return operationType;
+    }
+
+    /**
+     * Gets the number of rails.
+     *
+     * @return The number of rails.
+     */
+    public int getRails() {
+        return rails;
+    }
+
+    /**
+     * Gets the timestamp of the operation.
+     *
+     * @return The timestamp.
+     */
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets the number of characters of the original text.
+     *
+     * @return The length of the original text.
+     */
+    public int getOriginalLength() {
+        return originalLength;
+    }
+
+    /**
+     * Gets the number of characters of the processed text.
+     *
+     * @return The length of the processed text.
+     */
+    public int getProcessedLength() {
+        return processedLength;
+    }
+
+    /**
+     * Gets the first characters of the original text.
+     *
+     * @return The preview of the original text.
+     */
+    public String getOriginalPreview() {
+        return originalPreview;
+    }
+
+    /**
+     * Gets the first characters of the processed text.
+     *
+     * @return The preview of the processed text.
+     */
+    public String getProcessedPreview() {
+        return processedPreview;
+    }
+
+    /**
+     * Tells whether the original text is longer than its preview.
+     *
+     * @return true if the preview is cut short.
+     */
+    public boolean isOriginalTruncated() {
+        return originalPreview != null && originalLength > originalPreview.length();
+    }
+
+    /**
+     * Tells whether the processed text is longer than its preview.
+     *
+     * @return true if the preview is cut short.
+     */
+    public boolean isProcessedTruncated() {
+        return processedPreview != null && processedLength > processedPreview.length();
+    }
+
+    /**
+     * Returns a string representation of the summary.
+     *
+     * @return A string representation of the summary.
+     */
+    @Override
+    public String toString() {
+        return "HistorySummary{"
+                + "id=" + id
+                + ", operationType='" + operationType + '\''
+                + ", originalLength=" + originalLength
+                + ", processedLength=" + processedLength
+                + ", rails=" + rails
+                + ", timestamp=" + timestamp
+                + '}';
+    }
+}
@@ -0,0 +1,453 @@
+package model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram index over the texts of the operation history. Every
+ * sequence of three case-folded characters maps to the sorted list of record
+ * IDs whose texts contain it, stored as variable-length encoded deltas. IDs
+ * are expected in ascending order; the few that arrive out of order, such as
+ * records of different shards committed concurrently, wait in a small buffer
+ * and are merged into the list in batches.
+ *
+ * The index only narrows a substring search down to candidate records; the
+ * candidates still have to be checked against the real text, because the
+ * trigrams of a query may occur in a record without being adjacent.
+ *
+ * Memory use is bounded in two ways. Only the first {@link #MAX_INDEXED_CHARS}
+ * characters of a text are indexed, so searches only match within that
+ * prefix of a text. Once the estimated size of the index exceeds its budget
+ * or an ID does not fit in an int, the index stops taking new records but
+ * keeps serving the ones it holds: records from the
+ * {@link #getCutoff() cutoff} on are not answered by the index, and callers
+ * search them in the database.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class HistoryTextIndex {
+
+    /**
+     * The shortest query the index can answer.
+     */
+    public static final int MIN_QUERY_LENGTH = 3;
+
+    /**
+     * Number of leading characters of every text that are indexed and
+     * searched.
+     */
+    public static final int MAX_INDEXED_CHARS = 4096;
+
+    /**
+     * Number of out-of-order IDs a posting list buffers before merging them.
+     */
+    private static final int PENDING_CAPACITY = 16;
+
+    /**
+     * Estimated fixed cost of one trigram entry: the map entry, the boxed key
+     * and the posting object.
+     */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    /**
+     * Posting lists by packed trigram.
+     */
+    private final Map<Long, Posting> postings = new HashMap<>();
+
+    /**
+     * Lock guarding the postings and the size estimate.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Memory budget of the index, in bytes.
+     */
+    private final long maxBytes;
+
+    /**
+     * Estimated memory used by the index, in bytes.
+     */
+    private long bytes;
+
+    /**
+     * Smallest ID from which records may be missing from the index,
+     * {@link Long#MAX_VALUE} while the index takes all records.
+     */
+    private long cutoff = Long.MAX_VALUE;
+
+    /**
+     * Whether the index contains all records of the database.
+     */
+    private volatile boolean ready;
+
+    /**
+     * Sorted list of record IDs stored as variable-length encoded deltas,
+     * with a small unsorted buffer of IDs lower than the last one.
+     */
+    private static final class Posting {
+
+        /**
+         * The encoded deltas.
+         */
+        private byte[] data = new byte[4];
+
+        /**
+         * The number of used bytes of {@link #data}.
+         */
+        private int length;
+
+        /**
+         * The largest ID in the list, -1 if the list is empty.
+         */
+        private int last = -1;
+
+        /**
+         * The number of encoded IDs.
+         */
+        private int count;
+
+        /**
+         * IDs added out of order and not yet merged, null if there were none.
+         */
+        private int[] pending;
+
+        /**
+         * The number of used entries of {@link #pending}.
+         */
+        private int pendingCount;
+
+        /**
+         * Adds an ID. An ID above the last one is appended; a lower one is
+         * buffered, and the buffer is merged into the list when it is full, so
+         * that IDs arriving out of order do not re-encode the list every time.
+         *
+         * @param id The ID to add.
+         * @return The number of bytes the list grew by.
+         */
+        private int add(int id) {
+            if (id == last) {
+                return 0;
+            }
+            int before = data.length + (pending == null ? 0 : pending.length * Integer.BYTES);
+            if (id > last) {
+                append(id - last);
+                last = id;
+                count++;
+            } else {
+                for (int i = 0; i < pendingCount; i++) {
+                    if (pending[i] == id) {
+                        return 0;
+                    }
+                }
+                if (pending == null) {
+                    pending = new int[PENDING_CAPACITY];
+                }
+                pending[pendingCount++] = id;
+                if (pendingCount == pending.length) {
+                    int[] ids = decode();
+                    length = 0;
+                    last = -1;
+                    count = 0;
+                    pendingCount = 0;
+                    for (int value : ids) {
+                        append(value - last);
+                        last = value;
+                        count++;
+                    }
+                }
+            }
+            return data.length + (pending == null ? 0 : pending.length * Integer.BYTES) - before;
+        }
+
+        /**
+         * Gets the number of IDs in the list.
+         *
+         * @return The number of IDs, counting buffered duplicates.
+         */
+        private int size() {
+            return count + pendingCount;
+        }
+
+        /**
+         * Appends one delta in variable-length encoding, seven bits per byte.
+         *
+         * @param delta The positive difference to the previous ID.
+         */
+        private void append(int delta) {
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+            }
+            while ((delta & ~0x7F) != 0) {
+                data[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            data[length++] = (byte) delta;
+        }
+
+        /**
+         * Decodes the list, merging in the buffered IDs without changing the
+         * list, so that it can be called under the read lock.
+         *
+         * @return The IDs in ascending order, without duplicates.
+         */
+        private int[] decode() {
+            int[] ids = decodeSorted();
+            if (pendingCount == 0) {
+                return ids;
+            }
+            int[] buffered = Arrays.copyOf(pending, pendingCount);
+            Arrays.sort(buffered);
+            return union(ids, buffered);
+        }
+
+        /**
+         * Decodes the encoded IDs.
+         *
+         * @return The encoded IDs in ascending order.
+         */
+        private int[] decodeSorted() {
+            int[] ids = new int[count];
+            int value = -1;
+            int position = 0;
+            for (int i = 0; i < count; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[position++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                value += delta;
+                ids[i] = value;
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Creates an empty index.
+     *
+     * @param maxBytes The memory budget of the index, in bytes.
+     */
+    public HistoryTextIndex(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Folds a text for case-insensitive matching, one character at a time so
+     * that the length of the text does not change.
+     *
+     * @param text The text to fold.
+     * @return The folded text.
+     */
+    public static String fold(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Adds the texts of a record to the index. Adding a record twice has no
+     * effect. Once the index is full the record is not added and the cutoff
+     * moves down to its ID.
+     *
+     * @param id The ID of the record.
+     * @param texts The texts of the record, null texts are ignored.
+     */
+    public void add(long id, String... texts) {
+        lock.writeLock().lock();
+        try {
+            if (cutoff != Long.MAX_VALUE || id < 0 || id > Integer.MAX_VALUE) {
+                cutoff = Math.min(cutoff, Math.max(id, 0));
+                return;
+            }
+            int key = (int) id;
+            for (String text : texts) {
+                if (text == null) {
+                    continue;
+                }
+                int end = Math.min(text.length(), MAX_INDEXED_CHARS);
+                for (int i = 0; i + MIN_QUERY_LENGTH <= end; i++) {
+                    Long trigram = pack(text, i);
+                    Posting posting = postings.get(trigram);
+                    if (posting == null) {
+                        posting = new Posting();
+                        postings.put(trigram, posting);
+                        bytes += ENTRY_OVERHEAD + posting.data.length;
+                    }
+                    bytes += posting.add(key);
+                }
+            }
+            if (bytes > maxBytes) {
+                cutoff = id;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the IDs of the records below the cutoff that may contain the
+     * query.
+     *
+     * @param query The text to search for.
+     * @return The candidate IDs in ascending order, or null if the index
+     * cannot answer the query because it is not ready or the query is shorter
+     * than {@link #MIN_QUERY_LENGTH}.
+     */
+    public int[] candidates(String query) {
+        if (!ready || query.length() < MIN_QUERY_LENGTH) {
+            return null;
+        }
+        String folded = fold(query);
+        lock.readLock().lock();
+        try {
+            Posting[] lists = new Posting[folded.length() - MIN_QUERY_LENGTH + 1];
+            int[] result = null;
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = postings.get(pack(folded, i));
+                if (lists[i] == null) {
+                    result = new int[0];
+                    break;
+                }
+            }
+            if (result == null) {
+                Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+                result = lists[0].decode();
+                for (int i = 1; i < lists.length && result.length > 0; i++) {
+                    if (lists[i] != lists[i - 1]) {
+                        result = intersect(result, lists[i].decode());
+                    }
+                }
+            }
+            int end = result.length;
+            while (end > 0 && result[end - 1] >= cutoff) {
+                end--;
+            }
+            return end == result.length ? result : Arrays.copyOf(result, end);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Marks the index as containing all records of the database.
+     */
+    public void markReady() {
+        ready = true;
+    }
+
+    /**
+     * Checks whether the index can answer queries.
+     *
+     * @return true if the index contains all records of the database below
+     * the cutoff.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Gets the smallest ID from which records may be missing from the index.
+     * It only ever moves down.
+     *
+     * @return The cutoff, {@link Long#MAX_VALUE} while the index holds all
+     * records.
+     */
+    public long getCutoff() {
+        lock.readLock().lock();
+        try {
+            return cutoff;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the estimated memory used by the index.
+     *
+     * @return The estimated size in bytes.
+     */
+    public long getEstimatedBytes() {
+        lock.readLock().lock();
+        try {
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Packs three case-folded characters of a text into a single key.
+     *
+     * @param text The text.
+     * @param start The index of the first character.
+     * @return The packed trigram.
+     */
+    private static Long pack(String text, int start) {
+        return ((long) Character.toLowerCase(text.charAt(start)) << 32)
+                | ((long) Character.toLowerCase(text.charAt(start + 1)) << 16)
+                | Character.toLowerCase(text.charAt(start + 2));
+    }
+
+    /**
+     * Intersects two sorted lists of IDs.
+     *
+     * @param a The first list.
+     * @param b The second list.
+     * @return The IDs present in both lists, in ascending order.
+     */
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Merges two sorted lists of IDs.
+     *
+     * @param a The first list.
+     * @param b The second list.
+     * @return The IDs present in either list, in ascending order.
+     */
+    private static int[] union(int[] a, int[] b) {
+        if (b.length == 0) {
+            return a;
+        }
+        int[] out = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                out[n++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                out[n++] = b[j++];
+            } else {
+                out[n++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
@@ -0,0 +1,139 @@
+package model;
+
+/**
+ * Cheap in-memory version of the operation history table, made of the highest
+ * record ID and the number of records. It is loaded once from the database and
+ * then kept up to date by {@link RailFenceModel#createOperationHistory}, so
+ * callers can tell whether the history changed without running a query.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class HistoryVersion {
+
+    /**
+     * Immutable snapshot of the version, replaced as a whole on every change.
+     */
+    private static final class State {
+
+        /**
+         * The highest record ID.
+         */
+        private final long maxId;
+
+        /**
+         * The number of records.
+         */
+        private final long count;
+
+        /**
+         * The time of the last change in milliseconds, truncated to seconds
+         * and at least one second after the previous change.
+         */
+        private final long lastModified;
+
+        /**
+         * Creates a snapshot.
+         *
+         * @param maxId The highest record ID.
+         * @param count The number of records.
+         * @param lastModified The time of the last change.
+         */
+        private State(long maxId, long count, long lastModified) {
+            this.maxId = maxId;
+            this.count = count;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * The current snapshot, null until the version has been loaded.
+     */
+    private volatile State state;
+
+    /**
+     * Checks whether the version has been loaded from the database.
+     *
+     * @return true if the version is known.
+     */
+    public boolean isInitialized() {
+        return state != null;
+    }
+
+    /**
+     * Sets the version loaded from the database, unless it is already known.
+     *
+     * @param maxId The highest record ID.
+     * @param count The number of records.
+     */
+    public synchronized void initialize(long maxId, long count) {
+        if (state == null) {
+            state = new State(maxId, count, now());
+        }
+    }
+
+    /**
+     * Records a newly committed record. Does nothing before the version has
+     * been loaded, the next load will include the record.
+     *
+     * @param id The ID of the new record.
+     */
+    public synchronized void recordInsert(long id) {
+        State current = state;
+        if (current != null) {
+            long lastModified = Math.max(now(), current.lastModified + 1000);
+            state = new State(Math.max(current.maxId, id), current.count + 1, lastModified);
+        }
+    }
+
+    /**
+     * Forgets the version, so that it is loaded again from the database.
+     */
+    public synchronized void reset() {
+        state = null;
+    }
+
+    /**
+     * Gets the version token, e.g. {@code "42-40"} for a highest ID of 42 and
+     * 40 records.
+     *
+     * @return The version token, or null if the version is not known.
+     */
+    public String getToken() {
+        State current = state;
+        return current == null ? null : current.maxId + "-" + current.count;
+    }
+
+    /**
+     * Gets the number of records in the history.
+     *
+     * @return The number of records, or -1 if the version is not known.
+     */
+    public long getCount() {
+        State current = state;
+        return current == null ? -1 : current.count;
+    }
+
+    /**
+     * Gets the time of the last change, in milliseconds truncated to whole
+     * seconds as used by the HTTP Last-Modified header. Every change advances
+     * it by at least a second, even within the same second of the clock, so a
+     * client only sending If-Modified-Since never misses a change; under a
+     * burst of changes it may run ahead of the clock.
+     *
+     * @return The time of the last change, or -1 if the version is not known.
+     */
+    public long getLastModified() {
+        State current = state;
+        return current == null ? -1 : current.lastModified;
+    }
+
+    /**
+     * Returns the current time truncated to whole seconds.
+     *
+     * @return The current time in milliseconds.
+     */
+    private static long now() {
+        return System.currentTimeMillis() / 1000 * 1000;
+    }
+}
@@ -0,0 +1,280 @@
+package model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Rail Fence Cipher engine for texts that do not fit in a Java array. It
+ * permutes single byte units (Latin-1 text or binary data) stored in
+ * {@link ByteSegment}s, and all rail offsets are computed with {@code long}
+ * arithmetic, so inputs beyond 2 GB are supported.
+ *
+ * Streams of a known length can be transformed with
+ * {@link #transform(CipherDirection, InputStream, long, OutputStream, int, long)},
+ * which keeps small inputs in a heap array and spills larger ones to
+ * memory-mapped temporary files.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class OffHeapRailFenceEngine {
+
+    /**
+     * Size of the buffer used to copy streams into temporary files.
+     */
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Private constructor, this class only exposes static helpers.
+     */
+    private OffHeapRailFenceEngine() {
+    }
+
+    /**
+     * Encrypts the bytes of one segment into another segment of the same
+     * size.
+     *
+     * @param input The plain text bytes.
+     * @param output The segment receiving the encrypted bytes.
+     * @param rails The number of rails.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    public static void encrypt(ByteSegment input, ByteSegment output, int rails) throws InvalidRailNumberException {
+        RailFenceEngine.checkRails(rails);
+        checkSizes(input, output);
+        CipherEvent event = new CipherEvent();
+        event.begin();
+        long n = input.size();
+        rails = RailFenceEngine.effectiveRails(n, rails);
+        long cycle = 2L * (rails - 1);
+        long out = 0;
+        for (int rail = 0; rail < rails; rail++) {
+            long step = cycle - 2L * rail;
+            boolean middle = rail != 0 && rail != rails - 1;
+            for (long i = rail; i < n; i += cycle) {
+                output.put(out++, input.get(i));
+                if (middle && i + step < n) {
+                    output.put(out++, input.get(i + step));
+                }
+            }
+        }
+        event.record("Encrypt", n, rails, CipherEvent.OFF_HEAP_ENGINE);
+    }
+
+    /**
+     * Decrypts the bytes of one segment into another segment of the same
+     * size.
+     *
+     * @param input The encrypted bytes.
+     * @param output The segment receiving the decrypted bytes.
+     * @param rails The number of rails.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    public static void decrypt(ByteSegment input, ByteSegment output, int rails) throws InvalidRailNumberException {
+        RailFenceEngine.checkRails(rails);
+        checkSizes(input, output);
+        CipherEvent event = new CipherEvent();
+        event.begin();
+        long n = input.size();
+        rails = RailFenceEngine.effectiveRails(n, rails);
+        long cycle = 2L * (rails - 1);
+        long in = 0;
+        for (int rail = 0; rail < rails; rail++) {
+            long step = cycle - 2L * rail;
+            boolean middle = rail != 0 && rail != rails - 1;
+            for (long i = rail; i < n; i += cycle) {
+                output.put(i, input.get(in++));
+                if (middle && i + step < n) {
+                    output.put(i + step, input.get(in++));
+                }
+            }
+        }
+        event.record("Decrypt", n, rails, CipherEvent.OFF_HEAP_ENGINE);
+    }
+
+    /**
+     * Encrypts a file into another file through memory-mapped segments.
+     *
+     * @param source The plain text file.
+     * @param target The file receiving the encrypted bytes, replaced if it
+     * exists. It may be the source file itself.
+     * @param rails The number of rails.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     * @throws IOException If one of the files cannot be read or written.
+     */
+    public static void encryptFile(Path source, Path target, int rails) throws InvalidRailNumberException, IOException {
+        replaceFile(CipherDirection.ENCRYPT, source, target, rails);
+    }
+
+    /**
+     * Decrypts a file into another file through memory-mapped segments.
+     *
+     * @param source The encrypted file.
+     * @param target The file receiving the decrypted bytes, replaced if it
+     * exists. It may be the source file itself.
+     * @param rails The number of rails.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     * @throws IOException If one of the files cannot be read or written.
+     */
+    public static void decryptFile(Path source, Path target, int rails) throws InvalidRailNumberException, IOException {
+        replaceFile(CipherDirection.DECRYPT, source, target, rails);
+    }
+
+    /**
+     * Reads exactly {@code length} bytes from a stream, runs the cipher over
+     * them and writes the result to another stream. Inputs of at most
+     * {@code spillThreshold} bytes are processed in a heap array of their
+     * exact size; larger inputs are copied to a temporary file and processed
+     * through memory-mapped segments, so the heap used does not depend on the
+     * size of the input. The temporary files are deleted before returning.
+     *
+     * @param direction The direction of the operation.
+     * @param input The stream of the input bytes, not closed by this method.
+     * @param length The number of bytes to read from the input.
+     * @param output The stream receiving the result, not closed by this
+     * method.
+     * @param rails The number of rails.
+     * @param spillThreshold The largest input processed in memory, in bytes.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     * @throws EOFException If the input ends before {@code length} bytes.
+     * @throws IOException If the streams or temporary files cannot be read or
+     * written.
+     */
+    public static void transform(CipherDirection direction, InputStream input, long length, OutputStream output,
+            int rails, long spillThreshold) throws InvalidRailNumberException, IOException {
+        RailFenceEngine.checkRails(rails);
+        if (length < 0) {
+            throw new IllegalArgumentException("Length must not be negative.");
+        }
+        if (length <= spillThreshold && length <= Integer.MAX_VALUE - 8) {
+            byte[] bytes = new byte[(int) length];
+            int read = input.readNBytes(bytes, 0, bytes.length);
+            if (read < bytes.length) {
+                throw new EOFException("Input ended after " + read + " of " + length + " bytes.");
+            }
+            CipherEvent event = new CipherEvent();
+            event.begin();
+            byte[] result = direction == CipherDirection.ENCRYPT
+                    ? RailFenceEngine.encrypt(bytes, rails) : RailFenceEngine.decrypt(bytes, rails);
+            event.record(direction == CipherDirection.ENCRYPT ? "Encrypt" : "Decrypt", length, rails,
+                    CipherEvent.LATIN1_ENGINE);
+            output.write(result);
+            return;
+        }
+        Path source = Files.createTempFile("railfence-", ".in");
+        Path target = null;
+        try {
+            copy(input, source, length);
+            target = Files.createTempFile("railfence-", ".out");
+            processFile(direction, source, target, rails);
+            Files.copy(target, output);
+        } finally {
+            Files.deleteIfExists(source);
+            if (target != null) {
+                Files.deleteIfExists(target);
+            }
+        }
+    }
+
+    /**
+     * Copies exactly {@code length} bytes of a stream into a file.
+     *
+     * @param input The stream to copy from.
+     * @param file The file to write.
+     * @param length The number of bytes to copy.
+     * @throws EOFException If the input ends before {@code length} bytes.
+     * @throws IOException If the stream or the file cannot be read or written.
+     */
+    static void copy(InputStream input, Path file, long length) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long remaining = length;
+        try (OutputStream out = Files.newOutputStream(file)) {
+            while (remaining > 0) {
+                int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new EOFException("Input ended after " + (length - remaining) + " of " + length + " bytes.");
+                }
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    /**
+     * Runs the cipher over a file into a temporary file next to the target,
+     * then moves the result into place, so the source is never truncated
+     * before it is read, even when it is the target, and a failure leaves
+     * the target unchanged.
+     *
+     * @param direction The direction of the operation.
+     * @param source The input file.
+     * @param target The output file, replaced if it exists.
+     * @param rails The number of rails.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     * @throws IOException If one of the files cannot be read or written.
+     */
+    private static void replaceFile(CipherDirection direction, Path source, Path target, int rails)
+            throws InvalidRailNumberException, IOException {
+        RailFenceEngine.checkRails(rails);
+        Path absolute = target.toAbsolutePath();
+        Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName() + ".", ".tmp");
+        try {
+            processFile(direction, source, temporary, rails);
+            try {
+                Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Maps both files and runs the cipher over them.
+     *
+     * @param direction The direction of the operation.
+     * @param source The input file.
+     * @param target The output file.
+     * @param rails The number of rails.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     * @throws IOException If one of the files cannot be read or written.
+     */
+    private static void processFile(CipherDirection direction, Path source, Path target, int rails)
+            throws InvalidRailNumberException, IOException {
+        RailFenceEngine.checkRails(rails);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            ByteSegment input = ByteSegment.map(in, FileChannel.MapMode.READ_ONLY, size);
+            ByteSegment output = ByteSegment.map(out, FileChannel.MapMode.READ_WRITE, size);
+            if (direction == CipherDirection.ENCRYPT) {
+                encrypt(input, output, rails);
+            } else {
+                decrypt(input, output, rails);
+            }
+            output.force();
+        }
+    }
+
+    /**
+     * Checks that the input and output segments have the same size.
+     *
+     * @param input The input segment.
+     * @param output The output segment.
+     */
+    private static void checkSizes(ByteSegment input, ByteSegment output) {
+        if (input.size() != output.size()) {
+            throw new IllegalArgumentException("Input and output segments must have the same size.");
+        }
+    }
+}
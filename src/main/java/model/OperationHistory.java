@@ -1,9 +1,15 @@
 package model;
 
+import jakarta.persistence.Basic;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
 import java.time.LocalDateTime;
 
 /**
@@ -11,10 +17,35 @@ import java.time.LocalDateTime;
  * application. This class stores details of each encryption or decryption
  * operation, including the type of operation, the original text, the processed
  * text, the number of rails used, and the timestamp of the operation.
+ *
+ * The texts are stored as lazily fetched LOBs. Their lengths and a short
+ * preview of each are kept in ordinary columns as well, so that history
+ * listings can be read as {@link HistorySummary} projections without loading
+ * the texts.
+ *
+ * A record written through the {@link HistoryLog} carries the sequence number
+ * of its log record, which lets a replay after a crash skip the records that
+ * already reached the database.
  */
 @Entity
+@Table(indexes = @Index(name = OperationHistory.WAL_SEQUENCE_INDEX, columnList = "walSequence"))
 public class OperationHistory {
 
+    /**
+     * The name of the index over the history log sequence numbers.
+     */
+    public static final String WAL_SEQUENCE_INDEX = "OPERATIONHISTORY_WALSEQUENCE";
+
+    /**
+     * The number of characters of a text kept in its preview column.
+     */
+    public static final int PREVIEW_LENGTH = 80;
+
+    /**
+     * The largest number of characters of a stored text.
+     */
+    public static final int MAX_TEXT_LENGTH = 16 * 1024 * 1024;
+
     /**
      * The unique identifier for each operation history record.
      * This field is automatically generated and assigned.
@@ -31,13 +62,41 @@ public class OperationHistory {
     /**
      * The original text that was input for the operation.
      */
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Column(length = MAX_TEXT_LENGTH)
     private String originalText;
 
     /**
      * The resulting text after the operation was performed.
      */
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Column(length = MAX_TEXT_LENGTH)
     private String processedText;
 
+    /**
+     * The number of characters of the original text.
+     */
+    private int originalLength;
+
+    /**
+     * The number of characters of the processed text.
+     */
+    private int processedLength;
+
+    /**
+     * The first characters of the original text.
+     */
+    @Column(length = PREVIEW_LENGTH)
+    private String originalPreview;
+
+    /**
+     * The first characters of the processed text.
+     */
+    @Column(length = PREVIEW_LENGTH)
+    private String processedPreview;
+
     /**
      * The number of rails used in the Rail Fence Cipher for the operation.
      */
@@ -48,6 +107,12 @@ public class OperationHistory {
      */
     private LocalDateTime timestamp;
 
+    /**
+     * The sequence number of the history log record this record was replayed
+     * from, null for a record written directly to the database.
+     */
+    private Long walSequence;
+
     /**
      * Default constructor for creating an instance of OperationHistory.
      */
@@ -67,7 +132,11 @@ public class OperationHistory {
     public OperationHistory(String operationType, String originalText, String processedText, int rails) {
         this.operationType = operationType;
         this.originalText = originalText;
+        this.originalLength = length(originalText);
+        this.originalPreview = preview(originalText);
         this.processedText = processedText;
+        this.processedLength = length(processedText);
+        this.processedPreview = preview(processedText);
         this.rails = rails;
         this.timestamp = LocalDateTime.now();
     }
@@ -118,12 +187,15 @@ public class OperationHistory {
     }
 
     /**
-     * Sets the original text of the operation.
+     * Sets the original text of the operation, together with its length and
+     * preview.
      *
      * @param originalText The original text.
      */
     public void setOriginalText(String originalText) {
         this.originalText = originalText;
+        this.originalLength = length(originalText);
+        this.originalPreview = preview(originalText);
     }
 
     /**
@@ -136,12 +208,51 @@ public class OperationHistory {
     }
 
     /**
-     * Sets the processed text resulting from the operation.
+     * Sets the processed text resulting from the operation, together with its
+     * length and preview.
      *
      * @param processedText The processed text.
      */
     public void setProcessedText(String processedText) {
         this.processedText = processedText;
+        this.processedLength = length(processedText);
+        this.processedPreview = preview(processedText);
+    }
+
+    /**
+     * Gets the number of characters of the original text.
+     *
+     * @return The length of the original text.
+     */
+    public int getOriginalLength() {
+        return originalLength;
+    }
+
+    /**
+     * Gets the number of characters of the processed text.
+     *
+     * @return The length of the processed text.
+     */
+    public int getProcessedLength() {
+        return processedLength;
+    }
+
+    /**
+     * Gets the first characters of the original text.
+     *
+     * @return The preview of the original text.
+     */
+    public String getOriginalPreview() {
+        return originalPreview;
+    }
+
+    /**
+     * Gets the first characters of the processed text.
+     *
+     * @return The preview of the processed text.
+     */
+    public String getProcessedPreview() {
+        return processedPreview;
     }
 
     /**
@@ -180,6 +291,51 @@ public class OperationHistory {
         this.timestamp = timestamp;
     }
 
+    /**
+     * Gets the sequence number of the history log record this record was
+     * replayed from.
+     *
+     * @return The sequence number, or null if the record was written directly
+     * to the database.
+     */
+    public Long getWalSequence() {
+        return walSequence;
+    }
+
+    /**
+     * Sets the sequence number of the history log record this record was
+     * replayed from.
+     *
+     * @param walSequence The sequence number.
+     */
+    public void setWalSequence(Long walSequence) {
+        this.walSequence = walSequence;
+    }
+
+    /**
+     * Computes the length of a text.
+     *
+     * @param text The text, may be null.
+     * @return The number of characters, 0 for null.
+     */
+    private static int length(String text) {
+        return text == null ? 0 : text.length();
+    }
+
+    /**
+     * Cuts a text down to its preview, without splitting a surrogate pair.
+     *
+     * @param text The text, may be null.
+     * @return The first {@link #PREVIEW_LENGTH} characters of the text.
+     */
+    static String preview(String text) {
+        if (text == null || text.length() <= PREVIEW_LENGTH) {
+            return text;
+        }
+        int end = Character.isHighSurrogate(text.charAt(PREVIEW_LENGTH - 1)) ? PREVIEW_LENGTH - 1 : PREVIEW_LENGTH;
+        return text.substring(0, end);
+    }
+
     /**
      * Returns a string representation of the OperationHistory object.
      *
@@ -0,0 +1,205 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fork/join task running the Rail Fence Cipher over {@link ByteSegment}s in
+ * parallel.
+ *
+ * Every rail occupies its own contiguous range of the encrypted text, so the
+ * rails can be processed independently. The task forks one subtask per rail
+ * and splits long rails into ranges of zigzag cycles; since only the last
+ * cycle of a rail can be incomplete, the output offset of every range follows
+ * from its first cycle. Idle workers of the pool steal the remaining ranges.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class ParallelRailFenceTask extends RecursiveAction {
+
+    /**
+     * Number of bytes below which a range is processed without splitting.
+     */
+    private static final long LEAF_BYTES = 256 * 1024;
+
+    /**
+     * The direction of the operation.
+     */
+    private final CipherDirection direction;
+
+    /**
+     * The input bytes.
+     */
+    private final ByteSegment input;
+
+    /**
+     * The segment receiving the result.
+     */
+    private final ByteSegment output;
+
+    /**
+     * The number of rails, at most the size of the input.
+     */
+    private final int rails;
+
+    /**
+     * The rail processed by this task, -1 for the root task.
+     */
+    private final int rail;
+
+    /**
+     * The first zigzag cycle processed by this task.
+     */
+    private final long fromCycle;
+
+    /**
+     * The zigzag cycle after the last one processed by this task.
+     */
+    private final long toCycle;
+
+    /**
+     * Offset in the encrypted text of the first byte of this task.
+     */
+    private final long railOffset;
+
+    /**
+     * Counter of processed bytes.
+     */
+    private final AtomicLong progress;
+
+    /**
+     * Creates a subtask.
+     *
+     * @param parent The task holding the operation.
+     * @param rail The rail to process, -1 for all rails.
+     * @param fromCycle The first cycle to process.
+     * @param toCycle The cycle after the last one to process.
+     * @param railOffset Offset in the encrypted text of the first byte.
+     */
+    private ParallelRailFenceTask(ParallelRailFenceTask parent, int rail, long fromCycle, long toCycle, long railOffset) {
+        this(parent.direction, parent.input, parent.output, parent.rails, rail, fromCycle, toCycle, railOffset,
+                parent.progress);
+    }
+
+    /**
+     * Creates a task.
+     *
+     * @param direction The direction of the operation.
+     * @param input The input bytes.
+     * @param output The segment receiving the result.
+     * @param rails The number of rails.
+     * @param rail The rail to process, -1 for all rails.
+     * @param fromCycle The first cycle to process.
+     * @param toCycle The cycle after the last one to process.
+     * @param railOffset Offset in the encrypted text of the first byte.
+     * @param progress Counter of processed bytes.
+     */
+    private ParallelRailFenceTask(CipherDirection direction, ByteSegment input, ByteSegment output, int rails, int rail,
+            long fromCycle, long toCycle, long railOffset, AtomicLong progress) {
+        this.direction = direction;
+        this.input = input;
+        this.output = output;
+        this.rails = rails;
+        this.rail = rail;
+        this.fromCycle = fromCycle;
+        this.toCycle = toCycle;
+        this.railOffset = railOffset;
+        this.progress = progress;
+    }
+
+    /**
+     * Creates the task processing a whole segment.
+     *
+     * @param direction The direction of the operation.
+     * @param input The input bytes.
+     * @param output The segment receiving the result, of the same size.
+     * @param rails The number of rails.
+     * @param progress Counter incremented by the number of bytes processed.
+     * @return The root task.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    public static ParallelRailFenceTask of(CipherDirection direction, ByteSegment input, ByteSegment output, int rails,
+            AtomicLong progress) throws InvalidRailNumberException {
+        RailFenceEngine.checkRails(rails);
+        if (input.size() != output.size()) {
+            throw new IllegalArgumentException("Input and output segments must have the same size.");
+        }
+        return new ParallelRailFenceTask(direction, input, output, RailFenceEngine.effectiveRails(input.size(), rails),
+                -1, 0, 0, 0, progress);
+    }
+
+    /**
+     * Computes the number of bytes of a text on one rail.
+     *
+     * @param length The length of the text.
+     * @param rails The number of rails.
+     * @param rail The rail.
+     * @return The number of bytes on the rail.
+     */
+    static long railLength(long length, int rails, int rail) {
+        long cycle = 2L * (rails - 1);
+        long full = length / cycle;
+        long rest = length % cycle;
+        if (rail == 0) {
+            return full + (rest > 0 ? 1 : 0);
+        }
+        if (rail == rails - 1) {
+            return full + (rest > rail ? 1 : 0);
+        }
+        return 2 * full + (rest > rail ? 1 : 0) + (rest > cycle - rail ? 1 : 0);
+    }
+
+    /**
+     * Processes the range of the task, splitting it while it is large.
+     */
+    @Override
+    protected void compute() {
+        long n = input.size();
+        long cycle = 2L * (rails - 1);
+        if (rail < 0) {
+            CipherEvent event = new CipherEvent();
+            event.begin();
+            List<ParallelRailFenceTask> tasks = new ArrayList<>((int) Math.min(rails, n));
+            long offset = 0;
+            for (int r = 0; r < rails && r < n; r++) {
+                long cycles = (n - r - 1) / cycle + 1;
+                tasks.add(new ParallelRailFenceTask(this, r, 0, cycles, offset));
+                offset += railLength(n, rails, r);
+            }
+            invokeAll(tasks);
+            event.record(direction == CipherDirection.ENCRYPT ? "Encrypt" : "Decrypt", n, rails,
+                    CipherEvent.PARALLEL_ENGINE);
+            return;
+        }
+        boolean middle = rail != 0 && rail != rails - 1;
+        long perCycle = middle ? 2 : 1;
+        if ((toCycle - fromCycle) * perCycle > LEAF_BYTES) {
+            long split = (fromCycle + toCycle) >>> 1;
+            invokeAll(new ParallelRailFenceTask(this, rail, fromCycle, split, railOffset),
+                    new ParallelRailFenceTask(this, rail, split, toCycle, railOffset + (split - fromCycle) * perCycle));
+            return;
+        }
+        long step = cycle - 2L * rail;
+        long position = railOffset;
+        boolean encrypt = direction == CipherDirection.ENCRYPT;
+        for (long k = fromCycle; k < toCycle; k++) {
+            long i = rail + k * cycle;
+            if (encrypt) {
+                output.put(position++, input.get(i));
+            } else {
+                output.put(i, input.get(position++));
+            }
+            if (middle && i + step < n) {
+                if (encrypt) {
+                    output.put(position++, input.get(i + step));
+                } else {
+                    output.put(i + step, input.get(position++));
+                }
+            }
+        }
+        progress.addAndGet(position - railOffset);
+    }
+}
@@ -0,0 +1,301 @@
+package model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Encrypts or decrypts one text under every number of rails of a range, for
+ * example to try all keys of a ciphertext.
+ *
+ * The text is converted to its compact representation once and shared by all
+ * rail counts. The rail counts are split into groups processed in parallel in
+ * the common fork/join pool, and each group walks the input once, block by
+ * block: a block small enough to stay in the CPU cache is scattered into the
+ * outputs of all rail counts of the group before the next block is read. Every
+ * rail of an output is written sequentially through its own cursor, starting
+ * at the offset given by the lengths of the rails before it.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class RailFanOut {
+
+    /**
+     * Number of input elements processed for all rail counts of a group
+     * before moving on to the next block.
+     */
+    private static final int BLOCK_ELEMENTS = 8192;
+
+    /**
+     * Total number of elements of all outputs below which the work is done
+     * on the calling thread in a single group.
+     */
+    private static final long SEQUENTIAL_ELEMENTS = 64 * 1024;
+
+    /**
+     * The largest number of rail counts of one call.
+     */
+    public static final int MAX_RAIL_COUNTS = 1024;
+
+    /**
+     * Prevents instantiation.
+     */
+    private RailFanOut() {
+    }
+
+    /**
+     * Processes a text under every number of rails of a range.
+     *
+     * @param direction The direction of the operation.
+     * @param text The text to process.
+     * @param minRails The smallest number of rails.
+     * @param maxRails The largest number of rails.
+     * @return The results, the one for {@code r} rails at index
+     * {@code r - minRails}.
+     * @throws InvalidRailNumberException If the range of rails is invalid.
+     */
+    public static String[] apply(CipherDirection direction, String text, int minRails, int maxRails)
+            throws InvalidRailNumberException {
+        checkRange(minRails, maxRails);
+        String[] results = new String[maxRails - minRails + 1];
+        apply(direction, text, minRails, maxRails, (result, rails) -> results[rails - minRails] = result);
+        return results;
+    }
+
+    /**
+     * Processes a text under every number of rails of a range and hands every
+     * result to a consumer as soon as it is ready. Results arrive in the order
+     * their groups finish, not necessarily by number of rails. The consumer is
+     * called on the calling thread, so it may write to a response; if it
+     * throws, the remaining work is cancelled and the exception is rethrown.
+     *
+     * @param direction The direction of the operation.
+     * @param text The text to process.
+     * @param minRails The smallest number of rails.
+     * @param maxRails The largest number of rails.
+     * @param consumer Receives every result with its number of rails.
+     * @throws InvalidRailNumberException If the range of rails is invalid.
+     */
+    public static void apply(CipherDirection direction, String text, int minRails, int maxRails,
+            ObjIntConsumer<String> consumer) throws InvalidRailNumberException {
+        checkRange(minRails, maxRails);
+        CipherEvent event = new CipherEvent();
+        event.begin();
+        Input input = new Input(text);
+        int count = maxRails - minRails + 1;
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        if ((long) input.length * count <= SEQUENTIAL_ELEMENTS || parallelism < 2 || count == 1) {
+            Group group = new Group(direction, input, minRails, maxRails).call();
+            for (int rails = minRails; rails <= maxRails; rails++) {
+                consumer.accept(group.results[rails - minRails], rails);
+            }
+        } else {
+            int groups = Math.min(count, 2 * parallelism);
+            CompletionService<Group> completion = new ExecutorCompletionService<>(ForkJoinPool.commonPool());
+            List<Future<Group>> futures = new ArrayList<>(groups);
+            int first = minRails;
+            for (int g = 0; g < groups; g++) {
+                int last = first + (count - (first - minRails)) / (groups - g) - 1;
+                futures.add(completion.submit(new Group(direction, input, first, last)));
+                first = last + 1;
+            }
+            try {
+                for (int g = 0; g < groups; g++) {
+                    Group group = completion.take().get();
+                    for (int rails = group.minRails; rails <= group.maxRails; rails++) {
+                        consumer.accept(group.results[rails - group.minRails], rails);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while processing rail counts", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Error processing rail counts", e.getCause());
+            } finally {
+                for (Future<Group> future : futures) {
+                    future.cancel(false);
+                }
+            }
+        }
+        event.record(direction == CipherDirection.ENCRYPT ? "Encrypt" : "Decrypt", (long) input.length * count,
+                maxRails, CipherEvent.FAN_OUT_ENGINE);
+    }
+
+    /**
+     * Checks a range of rail counts.
+     *
+     * @param minRails The smallest number of rails.
+     * @param maxRails The largest number of rails.
+     * @throws InvalidRailNumberException If the smallest number of rails is
+     * invalid or the range is empty or too large.
+     */
+    public static void checkRange(int minRails, int maxRails) throws InvalidRailNumberException {
+        RailFenceEngine.checkRails(minRails);
+        if (maxRails < minRails || maxRails - minRails >= MAX_RAIL_COUNTS) {
+            throw new InvalidRailNumberException("Range of rails must hold between 1 and " + MAX_RAIL_COUNTS
+                    + " rail counts.");
+        }
+    }
+
+    /**
+     * The text in the representation chosen by {@link RailFenceEngine}: bytes
+     * for Latin-1 text, otherwise code points or UTF-16 units held in ints.
+     */
+    private static final class Input {
+
+        /**
+         * The Latin-1 bytes of the text, null if the text is not Latin-1.
+         */
+        private final byte[] bytes;
+
+        /**
+         * The elements of a text that is not Latin-1, null otherwise.
+         */
+        private final int[] elements;
+
+        /**
+         * The number of elements.
+         */
+        private final int length;
+
+        /**
+         * Converts a text.
+         *
+         * @param text The text.
+         */
+        private Input(String text) {
+            if (RailFenceEngine.isLatin1(text)) {
+                bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+                elements = null;
+                length = bytes.length;
+            } else {
+                bytes = null;
+                elements = RailFenceEngine.hasSurrogatePairs(text) ? text.codePoints().toArray()
+                        : text.chars().toArray();
+                length = elements.length;
+            }
+        }
+    }
+
+    /**
+     * A range of rail counts processed together in one pass over the input.
+     */
+    private static final class Group implements Callable<Group> {
+
+        /**
+         * The direction of the operation.
+         */
+        private final CipherDirection direction;
+
+        /**
+         * The shared input.
+         */
+        private final Input input;
+
+        /**
+         * The smallest number of rails of the group.
+         */
+        private final int minRails;
+
+        /**
+         * The largest number of rails of the group.
+         */
+        private final int maxRails;
+
+        /**
+         * The results, filled by {@link #call()}.
+         */
+        private final String[] results;
+
+        /**
+         * Creates a group.
+         *
+         * @param direction The direction of the operation.
+         * @param input The shared input.
+         * @param minRails The smallest number of rails.
+         * @param maxRails The largest number of rails.
+         */
+        private Group(CipherDirection direction, Input input, int minRails, int maxRails) {
+            this.direction = direction;
+            this.input = input;
+            this.minRails = minRails;
+            this.maxRails = maxRails;
+            this.results = new String[maxRails - minRails + 1];
+        }
+
+        /**
+         * Processes the input for all rail counts of the group.
+         *
+         * @return This group, with its results.
+         */
+        @Override
+        public Group call() {
+            int count = maxRails - minRails + 1;
+            int n = input.length;
+            boolean encrypt = direction == CipherDirection.ENCRYPT;
+            int[][] cursors = new int[count][];
+            byte[][] byteOutputs = input.bytes != null ? new byte[count][n] : null;
+            int[][] outputs = input.bytes == null ? new int[count][n] : null;
+            for (int k = 0; k < count; k++) {
+                int rails = RailFenceEngine.effectiveRails(n, minRails + k);
+                int[] lengths = RailFenceEngine.railLengths(n, rails);
+                int[] cursor = new int[rails];
+                for (int rail = 1; rail < rails; rail++) {
+                    cursor[rail] = cursor[rail - 1] + lengths[rail - 1];
+                }
+                cursors[k] = cursor;
+            }
+            for (int from = 0; from < n; from += BLOCK_ELEMENTS) {
+                int to = Math.min(n, from + BLOCK_ELEMENTS);
+                for (int k = 0; k < count; k++) {
+                    int rails = RailFenceEngine.effectiveRails(n, minRails + k);
+                    int cycle = 2 * (rails - 1);
+                    int phase = from % cycle;
+                    int[] cursor = cursors[k];
+                    if (byteOutputs != null) {
+                        byte[] in = input.bytes;
+                        byte[] out = byteOutputs[k];
+                        for (int i = from; i < to; i++) {
+                            int rail = phase < rails ? phase : cycle - phase;
+                            if (encrypt) {
+                                out[cursor[rail]++] = in[i];
+                            } else {
+                                out[i] = in[cursor[rail]++];
+                            }
+                            if (++phase == cycle) {
+                                phase = 0;
+                            }
+                        }
+                    } else {
+                        int[] in = input.elements;
+                        int[] out = outputs[k];
+                        for (int i = from; i < to; i++) {
+                            int rail = phase < rails ? phase : cycle - phase;
+                            if (encrypt) {
+                                out[cursor[rail]++] = in[i];
+                            } else {
+                                out[i] = in[cursor[rail]++];
+                            }
+                            if (++phase == cycle) {
+                                phase = 0;
+                            }
+                        }
+                    }
+                }
+            }
+            for (int k = 0; k < count; k++) {
+                results[k] = byteOutputs != null ? new String(byteOutputs[k], StandardCharsets.ISO_8859_1)
+                        : new String(outputs[k], 0, n);
+            }
+            return this;
+        }
+    }
+}
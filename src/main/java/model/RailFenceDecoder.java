@@ -0,0 +1,252 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Decrypts a ciphertext of known length that arrives piece by piece.
+ *
+ * With the final length known, the offset of every rail in the ciphertext is
+ * known in advance. The decoder walks the zigzag of the plaintext and emits
+ * every character as soon as the ciphertext position it comes from has
+ * arrived, so the plaintext grows whenever the chunks reach into the rails it
+ * is waiting for, and is complete with the last chunk. The length counts code
+ * points, which for text without surrogate pairs are the UTF-16 units
+ * themselves; the result equals {@link RailFenceEngine#decrypt(String, int)}
+ * of the concatenated chunks. A high surrogate at the end of a chunk is held
+ * back until the next chunk tells whether it starts with the matching low
+ * surrogate.
+ *
+ * A decoder is not thread-safe.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class RailFenceDecoder {
+
+    /**
+     * Initial capacity of the buffer of received code points.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The number of rails.
+     */
+    private final int rails;
+
+    /**
+     * The number of rails walked, at most the length, see
+     * {@link RailFenceEngine#effectiveRails(long, int)}.
+     */
+    private final int walked;
+
+    /**
+     * The length of one zigzag, 2 * (walked - 1).
+     */
+    private final int cycle;
+
+    /**
+     * The final number of code points.
+     */
+    private final int length;
+
+    /**
+     * The offset of every walked rail in the ciphertext.
+     */
+    private final int[] offsets;
+
+    /**
+     * The number of code points of every walked rail already decoded.
+     */
+    private final int[] cursors;
+
+    /**
+     * The code points of the ciphertext received so far.
+     */
+    private int[] received;
+
+    /**
+     * The number of code points received.
+     */
+    private int receivedCount;
+
+    /**
+     * The plaintext decoded so far.
+     */
+    private final StringBuilder plaintext = new StringBuilder();
+
+    /**
+     * The number of code points decoded.
+     */
+    private int decodedCount;
+
+    /**
+     * The position in the zigzag of the next code point to decode.
+     */
+    private int phase;
+
+    /**
+     * A high surrogate held back from the end of the last chunk, or 0.
+     */
+    private char pending;
+
+    /**
+     * Creates a decoder.
+     *
+     * @param rails The number of rails.
+     * @param length The final number of code points of the ciphertext.
+     * @throws InvalidRailNumberException If the number of rails is less than 2.
+     * @throws IllegalArgumentException If the length is negative.
+     */
+    public RailFenceDecoder(int rails, int length) throws InvalidRailNumberException {
+        RailFenceEngine.checkRails(rails);
+        if (length < 0) {
+            throw new IllegalArgumentException("Length must not be negative.");
+        }
+        this.rails = rails;
+        this.walked = RailFenceEngine.effectiveRails(length, rails);
+        this.cycle = 2 * (walked - 1);
+        this.length = length;
+        this.offsets = new int[walked];
+        this.cursors = new int[walked];
+        int[] railLengths = RailFenceEngine.railLengths(length, rails);
+        for (int rail = 1; rail < railLengths.length; rail++) {
+            offsets[rail] = offsets[rail - 1] + railLengths[rail - 1];
+        }
+        this.received = new int[Math.min(length, INITIAL_CAPACITY)];
+    }
+
+    /**
+     * Appends a chunk of the ciphertext and decodes what it makes available.
+     *
+     * @param chunk The chunk.
+     * @return The plaintext decoded from this chunk, possibly empty.
+     * @throws IllegalArgumentException If the ciphertext grows beyond its
+     * announced length; the chunk is then ignored.
+     */
+    public String append(CharSequence chunk) {
+        int n = chunk.length();
+        if (n == 0) {
+            return "";
+        }
+        int[] codePoints = new int[n + 1];
+        int count = 0;
+        int i = 0;
+        char carried = pending;
+        if (carried != 0) {
+            char first = chunk.charAt(0);
+            if (Character.isLowSurrogate(first)) {
+                codePoints[count++] = Character.toCodePoint(carried, first);
+                i = 1;
+            } else {
+                codePoints[count++] = carried;
+            }
+        }
+        char held = 0;
+        for (; i < n; i++) {
+            char c = chunk.charAt(i);
+            if (Character.isHighSurrogate(c)) {
+                if (i + 1 == n) {
+                    held = c;
+                    break;
+                }
+                char next = chunk.charAt(i + 1);
+                if (Character.isLowSurrogate(next)) {
+                    codePoints[count++] = Character.toCodePoint(c, next);
+                    i++;
+                    continue;
+                }
+            }
+            codePoints[count++] = c;
+        }
+        if ((long) receivedCount + count + (held != 0 ? 1 : 0) > length) {
+            throw new IllegalArgumentException("Ciphertext longer than its announced length of " + length
+                    + " characters.");
+        }
+        pending = held;
+        if (receivedCount + count > received.length) {
+            received = Arrays.copyOf(received, (int) Math.min(length,
+                    Math.max(receivedCount + count, 2L * received.length)));
+        }
+        System.arraycopy(codePoints, 0, received, receivedCount, count);
+        receivedCount += count;
+        return decode();
+    }
+
+    /**
+     * Returns the plaintext decoded so far.
+     *
+     * @return The plaintext.
+     */
+    public String plaintext() {
+        return plaintext.toString();
+    }
+
+    /**
+     * Tells whether the whole ciphertext has arrived and been decoded.
+     *
+     * @return true if the plaintext is complete.
+     */
+    public boolean isComplete() {
+        return decodedCount == length;
+    }
+
+    /**
+     * Gets the final number of code points.
+     *
+     * @return The announced length.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Gets the number of code points of the ciphertext received so far.
+     *
+     * @return The received length.
+     */
+    public int getReceivedLength() {
+        return receivedCount;
+    }
+
+    /**
+     * Gets the number of code points of the plaintext decoded so far.
+     *
+     * @return The decoded length.
+     */
+    public int getDecodedLength() {
+        return decodedCount;
+    }
+
+    /**
+     * Gets the number of rails.
+     *
+     * @return The number of rails.
+     */
+    public int getRails() {
+        return rails;
+    }
+
+    /**
+     * Emits the plaintext code points whose ciphertext positions have
+     * arrived.
+     *
+     * @return The newly decoded plaintext.
+     */
+    private String decode() {
+        int start = plaintext.length();
+        while (decodedCount < length) {
+            int rail = phase < walked ? phase : cycle - phase;
+            int position = offsets[rail] + cursors[rail];
+            if (position >= receivedCount) {
+                break;
+            }
+            plaintext.appendCodePoint(received[position]);
+            cursors[rail]++;
+            decodedCount++;
+            if (++phase == cycle) {
+                phase = 0;
+            }
+        }
+        return plaintext.substring(start);
+    }
+}
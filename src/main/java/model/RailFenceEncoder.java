@@ -0,0 +1,234 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Encrypts a text that arrives piece by piece.
+ *
+ * Every rail of the ciphertext only ever grows at its end, so the encoder
+ * keeps one growable character buffer per rail and the current position in
+ * the zigzag. Appending a chunk costs time proportional to the chunk, and the
+ * ciphertext of everything appended so far is the concatenation of the rails.
+ * The result equals {@link RailFenceEngine#encrypt(String, int)} of the
+ * concatenated chunks: characters are placed as code points, which for text
+ * without surrogate pairs are the UTF-16 units themselves. A high surrogate
+ * at the end of a chunk is held back until the next chunk tells whether it
+ * starts with the matching low surrogate. The buffers of the rails are only
+ * allocated once the zigzag reaches them, so a number of rails far beyond the
+ * length of the text costs nothing.
+ *
+ * An encoder is not thread-safe.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class RailFenceEncoder {
+
+    /**
+     * Initial capacity of the buffer of a rail, in characters.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Initial number of rails with room for a buffer.
+     */
+    private static final int INITIAL_RAILS = 16;
+
+    /**
+     * Largest number of characters of the ciphertext.
+     */
+    private static final int MAX_LENGTH = Integer.MAX_VALUE - 8;
+
+    /**
+     * The number of rails.
+     */
+    private final int rails;
+
+    /**
+     * The length of one zigzag, 2 * (rails - 1).
+     */
+    private final long cycle;
+
+    /**
+     * The buffer of every rail reached so far.
+     */
+    private char[][] buffers;
+
+    /**
+     * The number of characters in the buffer of every rail reached so far.
+     */
+    private int[] lengths;
+
+    /**
+     * The position in the zigzag of the next code point.
+     */
+    private int phase;
+
+    /**
+     * The number of characters in all buffers.
+     */
+    private int length;
+
+    /**
+     * A high surrogate held back from the end of the last chunk, or 0.
+     */
+    private char pending;
+
+    /**
+     * Creates an encoder.
+     *
+     * @param rails The number of rails.
+     * @throws InvalidRailNumberException If the number of rails is less than 2.
+     */
+    public RailFenceEncoder(int rails) throws InvalidRailNumberException {
+        RailFenceEngine.checkRails(rails);
+        this.rails = rails;
+        this.cycle = 2L * (rails - 1);
+        this.buffers = new char[Math.min(rails, INITIAL_RAILS)][];
+        this.lengths = new int[buffers.length];
+    }
+
+    /**
+     * Appends a chunk of the plaintext.
+     *
+     * @param chunk The chunk.
+     * @throws IllegalStateException If the ciphertext would grow beyond the
+     * largest possible string.
+     */
+    public void append(CharSequence chunk) {
+        int n = chunk.length();
+        if (n == 0) {
+            return;
+        }
+        if ((long) length + n + (pending != 0 ? 1 : 0) > MAX_LENGTH) {
+            throw new IllegalStateException("Ciphertext too long.");
+        }
+        int i = 0;
+        if (pending != 0) {
+            char first = chunk.charAt(0);
+            if (Character.isLowSurrogate(first)) {
+                place(pending, first);
+                i = 1;
+            } else {
+                place(pending);
+            }
+            pending = 0;
+        }
+        for (; i < n; i++) {
+            char c = chunk.charAt(i);
+            if (Character.isHighSurrogate(c)) {
+                if (i + 1 == n) {
+                    pending = c;
+                    break;
+                }
+                char next = chunk.charAt(i + 1);
+                if (Character.isLowSurrogate(next)) {
+                    place(c, next);
+                    i++;
+                    continue;
+                }
+            }
+            place(c);
+        }
+    }
+
+    /**
+     * Returns the ciphertext of everything appended so far, without a high
+     * surrogate still held back.
+     *
+     * @return The ciphertext.
+     */
+    public String ciphertext() {
+        char[] text = new char[length];
+        int offset = 0;
+        for (int rail = 0; rail < buffers.length; rail++) {
+            if (lengths[rail] > 0) {
+                System.arraycopy(buffers[rail], 0, text, offset, lengths[rail]);
+                offset += lengths[rail];
+            }
+        }
+        return new String(text);
+    }
+
+    /**
+     * Gets the number of characters of the ciphertext so far.
+     *
+     * @return The length of the ciphertext.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Gets the number of rails.
+     *
+     * @return The number of rails.
+     */
+    public int getRails() {
+        return rails;
+    }
+
+    /**
+     * Places one UTF-16 unit on the current rail and moves along the zigzag.
+     *
+     * @param c The unit.
+     */
+    private void place(char c) {
+        int rail = phase < rails ? phase : (int) (cycle - phase);
+        char[] buffer = reserve(rail, 1);
+        buffer[lengths[rail]++] = c;
+        advance(1);
+    }
+
+    /**
+     * Places a surrogate pair on the current rail and moves along the zigzag.
+     *
+     * @param high The high surrogate.
+     * @param low The low surrogate.
+     */
+    private void place(char high, char low) {
+        int rail = phase < rails ? phase : (int) (cycle - phase);
+        char[] buffer = reserve(rail, 2);
+        buffer[lengths[rail]++] = high;
+        buffer[lengths[rail]++] = low;
+        advance(2);
+    }
+
+    /**
+     * Moves to the next position of the zigzag.
+     *
+     * @param units The number of UTF-16 units just placed.
+     */
+    private void advance(int units) {
+        length += units;
+        if (++phase == cycle) {
+            phase = 0;
+        }
+    }
+
+    /**
+     * Makes room in the buffer of a rail, doubling it when it is full, and
+     * in the arrays of the rails when the rail is reached for the first time.
+     *
+     * @param rail The rail.
+     * @param units The number of units to make room for.
+     * @return The buffer of the rail.
+     */
+    private char[] reserve(int rail, int units) {
+        if (rail >= buffers.length) {
+            int size = (int) Math.min(rails, Math.max(rail + 1L, 2L * buffers.length));
+            buffers = Arrays.copyOf(buffers, size);
+            lengths = Arrays.copyOf(lengths, size);
+        }
+        char[] buffer = buffers[rail];
+        int needed = lengths[rail] + units;
+        if (buffer == null) {
+            buffer = new char[Math.max(INITIAL_CAPACITY, needed)];
+            buffers[rail] = buffer;
+        } else if (needed > buffer.length) {
+            buffer = Arrays.copyOf(buffer, (int) Math.min(MAX_LENGTH, Math.max(needed, 2L * buffer.length)));
+            buffers[rail] = buffer;
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,482 @@
+package model;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Array based implementation of the Rail Fence permutation used by
+ * {@link RailFenceModel}. Instead of filling a rails-by-length matrix, the
+ * engine walks every rail directly using the period of the zigzag pattern,
+ * which gives a single gather (encryption) or scatter (decryption) pass over
+ * the input.
+ *
+ * Three representations of the text are supported: a compact {@code byte[]}
+ * form for Latin-1 text, a {@code char[]} form for other text in the Basic
+ * Multilingual Plane, and a code point form which keeps surrogate pairs
+ * together so that supplementary characters survive the permutation.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class RailFenceEngine {
+
+    /**
+     * Largest character value that can be stored in the compact Latin-1 form.
+     */
+    private static final int LATIN1_MAX = 0xFF;
+
+    /**
+     * Private constructor, this class only exposes static helpers.
+     */
+    private RailFenceEngine() {
+    }
+
+    /**
+     * Validates the number of rails.
+     *
+     * @param rails The number of rails.
+     * @throws InvalidRailNumberException If the number of rails is less than 2.
+     */
+    public static void checkRails(int rails) throws InvalidRailNumberException {
+        if (rails <= 1) {
+            throw new InvalidRailNumberException("Number of rails must be at least 2.");
+        }
+    }
+
+    /**
+     * Returns the number of rails the permutation of a text actually uses.
+     * With as many rails as elements every element stays on its own rail and
+     * the text is unchanged, so any larger number of rails gives the same
+     * result and is reduced to the length of the text before anything is
+     * allocated or looped over per rail.
+     *
+     * @param length The number of elements of the text.
+     * @param rails The number of rails, at least 2.
+     * @return The number of rails to use, between 2 and {@code rails}.
+     */
+    public static int effectiveRails(long length, int rails) {
+        return (int) Math.max(2, Math.min(rails, length));
+    }
+
+    /**
+     * Returns the rail on which the element at the given position is placed.
+     *
+     * @param index The position of the element in the plain text.
+     * @param rails The number of rails.
+     * @return The rail index, between 0 and {@code rails - 1}.
+     */
+    public static int railOf(long index, int rails) {
+        long cycle = 2L * (rails - 1);
+        int phase = (int) (index % cycle);
+        return phase < rails ? phase : (int) (cycle - phase);
+    }
+
+    /**
+     * Computes how many elements of a text of the given length are placed on
+     * each rail.
+     *
+     * @param length The length of the text.
+     * @param rails The number of rails.
+     * @return An array holding the number of elements of every rail, with
+     * {@link #effectiveRails(long, int)} entries; the rails beyond hold no
+     * element.
+     */
+    public static int[] railLengths(int length, int rails) {
+        rails = effectiveRails(length, rails);
+        int cycle = 2 * (rails - 1);
+        int full = length / cycle;
+        int rest = length % cycle;
+        int[] lengths = new int[rails];
+        lengths[0] = full + (rest > 0 ? 1 : 0);
+        for (int rail = 1; rail < rails - 1; rail++) {
+            lengths[rail] = 2 * full + (rest > rail ? 1 : 0) + (rest > cycle - rail ? 1 : 0);
+        }
+        lengths[rails - 1] = full + (rest > rails - 1 ? 1 : 0);
+        return lengths;
+    }
+
+    /**
+     * Checks whether every character of the text fits in a single Latin-1
+     * byte.
+     *
+     * @param text The text to check.
+     * @return true if the text can be stored in the compact form.
+     */
+    public static boolean isLatin1(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > LATIN1_MAX) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the text contains supplementary characters encoded as
+     * well-formed surrogate pairs. Texts with unpaired surrogates are treated
+     * as plain UTF-16 units.
+     *
+     * @param text The text to check.
+     * @return true if the text has to be permuted by code point.
+     */
+    public static boolean hasSurrogatePairs(String text) {
+        boolean pairs = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                pairs = true;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                return false;
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Encrypts a text, choosing the most compact representation for it.
+     *
+     * @param text The text to encrypt.
+     * @param rails The number of rails.
+     * @return The encrypted text.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    public static String encrypt(String text, int rails) throws InvalidRailNumberException {
+        checkRails(rails);
+        CipherEvent event = new CipherEvent();
+        event.begin();
+        String result;
+        String engine;
+        if (isLatin1(text)) {
+            byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+            result = new String(encrypt(bytes, rails), StandardCharsets.ISO_8859_1);
+            engine = CipherEvent.LATIN1_ENGINE;
+        } else if (hasSurrogatePairs(text)) {
+            result = encryptCodePoints(text, rails);
+            engine = CipherEvent.CODE_POINT_ENGINE;
+        } else {
+            result = new String(encrypt(text.toCharArray(), rails));
+            engine = CipherEvent.CHAR_ENGINE;
+        }
+        event.record("Encrypt", text.length(), rails, engine);
+        return result;
+    }
+
+    /**
+     * Decrypts a text, choosing the most compact representation for it.
+     *
+     * @param text The text to decrypt.
+     * @param rails The number of rails.
+     * @return The decrypted text.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    public static String decrypt(String text, int rails) throws InvalidRailNumberException {
+        checkRails(rails);
+        CipherEvent event = new CipherEvent();
+        event.begin();
+        String result;
+        String engine;
+        if (isLatin1(text)) {
+            byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+            result = new String(decrypt(bytes, rails), StandardCharsets.ISO_8859_1);
+            engine = CipherEvent.LATIN1_ENGINE;
+        } else if (hasSurrogatePairs(text)) {
+            result = decryptCodePoints(text, rails);
+            engine = CipherEvent.CODE_POINT_ENGINE;
+        } else {
+            result = new String(decrypt(text.toCharArray(), rails));
+            engine = CipherEvent.CHAR_ENGINE;
+        }
+        event.record("Decrypt", text.length(), rails, engine);
+        return result;
+    }
+
+    /**
+     * Encrypts an array of Latin-1 bytes.
+     *
+     * @param input The plain text bytes.
+     * @param rails The number of rails, at least 2.
+     * @return The encrypted bytes.
+     */
+    public static byte[] encrypt(byte[] input, int rails) {
+        byte[] output = new byte[input.length];
+        encrypt(input, output, input.length, rails);
+        return output;
+    }
+
+    /**
+     * Encrypts the first bytes of an array of Latin-1 bytes into another
+     * array, so that callers can reuse their buffers.
+     *
+     * @param input The plain text bytes.
+     * @param output Receives the encrypted bytes, at least {@code n} long.
+     * @param n The number of bytes to encrypt.
+     * @param rails The number of rails, at least 2.
+     */
+    public static void encrypt(byte[] input, byte[] output, int n, int rails) {
+        rails = effectiveRails(n, rails);
+        int cycle = 2 * (rails - 1);
+        int out = 0;
+        for (int rail = 0; rail < rails; rail++) {
+            int step = cycle - 2 * rail;
+            for (int i = rail; i < n; i += cycle) {
+                output[out++] = input[i];
+                if (rail != 0 && rail != rails - 1 && i + step < n) {
+                    output[out++] = input[i + step];
+                }
+            }
+        }
+    }
+
+    /**
+     * Decrypts an array of Latin-1 bytes.
+     *
+     * @param input The encrypted bytes.
+     * @param rails The number of rails, at least 2.
+     * @return The decrypted bytes.
+     */
+    public static byte[] decrypt(byte[] input, int rails) {
+        byte[] output = new byte[input.length];
+        decrypt(input, output, input.length, rails);
+        return output;
+    }
+
+    /**
+     * Decrypts the first bytes of an array of Latin-1 bytes into another
+     * array, so that callers can reuse their buffers.
+     *
+     * @param input The encrypted bytes.
+     * @param output Receives the decrypted bytes, at least {@code n} long.
+     * @param n The number of bytes to decrypt.
+     * @param rails The number of rails, at least 2.
+     */
+    public static void decrypt(byte[] input, byte[] output, int n, int rails) {
+        rails = effectiveRails(n, rails);
+        int cycle = 2 * (rails - 1);
+        int in = 0;
+        for (int rail = 0; rail < rails; rail++) {
+            int step = cycle - 2 * rail;
+            for (int i = rail; i < n; i += cycle) {
+                output[i] = input[in++];
+                if (rail != 0 && rail != rails - 1 && i + step < n) {
+                    output[i + step] = input[in++];
+                }
+            }
+        }
+    }
+
+    /**
+     * Encrypts an array of UTF-16 characters.
+     *
+     * @param input The plain text characters.
+     * @param rails The number of rails, at least 2.
+     * @return The encrypted characters.
+     */
+    public static char[] encrypt(char[] input, int rails) {
+        int n = input.length;
+        rails = effectiveRails(n, rails);
+        int cycle = 2 * (rails - 1);
+        char[] output = new char[n];
+        int out = 0;
+        for (int rail = 0; rail < rails; rail++) {
+            int step = cycle - 2 * rail;
+            for (int i = rail; i < n; i += cycle) {
+                output[out++] = input[i];
+                if (rail != 0 && rail != rails - 1 && i + step < n) {
+                    output[out++] = input[i + step];
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Decrypts an array of UTF-16 characters.
+     *
+     * @param input The encrypted characters.
+     * @param rails The number of rails, at least 2.
+     * @return The decrypted characters.
+     */
+    public static char[] decrypt(char[] input, int rails) {
+        int n = input.length;
+        rails = effectiveRails(n, rails);
+        int cycle = 2 * (rails - 1);
+        char[] output = new char[n];
+        int in = 0;
+        for (int rail = 0; rail < rails; rail++) {
+            int step = cycle - 2 * rail;
+            for (int i = rail; i < n; i += cycle) {
+                output[i] = input[in++];
+                if (rail != 0 && rail != rails - 1 && i + step < n) {
+                    output[i + step] = input[in++];
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Encrypts a text by whole code points. The first pass measures how many
+     * UTF-16 units end up on every rail, the second pass copies each code point
+     * straight to its place in the output, so no per code point index table is
+     * allocated.
+     *
+     * @param text The plain text.
+     * @param rails The number of rails, at least 2.
+     * @return The encrypted text.
+     */
+    public static String encryptCodePoints(String text, int rails) {
+        rails = effectiveRails(text.length(), rails);
+        int[] cursor = new int[rails];
+        int position = 0;
+        for (int i = 0; i < text.length(); position++) {
+            int units = Character.charCount(text.codePointAt(i));
+            cursor[railOf(position, rails)] += units;
+            i += units;
+        }
+        int offset = 0;
+        for (int rail = 0; rail < rails; rail++) {
+            int units = cursor[rail];
+            cursor[rail] = offset;
+            offset += units;
+        }
+
+        char[] output = new char[text.length()];
+        position = 0;
+        for (int i = 0; i < text.length(); position++) {
+            int rail = railOf(position, rails);
+            int codePoint = text.codePointAt(i);
+            int units = Character.toChars(codePoint, output, cursor[rail]);
+            cursor[rail] += units;
+            i += units;
+        }
+        return new String(output);
+    }
+
+    /**
+     * Decrypts a text that was encrypted by whole code points. The start of
+     * every rail is located with a single pass over the cipher text, then the
+     * rails are read back in zigzag order.
+     *
+     * @param text The encrypted text.
+     * @param rails The number of rails, at least 2.
+     * @return The decrypted text.
+     */
+    public static String decryptCodePoints(String text, int rails) {
+        int count = text.codePointCount(0, text.length());
+        rails = effectiveRails(count, rails);
+        int[] lengths = railLengths(count, rails);
+        int[] cursor = new int[rails];
+        int i = 0;
+        for (int rail = 0; rail < rails; rail++) {
+            cursor[rail] = i;
+            i = text.offsetByCodePoints(i, lengths[rail]);
+        }
+
+        StringBuilder output = new StringBuilder(text.length());
+        for (int position = 0; position < count; position++) {
+            int rail = railOf(position, rails);
+            int codePoint = text.codePointAt(cursor[rail]);
+            output.appendCodePoint(codePoint);
+            cursor[rail] += Character.charCount(codePoint);
+        }
+        return output.toString();
+    }
+
+    /**
+     * Builds the gather map of an encryption: element {@code j} of the cipher
+     * text is element {@code map[j]} of the plain text.
+     *
+     * @param length The length of the text.
+     * @param rails The number of rails, at least 2.
+     * @return The gather map of the encryption.
+     */
+    public static int[] encryptPermutation(int length, int rails) {
+        rails = effectiveRails(length, rails);
+        int cycle = 2 * (rails - 1);
+        int[] map = new int[length];
+        int out = 0;
+        for (int rail = 0; rail < rails; rail++) {
+            int step = cycle - 2 * rail;
+            for (int i = rail; i < length; i += cycle) {
+                map[out++] = i;
+                if (rail != 0 && rail != rails - 1 && i + step < length) {
+                    map[out++] = i + step;
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Builds the gather map of a decryption: element {@code j} of the plain
+     * text is element {@code map[j]} of the cipher text.
+     *
+     * @param length The length of the text.
+     * @param rails The number of rails, at least 2.
+     * @return The gather map of the decryption.
+     */
+    public static int[] decryptPermutation(int length, int rails) {
+        rails = effectiveRails(length, rails);
+        int cycle = 2 * (rails - 1);
+        int[] map = new int[length];
+        int in = 0;
+        for (int rail = 0; rail < rails; rail++) {
+            int step = cycle - 2 * rail;
+            for (int i = rail; i < length; i += cycle) {
+                map[i] = in++;
+                if (rail != 0 && rail != rails - 1 && i + step < length) {
+                    map[i + step] = in++;
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Applies a gather map to a text, using the same representation rules as
+     * {@link #encrypt(String, int)}. The map must have one entry per code point
+     * when the text contains surrogate pairs and one entry per character
+     * otherwise.
+     *
+     * @param text The text to permute.
+     * @param map The gather map.
+     * @return The permuted text.
+     */
+    public static String gather(String text, int[] map) {
+        if (isLatin1(text)) {
+            byte[] input = text.getBytes(StandardCharsets.ISO_8859_1);
+            byte[] output = new byte[map.length];
+            for (int j = 0; j < map.length; j++) {
+                output[j] = input[map[j]];
+            }
+            return new String(output, StandardCharsets.ISO_8859_1);
+        }
+        if (hasSurrogatePairs(text)) {
+            int[] input = text.codePoints().toArray();
+            int[] output = new int[map.length];
+            for (int j = 0; j < map.length; j++) {
+                output[j] = input[map[j]];
+            }
+            return new String(output, 0, output.length);
+        }
+        char[] input = text.toCharArray();
+        char[] output = new char[map.length];
+        for (int j = 0; j < map.length; j++) {
+            output[j] = input[map[j]];
+        }
+        return new String(output);
+    }
+
+    /**
+     * Returns the number of elements the engine permutes for the given text,
+     * that is the number of code points if the text contains surrogate pairs
+     * and the number of characters otherwise.
+     *
+     * @param text The text to measure.
+     * @return The number of permuted elements.
+     */
+    public static int permutedLength(String text) {
+        return hasSurrogatePairs(text) ? text.codePointCount(0, text.length()) : text.length();
+    }
+}
@@ -0,0 +1,249 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.Future;
+
+/**
+ * Input stream decrypting the bytes read from another stream with the Rail
+ * Fence Cipher.
+ *
+ * By default the stream works in whole-message mode: on the first read it
+ * reads the whole underlying stream and decrypts it as one message, as
+ * {@link RailFenceEngine#decrypt(byte[], int)} would. A stream created by
+ * {@link #blocks(InputStream, int, boolean)} works in block mode instead: it
+ * reads the header written by
+ * {@link RailFenceOutputStream#blocks(java.io.OutputStream, int, int, boolean)}
+ * and then decrypts one block at a time, so it can carry an unbounded stream
+ * in constant memory. With a background thread the next block is read and
+ * decrypted while the current one is consumed.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class RailFenceInputStream extends InputStream {
+
+    /**
+     * The stream providing the ciphertext.
+     */
+    private final InputStream in;
+
+    /**
+     * The number of rails.
+     */
+    private final int rails;
+
+    /**
+     * The number of bytes of a block, 0 in whole-message mode.
+     */
+    private final int blockSize;
+
+    /**
+     * The pipeline decrypting the blocks, null in whole-message mode.
+     */
+    private final BlockPipeline pipeline;
+
+    /**
+     * The decrypted bytes being consumed, null before the first read.
+     */
+    private byte[] current;
+
+    /**
+     * The position of the next byte in the current bytes.
+     */
+    private int position;
+
+    /**
+     * The next block being read and decrypted, or null.
+     */
+    private Future<byte[]> next;
+
+    /**
+     * Whether the last block has been read.
+     */
+    private boolean finished;
+
+    /**
+     * Whether the stream has been closed.
+     */
+    private boolean closed;
+
+    /**
+     * Creates a stream in whole-message mode.
+     *
+     * @param in The stream providing the ciphertext.
+     * @param rails The number of rails.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    public RailFenceInputStream(InputStream in, int rails) throws InvalidRailNumberException {
+        RailFenceEngine.checkRails(rails);
+        this.in = in;
+        this.rails = rails;
+        this.blockSize = 0;
+        this.pipeline = null;
+    }
+
+    /**
+     * Creates a stream in block mode.
+     *
+     * @param in The stream providing the ciphertext.
+     * @param rails The number of rails.
+     * @param blockSize The number of bytes of a block.
+     * @param background true to read and decrypt the next block on a
+     * background thread.
+     */
+    private RailFenceInputStream(InputStream in, int rails, int blockSize, boolean background) {
+        this.in = in;
+        this.rails = rails;
+        this.blockSize = blockSize;
+        this.pipeline = new BlockPipeline(background);
+    }
+
+    /**
+     * Creates a stream in block mode and reads its header.
+     *
+     * @param in The stream providing the ciphertext.
+     * @param rails The number of rails.
+     * @param background true to read and decrypt the next block on a
+     * background thread while the current one is consumed.
+     * @return The stream.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     * @throws IOException If the header cannot be read or is invalid.
+     */
+    public static RailFenceInputStream blocks(InputStream in, int rails, boolean background)
+            throws InvalidRailNumberException, IOException {
+        RailFenceEngine.checkRails(rails);
+        return new RailFenceInputStream(in, rails, BlockHeader.read(in::read), background);
+    }
+
+    /**
+     * Reads one byte.
+     *
+     * @return The byte, or -1 at the end of the stream.
+     * @throws IOException If the stream is closed or cannot be read.
+     */
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+
+    /**
+     * Reads bytes into an array.
+     *
+     * @param b The array.
+     * @param off The offset of the first byte.
+     * @param len The largest number of bytes to read.
+     * @return The number of bytes read, or -1 at the end of the stream.
+     * @throws IOException If the stream is closed or cannot be read.
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    /**
+     * Returns the number of decrypted bytes available without reading.
+     *
+     * @return The number of bytes left in the current block.
+     * @throws IOException If the stream is closed.
+     */
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return current != null ? current.length - position : 0;
+    }
+
+    /**
+     * Closes the stream and the underlying stream.
+     *
+     * @throws IOException If the underlying stream cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (next != null) {
+            next.cancel(false);
+        }
+        if (pipeline != null) {
+            pipeline.close();
+        }
+        in.close();
+    }
+
+    /**
+     * Makes sure there are decrypted bytes to consume.
+     *
+     * @return false at the end of the stream.
+     * @throws IOException If the stream is closed or cannot be read.
+     */
+    private boolean fill() throws IOException {
+        ensureOpen();
+        while (current == null || position == current.length) {
+            if (finished) {
+                return false;
+            }
+            if (pipeline == null) {
+                current = RailFenceEngine.decrypt(in.readAllBytes(), rails);
+                finished = true;
+            } else {
+                byte[] block = next != null ? BlockPipeline.await(next) : readBlock();
+                next = null;
+                if (block == null) {
+                    finished = true;
+                    return false;
+                }
+                if (block.length < blockSize) {
+                    finished = true;
+                } else if (pipeline.isBackground()) {
+                    next = pipeline.submit(this::readBlock);
+                }
+                current = block;
+            }
+            position = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Reads and decrypts the next block.
+     *
+     * @return The decrypted block, shorter than the block size for the last
+     * block, or null at the end of the stream.
+     * @throws IOException If the block cannot be read.
+     */
+    private byte[] readBlock() throws IOException {
+        byte[] block = new byte[blockSize];
+        int length = in.readNBytes(block, 0, blockSize);
+        if (length == 0) {
+            return null;
+        }
+        return RailFenceEngine.decrypt(length == blockSize ? block : Arrays.copyOf(block, length), rails);
+    }
+
+    /**
+     * Checks that the stream is open.
+     *
+     * @throws IOException If the stream is closed.
+     */
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed.");
+        }
+    }
+}
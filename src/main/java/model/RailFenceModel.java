@@ -1,14 +1,18 @@
 package model;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.stream.Collectors;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
-import jakarta.persistence.TypedQuery;
 import jakarta.persistence.PersistenceException;
+import jakarta.persistence.TypedQuery;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 import util.EntityManagerFactoryListener;
@@ -17,7 +21,15 @@ import util.EntityManagerFactoryListener;
  * Model class in the MVC (Model-View-Controller) pattern for the Rail Fence
  * Cipher application. It contains the logic for encrypting and decrypting text
  * using the Rail Fence algorithm and manages database operations related to the
- * history of these operations.
+ * history of these operations. The history may be split across several
+ * databases, see {@link HistoryShards}. When a {@link HistoryLog} is
+ * installed, new records are written to it and reach the databases through a
+ * {@link HistoryReplayer}.
+ *
+ * A model keeps its engine dispatcher and the in-memory views of the history
+ * (version, text index and read model) in the instance. Models created with
+ * {@link #RailFenceModel(HistoryShards)} get their own; the web application
+ * shares one set through {@link CipherService}, which owns it.
  *
  * @author Magdalena Koncowicz
  * @version 1.0
@@ -25,10 +37,10 @@ import util.EntityManagerFactoryListener;
 public class RailFenceModel {
 
     /**
-     * The EntityManagerFactory used for creating EntityManager instances for
-     * database operations.
+     * The databases holding the operation history, null if persistence has
+     * not been initialized.
      */
-    private final EntityManagerFactory emf = EntityManagerFactoryListener.getEntityManagerFactory();
+    private final HistoryShards shards;
 
     /**
      * Logger for logging information, warnings, and errors.
@@ -36,7 +48,133 @@ public class RailFenceModel {
     private static final Logger LOGGER = Logger.getLogger(RailFenceModel.class.getName());
 
     /**
-     * Stores an operation history record in the database.
+     * Memory budget of the trigram index over the history texts, in bytes.
+     */
+    static final long HISTORY_INDEX_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * Number of most recent history records kept in the read model.
+     */
+    static final int READ_MODEL_CAPACITY = 10000;
+
+    /**
+     * Number of records loaded per query when scanning or fetching history.
+     */
+    private static final int HISTORY_BATCH_SIZE = 500;
+
+    /**
+     * Order of history listings: by timestamp, then by ID.
+     */
+    private static final Comparator<HistorySummary> HISTORY_ORDER = Comparator
+            .comparing(HistorySummary::getTimestamp, Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()))
+            .thenComparing(HistorySummary::getId, Comparator.nullsFirst(Comparator.<Long>naturalOrder()));
+
+    /**
+     * Listeners notified after a history record has been committed.
+     */
+    private static final List<HistoryListener> HISTORY_LISTENERS = new CopyOnWriteArrayList<>();
+
+    /**
+     * Dispatcher routing encryptions and decryptions to the fastest engine.
+     */
+    private final AdaptiveCipherDispatcher engines;
+
+    /**
+     * In-memory version of the history table.
+     */
+    private final HistoryVersion version;
+
+    /**
+     * Trigram index over the history texts.
+     */
+    private final HistoryTextIndex index;
+
+    /**
+     * In-memory view of the most recent history records.
+     */
+    private final HistoryReadModel readModel;
+
+    /**
+     * The write-ahead log receiving new history records, null to write them
+     * directly to the databases.
+     */
+    private static volatile HistoryLog historyLog;
+
+    /**
+     * Creates a model using the history databases opened by
+     * {@link EntityManagerFactoryListener}.
+     */
+    public RailFenceModel() {
+        this(EntityManagerFactoryListener.getHistoryShards());
+    }
+
+    /**
+     * Creates a model using the given history databases, with its own engine
+     * dispatcher and history views.
+     *
+     * @param shards The databases holding the operation history.
+     */
+    public RailFenceModel(HistoryShards shards) {
+        this(shards, new AdaptiveCipherDispatcher(EngineProfile.defaults()), new HistoryVersion(),
+                new HistoryTextIndex(HISTORY_INDEX_BYTES), new HistoryReadModel(READ_MODEL_CAPACITY));
+    }
+
+    /**
+     * Creates a model using the given history databases, engine dispatcher
+     * and history views, which stay owned by the caller.
+     *
+     * @param shards The databases holding the operation history.
+     * @param engines The dispatcher running the cipher operations.
+     * @param version The in-memory version of the history table.
+     * @param index The trigram index over the history texts.
+     * @param readModel The in-memory view of the most recent records.
+     */
+    RailFenceModel(HistoryShards shards, AdaptiveCipherDispatcher engines, HistoryVersion version,
+            HistoryTextIndex index, HistoryReadModel readModel) {
+        this.shards = shards;
+        this.engines = engines;
+        this.version = version;
+        this.index = index;
+        this.readModel = readModel;
+    }
+
+    /**
+     * Registers a listener notified after every committed history record.
+     *
+     * @param listener The listener to register.
+     */
+    public static void addHistoryListener(HistoryListener listener) {
+        HISTORY_LISTENERS.add(listener);
+    }
+
+    /**
+     * Removes a previously registered history listener.
+     *
+     * @param listener The listener to remove.
+     */
+    public static void removeHistoryListener(HistoryListener listener) {
+        HISTORY_LISTENERS.remove(listener);
+    }
+
+    /**
+     * Installs the write-ahead log receiving new history records from all
+     * model instances.
+     *
+     * @param log The log, or null to write new records directly to the
+     * databases.
+     */
+    public static void setHistoryLog(HistoryLog log) {
+        historyLog = log;
+    }
+
+    /**
+     * Stores an operation history record in the database of the shard chosen
+     * for it. While a history log is installed, the record is appended to the
+     * log instead and is stored in the database when it is replayed; it is
+     * only written directly if it could not be put in the log, since a record
+     * in the log is replayed even if its sync failed. While the log cannot be
+     * synced, records are written directly rather than held up waiting for
+     * the disk.
      *
      * @param type The type of operation (either "Encrypt" or "Decrypt").
      * @param original The original text before processing.
@@ -44,153 +182,592 @@ public class RailFenceModel {
      * @param rails The number of rails used in the Rail Fence Cipher.
      */
     public void createOperationHistory(String type, String original, String processed, int rails) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            em.getTransaction().begin();
+        HistoryEvent event = new HistoryEvent();
+        event.begin();
+        OperationHistory history = new OperationHistory(type, original, processed, rails);
+        history.setTimestamp(LocalDateTime.now());
 
-            OperationHistory history = new OperationHistory(type, original, processed, rails);
-            history.setTimestamp(LocalDateTime.now());
+        HistoryLog log = historyLog;
+        if (log != null && !log.isSyncFailing()) {
+            long started = System.nanoTime();
+            try {
+                log.append(history);
+                event.record("create", "log", 1, System.nanoTime() - started, true);
+                return;
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Record not appended to the history log, writing to the database instead",
+                        e);
+            }
+        }
 
+        int shard = shards.route(history);
+        EntityManager em = shards.getFactory(shard).createEntityManager();
+        long started = System.nanoTime();
+        long transactionTime = 0;
+        boolean succeeded = false;
+        try {
+            em.getTransaction().begin();
             em.persist(history);
             em.getTransaction().commit();
+            transactionTime = System.nanoTime() - started;
+            succeeded = true;
+            shards.recordInserted(shard, history.getId());
+            historyCommitted(history);
         } catch (PersistenceException e) {
             if (em.getTransaction().isActive()) {
                 em.getTransaction().rollback();
             }
+            transactionTime = System.nanoTime() - started;
             LOGGER.log(Level.SEVERE, "Error creating operation history", e);
         } finally {
             em.close();
+            event.record("create", "database", succeeded ? 1 : 0, transactionTime, succeeded);
         }
     }
 
     /**
-     * Retrieves the operation history from the database.
+     * Stores records replayed from the history log, with one transaction per
+     * shard. The records of each shard are announced to the listeners once
+     * its transaction has committed.
      *
-     * @return A list of OperationHistory objects representing the history of
-     * operations.
+     * @param batch The records, with their log sequence numbers set.
+     * @throws PersistenceException If a transaction fails. The records of
+     * the shards committed before it are stored.
      */
-    public List<OperationHistory> getOperationHistory() {
-        EntityManager em = emf.createEntityManager();
+    void replayOperationHistory(List<OperationHistory> batch) {
+        HistoryEvent event = new HistoryEvent();
+        event.begin();
+        List<List<OperationHistory>> byShard = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (OperationHistory history : batch) {
+            history.setId(null);
+            byShard.get(shards.route(history)).add(history);
+        }
+        long started = System.nanoTime();
+        int stored = 0;
         try {
-            TypedQuery<OperationHistory> query = em.createQuery("SELECT h FROM OperationHistory h", OperationHistory.class);
-            return query.getResultList();
-        } catch (PersistenceException e) {
-            LOGGER.log(Level.SEVERE, "Error retrieving operation history", e);
-            return new ArrayList<>();
+            for (int shard = 0; shard < shards.size(); shard++) {
+                List<OperationHistory> records = byShard.get(shard);
+                if (records.isEmpty()) {
+                    continue;
+                }
+                EntityManager em = shards.getFactory(shard).createEntityManager();
+                try {
+                    em.getTransaction().begin();
+                    for (OperationHistory history : records) {
+                        em.persist(history);
+                    }
+                    em.getTransaction().commit();
+                } catch (PersistenceException e) {
+                    if (em.getTransaction().isActive()) {
+                        em.getTransaction().rollback();
+                    }
+                    throw e;
+                } finally {
+                    em.close();
+                }
+                stored += records.size();
+                for (OperationHistory history : records) {
+                    shards.recordInserted(shard, history.getId());
+                    historyCommitted(history);
+                }
+            }
         } finally {
-            em.close();
+            event.record("replay", "log", stored, System.nanoTime() - started, stored == batch.size());
         }
     }
 
     /**
-     * Encrypts the input text using Rail Fence Cipher with the specified number
-     * of rails.
+     * Finds the largest history log sequence number stored in any shard.
      *
-     * @param text Input text to be encrypted
-     * @param rails Number of rails for the Rail Fence Cipher
-     * @return Encrypted text
-     * @throws model.InvalidRailNumberException If the number of rails is
-     * invalid.
+     * @return The sequence number, 0 if no record was replayed from the log.
+     * @throws PersistenceException If a shard cannot be read.
      */
-    public String encrypt(String text, int rails) throws InvalidRailNumberException {
-
-        if (rails <= 1) {
-            throw new InvalidRailNumberException("Number of rails must be at least 2.");
+    long getLastReplayedSequence() {
+        long last = 0;
+        for (Long max : shards.scatter(em -> em.createQuery(
+                "SELECT MAX(h.walSequence) FROM OperationHistory h", Long.class).getSingleResult())) {
+            if (max != null) {
+                last = Math.max(last, max);
+            }
         }
+        return last;
+    }
 
-        ArrayList<ArrayList<Character>> matrix = new ArrayList<>();
-        for (int i = 0; i < rails; i++) {
-            matrix.add(new ArrayList<>(Collections.nCopies(text.length(), '\0')));
+    /**
+     * Finds the history log sequence numbers within a range that are stored
+     * in any shard.
+     *
+     * @param from The first sequence number of the range.
+     * @param to The last sequence number of the range.
+     * @return The stored sequence numbers.
+     * @throws PersistenceException If a shard cannot be read.
+     */
+    Set<Long> getReplayedSequences(long from, long to) {
+        Set<Long> replayed = new HashSet<>();
+        for (List<Long> sequences : shards.scatter(em -> em.createQuery(
+                "SELECT h.walSequence FROM OperationHistory h WHERE h.walSequence BETWEEN :from AND :to", Long.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getResultList())) {
+            replayed.addAll(sequences);
         }
+        return replayed;
+    }
 
-        int row = 0;
-        boolean down = true;
-        int col = 0;
+    /**
+     * Retrieves the operation history from the database. All shards are read
+     * in parallel and their sorted results are merged by timestamp. Only the
+     * lengths and previews of the texts are read.
+     *
+     * @return A list of HistorySummary objects representing the history of
+     * operations.
+     */
+    public List<HistorySummary> getOperationHistory() {
+        HistoryEvent event = new HistoryEvent();
+        event.begin();
+        long started = System.nanoTime();
+        try {
+            List<List<HistorySummary>> lists = shards.scatter(em -> em.createQuery(
+                    HistorySummary.SELECT + " ORDER BY h.timestamp, h.id", HistorySummary.class)
+                    .getResultList());
+            long queryTime = System.nanoTime() - started;
+            List<HistorySummary> history = HistoryShards.merge(lists, HISTORY_ORDER);
+            event.record("read", "database", history.size(), queryTime, true);
+            return history;
+        } catch (PersistenceException e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving operation history", e);
+            event.record("read", "database", 0, System.nanoTime() - started, false);
+            return new ArrayList<>();
+        }
+    }
 
-        for (char c : text.toCharArray()) {
-            matrix.get(row).set(col, c);
+    /**
+     * Retrieves one page of the operation history, counting pages from the
+     * most recent operations. Pages within the retained window of the
+     * in-memory read model are served without touching the database, and
+     * pages beyond the last record are empty without a query. A single shard
+     * reads the page at its offset. With several shards the newest record at
+     * an even share of the offset in each shard becomes a boundary key, the
+     * records newer than it are counted per shard, and each shard only loads
+     * the records from the boundary on that can still fall on the page. Only
+     * the lengths and previews of the texts are read.
+     *
+     * @param page The index of the page, 0 for the most recent operations.
+     * @param pageSize The number of operations per page.
+     * @return The operations of the page, oldest first, or null if the
+     * databases could not be read.
+     */
+    public List<HistorySummary> getOperationHistoryPage(int page, int pageSize) {
+        HistoryEvent event = new HistoryEvent();
+        event.begin();
+        if (page < 0 || pageSize <= 0) {
+            event.record("page", "version", 0, 0, true);
+            return new ArrayList<>();
+        }
+        List<HistorySummary> cached = readModel.page(page, pageSize);
+        if (cached != null) {
+            event.record("page", "read model", cached.size(), 0, true);
+            return cached;
+        }
+        long offset = (long) page * pageSize;
+        long count = getHistoryVersion().getCount();
+        if (offset + pageSize > Integer.MAX_VALUE || (count >= 0 && offset >= count)) {
+            event.record("page", "version", 0, 0, true);
+            return new ArrayList<>();
+        }
+        long started = System.nanoTime();
+        try {
+            List<HistorySummary> newest = shards.size() == 1
+                    ? readNewest(shards.getFactory(0), null, (int) offset, pageSize)
+                    : readShardedPage((int) offset, pageSize);
+            long queryTime = System.nanoTime() - started;
+            List<HistorySummary> result = new ArrayList<>(newest);
+            Collections.reverse(result);
+            event.record("page", "database", result.size(), queryTime, true);
+            return result;
+        } catch (PersistenceException e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving operation history page", e);
+            event.record("page", "database", 0, System.nanoTime() - started, false);
+            return null;
+        }
+    }
 
-            if (row == 0) {
-                down = true;
-            } else if (row == rails - 1) {
-                down = false;
+    /**
+     * Reads one page of the history from several shards, newest first.
+     *
+     * @param offset The number of newer records before the page.
+     * @param pageSize The number of operations per page.
+     * @return The operations of the page, newest first.
+     * @throws PersistenceException If a shard cannot be read.
+     */
+    private List<HistorySummary> readShardedPage(int offset, int pageSize) {
+        int share = offset / shards.size();
+        HistorySummary boundary = null;
+        for (List<HistorySummary> first : shards.scatter(em -> em.createQuery(
+                HistorySummary.SELECT + " ORDER BY h.timestamp DESC, h.id DESC", HistorySummary.class)
+                .setFirstResult(share)
+                .setMaxResults(1)
+                .getResultList())) {
+            if (!first.isEmpty() && (boundary == null || HISTORY_ORDER.compare(first.get(0), boundary) > 0)) {
+                boundary = first.get(0);
             }
+        }
+        if (boundary == null) {
+            return new ArrayList<>();
+        }
+        HistorySummary key = boundary;
+        long newer = 0;
+        for (Long shardNewer : shards.scatter(em -> em.createQuery("SELECT COUNT(h) FROM OperationHistory h "
+                + "WHERE h.timestamp > :timestamp OR (h.timestamp = :timestamp AND h.id > :id)", Long.class)
+                .setParameter("timestamp", key.getTimestamp())
+                .setParameter("id", key.getId())
+                .getSingleResult())) {
+            newer += shardNewer;
+        }
+        int skip = (int) (offset - newer);
+        List<List<HistorySummary>> lists = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            lists.add(readNewest(shards.getFactory(shard), key, 0, skip + pageSize));
+        }
+        List<HistorySummary> merged = HistoryShards.merge(lists, HISTORY_ORDER.reversed());
+        return merged.subList(Math.min(skip, merged.size()), Math.min(skip + pageSize, merged.size()));
+    }
 
-            if (down) {
-                row++;
+    /**
+     * Reads the newest records of one shard, optionally only those not newer
+     * than a boundary record.
+     *
+     * @param factory The factory of the shard.
+     * @param boundary The newest record to read, or null for no bound.
+     * @param offset The number of records to skip.
+     * @param limit The largest number of records to read.
+     * @return The records, newest first.
+     * @throws PersistenceException If the shard cannot be read.
+     */
+    private static List<HistorySummary> readNewest(EntityManagerFactory factory, HistorySummary boundary,
+            int offset, int limit) {
+        EntityManager em = factory.createEntityManager();
+        try {
+            TypedQuery<HistorySummary> query;
+            if (boundary == null) {
+                query = em.createQuery(HistorySummary.SELECT + " ORDER BY h.timestamp DESC, h.id DESC",
+                        HistorySummary.class);
             } else {
-                row--;
+                query = em.createQuery(HistorySummary.SELECT
+                        + " WHERE h.timestamp < :timestamp OR (h.timestamp = :timestamp AND h.id <= :id)"
+                        + " ORDER BY h.timestamp DESC, h.id DESC", HistorySummary.class)
+                        .setParameter("timestamp", boundary.getTimestamp())
+                        .setParameter("id", boundary.getId());
             }
-
-            col++;
+            return query.setFirstResult(offset).setMaxResults(limit).getResultList();
+        } finally {
+            em.close();
         }
-
-        return matrix.stream()
-                .flatMap(ArrayList::stream)
-                .filter(c -> c != '\0')
-                .map(Object::toString)
-                .collect(Collectors.joining());
     }
 
     /**
-     * Decrypts the input text encrypted using Rail Fence Cipher with the
-     * specified number of rails.
+     * Retrieves one operation history record with its full texts, for the
+     * detail view of a listed record. The lazily fetched texts are loaded
+     * before the entity manager is closed.
      *
-     * @param encryptedText Encrypted text to be decrypted
-     * @param rails Number of rails used for encryption
-     * @return Decrypted text
-     * @throws model.InvalidRailNumberException If the number of rails is
-     * invalid.
+     * @param id The ID of the record.
+     * @return The record, or null if there is no record with this ID or the
+     * database is unavailable.
      */
-    public String decrypt(String encryptedText, int rails) throws InvalidRailNumberException {
-
-        if (rails <= 1) {
-            throw new InvalidRailNumberException("Number of rails must be at least 2.");
+    public OperationHistory getOperationHistory(long id) {
+        HistoryEvent event = new HistoryEvent();
+        event.begin();
+        long started = System.nanoTime();
+        EntityManager em = shards.getFactory(shards.shardOf(id)).createEntityManager();
+        try {
+            OperationHistory history = em.find(OperationHistory.class, id);
+            if (history != null) {
+                history.getOriginalText();
+                history.getProcessedText();
+            }
+            event.record("detail", "database", history == null ? 0 : 1, System.nanoTime() - started, true);
+            return history;
+        } catch (PersistenceException e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving operation history record", e);
+            event.record("detail", "database", 0, System.nanoTime() - started, false);
+            return null;
+        } finally {
+            em.close();
         }
+    }
 
-        ArrayList<ArrayList<Character>> matrix = new ArrayList<>();
-        for (int i = 0; i < rails; i++) {
-            matrix.add(new ArrayList<>(Collections.nCopies(encryptedText.length(), '\0')));
+    /**
+     * Loads the most recent history records from all shards into the
+     * in-memory read model. Until this has run, history pages are read from
+     * the database.
+     */
+    public void warmHistoryReadModel() {
+        if (shards == null) {
+            return;
         }
+        int capacity = readModel.getCapacity();
+        try {
+            List<HistorySummary> newest = HistoryShards.merge(shards.scatter(em -> em.createQuery(
+                    HistorySummary.SELECT + " ORDER BY h.timestamp DESC, h.id DESC", HistorySummary.class)
+                    .setMaxResults(capacity + 1)
+                    .getResultList()), HISTORY_ORDER.reversed());
+            boolean wholeTable = newest.size() <= capacity;
+            List<HistorySummary> recent = new ArrayList<>(newest.subList(0, Math.min(capacity, newest.size())));
+            Collections.reverse(recent);
+            readModel.warm(recent, wholeTable);
+            LOGGER.log(Level.INFO, "History read model warmed with {0} records", recent.size());
+        } catch (PersistenceException e) {
+            LOGGER.log(Level.SEVERE, "Error warming history read model", e);
+        }
+    }
 
-        int row = 0;
-        boolean down = true;
-
-        for (int i = 0; i < encryptedText.length(); i++) {
-            matrix.get(row).set(i, '*');
+    /**
+     * Returns the in-memory version of the history table, loading it from the
+     * database on first use. The version changes whenever a record is
+     * created, so it can be used to tell whether the history changed without
+     * querying the table.
+     *
+     * @return The history version, initialized unless the database is
+     * unavailable.
+     */
+    public HistoryVersion getHistoryVersion() {
+        if (!version.isInitialized() && shards != null) {
+            try {
+                long maxId = 0;
+                long count = 0;
+                for (Object[] row : shards.scatter(em -> em.createQuery(
+                        "SELECT MAX(h.id), COUNT(h) FROM OperationHistory h", Object[].class).getSingleResult())) {
+                    maxId = Math.max(maxId, row[0] == null ? 0 : ((Number) row[0]).longValue());
+                    count += row[1] == null ? 0 : ((Number) row[1]).longValue();
+                }
+                version.initialize(maxId, count);
+            } catch (PersistenceException e) {
+                LOGGER.log(Level.SEVERE, "Error retrieving operation history version", e);
+            }
+        }
+        return version;
+    }
 
-            if (row == 0) {
-                down = true;
-            } else if (row == rails - 1) {
-                down = false;
+    /**
+     * Builds the trigram index of the history texts with a streaming scan of
+     * the history table, reading the records in batches ordered by ID. The
+     * shards are scanned one after another in the order of their ID ranges,
+     * so the index receives the IDs in ascending order and only appends to
+     * its posting lists. Records committed while the scan runs are added to
+     * the index by {@link #createOperationHistory}. Searches use the database
+     * until the scan has finished.
+     */
+    public void buildHistoryIndex() {
+        if (shards == null) {
+            return;
+        }
+        try {
+            for (int shard = 0; shard < shards.size(); shard++) {
+                EntityManager em = shards.getFactory(shard).createEntityManager();
+                try {
+                    long lastId = 0;
+                    List<Object[]> rows;
+                    do {
+                        rows = em.createQuery("SELECT h.id, h.originalText, h.processedText FROM OperationHistory h "
+                                + "WHERE h.id > :lastId ORDER BY h.id", Object[].class)
+                                .setParameter("lastId", lastId)
+                                .setMaxResults(HISTORY_BATCH_SIZE)
+                                .getResultList();
+                        for (Object[] row : rows) {
+                            lastId = ((Number) row[0]).longValue();
+                            index.add(lastId, (String) row[1], (String) row[2]);
+                        }
+                        em.clear();
+                    } while (rows.size() == HISTORY_BATCH_SIZE);
+                } finally {
+                    em.close();
+                }
             }
-            row += down ? 1 : -1;
+            index.markReady();
+            LOGGER.log(Level.INFO, "History index built, about {0} bytes", index.getEstimatedBytes());
+            if (index.getCutoff() != Long.MAX_VALUE) {
+                LOGGER.log(Level.WARNING, "History index is full, records from ID {0} on are searched in the database",
+                        index.getCutoff());
+            }
+        } catch (PersistenceException e) {
+            LOGGER.log(Level.SEVERE, "Error building history index", e);
         }
+    }
 
-        int index = 0;
-        for (ArrayList<Character> rail : matrix) {
-            for (int j = 0; j < rail.size(); j++) {
-                if (rail.get(j) == '*' && index < encryptedText.length()) {
-                    rail.set(j, encryptedText.charAt(index++));
+    /**
+     * Finds the operations whose original or processed text contains the
+     * query within its first {@link HistoryTextIndex#MAX_INDEXED_CHARS}
+     * characters, ignoring case. The trigram index narrows the search down to a few
+     * candidate records which are then loaded by ID; the history table is only
+     * scanned while the index is not available, and for the records from the
+     * cutoff of a full index on.
+     *
+     * @param query The text to search for.
+     * @return The matching operations, ordered by ID.
+     */
+    public List<HistorySummary> searchOperationHistory(String query) {
+        HistoryEvent event = new HistoryEvent();
+        event.begin();
+        String needle = HistoryTextIndex.fold(query);
+        int[] candidates = index.candidates(query);
+        long cutoff = candidates == null ? 0 : index.getCutoff();
+        String source = candidates == null ? "database" : cutoff == Long.MAX_VALUE ? "index" : "index+database";
+        long started = System.nanoTime();
+        try {
+            if (candidates == null) {
+                List<HistorySummary> found = scanOperationHistory(needle, 0);
+                event.record("search", source, found.size(), System.nanoTime() - started, true);
+                return found;
+            }
+            List<HistorySummary> found = new ArrayList<>();
+            int from = 0;
+            int end = candidates.length;
+            while (end > 0 && candidates[end - 1] >= cutoff) {
+                end--;
+            }
+            while (from < end) {
+                int shard = shards.shardOf(candidates[from]);
+                List<Long> ids = new ArrayList<>();
+                while (from < end && ids.size() < HISTORY_BATCH_SIZE && shards.shardOf(candidates[from]) == shard) {
+                    ids.add((long) candidates[from++]);
                 }
+                EntityManager em = shards.getFactory(shard).createEntityManager();
+                try {
+                    for (OperationHistory history : em.createQuery("SELECT h FROM OperationHistory h WHERE h.id IN :ids ORDER BY h.id",
+                            OperationHistory.class).setParameter("ids", ids).getResultList()) {
+                        if (contains(history.getOriginalText(), needle) || contains(history.getProcessedText(), needle)) {
+                            found.add(HistorySummary.of(history));
+                        }
+                    }
+                } finally {
+                    em.close();
+                }
+            }
+            if (cutoff != Long.MAX_VALUE) {
+                found.addAll(scanOperationHistory(needle, cutoff));
+                found.sort(Comparator.comparing(HistorySummary::getId));
             }
+            event.record("search", source, found.size(), System.nanoTime() - started, true);
+            return found;
+        } catch (PersistenceException e) {
+            LOGGER.log(Level.SEVERE, "Error searching operation history", e);
+            event.record("search", source, 0, System.nanoTime() - started, false);
+            return new ArrayList<>();
         }
+    }
 
-        StringBuilder decryptedText = new StringBuilder();
-        row = 0;
-        down = true;
+    /**
+     * Scans the history tables for the records from an ID on whose original or
+     * processed text contains an already folded needle within its searched
+     * prefix.
+     *
+     * @param needle The folded text to search for.
+     * @param fromId The smallest ID to search.
+     * @return The matching operations, ordered by ID.
+     */
+    private List<HistorySummary> scanOperationHistory(String needle, long fromId) {
+        String pattern = "%" + needle.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+        return HistoryShards.merge(shards.scatter(em -> em.createQuery(
+                HistorySummary.SELECT
+                + " WHERE h.id >= :fromId AND (LOWER(" + searchedPrefix("h.originalText")
+                + ") LIKE :pattern ESCAPE '!' OR LOWER(" + searchedPrefix("h.processedText")
+                + ") LIKE :pattern ESCAPE '!') ORDER BY h.id", HistorySummary.class)
+                .setParameter("fromId", fromId)
+                .setParameter("pattern", pattern)
+                .getResultList()), Comparator.comparing(HistorySummary::getId));
+    }
 
-        for (int i = 0; i < encryptedText.length(); i++) {
-            decryptedText.append(matrix.get(row).get(i));
+    /**
+     * Builds the JPQL expression of the searched prefix of a text column.
+     *
+     * @param column The path of the column.
+     * @return The expression.
+     */
+    private static String searchedPrefix(String column) {
+        return "CASE WHEN LENGTH(" + column + ") > " + HistoryTextIndex.MAX_INDEXED_CHARS
+                + " THEN SUBSTRING(" + column + ", 1, " + HistoryTextIndex.MAX_INDEXED_CHARS + ") ELSE "
+                + column + " END";
+    }
 
-            if (row == 0) {
-                down = true;
-            } else if (row == rails - 1) {
-                down = false;
-            }
-            row += down ? 1 : -1;
+    /**
+     * Checks whether the searched prefix of a text contains an already folded
+     * needle, ignoring case.
+     *
+     * @param text The text to search in, may be null.
+     * @param needle The folded text to search for.
+     * @return true if the prefix of the text contains the needle.
+     */
+    private static boolean contains(String text, String needle) {
+        return text != null && HistoryTextIndex.fold(text.length() > HistoryTextIndex.MAX_INDEXED_CHARS
+                ? text.substring(0, HistoryTextIndex.MAX_INDEXED_CHARS) : text).contains(needle);
+    }
 
+    /**
+     * Updates the history version and notifies the listeners about a newly
+     * committed record.
+     *
+     * @param history The committed record.
+     */
+    private void historyCommitted(OperationHistory history) {
+        if (history.getId() != null) {
+            version.recordInsert(history.getId());
+            index.add(history.getId(), history.getOriginalText(), history.getProcessedText());
+            readModel.append(history);
+        } else {
+            version.reset();
         }
-        return decryptedText.toString();
+        for (HistoryListener listener : HISTORY_LISTENERS) {
+            try {
+                listener.historyCreated(history);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "History listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Encrypts the input text using Rail Fence Cipher with the specified number
+     * of rails. Latin-1 text is processed in its compact byte form, text with
+     * supplementary characters is permuted by whole code points. The engine is
+     * chosen by the {@link AdaptiveCipherDispatcher} of this model.
+     *
+     * @param text Input text to be encrypted
+     * @param rails Number of rails for the Rail Fence Cipher
+     * @return Encrypted text
+     * @throws model.InvalidRailNumberException If the number of rails is
+     * invalid.
+     */
+    public String encrypt(String text, int rails) throws InvalidRailNumberException {
+        return engines.apply(CipherDirection.ENCRYPT, text, rails);
+    }
+
+    /**
+     * Decrypts the input text encrypted using Rail Fence Cipher with the
+     * specified number of rails.
+     *
+     * @param encryptedText Encrypted text to be decrypted
+     * @param rails Number of rails used for encryption
+     * @return Decrypted text
+     * @throws model.InvalidRailNumberException If the number of rails is
+     * invalid.
+     */
+    public String decrypt(String encryptedText, int rails) throws InvalidRailNumberException {
+        return engines.apply(CipherDirection.DECRYPT, encryptedText, rails);
+    }
+
+    /**
+     * Applies a pipeline of Rail Fence operations to the input text. All
+     * stages are composed into one permutation, so the text is processed in a
+     * single pass regardless of the number of stages.
+     *
+     * @param text Input text to be processed
+     * @param pipeline The pipeline of operations to apply
+     * @return Processed text
+     */
+    public String applyPipeline(String text, CipherPipeline pipeline) {
+        return pipeline.apply(text);
     }
 }
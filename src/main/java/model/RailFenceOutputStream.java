@@ -0,0 +1,267 @@
+package model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Future;
+
+/**
+ * Output stream encrypting the bytes written to it with the Rail Fence
+ * Cipher.
+ *
+ * By default the stream works in whole-message mode: it collects everything
+ * written and writes the classic ciphertext of the whole message when it is
+ * closed, as {@link RailFenceEngine#encrypt(byte[], int)} would. A stream
+ * created by {@link #blocks(OutputStream, int, int, boolean)} works in block
+ * mode instead: it writes the header described in {@link BlockHeader} and then
+ * encrypts and writes every full block as soon as it is written, so it can
+ * carry an unbounded stream in constant memory. Such a stream is read back by
+ * {@link RailFenceInputStream#blocks(java.io.InputStream, int, boolean)}.
+ * Flushing a block-mode stream writes the full blocks so far; a partial block
+ * is only written when the stream is closed.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class RailFenceOutputStream extends OutputStream {
+
+    /**
+     * The stream receiving the ciphertext.
+     */
+    private final OutputStream out;
+
+    /**
+     * The number of rails.
+     */
+    private final int rails;
+
+    /**
+     * The message collected in whole-message mode, null in block mode.
+     */
+    private final ByteArrayOutputStream message;
+
+    /**
+     * The pipeline encrypting the blocks, null in whole-message mode.
+     */
+    private final BlockPipeline pipeline;
+
+    /**
+     * The block being filled, null in whole-message mode.
+     */
+    private byte[] buffer;
+
+    /**
+     * The buffer of the block in flight, reused once it is written.
+     */
+    private byte[] spare;
+
+    /**
+     * The number of bytes in the block being filled.
+     */
+    private int count;
+
+    /**
+     * The block being encrypted and written, or null.
+     */
+    private Future<Void> inFlight;
+
+    /**
+     * Whether the stream has been closed.
+     */
+    private boolean closed;
+
+    /**
+     * Creates a stream in whole-message mode.
+     *
+     * @param out The stream receiving the ciphertext.
+     * @param rails The number of rails.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    public RailFenceOutputStream(OutputStream out, int rails) throws InvalidRailNumberException {
+        RailFenceEngine.checkRails(rails);
+        this.out = out;
+        this.rails = rails;
+        this.message = new ByteArrayOutputStream();
+        this.pipeline = null;
+    }
+
+    /**
+     * Creates a stream in block mode and writes its header.
+     *
+     * @param out The stream receiving the ciphertext.
+     * @param rails The number of rails.
+     * @param blockSize The number of bytes of a block.
+     * @param background true to encrypt and write blocks on a background
+     * thread while the next block is filled.
+     * @throws IOException If the header cannot be written.
+     */
+    private RailFenceOutputStream(OutputStream out, int rails, int blockSize, boolean background) throws IOException {
+        this.out = out;
+        this.rails = rails;
+        this.message = null;
+        this.buffer = new byte[blockSize];
+        out.write(BlockHeader.format(blockSize).getBytes(StandardCharsets.US_ASCII));
+        this.pipeline = new BlockPipeline(background);
+    }
+
+    /**
+     * Creates a stream in block mode and writes its header.
+     *
+     * @param out The stream receiving the ciphertext.
+     * @param rails The number of rails.
+     * @param blockSize The number of bytes of a block.
+     * @param background true to encrypt and write blocks on a background
+     * thread while the next block is filled.
+     * @return The stream.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     * @throws IllegalArgumentException If the block size is invalid.
+     * @throws IOException If the header cannot be written.
+     */
+    public static RailFenceOutputStream blocks(OutputStream out, int rails, int blockSize, boolean background)
+            throws InvalidRailNumberException, IOException {
+        RailFenceEngine.checkRails(rails);
+        return new RailFenceOutputStream(out, rails, BlockHeader.checkBlockSize(blockSize), background);
+    }
+
+    /**
+     * Creates a stream in block mode with the default block size of 64 KB,
+     * encrypting on the calling thread.
+     *
+     * @param out The stream receiving the ciphertext.
+     * @param rails The number of rails.
+     * @return The stream.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     * @throws IOException If the header cannot be written.
+     */
+    public static RailFenceOutputStream blocks(OutputStream out, int rails)
+            throws InvalidRailNumberException, IOException {
+        return blocks(out, rails, BlockHeader.DEFAULT_BLOCK_SIZE, false);
+    }
+
+    /**
+     * Writes one byte.
+     *
+     * @param b The byte.
+     * @throws IOException If the stream is closed or a block cannot be
+     * written.
+     */
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (message != null) {
+            message.write(b);
+            return;
+        }
+        buffer[count++] = (byte) b;
+        if (count == buffer.length) {
+            emit();
+        }
+    }
+
+    /**
+     * Writes bytes from an array.
+     *
+     * @param b The array.
+     * @param off The offset of the first byte.
+     * @param len The number of bytes.
+     * @throws IOException If the stream is closed or a block cannot be
+     * written.
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (message != null) {
+            message.write(b, off, len);
+            return;
+        }
+        while (len > 0) {
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == buffer.length) {
+                emit();
+            }
+        }
+    }
+
+    /**
+     * Waits for the full blocks written so far and flushes the underlying
+     * stream. Does nothing in whole-message mode.
+     *
+     * @throws IOException If the stream is closed or a block cannot be
+     * written.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (message == null) {
+            BlockPipeline.await(inFlight);
+            inFlight = null;
+            out.flush();
+        }
+    }
+
+    /**
+     * Writes the rest of the ciphertext and closes the underlying stream.
+     *
+     * @throws IOException If the ciphertext cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (message != null) {
+                out.write(RailFenceEngine.encrypt(message.toByteArray(), rails));
+            } else {
+                if (count > 0) {
+                    emit();
+                }
+                BlockPipeline.await(inFlight);
+            }
+        } finally {
+            if (pipeline != null) {
+                pipeline.close();
+            }
+            out.close();
+        }
+    }
+
+    /**
+     * Hands the block being filled to the pipeline and starts a new one in
+     * the buffer of the previous block.
+     *
+     * @throws IOException If the previous block could not be written.
+     */
+    private void emit() throws IOException {
+        BlockPipeline.await(inFlight);
+        byte[] block = buffer;
+        int length = count;
+        inFlight = pipeline.submit(() -> {
+            out.write(RailFenceEngine.encrypt(length == block.length ? block : Arrays.copyOf(block, length), rails));
+            return null;
+        });
+        if (pipeline.isBackground()) {
+            buffer = spare != null ? spare : new byte[block.length];
+            spare = block;
+        }
+        count = 0;
+    }
+
+    /**
+     * Checks that the stream is open.
+     *
+     * @throws IOException If the stream is closed.
+     */
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed.");
+        }
+    }
+}
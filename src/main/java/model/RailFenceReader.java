@@ -0,0 +1,290 @@
+package model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.Future;
+
+/**
+ * Reader decrypting the characters read from another reader with the Rail
+ * Fence Cipher.
+ *
+ * By default the reader works in whole-message mode: on the first read it
+ * reads the whole underlying reader and decrypts it as one message, as
+ * {@link RailFenceEngine#decrypt(String, int)} would. A reader created by
+ * {@link #blocks(Reader, int, boolean)} works in block mode instead: it reads
+ * the header written by {@link RailFenceWriter#blocks(java.io.Writer, int, int, boolean)}
+ * and then decrypts one block of code points at a time, so it can carry an
+ * unbounded text in constant memory. With a background thread the next block
+ * is read and decrypted while the current one is consumed.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class RailFenceReader extends Reader {
+
+    /**
+     * The number of characters read from the underlying reader at a time.
+     */
+    private static final int READ_SIZE = 8192;
+
+    /**
+     * The reader providing the ciphertext.
+     */
+    private final Reader in;
+
+    /**
+     * The number of rails.
+     */
+    private final int rails;
+
+    /**
+     * The number of code points of a block, 0 in whole-message mode.
+     */
+    private final int blockSize;
+
+    /**
+     * The pipeline decrypting the blocks, null in whole-message mode.
+     */
+    private final BlockPipeline pipeline;
+
+    /**
+     * Characters read from the underlying reader but not yet part of a
+     * block, only used by the block tasks.
+     */
+    private final char[] pending;
+
+    /**
+     * The position of the next pending character.
+     */
+    private int pendingPosition;
+
+    /**
+     * The number of pending characters.
+     */
+    private int pendingLimit;
+
+    /**
+     * The decrypted text being consumed, null before the first read.
+     */
+    private String current;
+
+    /**
+     * The position of the next character in the current text.
+     */
+    private int position;
+
+    /**
+     * The next block being read and decrypted, or null.
+     */
+    private Future<String> next;
+
+    /**
+     * Whether the last block has been read.
+     */
+    private boolean finished;
+
+    /**
+     * Whether the reader has been closed.
+     */
+    private boolean closed;
+
+    /**
+     * Creates a reader in whole-message mode.
+     *
+     * @param in The reader providing the ciphertext.
+     * @param rails The number of rails.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    public RailFenceReader(Reader in, int rails) throws InvalidRailNumberException {
+        RailFenceEngine.checkRails(rails);
+        this.in = in;
+        this.rails = rails;
+        this.blockSize = 0;
+        this.pipeline = null;
+        this.pending = null;
+    }
+
+    /**
+     * Creates a reader in block mode.
+     *
+     * @param in The reader providing the ciphertext.
+     * @param rails The number of rails.
+     * @param blockSize The number of code points of a block.
+     * @param background true to read and decrypt the next block on a
+     * background thread.
+     */
+    private RailFenceReader(Reader in, int rails, int blockSize, boolean background) {
+        this.in = in;
+        this.rails = rails;
+        this.blockSize = blockSize;
+        this.pipeline = new BlockPipeline(background);
+        this.pending = new char[READ_SIZE];
+    }
+
+    /**
+     * Creates a reader in block mode and reads its header.
+     *
+     * @param in The reader providing the ciphertext.
+     * @param rails The number of rails.
+     * @param background true to read and decrypt the next block on a
+     * background thread while the current one is consumed.
+     * @return The reader.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     * @throws IOException If the header cannot be read or is invalid.
+     */
+    public static RailFenceReader blocks(Reader in, int rails, boolean background)
+            throws InvalidRailNumberException, IOException {
+        RailFenceEngine.checkRails(rails);
+        return new RailFenceReader(in, rails, BlockHeader.read(in::read), background);
+    }
+
+    /**
+     * Reads characters into an array.
+     *
+     * @param cbuf The array.
+     * @param off The offset of the first character.
+     * @param len The largest number of characters to read.
+     * @return The number of characters read, or -1 at the end of the text.
+     * @throws IOException If the reader is closed or cannot be read.
+     */
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, current.length() - position);
+        current.getChars(position, position + n, cbuf, off);
+        position += n;
+        return n;
+    }
+
+    /**
+     * Tells whether decrypted characters are available without reading.
+     *
+     * @return true if characters are left in the current block.
+     * @throws IOException If the reader is closed.
+     */
+    @Override
+    public boolean ready() throws IOException {
+        ensureOpen();
+        return current != null && position < current.length();
+    }
+
+    /**
+     * Closes the reader and the underlying reader.
+     *
+     * @throws IOException If the underlying reader cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (next != null) {
+            next.cancel(false);
+        }
+        if (pipeline != null) {
+            pipeline.close();
+        }
+        in.close();
+    }
+
+    /**
+     * Makes sure there are decrypted characters to consume.
+     *
+     * @return false at the end of the text.
+     * @throws IOException If the reader is closed or cannot be read.
+     */
+    private boolean fill() throws IOException {
+        ensureOpen();
+        while (current == null || position == current.length()) {
+            if (finished) {
+                return false;
+            }
+            if (pipeline == null) {
+                StringBuilder message = new StringBuilder();
+                char[] chunk = new char[READ_SIZE];
+                int n;
+                while ((n = in.read(chunk)) != -1) {
+                    message.append(chunk, 0, n);
+                }
+                current = decrypt(message.toString());
+                finished = true;
+            } else {
+                String block = next != null ? BlockPipeline.await(next) : readBlock();
+                next = null;
+                if (block == null) {
+                    finished = true;
+                    return false;
+                }
+                if (pipeline.isBackground()) {
+                    next = pipeline.submit(this::readBlock);
+                }
+                current = block;
+            }
+            position = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Reads and decrypts the next block of code points.
+     *
+     * @return The decrypted block, or null at the end of the text.
+     * @throws IOException If the block cannot be read.
+     */
+    private String readBlock() throws IOException {
+        char[] block = new char[2 * blockSize];
+        int length = 0;
+        int codePoints = 0;
+        while (true) {
+            if (pendingPosition == pendingLimit) {
+                int n = in.read(pending, 0, pending.length);
+                if (n <= 0) {
+                    break;
+                }
+                pendingPosition = 0;
+                pendingLimit = n;
+            }
+            char c = pending[pendingPosition];
+            if (!Character.isLowSurrogate(c) || length == 0 || !Character.isHighSurrogate(block[length - 1])) {
+                if (codePoints == blockSize) {
+                    break;
+                }
+                codePoints++;
+            }
+            block[length++] = c;
+            pendingPosition++;
+        }
+        return length == 0 ? null : decrypt(new String(block, 0, length));
+    }
+
+    /**
+     * Decrypts a text with the checked number of rails.
+     *
+     * @param text The text.
+     * @return The plaintext.
+     */
+    private String decrypt(String text) {
+        try {
+            return RailFenceEngine.decrypt(text, rails);
+        } catch (InvalidRailNumberException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Checks that the reader is open.
+     *
+     * @throws IOException If the reader is closed.
+     */
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Reader closed.");
+        }
+    }
+}
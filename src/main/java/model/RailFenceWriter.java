@@ -0,0 +1,243 @@
+package model;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.Future;
+
+/**
+ * Writer encrypting the characters written to it with the Rail Fence Cipher.
+ *
+ * By default the writer works in whole-message mode: it collects everything
+ * written and writes the ciphertext of the whole message when it is closed,
+ * as {@link RailFenceEngine#encrypt(String, int)} would. A writer created by
+ * {@link #blocks(Writer, int, int, boolean)} works in block mode instead: it
+ * writes the header described in {@link BlockHeader} and then encrypts and
+ * writes every block of code points as soon as it is complete, so surrogate
+ * pairs are never split and an unbounded text is carried in constant memory.
+ * Such a text is read back by {@link RailFenceReader#blocks(java.io.Reader, int, boolean)}.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class RailFenceWriter extends Writer {
+
+    /**
+     * The writer receiving the ciphertext.
+     */
+    private final Writer out;
+
+    /**
+     * The number of rails.
+     */
+    private final int rails;
+
+    /**
+     * The number of code points of a block, 0 in whole-message mode.
+     */
+    private final int blockSize;
+
+    /**
+     * The message collected in whole-message mode, null in block mode.
+     */
+    private final StringBuilder message;
+
+    /**
+     * The pipeline encrypting the blocks, null in whole-message mode.
+     */
+    private final BlockPipeline pipeline;
+
+    /**
+     * The UTF-16 units of the block being filled, room for a surrogate pair
+     * per code point.
+     */
+    private char[] buffer;
+
+    /**
+     * The number of units in the block being filled.
+     */
+    private int count;
+
+    /**
+     * The number of code points in the block being filled.
+     */
+    private int codePoints;
+
+    /**
+     * The block being encrypted and written, or null.
+     */
+    private Future<Void> inFlight;
+
+    /**
+     * Whether the writer has been closed.
+     */
+    private boolean closed;
+
+    /**
+     * Creates a writer in whole-message mode.
+     *
+     * @param out The writer receiving the ciphertext.
+     * @param rails The number of rails.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    public RailFenceWriter(Writer out, int rails) throws InvalidRailNumberException {
+        RailFenceEngine.checkRails(rails);
+        this.out = out;
+        this.rails = rails;
+        this.blockSize = 0;
+        this.message = new StringBuilder();
+        this.pipeline = null;
+    }
+
+    /**
+     * Creates a writer in block mode and writes its header.
+     *
+     * @param out The writer receiving the ciphertext.
+     * @param rails The number of rails.
+     * @param blockSize The number of code points of a block.
+     * @param background true to encrypt and write blocks on a background
+     * thread.
+     * @throws IOException If the header cannot be written.
+     */
+    private RailFenceWriter(Writer out, int rails, int blockSize, boolean background) throws IOException {
+        this.out = out;
+        this.rails = rails;
+        this.blockSize = blockSize;
+        this.message = null;
+        this.buffer = new char[2 * blockSize];
+        out.write(BlockHeader.format(blockSize));
+        this.pipeline = new BlockPipeline(background);
+    }
+
+    /**
+     * Creates a writer in block mode and writes its header.
+     *
+     * @param out The writer receiving the ciphertext.
+     * @param rails The number of rails.
+     * @param blockSize The number of code points of a block.
+     * @param background true to encrypt and write blocks on a background
+     * thread while the next block is filled.
+     * @return The writer.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     * @throws IllegalArgumentException If the block size is invalid.
+     * @throws IOException If the header cannot be written.
+     */
+    public static RailFenceWriter blocks(Writer out, int rails, int blockSize, boolean background)
+            throws InvalidRailNumberException, IOException {
+        RailFenceEngine.checkRails(rails);
+        return new RailFenceWriter(out, rails, BlockHeader.checkBlockSize(blockSize), background);
+    }
+
+    /**
+     * Writes characters from an array.
+     *
+     * @param cbuf The array.
+     * @param off The offset of the first character.
+     * @param len The number of characters.
+     * @throws IOException If the writer is closed or a block cannot be
+     * written.
+     */
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+        if (message != null) {
+            message.append(cbuf, off, len);
+            return;
+        }
+        for (int i = off; i < off + len; i++) {
+            char c = cbuf[i];
+            if (!Character.isLowSurrogate(c) || count == 0 || !Character.isHighSurrogate(buffer[count - 1])) {
+                if (codePoints == blockSize) {
+                    emit();
+                }
+                codePoints++;
+            }
+            buffer[count++] = c;
+        }
+    }
+
+    /**
+     * Waits for the complete blocks written so far and flushes the
+     * underlying writer. Does nothing in whole-message mode.
+     *
+     * @throws IOException If the writer is closed or a block cannot be
+     * written.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (message == null) {
+            BlockPipeline.await(inFlight);
+            inFlight = null;
+            out.flush();
+        }
+    }
+
+    /**
+     * Writes the rest of the ciphertext and closes the underlying writer.
+     *
+     * @throws IOException If the ciphertext cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (message != null) {
+                out.write(encrypt(message.toString()));
+            } else {
+                if (count > 0) {
+                    emit();
+                }
+                BlockPipeline.await(inFlight);
+            }
+        } finally {
+            if (pipeline != null) {
+                pipeline.close();
+            }
+            out.close();
+        }
+    }
+
+    /**
+     * Hands the block being filled to the pipeline and starts a new one.
+     *
+     * @throws IOException If the previous block could not be written.
+     */
+    private void emit() throws IOException {
+        BlockPipeline.await(inFlight);
+        String block = new String(buffer, 0, count);
+        inFlight = pipeline.submit(() -> {
+            out.write(encrypt(block));
+            return null;
+        });
+        count = 0;
+        codePoints = 0;
+    }
+
+    /**
+     * Encrypts a text with the checked number of rails.
+     *
+     * @param text The text.
+     * @return The ciphertext.
+     */
+    private String encrypt(String text) {
+        try {
+            return RailFenceEngine.encrypt(text, rails);
+        } catch (InvalidRailNumberException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Checks that the writer is open.
+     *
+     * @throws IOException If the writer is closed.
+     */
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Writer closed.");
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package model;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Rail Fence Cipher engine for short Latin-1 texts. The text is permuted in
+ * byte buffers kept per thread, so a call only allocates its result.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+final class ScratchRailFenceEngine {
+
+    /**
+     * Largest text, in characters, permuted in the scratch buffers.
+     */
+    static final int SCRATCH_LIMIT = 64 * 1024;
+
+    /**
+     * Initial size of the scratch buffers of a thread.
+     */
+    private static final int INITIAL_SCRATCH = 1024;
+
+    /**
+     * The input and output scratch buffers of every thread. They only hold
+     * byte arrays, so a thread outliving the application keeps no class of
+     * the application loaded.
+     */
+    private static final ThreadLocal<byte[][]> SCRATCH = ThreadLocal.withInitial(
+            () -> new byte[][] {new byte[INITIAL_SCRATCH], new byte[INITIAL_SCRATCH]});
+
+    /**
+     * Private constructor, this class only exposes static helpers.
+     */
+    private ScratchRailFenceEngine() {
+    }
+
+    /**
+     * Tells whether a text can be permuted in the scratch buffers.
+     *
+     * @param text The text.
+     * @return true for Latin-1 texts of at most {@link #SCRATCH_LIMIT}
+     * characters.
+     */
+    static boolean supports(String text) {
+        return text.length() <= SCRATCH_LIMIT && RailFenceEngine.isLatin1(text);
+    }
+
+    /**
+     * Encrypts or decrypts a text in the scratch buffers of the calling
+     * thread.
+     *
+     * @param direction The direction of the operation.
+     * @param text The text, supported by {@link #supports(String)}.
+     * @param rails The number of rails.
+     * @return The result.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    static String apply(CipherDirection direction, String text, int rails) throws InvalidRailNumberException {
+        RailFenceEngine.checkRails(rails);
+        CipherEvent event = new CipherEvent();
+        event.begin();
+        int n = text.length();
+        byte[][] buffers = SCRATCH.get();
+        if (buffers[0].length < n) {
+            int size = Math.min(SCRATCH_LIMIT, Math.max(n, 2 * buffers[0].length));
+            buffers[0] = new byte[size];
+            buffers[1] = new byte[size];
+        }
+        byte[] input = buffers[0];
+        byte[] output = buffers[1];
+        for (int i = 0; i < n; i++) {
+            input[i] = (byte) text.charAt(i);
+        }
+        if (direction == CipherDirection.ENCRYPT) {
+            RailFenceEngine.encrypt(input, output, n, rails);
+        } else {
+            RailFenceEngine.decrypt(input, output, n, rails);
+        }
+        String result = new String(output, 0, n, StandardCharsets.ISO_8859_1);
+        event.record(direction == CipherDirection.ENCRYPT ? "Encrypt" : "Decrypt", n, rails,
+                CipherEvent.LATIN1_ENGINE);
+        return result;
+    }
+}
@@ -0,0 +1,128 @@
+package servlets;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Response wrapper that captures the body written by a forwarded view instead
+ * of sending it to the client, so that the rendered page can be cached,
+ * compressed or otherwise post-processed. Headers are passed through to the
+ * wrapped response, except for the content length.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class CapturingResponseWrapper extends HttpServletResponseWrapper {
+
+    /**
+     * Buffer for character output.
+     */
+    private final CharArrayWriter chars = new CharArrayWriter(4096);
+
+    /**
+     * Buffer for binary output.
+     */
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    /**
+     * Writer handed to the view, created on first use.
+     */
+    private PrintWriter writer;
+
+    /**
+     * Output stream handed to the view, created on first use.
+     */
+    private ServletOutputStream outputStream;
+
+    /**
+     * Creates a wrapper around the given response.
+     *
+     * @param response The response to wrap.
+     */
+    public CapturingResponseWrapper(HttpServletResponse response) {
+        super(response);
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        if (writer == null) {
+            writer = new PrintWriter(chars);
+        }
+        return writer;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (outputStream == null) {
+            outputStream = new ServletOutputStream() {
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                    throw new UnsupportedOperationException("Asynchronous output is not supported.");
+                }
+
+                @Override
+                public void write(int b) {
+                    bytes.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    bytes.write(b, off, len);
+                }
+            };
+        }
+        return outputStream;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        // The length of the captured body is decided by the caller.
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        // The length of the captured body is decided by the caller.
+    }
+
+    @Override
+    public void flushBuffer() {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return false;
+    }
+
+    @Override
+    public void resetBuffer() {
+        chars.reset();
+        bytes.reset();
+    }
+
+    /**
+     * Returns the captured body encoded as UTF-8.
+     *
+     * @return The bytes of the captured body.
+     */
+    public byte[] getCapturedBody() {
+        if (writer != null) {
+            writer.flush();
+            return chars.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,282 @@
+package servlets;
+
+import model.CipherDirection;
+import model.CipherSession;
+import model.CipherSessionManager;
+import model.InvalidRailNumberException;
+import model.OperationHistory;
+import jakarta.json.Json;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Servlet for incremental cipher sessions, for clients producing their text
+ * piece by piece.
+ *
+ * A POST without an "id" opens a session for the "operation" ("encrypt" or
+ * "decrypt") and the number of "rails"; a decrypting session also needs the
+ * final "length" of the ciphertext in characters. The response is 201 Created
+ * with the session status as JSON and a Location header, or 503 if too many
+ * sessions are open. A POST with the "id" of a session appends its
+ * "inputText" as the next chunk; for a decrypting session the response holds
+ * the plaintext this chunk made available. A GET returns the status and the
+ * whole result so far, and a DELETE closes the session and returns its
+ * result. Session results are not recorded in the history.
+ *
+ * Sessions not accessed for "sessionIdleTimeout" seconds (300 by default) are
+ * evicted; at most "sessionMaxCount" sessions (1000 by default) of at most
+ * "sessionMaxLength" characters (the largest history text by default) are
+ * open at a time.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+@WebServlet(name = "CipherSessionServlet", urlPatterns = {"/CipherSessionServlet"})
+public class CipherSessionServlet extends HttpServlet {
+
+    /**
+     * Default idle timeout of a session, in seconds.
+     */
+    private static final long DEFAULT_IDLE_TIMEOUT = 300;
+
+    /**
+     * Default largest number of open sessions.
+     */
+    private static final long DEFAULT_MAX_COUNT = 1000;
+
+    /**
+     * Seconds a client is asked to wait before retrying when too many
+     * sessions are open.
+     */
+    private static final int RETRY_AFTER_SECONDS = 30;
+
+    /**
+     * The manager keeping the sessions.
+     */
+    private CipherSessionManager sessions;
+
+    /**
+     * Reads the configuration and starts the session manager.
+     *
+     * @throws ServletException if a parameter is invalid.
+     */
+    @Override
+    public void init() throws ServletException {
+        ServletContext context = getServletContext();
+        long idleSeconds = ContextParameters.positiveLong(context, "sessionIdleTimeout", DEFAULT_IDLE_TIMEOUT);
+        int maxCount = (int) Math.min(Integer.MAX_VALUE,
+                ContextParameters.positiveLong(context, "sessionMaxCount", DEFAULT_MAX_COUNT));
+        int maxLength = (int) Math.min(Integer.MAX_VALUE - 8,
+                ContextParameters.positiveLong(context, "sessionMaxLength", OperationHistory.MAX_TEXT_LENGTH));
+        sessions = new CipherSessionManager(idleSeconds * 1000, maxCount, maxLength);
+    }
+
+    /**
+     * Stops the session manager and drops all sessions.
+     */
+    @Override
+    public void destroy() {
+        sessions.close();
+    }
+
+    /**
+     * Handles the HTTP POST request. Opens a session, or appends a chunk to
+     * an open session.
+     *
+     * @param request HttpServletRequest object containing the client's request
+     * @param response HttpServletResponse object for sending the response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        request.setCharacterEncoding("UTF-8");
+        String id = request.getParameter("id");
+        if (id == null) {
+            open(request, response);
+            return;
+        }
+        CipherSession session = sessions.getSession(id);
+        if (session == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown or expired session.");
+            return;
+        }
+        String inputText = request.getParameter("inputText");
+        if (!InputValidation.isValidInput(inputText)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid input data.");
+            return;
+        }
+        String decoded;
+        try {
+            decoded = session.append(inputText);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+            return;
+        }
+        JsonObjectBuilder status = status(session);
+        if (session.getDirection() == CipherDirection.DECRYPT) {
+            status.add("text", decoded);
+        }
+        write(status, response);
+    }
+
+    /**
+     * Handles the HTTP GET request. Returns the status of a session and its
+     * result so far.
+     *
+     * @param request HttpServletRequest object containing the client's request
+     * @param response HttpServletResponse object for sending the response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        CipherSession session = sessions.getSession(request.getParameter("id"));
+        if (session == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown or expired session.");
+            return;
+        }
+        write(status(session).add("text", session.getText()), response);
+    }
+
+    /**
+     * Handles the HTTP DELETE request. Closes a session and returns its
+     * result.
+     *
+     * @param request HttpServletRequest object containing the client's request
+     * @param response HttpServletResponse object for sending the response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doDelete(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        CipherSession session = sessions.remove(request.getParameter("id"));
+        if (session == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown or expired session.");
+            return;
+        }
+        write(status(session).add("text", session.getText()), response);
+    }
+
+    /**
+     * Opens a session from the parameters of a request.
+     *
+     * @param request HttpServletRequest object containing the client's request.
+     * @param response HttpServletResponse object for sending the response.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void open(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        CipherDirection direction;
+        String operation = request.getParameter("operation");
+        if ("encrypt".equalsIgnoreCase(operation)) {
+            direction = CipherDirection.ENCRYPT;
+        } else if ("decrypt".equalsIgnoreCase(operation)) {
+            direction = CipherDirection.DECRYPT;
+        } else {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid operation.");
+            return;
+        }
+
+        int rails;
+        int length;
+        try {
+            rails = Integer.parseInt(request.getParameter("rails"));
+            length = direction == CipherDirection.DECRYPT ? Integer.parseInt(request.getParameter("length")) : -1;
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid number format for rails or length.");
+            return;
+        }
+
+        CipherSession session;
+        try {
+            session = sessions.open(direction, rails, length);
+        } catch (InvalidRailNumberException e) {
+            incrementErrorCount(request, response);
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        } catch (RejectedExecutionException e) {
+            response.setIntHeader("Retry-After", RETRY_AFTER_SECONDS);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_CREATED);
+        response.setHeader("Location", request.getContextPath() + "/CipherSessionServlet?id=" + session.getId());
+        write(status(session), response);
+    }
+
+    /**
+     * Builds the status of a session.
+     *
+     * @param session The session.
+     * @return The status as a JSON object builder.
+     */
+    private JsonObjectBuilder status(CipherSession session) {
+        JsonObjectBuilder status = Json.createObjectBuilder()
+                .add("id", session.getId())
+                .add("operation", session.getDirection().name().toLowerCase(Locale.ROOT))
+                .add("rails", session.getRails())
+                .add("received", session.getReceivedLength())
+                .add("opened", session.getOpened().toString());
+        if (session.getDirection() == CipherDirection.DECRYPT) {
+            status.add("length", session.getLength()).add("complete", session.isComplete());
+        }
+        return status;
+    }
+
+    /**
+     * Writes a JSON object.
+     *
+     * @param status The object.
+     * @param response HttpServletResponse object for sending the response.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void write(JsonObjectBuilder status, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json;charset=UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.getWriter().write(status.build().toString());
+    }
+
+    /**
+     * Increments the error count stored in a cookie.
+     *
+     * @param request HttpServletRequest object containing the client's request.
+     * @param response HttpServletResponse object for sending the response.
+     */
+    private void incrementErrorCount(HttpServletRequest request, HttpServletResponse response) {
+        Cookie errorCookie = getCookie(request, "errorCount");
+        int errorCount = errorCookie != null ? Integer.parseInt(errorCookie.getValue()) : 0;
+        errorCount++;
+        response.addCookie(new Cookie("errorCount", String.valueOf(errorCount)));
+    }
+
+    /**
+     * Retrieves a cookie by its name.
+     *
+     * @param request HttpServletRequest object containing the client's request.
+     * @param name The name of the cookie to retrieve.
+     * @return The Cookie object if found, null otherwise.
+     */
+    private Cookie getCookie(HttpServletRequest request, String name) {
+        if (request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (cookie.getName().equals(name)) {
+                    return cookie;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,46 @@
+package servlets;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+
+/**
+ * Reading of the numeric context parameters configuring the servlets, shared
+ * so that every servlet reports an invalid value the same way.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+final class ContextParameters {
+
+    /**
+     * Prevents instantiation.
+     */
+    private ContextParameters() {
+    }
+
+    /**
+     * Reads a positive number context parameter.
+     *
+     * @param context The servlet context.
+     * @param name The name of the context parameter.
+     * @param defaultValue The value used when the parameter is not set.
+     * @return The value of the parameter.
+     * @throws ServletException if the parameter is not a positive number.
+     */
+    static long positiveLong(ServletContext context, String name, long defaultValue) throws ServletException {
+        String value = context.getInitParameter(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        long number;
+        try {
+            number = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ServletException("Invalid value of context parameter " + name + ": " + value, e);
+        }
+        if (number <= 0) {
+            throw new ServletException("Invalid value of context parameter " + name + ": " + value);
+        }
+        return number;
+    }
+}
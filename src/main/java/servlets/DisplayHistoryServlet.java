@@ -1,5 +1,6 @@
 package servlets;
 
+import jakarta.inject.Inject;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -9,8 +10,9 @@ import jakarta.servlet.RequestDispatcher;
 import java.io.IOException;
 import java.util.List;
 import jakarta.servlet.http.Cookie;
-import model.RailFenceModel;
-import model.OperationHistory;
+import model.HistoryVersion;
+import model.CipherService;
+import model.HistorySummary;
 
 /**
  * Servlet responsible for handling requests to display the history of
@@ -19,6 +21,16 @@ import model.OperationHistory;
  * to the history.jsp page for display. Additionally, this servlet handles
  * incrementing the visit count for the history page using cookies.
  *
+ * The rendered page is cached per history version and served with an ETag
+ * and a Last-Modified header, so that polling clients get a 304 response
+ * without a database query while the history is unchanged. Large pages are
+ * compressed with gzip when the client accepts it. A page whose history
+ * could not be read is answered with 503 and neither cached nor validated.
+ *
+ * The history is shown in pages of {@link #PAGE_SIZE} operations, page 0
+ * holding the most recent ones; recent pages come from the in-memory read
+ * model of the history.
+ *
  * @author Magdalena Koncowicz
  * @version 1.0
  */
@@ -26,13 +38,25 @@ import model.OperationHistory;
 public class DisplayHistoryServlet extends HttpServlet {
 
     /**
-     * The model object for the Rail Fence Cipher application. 
+     * The application-wide service running the cipher operations and
+     * recording their history.
+     */
+    @Inject
+    private CipherService cipherService;
+
+    /**
+     * Pages smaller than this number of bytes are sent without compression.
+     */
+    private static final int GZIP_THRESHOLD = 1024;
+
+    /**
+     * Number of operations shown per history page.
      */
-    private final RailFenceModel model = new RailFenceModel();
+    private static final int PAGE_SIZE = 50;
 
     /**
      * Handles the HTTP GET request. Retrieves and displays the history of
-     * operations.
+     * operations. Pages past the last operation are rejected.
      *
      * @param request HttpServletRequest object containing the client's request.
      * @param response HttpServletResponse object for sending the response.
@@ -43,17 +67,153 @@ public class DisplayHistoryServlet extends HttpServlet {
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         incrementHistoryPageVisitCount(request, response);
 
-        List<OperationHistory> history = model.getOperationHistory();
+        int pageNumber;
+        try {
+            String parameter = request.getParameter("page");
+            pageNumber = parameter == null ? 0 : Integer.parseInt(parameter);
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid number format for page.");
+            return;
+        }
+        if (pageNumber < 0) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid page number.");
+            return;
+        }
 
-        if (history == null || history.isEmpty()) {
+        HistoryVersion version = cipherService.getHistoryVersion();
+        String token = version == null ? null : version.getToken();
+        if (token == null) {
+            List<HistorySummary> history = cipherService.getOperationHistoryPage(pageNumber, PAGE_SIZE);
+            if (history == null) {
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "History is unavailable.");
+                return;
+            }
+            forwardToHistoryPage(request, response, history, pageNumber, -1);
+            return;
+        }
+
+        if (pageNumber > 0 && (long) pageNumber * PAGE_SIZE >= version.getCount()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Invalid page number.");
+            return;
+        }
+
+        String etag = "\"history-" + token + "-" + pageNumber + "\"";
+        long lastModified = version.getLastModified();
+        if (isNotModified(request, etag, lastModified)) {
+            setValidators(response, etag, lastModified);
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        String key = token + "/" + pageNumber;
+        HistoryPageCache.Page page = HistoryPageCache.get(key);
+        if (page == null) {
+            List<HistorySummary> history = cipherService.getOperationHistoryPage(pageNumber, PAGE_SIZE);
+            if (history == null) {
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "History is unavailable.");
+                return;
+            }
+            CapturingResponseWrapper capture = new CapturingResponseWrapper(response);
+            forwardToHistoryPage(request, capture, history, pageNumber, version.getCount());
+            page = HistoryPageCache.put(key, capture.getCapturedBody());
+        }
+
+        setValidators(response, etag, lastModified);
+        byte[] body = page.getBody();
+        if (body.length >= GZIP_THRESHOLD && acceptsGzip(request)) {
+            body = page.getGzipBody();
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        response.setContentType("text/html;charset=UTF-8");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * Forwards one page of the history to the history page.
+     *
+     * @param request HttpServletRequest object containing the client's request.
+     * @param response HttpServletResponse object for sending the response.
+     * @param history The operations of the page.
+     * @param pageNumber The index of the page, 0 for the most recent operations.
+     * @param count The number of operations in the history, or -1 if unknown.
+     * @throws ServletException if a servlet-specific error occurs.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void forwardToHistoryPage(HttpServletRequest request, HttpServletResponse response,
+            List<HistorySummary> history, int pageNumber, long count) throws ServletException, IOException {
+        if (history.isEmpty()) {
             request.setAttribute("historyMessage", "No history found.");
         }
 
         request.setAttribute("history", history);
+        request.setAttribute("page", pageNumber);
+        boolean hasOlder = count < 0 ? history.size() == PAGE_SIZE
+                : (long) (pageNumber + 1) * PAGE_SIZE < count;
+        request.setAttribute("hasOlder", hasOlder);
         RequestDispatcher dispatcher = request.getRequestDispatcher("/history.jsp");
         dispatcher.forward(request, response);
     }
 
+    /**
+     * Sets the validators of a page rendered for the current history version.
+     * They are only sent with a page built from a successful read, so a
+     * failure is never cached by the client.
+     *
+     * @param response HttpServletResponse object for sending the response.
+     * @param etag The entity tag of the page.
+     * @param lastModified The time of the last history change.
+     */
+    private void setValidators(HttpServletResponse response, String etag, long lastModified) {
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("Vary", "Accept-Encoding");
+    }
+
+    /**
+     * Checks the conditional request headers against the current version of
+     * the history. If-None-Match takes precedence over If-Modified-Since.
+     *
+     * @param request HttpServletRequest object containing the client's request.
+     * @param etag The entity tag of the current history version.
+     * @param lastModified The time of the last history change.
+     * @return true if the client already has the current page.
+     */
+    private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals(etag) || tag.equals("*")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader("If-Modified-Since");
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+    }
+
+    /**
+     * Checks whether the client accepts gzip compressed responses.
+     *
+     * @param request HttpServletRequest object containing the client's request.
+     * @return true if gzip is listed in the Accept-Encoding header.
+     */
+    private boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
     /**
      * Increments the count of visits to the history page, stored in a cookie.
      *
@@ -1,7 +1,8 @@
 package servlets;
 
-import model.RailFenceModel;
+import model.CipherService;
 import model.InvalidRailNumberException;
+import jakarta.inject.Inject;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -23,11 +24,11 @@ import java.io.IOException;
 public class EncryptServlet extends HttpServlet {
 
     /**
-     * The model for the Rail Fence Cipher. This field is an instance of the
-     * {@link RailFenceModel} class, which contains the logic for encrypting and
-     * decrypting text using the Rail Fence algorithm.
+     * The application-wide service running the cipher operations and
+     * recording their history.
      */
-    private final RailFenceModel model = new RailFenceModel();
+    @Inject
+    private CipherService cipherService;
 
     /**
      * Handles the HTTP GET request. Forwards to the encryption form.
@@ -54,6 +55,7 @@ public class EncryptServlet extends HttpServlet {
      */
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        request.setCharacterEncoding("UTF-8");
         String inputText = request.getParameter("inputText");
         int rails;
         try {
@@ -63,15 +65,15 @@ public class EncryptServlet extends HttpServlet {
             return;
         }
 
-        if (!isValidInput(inputText) || rails < 2) {
+        if (!InputValidation.isValidInput(inputText) || rails < 2) {
             response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid input data.");
             return;
         }
 
         String encryptedText;
         try {
-            encryptedText = model.encrypt(inputText, rails);
-            model.createOperationHistory("Encrypt", inputText, encryptedText, rails);
+            encryptedText = cipherService.encrypt(inputText, rails);
+            cipherService.recordOperation("Encrypt", inputText, encryptedText, rails);
         } catch (InvalidRailNumberException e) {
             incrementErrorCount(request, response);
             response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
@@ -83,17 +85,6 @@ public class EncryptServlet extends HttpServlet {
         dispatcher.forward(request, response);
     }
 
-    /**
-     * Validates the input text to ensure it contains only English alphabet
-     * characters and spaces.
-     *
-     * @param inputText The text to be validated.
-     * @return true if the input text is valid, false otherwise.
-     */
-    private boolean isValidInput(String inputText) {
-        return inputText != null && inputText.matches("[a-zA-Z ]+");
-    }
-
     /**
      * Increments the error count stored in a cookie.
      *
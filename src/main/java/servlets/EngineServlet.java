@@ -0,0 +1,134 @@
+package servlets;
+
+import model.AdaptiveCipherDispatcher;
+import model.CipherEngine;
+import model.CipherService;
+import model.EngineProfile;
+import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.HttpMethodConstraint;
+import jakarta.servlet.annotation.ServletSecurity;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import util.EngineCalibrationListener;
+
+/**
+ * Servlet exposing the engine selection of the Rail Fence Cipher application.
+ *
+ * A GET returns, as JSON, the engine chosen for every text length and rail
+ * bucket, the times measured during calibration and the number and mean
+ * latency of the calls served by every engine since the profile was
+ * installed, and whether a calibration is running. A POST starts calibrating
+ * the engines again in the background, unless a calibration is already
+ * running, and answers 202 Accepted with the current profile; the new
+ * profile is installed and saved to the "engineProfile" file, if one is
+ * configured, when the calibration finishes. A calibration keeps the
+ * processors busy for a while, so a POST is only allowed to users in the
+ * "admin" role; see web.xml for the login configuration.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+@WebServlet(name = "EngineServlet", urlPatterns = {"/EngineServlet"})
+@ServletSecurity(httpMethodConstraints = @HttpMethodConstraint(value = "POST", rolesAllowed = "admin"))
+public class EngineServlet extends HttpServlet {
+
+    /**
+     * Logger for failures to save the profile.
+     */
+    private static final Logger LOGGER = Logger.getLogger(EngineServlet.class.getName());
+
+    /**
+     * The application-wide service owning the engine dispatcher.
+     */
+    @Inject
+    private CipherService cipherService;
+
+    /**
+     * Handles the HTTP GET request. Returns the engine profile and statistics.
+     *
+     * @param request HttpServletRequest object containing the client's request
+     * @param response HttpServletResponse object for sending the response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        writeProfile(cipherService.getEngineDispatcher(), response);
+    }
+
+    /**
+     * Handles the HTTP POST request, for users in the "admin" role. Starts a
+     * background calibration of the engines and returns the current profile.
+     *
+     * @param request HttpServletRequest object containing the client's request
+     * @param response HttpServletResponse object for sending the response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        AdaptiveCipherDispatcher dispatcher = cipherService.getEngineDispatcher();
+        CompletableFuture<EngineProfile> calibration = dispatcher.recalibrateAsync();
+        Path file = EngineCalibrationListener.getProfileFile(getServletContext().getInitParameter("engineProfile"));
+        if (calibration != null && file != null) {
+            calibration.thenAccept(profile -> {
+                try {
+                    profile.save(file);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Cannot save engine profile " + file, e);
+                }
+            });
+        }
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+        writeProfile(dispatcher, response);
+    }
+
+    /**
+     * Writes the profile and statistics of a dispatcher as JSON.
+     *
+     * @param dispatcher The dispatcher.
+     * @param response HttpServletResponse object for sending the response.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void writeProfile(AdaptiveCipherDispatcher dispatcher, HttpServletResponse response) throws IOException {
+        EngineProfile profile = dispatcher.getProfile();
+        JsonArrayBuilder buckets = Json.createArrayBuilder();
+        for (int i = 0; i < EngineProfile.getLengthBucketCount(); i++) {
+            for (int j = 0; j < EngineProfile.getRailBucketCount(); j++) {
+                JsonObjectBuilder engines = Json.createObjectBuilder();
+                for (CipherEngine engine : CipherEngine.values()) {
+                    long calls = dispatcher.getCalls(i, j, engine);
+                    engines.add(engine.name().toLowerCase(Locale.ROOT), Json.createObjectBuilder()
+                            .add("calibrationNanos", profile.getCalibrationNanos(i, j, engine))
+                            .add("calls", calls)
+                            .add("meanNanos", calls == 0 ? 0 : dispatcher.getTotalNanos(i, j, engine) / calls));
+                }
+                buckets.add(Json.createObjectBuilder()
+                        .add("maxLength", EngineProfile.getLengthBound(i))
+                        .add("maxRails", EngineProfile.getRailBound(j))
+                        .add("engine", profile.getChoice(i, j).name().toLowerCase(Locale.ROOT))
+                        .add("engines", engines));
+            }
+        }
+        response.setContentType("application/json;charset=UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.getWriter().write(Json.createObjectBuilder()
+                .add("calibrated", profile.isCalibrated())
+                .add("calibrating", dispatcher.isCalibrating())
+                .add("processors", profile.getProcessors())
+                .add("buckets", buckets)
+                .build().toString());
+    }
+}
@@ -0,0 +1,162 @@
+package servlets;
+
+import model.CipherDirection;
+import model.InvalidRailNumberException;
+import model.RailFanOut;
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.Cookie;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+
+/**
+ * Servlet encrypting or decrypting one text under every number of rails of a
+ * range, for example to try all keys of a ciphertext.
+ *
+ * A POST takes the "inputText", the "operation" ("encrypt", the default, or
+ * "decrypt") and the range of rails "minRails" (2 by default) to "maxRails".
+ * The results are returned as one JSON object listing the text for every
+ * number of rails. With the "stream" parameter set to "true" they are
+ * streamed instead as newline-delimited JSON, one object per number of rails,
+ * each written and flushed as soon as it is ready, so they do not arrive
+ * ordered by number of rails. Fan-outs are not recorded in the history.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+@WebServlet(name = "FanOutServlet", urlPatterns = {"/FanOutServlet"})
+public class FanOutServlet extends HttpServlet {
+
+    /**
+     * The largest number of characters of all results of one request.
+     */
+    private static final long MAX_OUTPUT_CHARS = 64L * 1024 * 1024;
+
+    /**
+     * Handles the HTTP POST request. Processes the text under every number of
+     * rails of the range and writes the results as JSON.
+     *
+     * @param request HttpServletRequest object containing the client's request
+     * @param response HttpServletResponse object for sending the response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        request.setCharacterEncoding("UTF-8");
+        String inputText = request.getParameter("inputText");
+        String operation = request.getParameter("operation");
+        CipherDirection direction;
+        if (operation == null || "encrypt".equalsIgnoreCase(operation)) {
+            direction = CipherDirection.ENCRYPT;
+        } else if ("decrypt".equalsIgnoreCase(operation)) {
+            direction = CipherDirection.DECRYPT;
+        } else {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid operation.");
+            return;
+        }
+
+        int minRails;
+        int maxRails;
+        try {
+            String minParameter = request.getParameter("minRails");
+            minRails = minParameter == null ? 2 : Integer.parseInt(minParameter);
+            maxRails = Integer.parseInt(request.getParameter("maxRails"));
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid number format for rails.");
+            return;
+        }
+
+        if (!InputValidation.isValidInput(inputText)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid input data.");
+            return;
+        }
+        try {
+            RailFanOut.checkRange(minRails, maxRails);
+        } catch (InvalidRailNumberException e) {
+            incrementErrorCount(request, response);
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        if ((long) inputText.length() * (maxRails - minRails + 1) > MAX_OUTPUT_CHARS) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Text or range of rails too large.");
+            return;
+        }
+
+        String name = direction.name().toLowerCase(Locale.ROOT);
+        response.setHeader("Cache-Control", "no-cache");
+        try {
+            if ("true".equalsIgnoreCase(request.getParameter("stream"))) {
+                response.setContentType("application/x-ndjson;charset=UTF-8");
+                PrintWriter writer = response.getWriter();
+                RailFanOut.apply(direction, inputText, minRails, maxRails, (result, rails) -> {
+                    writer.write(Json.createObjectBuilder()
+                            .add("operation", name)
+                            .add("rails", rails)
+                            .add("text", result)
+                            .build().toString());
+                    writer.write('\n');
+                    writer.flush();
+                    if (writer.checkError()) {
+                        throw new UncheckedIOException(new IOException("Client disconnected."));
+                    }
+                });
+                return;
+            }
+            String[] results = RailFanOut.apply(direction, inputText, minRails, maxRails);
+            JsonArrayBuilder array = Json.createArrayBuilder();
+            for (int rails = minRails; rails <= maxRails; rails++) {
+                array.add(Json.createObjectBuilder()
+                        .add("rails", rails)
+                        .add("text", results[rails - minRails]));
+            }
+            response.setContentType("application/json;charset=UTF-8");
+            response.getWriter().write(Json.createObjectBuilder()
+                    .add("operation", name)
+                    .add("results", array)
+                    .build().toString());
+        } catch (InvalidRailNumberException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Increments the error count stored in a cookie.
+     *
+     * @param request HttpServletRequest object containing the client's request.
+     * @param response HttpServletResponse object for sending the response.
+     */
+    private void incrementErrorCount(HttpServletRequest request, HttpServletResponse response) {
+        Cookie errorCookie = getCookie(request, "errorCount");
+        int errorCount = errorCookie != null ? Integer.parseInt(errorCookie.getValue()) : 0;
+        errorCount++;
+        response.addCookie(new Cookie("errorCount", String.valueOf(errorCount)));
+    }
+
+    /**
+     * Retrieves a cookie by its name.
+     *
+     * @param request HttpServletRequest object containing the client's request.
+     * @param name The name of the cookie to retrieve.
+     * @return The Cookie object if found, null otherwise.
+     */
+    private Cookie getCookie(HttpServletRequest request, String name) {
+        if (request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (cookie.getName().equals(name)) {
+                    return cookie;
+                }
+            }
+        }
+        return null;
+    }
+}
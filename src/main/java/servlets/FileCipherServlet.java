@@ -0,0 +1,234 @@
+package servlets;
+
+import model.CipherDirection;
+import model.InvalidRailNumberException;
+import model.OffHeapRailFenceEngine;
+import model.CipherService;
+import jakarta.inject.Inject;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.MultipartConfig;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.Part;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import util.Fingerprints;
+
+/**
+ * Servlet that encrypts or decrypts an uploaded file and streams the result
+ * back as a download.
+ *
+ * The file is sent either as the "file" part of a multipart/form-data request
+ * or as the raw request body with a Content-Length header; the "operation"
+ * ("encrypt" or "decrypt") and "rails" parameters are form fields or query
+ * parameters, and a raw body may be named with the "fileName" query parameter.
+ * With a raw body the parameters are only read from the query string, so a
+ * body sent as application/x-www-form-urlencoded is not parsed as a form.
+ * Uploads of up to "uploadSpillThreshold" bytes (context parameter, 8 MB by
+ * default) are processed in a buffer of their exact size; larger uploads are
+ * spilled to a temporary file and processed through memory-mapped segments.
+ * Uploads larger than "uploadMaxSize" (1 GB by default) are rejected. The
+ * container itself refuses multipart uploads above the same default before
+ * they are stored, so a larger "uploadMaxSize" also needs a larger
+ * multipart-config for this servlet in web.xml.
+ *
+ * The history only records the name, size and SHA-256 digest of the upload and
+ * the digest of the result, not the contents.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+@WebServlet(name = "FileCipherServlet", urlPatterns = {"/FileCipherServlet"})
+@MultipartConfig(fileSizeThreshold = 1024 * 1024, maxFileSize = FileCipherServlet.DEFAULT_MAX_SIZE,
+        maxRequestSize = FileCipherServlet.DEFAULT_MAX_SIZE + FileCipherServlet.MAX_FORM_OVERHEAD)
+public class FileCipherServlet extends HttpServlet {
+
+    /**
+     * Default largest upload processed in memory, in bytes.
+     */
+    private static final long DEFAULT_SPILL_THRESHOLD = 8L * 1024 * 1024;
+
+    /**
+     * Default largest accepted upload, in bytes.
+     */
+    static final long DEFAULT_MAX_SIZE = 1024L * 1024 * 1024;
+
+    /**
+     * Room for the form fields and part headers of a multipart request on top
+     * of the uploaded file, in bytes.
+     */
+    static final long MAX_FORM_OVERHEAD = 64 * 1024;
+
+    /**
+     * The application-wide service running the cipher operations and
+     * recording their history.
+     */
+    @Inject
+    private CipherService cipherService;
+
+    /**
+     * Largest upload processed in memory, in bytes.
+     */
+    private long spillThreshold;
+
+    /**
+     * Largest accepted upload, in bytes.
+     */
+    private long maxSize;
+
+    /**
+     * Reads the size limits from the context parameters.
+     *
+     * @throws ServletException if a size parameter is not a number.
+     */
+    @Override
+    public void init() throws ServletException {
+        ServletContext context = getServletContext();
+        spillThreshold = ContextParameters.positiveLong(context, "uploadSpillThreshold", DEFAULT_SPILL_THRESHOLD);
+        maxSize = ContextParameters.positiveLong(context, "uploadMaxSize", DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Handles the HTTP POST request. Reads the upload, runs it through the
+     * cipher and streams the result back as an attachment.
+     *
+     * @param request HttpServletRequest object containing the client's request
+     * @param response HttpServletResponse object for sending the response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        request.setCharacterEncoding("UTF-8");
+        boolean multipart = UploadParameters.isMultipart(request);
+
+        CipherDirection direction;
+        String operation = UploadParameters.get(request, multipart, "operation");
+        if ("encrypt".equalsIgnoreCase(operation)) {
+            direction = CipherDirection.ENCRYPT;
+        } else if ("decrypt".equalsIgnoreCase(operation)) {
+            direction = CipherDirection.DECRYPT;
+        } else {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid operation.");
+            return;
+        }
+
+        int rails;
+        try {
+            rails = Integer.parseInt(UploadParameters.get(request, multipart, "rails"));
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid number format for rails.");
+            return;
+        }
+
+        Part part = null;
+        String fileName;
+        long length;
+        if (multipart) {
+            try {
+                part = request.getPart("file");
+            } catch (IllegalStateException e) {
+                response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Upload is too large.");
+                return;
+            }
+            if (part == null) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "No file uploaded.");
+                return;
+            }
+            fileName = part.getSubmittedFileName();
+            length = part.getSize();
+        } else {
+            fileName = UploadParameters.get(request, multipart, "fileName");
+            length = request.getContentLengthLong();
+            if (length < 0) {
+                response.sendError(HttpServletResponse.SC_LENGTH_REQUIRED, "Content-Length is required.");
+                return;
+            }
+        }
+        if (length == 0 || rails < 2) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid input data.");
+            return;
+        }
+        if (length > maxSize) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Upload is too large.");
+            return;
+        }
+        fileName = Fingerprints.sanitizeFileName(fileName);
+
+        MessageDigest inputDigest = Fingerprints.sha256();
+        MessageDigest outputDigest = Fingerprints.sha256();
+        String downloadName = (direction == CipherDirection.ENCRYPT ? "encrypted-" : "decrypted-") + fileName;
+        response.setContentType("application/octet-stream");
+        response.setContentLengthLong(length);
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + downloadName + "\"; filename*=UTF-8''"
+                + URLEncoder.encode(downloadName, StandardCharsets.UTF_8).replace("+", "%20"));
+        try (InputStream body = multipart ? part.getInputStream() : request.getInputStream();
+                DigestInputStream in = new DigestInputStream(body, inputDigest)) {
+            OutputStream out = new DigestOutputStream(response.getOutputStream(), outputDigest);
+            OffHeapRailFenceEngine.transform(direction, in, length, out, rails, spillThreshold);
+            out.flush();
+        } catch (InvalidRailNumberException e) {
+            response.reset();
+            incrementErrorCount(request, response);
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        } catch (EOFException e) {
+            if (response.isCommitted()) {
+                throw e;
+            }
+            response.reset();
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Incomplete upload.");
+            return;
+        } finally {
+            if (part != null) {
+                part.delete();
+            }
+        }
+
+        cipherService.recordOperation(direction == CipherDirection.ENCRYPT ? "Encrypt file" : "Decrypt file",
+                fileName + ", " + length + " bytes, SHA-256 " + Fingerprints.toHex(inputDigest.digest()),
+                "SHA-256 " + Fingerprints.toHex(outputDigest.digest()), rails);
+    }
+
+    /**
+     * Increments the error count stored in a cookie.
+     *
+     * @param request HttpServletRequest object containing the client's request.
+     * @param response HttpServletResponse object for sending the response.
+     */
+    private void incrementErrorCount(HttpServletRequest request, HttpServletResponse response) {
+        Cookie errorCookie = getCookie(request, "errorCount");
+        int errorCount = errorCookie != null ? Integer.parseInt(errorCookie.getValue()) : 0;
+        errorCount++;
+        response.addCookie(new Cookie("errorCount", String.valueOf(errorCount)));
+    }
+
+    /**
+     * Retrieves a cookie by its name.
+     *
+     * @param request HttpServletRequest object containing the client's request.
+     * @param name The name of the cookie to retrieve.
+     * @return The Cookie object if found, null otherwise.
+     */
+    private Cookie getCookie(HttpServletRequest request, String name) {
+        if (request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (cookie.getName().equals(name)) {
+                    return cookie;
+                }
+            }
+        }
+        return null;
+    }
+}
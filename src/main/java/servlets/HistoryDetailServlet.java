@@ -0,0 +1,62 @@
+package servlets;
+
+import jakarta.inject.Inject;
+import jakarta.servlet.RequestDispatcher;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import model.OperationHistory;
+import model.CipherService;
+
+/**
+ * Servlet showing one operation of the history with its full original and
+ * processed texts. History listings only carry previews of the texts and link
+ * here, so the texts are read from the database for a single record at a
+ * time.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+@WebServlet(name = "HistoryDetailServlet", urlPatterns = {"/HistoryDetailServlet"})
+public class HistoryDetailServlet extends HttpServlet {
+
+    /**
+     * The application-wide service running the cipher operations and
+     * recording their history.
+     */
+    @Inject
+    private CipherService cipherService;
+
+    /**
+     * Handles the HTTP GET request. Loads the operation given by the "id"
+     * parameter and forwards to the detail page.
+     *
+     * @param request HttpServletRequest object containing the client's request.
+     * @param response HttpServletResponse object for sending the response.
+     * @throws ServletException if a servlet-specific error occurs.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        long id;
+        try {
+            id = Long.parseLong(request.getParameter("id"));
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid number format for id.");
+            return;
+        }
+
+        OperationHistory operation = id > 0 ? cipherService.getOperationHistory(id) : null;
+        if (operation == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown operation.");
+            return;
+        }
+
+        request.setAttribute("operation", operation);
+        RequestDispatcher dispatcher = request.getRequestDispatcher("/historyDetail.jsp");
+        dispatcher.forward(request, response);
+    }
+}
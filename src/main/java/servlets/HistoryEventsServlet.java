@@ -0,0 +1,370 @@
+package servlets;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import model.HistoryListener;
+import model.OperationHistory;
+import model.RailFenceModel;
+import util.BroadcastRing;
+
+/**
+ * Servlet streaming new operation history records to the history page as
+ * Server-Sent Events. Committed records are published into a lock-free
+ * {@link BroadcastRing}; every subscriber reads the ring with its own cursor on
+ * a small pool of sender threads, so a slow subscriber never holds up the
+ * threads that store history records. The streams are written in
+ * non-blocking mode: a subscriber is only written to while its connection is
+ * ready, and otherwise its events wait in the ring until the container
+ * reports the connection writable again, so a slow or stalled client never
+ * holds up the sender threads or the other subscribers. Subscribers that
+ * fall too far behind lose the overwritten events, which are counted and
+ * reported to them with a "dropped" event.
+ *
+ * A GET request with the "stats" parameter returns the number of subscribers,
+ * published events and dropped events as JSON.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+@WebServlet(name = "HistoryEventsServlet", urlPatterns = {"/HistoryEventsServlet"}, asyncSupported = true, loadOnStartup = 1)
+public class HistoryEventsServlet extends HttpServlet {
+
+    /**
+     * Logger for logging information, warnings, and errors.
+     */
+    private static final Logger LOGGER = Logger.getLogger(HistoryEventsServlet.class.getName());
+
+    /**
+     * Number of history events kept for subscribers.
+     */
+    private static final int RING_CAPACITY = 1024;
+
+    /**
+     * Number of threads sending events to subscribers.
+     */
+    private static final int SENDER_THREADS = 2;
+
+    /**
+     * Interval between keep-alive comments, in seconds.
+     */
+    private static final long HEARTBEAT_SECONDS = 15;
+
+    /**
+     * The ring holding the most recent history events.
+     */
+    private final BroadcastRing<OperationHistory> ring = new BroadcastRing<>(RING_CAPACITY);
+
+    /**
+     * The connected subscribers.
+     */
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Listener publishing committed history records into the ring.
+     */
+    private final HistoryListener listener = history -> {
+        ring.publish(history);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.schedule(false);
+        }
+    };
+
+    /**
+     * Threads sending events and keep-alive comments to subscribers.
+     */
+    private ScheduledExecutorService senders;
+
+    /**
+     * Starts the sender threads and subscribes to history records.
+     *
+     * @throws ServletException if a servlet-specific error occurs.
+     */
+    @Override
+    public void init() throws ServletException {
+        senders = Executors.newScheduledThreadPool(SENDER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "history-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        senders.scheduleAtFixedRate(() -> {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.schedule(true);
+            }
+        }, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+        RailFenceModel.addHistoryListener(listener);
+    }
+
+    /**
+     * Unsubscribes from history records, closes all streams and stops the
+     * sender threads.
+     */
+    @Override
+    public void destroy() {
+        RailFenceModel.removeHistoryListener(listener);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+        senders.shutdownNow();
+    }
+
+    /**
+     * Handles the HTTP GET request. Opens an event stream, or returns the
+     * statistics of the stream when the "stats" parameter is present.
+     *
+     * @param request HttpServletRequest object containing the client's request.
+     * @param response HttpServletResponse object for sending the response.
+     * @throws ServletException if a servlet-specific error occurs.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        if (request.getParameter("stats") != null) {
+            response.setContentType("application/json;charset=UTF-8");
+            response.getWriter().write(Json.createObjectBuilder()
+                    .add("subscribers", subscribers.size())
+                    .add("published", ring.getPublished())
+                    .add("dropped", ring.getDropped())
+                    .build()
+                    .toString());
+            return;
+        }
+
+        response.setContentType("text/event-stream;charset=UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("X-Accel-Buffering", "no");
+
+        AsyncContext context = request.startAsync();
+        context.setTimeout(0);
+        Subscriber subscriber = new Subscriber(context, response.getOutputStream(), ring.oldestCursor());
+        context.addListener(subscriber);
+        // The stream must be non-blocking before the listener can reach it
+        // from a sender thread.
+        subscriber.out.setWriteListener(subscriber);
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Formats a history record as a Server-Sent Event. Like the history page,
+     * the event carries the lengths and previews of the texts only. A record
+     * without an ID gets no "id:" line, which would otherwise reset the last
+     * event ID of the client to "null".
+     *
+     * @param history The history record.
+     * @return The event text.
+     */
+    private static String toEvent(OperationHistory history) {
+        JsonObjectBuilder data = Json.createObjectBuilder()
+                .add("operationType", String.valueOf(history.getOperationType()))
+                .add("originalPreview", String.valueOf(history.getOriginalPreview()))
+                .add("originalLength", history.getOriginalLength())
+                .add("processedPreview", String.valueOf(history.getProcessedPreview()))
+                .add("processedLength", history.getProcessedLength())
+                .add("rails", history.getRails())
+                .add("timestamp", String.valueOf(history.getTimestamp()));
+        StringBuilder event = new StringBuilder();
+        if (history.getId() != null) {
+            data.add("id", history.getId());
+            event.append("id: ").append(history.getId()).append('\n');
+        }
+        return event.append("event: history\ndata: ").append(data.build()).append("\n\n").toString();
+    }
+
+    /**
+     * A connected event stream. Sending is coalesced: however many times the
+     * subscriber is scheduled, at most one send task is pending or running,
+     * and it keeps sending until no more work was requested. The container
+     * schedules the subscriber again when a connection that was not ready
+     * becomes writable.
+     */
+    private final class Subscriber implements AsyncListener, WriteListener {
+
+        /**
+         * The asynchronous context of the stream.
+         */
+        private final AsyncContext context;
+
+        /**
+         * The output stream of the connection, in non-blocking mode.
+         */
+        private final ServletOutputStream out;
+
+        /**
+         * The reading position of the subscriber in the ring.
+         */
+        private final BroadcastRing<OperationHistory>.Cursor cursor;
+
+        /**
+         * The number of send requests not yet handled by the send task.
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+
+        /**
+         * Whether a keep-alive comment is due.
+         */
+        private volatile boolean heartbeatDue;
+
+        /**
+         * The number of lost events already reported to the client.
+         */
+        private long reportedLost;
+
+        /**
+         * Whether the stream has been closed.
+         */
+        private volatile boolean closed;
+
+        /**
+         * Creates a subscriber.
+         *
+         * @param context The asynchronous context of the stream.
+         * @param out The output stream of the connection.
+         * @param cursor The reading position in the ring.
+         */
+        private Subscriber(AsyncContext context, ServletOutputStream out,
+                BroadcastRing<OperationHistory>.Cursor cursor) {
+            this.context = context;
+            this.out = out;
+            this.cursor = cursor;
+        }
+
+        /**
+         * Schedules a send task unless one is already pending.
+         *
+         * @param heartbeat Whether a keep-alive comment should be sent.
+         */
+        private void schedule(boolean heartbeat) {
+            if (heartbeat) {
+                heartbeatDue = true;
+            }
+            if (!closed && pending.getAndIncrement() == 0) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RuntimeException e) {
+                    pending.set(0);
+                }
+            }
+        }
+
+        /**
+         * Runs {@link #send()} until every send request has been handled.
+         */
+        private void drain() {
+            int requests = pending.get();
+            do {
+                send();
+                requests = pending.addAndGet(-requests);
+            } while (requests != 0);
+        }
+
+        /**
+         * Sends all pending events to the client if the connection is ready.
+         * Otherwise nothing is taken from the ring, and the send is repeated
+         * once the container calls {@link #onWritePossible()}.
+         */
+        private void send() {
+            if (closed) {
+                return;
+            }
+            try {
+                if (!out.isReady()) {
+                    return;
+                }
+            } catch (IllegalStateException e) {
+                close();
+                return;
+            }
+            StringBuilder events = new StringBuilder();
+            OperationHistory history;
+            while ((history = cursor.poll()) != null) {
+                events.append(toEvent(history));
+            }
+            if (cursor.getLost() > reportedLost) {
+                events.append("event: dropped\ndata: ").append(cursor.getLost() - reportedLost).append("\n\n");
+                reportedLost = cursor.getLost();
+            }
+            if (events.length() == 0 && heartbeatDue) {
+                events.append(": keep-alive\n\n");
+            }
+            heartbeatDue = false;
+            if (events.length() == 0) {
+                return;
+            }
+            try {
+                out.write(events.toString().getBytes(StandardCharsets.UTF_8));
+                if (out.isReady()) {
+                    out.flush();
+                }
+            } catch (IOException | IllegalStateException e) {
+                LOGGER.log(Level.FINE, "History event stream closed", e);
+                close();
+            }
+        }
+
+        /**
+         * Closes the stream and forgets the subscriber.
+         */
+        private void close() {
+            if (!closed) {
+                closed = true;
+                subscribers.remove(this);
+                try {
+                    context.complete();
+                } catch (IllegalStateException e) {
+                    LOGGER.log(Level.FINE, "History event stream already completed", e);
+                }
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            schedule(false);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            LOGGER.log(Level.FINE, "History event stream failed", t);
+            close();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            closed = true;
+            subscribers.remove(this);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Streams are never restarted.
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package servlets;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import model.HistoryLog;
+import model.HistoryReplayer;
+import util.EntityManagerFactoryListener;
+
+/**
+ * Servlet reporting the state of the history write-ahead log as JSON: the
+ * number of records appended and their rate, the number, mean and longest
+ * time of the group commit syncs, the checkpoint, and the number of records
+ * replayed into the databases, their rate and the records still waiting.
+ * While syncs fail, {@code "syncFailing"} is true, and while batches fail to
+ * replay, {@code "replayError"} holds the last error; both are retried.
+ * When the log is not enabled only {@code "enabled": false} is returned.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+@WebServlet(name = "HistoryLogServlet", urlPatterns = {"/HistoryLogServlet"})
+public class HistoryLogServlet extends HttpServlet {
+
+    /**
+     * Handles the HTTP GET request. Returns the statistics of the history
+     * log.
+     *
+     * @param request HttpServletRequest object containing the client's request
+     * @param response HttpServletResponse object for sending the response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        HistoryLog log = EntityManagerFactoryListener.getHistoryLog();
+        HistoryReplayer replayer = EntityManagerFactoryListener.getHistoryReplayer();
+        JsonObjectBuilder json = Json.createObjectBuilder().add("enabled", log != null && replayer != null);
+        if (log != null && replayer != null) {
+            long syncs = log.getSyncCount();
+            json.add("appendedRecords", log.getAppendedRecords())
+                    .add("appendedRecordsPerSecond", log.getAppendedRecordsPerSecond())
+                    .add("syncs", syncs)
+                    .add("recordsPerSync", syncs == 0 ? 0 : (double) log.getAppendedRecords() / syncs)
+                    .add("meanSyncMicros", log.getAverageSyncNanos() / 1000)
+                    .add("maxSyncMicros", log.getMaxSyncNanos() / 1000)
+                    .add("syncedSequence", log.getSyncedSequence())
+                    .add("checkpoint", log.getCheckpoint())
+                    .add("segments", log.getSegmentCount())
+                    .add("recoveredRecords", log.getRecoveredRecords())
+                    .add("replayedRecords", replayer.getReplayedRecords())
+                    .add("replayedRecordsPerSecond", replayer.getReplayedRecordsPerSecond())
+                    .add("skippedRecords", replayer.getSkippedRecords())
+                    .add("failedBatches", replayer.getFailedBatches())
+                    .add("lag", replayer.getLag())
+                    .add("syncFailing", log.isSyncFailing());
+            Exception failure = replayer.getLastFailure();
+            if (failure != null) {
+                json.add("replayError", failure.getMessage() != null ? failure.getMessage()
+                        : failure.getClass().getSimpleName());
+            }
+        }
+        response.setContentType("application/json;charset=UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.getWriter().write(json.build().toString());
+    }
+}
@@ -0,0 +1,122 @@
+package servlets;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+import model.RailFenceModel;
+
+/**
+ * Server-side cache of the rendered history pages. Pages are keyed by the
+ * history version and the page number, and all of them are dropped as soon as
+ * a new record is committed through
+ * {@link RailFenceModel#createOperationHistory}.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class HistoryPageCache {
+
+    /**
+     * A rendered page together with the history version it was rendered for.
+     */
+    public static final class Page {
+
+
+        /**
+         * The rendered page encoded as UTF-8.
+         */
+        private final byte[] body;
+
+        /**
+         * The gzip compressed body, created on first use.
+         */
+        private volatile byte[] gzipBody;
+
+        /**
+         * Creates a cached page.
+         *
+         * @param body The rendered page.
+         */
+        private Page(byte[] body) {
+            this.body = body;
+        }
+
+        /**
+         * Gets the rendered page.
+         *
+         * @return The rendered page encoded as UTF-8.
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * Gets the rendered page compressed with gzip.
+         *
+         * @return The compressed page.
+         */
+        public byte[] getGzipBody() {
+            byte[] compressed = gzipBody;
+            if (compressed == null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                    gzip.write(body);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                compressed = out.toByteArray();
+                gzipBody = compressed;
+            }
+            return compressed;
+        }
+    }
+
+    /**
+     * Maximum number of cached pages.
+     */
+    private static final int MAX_PAGES = 32;
+
+    /**
+     * The cached pages by key.
+     */
+    private static final Map<String, Page> PAGES = new ConcurrentHashMap<>();
+
+    static {
+        RailFenceModel.addHistoryListener(history -> PAGES.clear());
+    }
+
+    /**
+     * Private constructor, this class only exposes static helpers.
+     */
+    private HistoryPageCache() {
+    }
+
+    /**
+     * Returns the cached page with the given key.
+     *
+     * @param key The history version token and page number.
+     * @return The cached page, or null if no such page is cached.
+     */
+    public static Page get(String key) {
+        return PAGES.get(key);
+    }
+
+    /**
+     * Stores a rendered page. The cache is emptied first if it is full.
+     *
+     * @param key The history version token and page number.
+     * @param body The rendered page encoded as UTF-8.
+     * @return The cached page.
+     */
+    public static Page put(String key, byte[] body) {
+        if (PAGES.size() >= MAX_PAGES) {
+            PAGES.clear();
+        }
+        Page page = new Page(body);
+        PAGES.put(key, page);
+        return page;
+    }
+}
@@ -0,0 +1,42 @@
+package servlets;
+
+/**
+ * Validation of the texts submitted to the cipher servlets, shared so that
+ * every servlet accepting a text applies the same rules.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+final class InputValidation {
+
+    /**
+     * Prevents instantiation.
+     */
+    private InputValidation() {
+    }
+
+    /**
+     * Validates the input text to ensure it is not empty, contains no control
+     * characters other than line breaks and tabs, and has no unpaired
+     * surrogates.
+     *
+     * @param inputText The text to be validated.
+     * @return true if the input text is valid, false otherwise.
+     */
+    static boolean isValidInput(String inputText) {
+        if (inputText == null || inputText.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < inputText.length(); i++) {
+            char c = inputText.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < inputText.length()
+                    && Character.isLowSurrogate(inputText.charAt(i + 1))) {
+                i++;
+            } else if (Character.isSurrogate(c)
+                    || (Character.isISOControl(c) && c != '\t' && c != '\n' && c != '\r')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,296 @@
+package servlets;
+
+import model.CipherDirection;
+import model.CipherJob;
+import model.CipherJobManager;
+import model.CipherService;
+import model.InvalidRailNumberException;
+import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.servlet.RequestDispatcher;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.MultipartConfig;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.Part;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+import util.Fingerprints;
+
+/**
+ * Servlet for asynchronous cipher jobs.
+ *
+ * A POST takes the same parameters as {@link FileCipherServlet}, plus an
+ * optional "priority" from 0 to 9 (5 by default, higher runs first). Uploads
+ * of up to "jobSyncThreshold" bytes (context parameter, 1 MB by default) are
+ * forwarded to {@link FileCipherServlet} and answered synchronously. Larger
+ * uploads become jobs: the response is 202 Accepted with the job status as
+ * JSON and a Location header, or 503 if the job queue is full. Uploads larger
+ * than "uploadMaxSize" (1 GB by default) are rejected, as by
+ * {@link FileCipherServlet}.
+ *
+ * A GET with the "id" parameter returns the status and progress of a job as
+ * JSON, and with the "result" parameter as well downloads the result of a
+ * finished job. Results are kept for "jobResultTtl" seconds (3600 by default)
+ * in the "jobDirectory" directory (a "railfence-jobs" directory in the
+ * temporary directory by default); at most "jobMaxQueued" jobs (100 by
+ * default) wait to run.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+@WebServlet(name = "JobServlet", urlPatterns = {"/JobServlet"})
+@MultipartConfig(fileSizeThreshold = 1024 * 1024, maxFileSize = FileCipherServlet.DEFAULT_MAX_SIZE,
+        maxRequestSize = FileCipherServlet.DEFAULT_MAX_SIZE + FileCipherServlet.MAX_FORM_OVERHEAD)
+public class JobServlet extends HttpServlet {
+
+    /**
+     * Default largest upload answered synchronously, in bytes.
+     */
+    private static final long DEFAULT_SYNC_THRESHOLD = 1024L * 1024;
+
+    /**
+     * Default time to live of job results, in seconds.
+     */
+    private static final long DEFAULT_RESULT_TTL = 3600;
+
+    /**
+     * Default largest number of queued jobs.
+     */
+    private static final long DEFAULT_MAX_QUEUED = 100;
+
+    /**
+     * Default priority of a job.
+     */
+    private static final int DEFAULT_PRIORITY = 5;
+
+    /**
+     * Largest priority of a job.
+     */
+    private static final int MAX_PRIORITY = 9;
+
+    /**
+     * Seconds a client is asked to wait before retrying when the queue is
+     * full.
+     */
+    private static final int RETRY_AFTER_SECONDS = 30;
+
+    /**
+     * The application-wide service running the cipher operations and
+     * recording their history, including finished jobs.
+     */
+    @Inject
+    private CipherService cipherService;
+
+    /**
+     * Largest upload answered synchronously, in bytes.
+     */
+    private long syncThreshold;
+
+    /**
+     * Largest accepted upload, in bytes.
+     */
+    private long maxSize;
+
+    /**
+     * The manager running the jobs.
+     */
+    private CipherJobManager jobs;
+
+    /**
+     * Reads the configuration and starts the job manager.
+     *
+     * @throws ServletException if a parameter is invalid or the job directory
+     * cannot be created.
+     */
+    @Override
+    public void init() throws ServletException {
+        ServletContext context = getServletContext();
+        syncThreshold = ContextParameters.positiveLong(context, "jobSyncThreshold", DEFAULT_SYNC_THRESHOLD);
+        maxSize = ContextParameters.positiveLong(context, "uploadMaxSize", FileCipherServlet.DEFAULT_MAX_SIZE);
+        long ttlSeconds = ContextParameters.positiveLong(context, "jobResultTtl", DEFAULT_RESULT_TTL);
+        int maxQueued = (int) Math.min(Integer.MAX_VALUE,
+                ContextParameters.positiveLong(context, "jobMaxQueued", DEFAULT_MAX_QUEUED));
+        String directory = context.getInitParameter("jobDirectory");
+        Path jobDirectory = directory == null || directory.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "railfence-jobs") : Paths.get(directory.trim());
+        int processors = Runtime.getRuntime().availableProcessors();
+        try {
+            jobs = new CipherJobManager(jobDirectory, processors, Math.max(1, processors / 2), maxQueued,
+                    ttlSeconds * 1000, cipherService);
+        } catch (IOException e) {
+            throw new ServletException("Cannot create job directory " + jobDirectory, e);
+        }
+    }
+
+    /**
+     * Stops the job manager and deletes the job files.
+     */
+    @Override
+    public void destroy() {
+        jobs.close();
+    }
+
+    /**
+     * Handles the HTTP POST request. Answers small uploads synchronously and
+     * submits large ones as jobs.
+     *
+     * @param request HttpServletRequest object containing the client's request
+     * @param response HttpServletResponse object for sending the response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        request.setCharacterEncoding("UTF-8");
+        boolean multipart = UploadParameters.isMultipart(request);
+        Part part;
+        try {
+            part = multipart ? request.getPart("file") : null;
+        } catch (IllegalStateException e) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Upload is too large.");
+            return;
+        }
+        long length = multipart ? (part != null ? part.getSize() : 0) : request.getContentLengthLong();
+        if (length > maxSize) {
+            if (part != null) {
+                part.delete();
+            }
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Upload is too large.");
+            return;
+        }
+        if (length <= syncThreshold) {
+            RequestDispatcher dispatcher = request.getRequestDispatcher("/FileCipherServlet");
+            dispatcher.forward(request, response);
+            return;
+        }
+
+        CipherDirection direction;
+        String operation = UploadParameters.get(request, multipart, "operation");
+        if ("encrypt".equalsIgnoreCase(operation)) {
+            direction = CipherDirection.ENCRYPT;
+        } else if ("decrypt".equalsIgnoreCase(operation)) {
+            direction = CipherDirection.DECRYPT;
+        } else {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid operation.");
+            return;
+        }
+
+        int rails;
+        int priority;
+        try {
+            rails = Integer.parseInt(UploadParameters.get(request, multipart, "rails"));
+            String priorityParameter = UploadParameters.get(request, multipart, "priority");
+            priority = priorityParameter == null ? DEFAULT_PRIORITY : Integer.parseInt(priorityParameter);
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid number format for rails or priority.");
+            return;
+        }
+        if (rails < 2 || priority < 0 || priority > MAX_PRIORITY) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid input data.");
+            return;
+        }
+
+        String fileName = Fingerprints.sanitizeFileName(part != null
+                ? part.getSubmittedFileName() : UploadParameters.get(request, multipart, "fileName"));
+        CipherJob job;
+        try (InputStream body = part != null ? part.getInputStream() : request.getInputStream()) {
+            job = jobs.submit(direction, rails, priority, fileName, body, length);
+        } catch (RejectedExecutionException e) {
+            response.setIntHeader("Retry-After", RETRY_AFTER_SECONDS);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
+            return;
+        } catch (InvalidRailNumberException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        } catch (EOFException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Incomplete upload.");
+            return;
+        } finally {
+            if (part != null) {
+                part.delete();
+            }
+        }
+
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+        response.setHeader("Location", request.getContextPath() + "/JobServlet?id=" + job.getId());
+        writeStatus(job, response);
+    }
+
+    /**
+     * Handles the HTTP GET request. Returns the status of a job, or its result
+     * when the "result" parameter is present.
+     *
+     * @param request HttpServletRequest object containing the client's request
+     * @param response HttpServletResponse object for sending the response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        CipherJob job = jobs.getJob(request.getParameter("id"));
+        if (job == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown or expired job.");
+            return;
+        }
+        if (request.getParameter("result") == null) {
+            writeStatus(job, response);
+            return;
+        }
+        if (job.getState() != CipherJob.State.DONE) {
+            response.sendError(HttpServletResponse.SC_CONFLICT, "Job is not finished.");
+            return;
+        }
+        String downloadName = (job.getDirection() == CipherDirection.ENCRYPT ? "encrypted-" : "decrypted-")
+                + job.getFileName();
+        response.setContentType("application/octet-stream");
+        response.setContentLengthLong(job.getSize());
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + downloadName + "\"");
+        try {
+            Files.copy(job.getResult(), response.getOutputStream());
+        } catch (NoSuchFileException e) {
+            if (response.isCommitted()) {
+                throw e;
+            }
+            response.reset();
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown or expired job.");
+        }
+    }
+
+    /**
+     * Writes the status of a job as JSON.
+     *
+     * @param job The job.
+     * @param response HttpServletResponse object for sending the response.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void writeStatus(CipherJob job, HttpServletResponse response) throws IOException {
+        JsonObjectBuilder status = Json.createObjectBuilder()
+                .add("id", job.getId())
+                .add("state", job.getState().name())
+                .add("progress", job.getProgress())
+                .add("operation", job.getDirection().name().toLowerCase(Locale.ROOT))
+                .add("rails", job.getRails())
+                .add("priority", job.getPriority())
+                .add("fileName", job.getFileName())
+                .add("size", job.getSize())
+                .add("submitted", job.getSubmitted().toString());
+        if (job.getError() != null) {
+            status.add("error", job.getError());
+        }
+        response.setContentType("application/json;charset=UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.getWriter().write(status.build().toString());
+    }
+}
@@ -0,0 +1,125 @@
+package servlets;
+
+import model.CipherPipeline;
+import model.CipherService;
+import model.InvalidRailNumberException;
+import jakarta.inject.Inject;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.RequestDispatcher;
+import jakarta.servlet.http.Cookie;
+import java.io.IOException;
+
+/**
+ * Servlet for handling pipeline requests in the Rail Fence Cipher application.
+ * A pipeline is a sequence of encryption and decryption stages, each with its
+ * own number of rails, given as a specification such as "E3,D5,E4". A
+ * specification of more than {@link CipherPipeline#MAX_SPECIFICATION_LENGTH}
+ * characters or {@link CipherPipeline#MAX_STAGES} stages is rejected with 400,
+ * so the operation type recorded in the history stays within its column. This
+ * servlet processes POST requests for pipelines and displays the form on GET
+ * requests.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+@WebServlet(name = "PipelineServlet", urlPatterns = {"/PipelineServlet"})
+public class PipelineServlet extends HttpServlet {
+
+    /**
+     * The application-wide service running the cipher operations and
+     * recording their history.
+     */
+    @Inject
+    private CipherService cipherService;
+
+    /**
+     * Handles the HTTP GET request. Forwards to the pipeline form.
+     *
+     * @param request HttpServletRequest object containing the client's request
+     * @param response HttpServletResponse object for sending the response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        RequestDispatcher dispatcher = request.getRequestDispatcher("/index.html");
+        dispatcher.forward(request, response);
+    }
+
+    /**
+     * Handles the HTTP POST request. Processes the pipeline request and
+     * forwards to the result page. The history record stores the pipeline
+     * specification in the operation type and the largest number of rails
+     * used by any stage.
+     *
+     * @param request HttpServletRequest object containing the client's request
+     * @param response HttpServletResponse object for sending the response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        request.setCharacterEncoding("UTF-8");
+        String inputText = request.getParameter("inputText");
+
+        if (!InputValidation.isValidInput(inputText)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid input data.");
+            return;
+        }
+
+        CipherPipeline pipeline;
+        try {
+            pipeline = CipherPipeline.parse(request.getParameter("stages"));
+        } catch (InvalidRailNumberException e) {
+            incrementErrorCount(request, response);
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        String processedText = cipherService.applyPipeline(inputText, pipeline);
+        cipherService.recordOperation("Pipeline " + pipeline, inputText, processedText, pipeline.getMaxRails());
+
+        request.setAttribute("pipeline", pipeline.toString());
+        request.setAttribute("processedText", processedText);
+        RequestDispatcher dispatcher = request.getRequestDispatcher("/pipelineResult.jsp");
+        dispatcher.forward(request, response);
+    }
+
+    /**
+     * Increments the error count stored in a cookie.
+     *
+     * @param request HttpServletRequest object containing the client's request.
+     * @param response HttpServletResponse object for sending the response.
+     */
+    private void incrementErrorCount(HttpServletRequest request, HttpServletResponse response) {
+        Cookie errorCookie = getCookie(request, "errorCount");
+        int errorCount = errorCookie != null ? Integer.parseInt(errorCookie.getValue()) : 0;
+        errorCount++;
+        response.addCookie(new Cookie("errorCount", String.valueOf(errorCount)));
+    }
+
+    /**
+     * Retrieves a cookie by its name.
+     *
+     * @param request HttpServletRequest object containing the client's request.
+     * @param name The name of the cookie to retrieve.
+     * @return The Cookie object if found, null otherwise.
+     */
+    private Cookie getCookie(HttpServletRequest request, String name) {
+        if (request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (cookie.getName().equals(name)) {
+                    return cookie;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,63 @@
+package servlets;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for the handling of one HTTP request, recorded
+ * by {@link RequestEventFilter}. For asynchronous requests, such as the
+ * history event stream, the event only covers the time until the servlet
+ * returned.
+ *
+ * The event is enabled by default and does not collect stack traces.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+@Name("railfence.Request")
+@Label("HTTP Request")
+@Category("Rail Fence Cipher")
+@Description("Handling of one HTTP request by a servlet of the application")
+@StackTrace(false)
+public final class RequestEvent extends Event {
+
+    /**
+     * The name of the servlet that handled the request.
+     */
+    @Label("Servlet")
+    String servlet;
+
+    /**
+     * The HTTP method of the request.
+     */
+    @Label("Method")
+    String method;
+
+    /**
+     * The path of the request within the application.
+     */
+    @Label("Path")
+    String path;
+
+    /**
+     * The HTTP status of the response.
+     */
+    @Label("Status")
+    int status;
+
+    /**
+     * The length of the request body, -1 if unknown.
+     */
+    @Label("Request Length")
+    long requestLength;
+
+    /**
+     * Whether the request continues asynchronously after the servlet returned.
+     */
+    @Label("Asynchronous")
+    boolean asynchronous;
+}
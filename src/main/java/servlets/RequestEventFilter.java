@@ -0,0 +1,50 @@
+package servlets;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Filter recording a {@link RequestEvent} for every request to the
+ * application. When no flight recording is running, the filter only adds a
+ * single check to each request.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+@WebFilter(filterName = "RequestEventFilter", urlPatterns = {"/*"}, asyncSupported = true)
+public class RequestEventFilter extends HttpFilter {
+
+    /**
+     * Times the request and commits its event if a recording wants it.
+     *
+     * @param request HttpServletRequest object containing the client's request.
+     * @param response HttpServletResponse object for sending the response.
+     * @param chain The rest of the filter chain.
+     * @throws ServletException if a servlet-specific error occurs.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        RequestEvent event = new RequestEvent();
+        event.begin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (event.shouldCommit()) {
+                event.servlet = request.getHttpServletMapping().getServletName();
+                event.method = request.getMethod();
+                event.path = request.getServletPath();
+                event.status = response.getStatus();
+                event.requestLength = request.getContentLengthLong();
+                event.asynchronous = request.isAsyncStarted();
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package servlets;
+
+import jakarta.inject.Inject;
+import jakarta.servlet.RequestDispatcher;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import model.HistoryTextIndex;
+import model.HistorySummary;
+import model.CipherService;
+
+/**
+ * Servlet searching the history of operations for a substring of the original
+ * or processed text. The search is answered from the in-memory trigram index
+ * of the model, so it does not scan the history table.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+@WebServlet(name = "SearchHistoryServlet", urlPatterns = {"/SearchHistoryServlet"})
+public class SearchHistoryServlet extends HttpServlet {
+
+    /**
+     * The application-wide service running the cipher operations and
+     * recording their history.
+     */
+    @Inject
+    private CipherService cipherService;
+
+    /**
+     * Handles the HTTP GET request. Searches the history for the text given
+     * in the "query" parameter and forwards to the search result page.
+     *
+     * @param request HttpServletRequest object containing the client's request.
+     * @param response HttpServletResponse object for sending the response.
+     * @throws ServletException if a servlet-specific error occurs.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        request.setCharacterEncoding("UTF-8");
+        String query = request.getParameter("query");
+        if (query == null || query.length() < HistoryTextIndex.MIN_QUERY_LENGTH) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                    "Search text must have at least " + HistoryTextIndex.MIN_QUERY_LENGTH + " characters.");
+            return;
+        }
+
+        List<HistorySummary> history = cipherService.searchOperationHistory(query);
+
+        if (history.isEmpty()) {
+            request.setAttribute("historyMessage", "No matching operations found.");
+        }
+
+        request.setAttribute("query", query);
+        request.setAttribute("history", history);
+        RequestDispatcher dispatcher = request.getRequestDispatcher("/searchResult.jsp");
+        dispatcher.forward(request, response);
+    }
+}
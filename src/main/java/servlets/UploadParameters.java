@@ -0,0 +1,72 @@
+package servlets;
+
+import jakarta.servlet.RequestDispatcher;
+import jakarta.servlet.http.HttpServletRequest;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Reading of the parameters of a file upload, shared by the servlets that
+ * accept a file either as a multipart/form-data part or as the raw request
+ * body. For a raw body the parameters are only read from the query string:
+ * asking the container for them would make it parse a body sent as
+ * application/x-www-form-urlencoded, the default of many clients, and consume
+ * the upload before it is read.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+final class UploadParameters {
+
+    /**
+     * Prevents instantiation.
+     */
+    private UploadParameters() {
+    }
+
+    /**
+     * Tells whether a request carries its file as a multipart/form-data part.
+     *
+     * @param request The request.
+     * @return true for a multipart request, false for a raw body.
+     */
+    static boolean isMultipart(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("multipart/form-data");
+    }
+
+    /**
+     * Reads a parameter of an upload: a form field or query parameter of a
+     * multipart request, and a query parameter of a raw body. A request
+     * forwarded from another servlet is read with its original query string.
+     *
+     * @param request The request.
+     * @param multipart Whether the request is a multipart request.
+     * @param name The name of the parameter.
+     * @return The first value of the parameter, or null if it is missing or
+     * malformed.
+     */
+    static String get(HttpServletRequest request, boolean multipart, String name) {
+        if (multipart) {
+            return request.getParameter(name);
+        }
+        Object forwarded = request.getAttribute(RequestDispatcher.FORWARD_QUERY_STRING);
+        String query = forwarded instanceof String ? (String) forwarded : request.getQueryString();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = equals < 0 ? pair : pair.substring(0, equals);
+            try {
+                if (name.equals(URLDecoder.decode(key, StandardCharsets.UTF_8))) {
+                    return equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+                }
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,207 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free, fixed-size broadcast ring. Any number of writers publish values
+ * without waiting for readers, and every reader follows the ring with its own
+ * {@link Cursor}. A reader that falls more than the capacity behind loses the
+ * overwritten values; the losses are counted per cursor and for the whole
+ * ring.
+ *
+ * @param <T> The type of the published values.
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class BroadcastRing<T> {
+
+    /**
+     * A published value together with its sequence number.
+     *
+     * @param <T> The type of the value.
+     */
+    private static final class Slot<T> {
+
+        /**
+         * The sequence number of the value.
+         */
+        private final long sequence;
+
+        /**
+         * The published value.
+         */
+        private final T value;
+
+        /**
+         * Creates a slot.
+         *
+         * @param sequence The sequence number of the value.
+         * @param value The published value.
+         */
+        private Slot(long sequence, T value) {
+            this.sequence = sequence;
+            this.value = value;
+        }
+    }
+
+    /**
+     * The slots of the ring.
+     */
+    private final AtomicReferenceArray<Slot<T>> slots;
+
+    /**
+     * The number of slots, a power of two.
+     */
+    private final int capacity;
+
+    /**
+     * Mask mapping a sequence number to its slot.
+     */
+    private final int mask;
+
+    /**
+     * The sequence number of the next value to be published.
+     */
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * The number of values lost by all cursors of the ring.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Creates a ring with at least the given capacity, rounded up to a power
+     * of two.
+     *
+     * @param capacity The minimum number of slots.
+     */
+    public BroadcastRing(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Ring capacity must be between 1 and 2^30.");
+        }
+        int rounded = 1;
+        while (rounded < capacity) {
+            rounded <<= 1;
+        }
+        this.capacity = rounded;
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+    }
+
+    /**
+     * Publishes a value. Never blocks and never waits for readers.
+     *
+     * @param value The value to publish.
+     * @return The sequence number assigned to the value.
+     */
+    public long publish(T value) {
+        long sequence = next.getAndIncrement();
+        slots.set((int) (sequence & mask), new Slot<>(sequence, value));
+        return sequence;
+    }
+
+    /**
+     * Gets the number of slots.
+     *
+     * @return The capacity of the ring.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of values published so far.
+     *
+     * @return The number of published values.
+     */
+    public long getPublished() {
+        return next.get();
+    }
+
+    /**
+     * Gets the number of values lost by all cursors because they were
+     * overwritten before being read.
+     *
+     * @return The number of dropped values.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Creates a cursor positioned at the oldest value still held by the ring.
+     *
+     * @return A new cursor.
+     */
+    public Cursor oldestCursor() {
+        return new Cursor(Math.max(0, next.get() - capacity));
+    }
+
+    /**
+     * Creates a cursor positioned after the last published value.
+     *
+     * @return A new cursor.
+     */
+    public Cursor latestCursor() {
+        return new Cursor(next.get());
+    }
+
+    /**
+     * Reading position of a single reader. A cursor must only be used by one
+     * thread at a time.
+     */
+    public final class Cursor {
+
+        /**
+         * The sequence number of the next value to read.
+         */
+        private long position;
+
+        /**
+         * The number of values this cursor lost.
+         */
+        private long lost;
+
+        /**
+         * Creates a cursor at the given position.
+         *
+         * @param position The sequence number of the first value to read.
+         */
+        private Cursor(long position) {
+            this.position = position;
+        }
+
+        /**
+         * Reads the next value, skipping values that were overwritten.
+         *
+         * @return The next value, or null if no new value has been published.
+         */
+        public T poll() {
+            while (true) {
+                Slot<T> slot = slots.get((int) (position & mask));
+                if (slot == null || slot.sequence < position) {
+                    return null;
+                }
+                if (slot.sequence == position) {
+                    position++;
+                    return slot.value;
+                }
+                long oldest = next.get() - capacity;
+                long skipped = oldest - position;
+                lost += skipped;
+                dropped.addAndGet(skipped);
+                position = oldest;
+            }
+        }
+
+        /**
+         * Gets the number of values this cursor lost because it fell behind.
+         *
+         * @return The number of lost values.
+         */
+        public long getLost() {
+            return lost;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package util;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import model.CipherDirection;
+
+/**
+ * Throughput benchmark of {@link CipherServer}. Every connection runs on its
+ * own thread and keeps up to the pipeline depth of encryption requests in
+ * flight; the benchmark reports requests and payload megabytes per second.
+ *
+ * Usage: {@code CipherBenchmark [host:port|embedded] [connections]
+ * [requestsPerConnection] [payloadBytes] [pipelineDepth]}
+ *
+ * With "embedded", the default, a server is started on a free local port for
+ * the duration of the benchmark.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class CipherBenchmark {
+
+    /**
+     * Number of rails used by the requests.
+     */
+    private static final int RAILS = 5;
+
+    /**
+     * Private constructor, this class is only used through its main method.
+     */
+    private CipherBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args The target and the load parameters, all optional.
+     */
+    public static void main(String[] args) {
+        String target = args.length > 0 ? args[0] : "embedded";
+        int connections;
+        int requests;
+        int payloadBytes;
+        int depth;
+        try {
+            connections = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+            requests = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+            payloadBytes = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+            depth = args.length > 4 ? Integer.parseInt(args[4]) : 32;
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: CipherBenchmark [host:port|embedded] [connections] [requestsPerConnection]"
+                    + " [payloadBytes] [pipelineDepth]");
+            System.exit(2);
+            return;
+        }
+
+        CipherServer server = null;
+        try {
+            String host;
+            int port;
+            if ("embedded".equals(target)) {
+                server = new CipherServer(new InetSocketAddress("localhost", 0),
+                        CipherProtocol.DEFAULT_MAX_FRAME_BYTES, null);
+                server.start();
+                host = "localhost";
+                port = server.getPort();
+            } else {
+                int colon = target.lastIndexOf(':');
+                host = colon > 0 ? target.substring(0, colon) : target;
+                port = colon > 0 ? Integer.parseInt(target.substring(colon + 1)) : CipherProtocol.DEFAULT_PORT;
+            }
+            long nanos = run(host, port, connections, requests, payloadBytes, depth);
+            double seconds = nanos / 1e9;
+            long total = (long) connections * requests;
+            System.out.printf("%d requests of %d bytes over %d connections, pipeline depth %d%n",
+                    total, payloadBytes, connections, depth);
+            System.out.printf("%.3f s, %.0f requests/s, %.1f MB/s%n",
+                    seconds, total / seconds, total * (double) payloadBytes / seconds / (1024 * 1024));
+        } catch (IOException | NumberFormatException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * Runs all connections and waits for them to finish.
+     *
+     * @param host The host name of the server.
+     * @param port The port of the server.
+     * @param connections The number of connections.
+     * @param requests The number of requests per connection.
+     * @param payloadBytes The size of every payload.
+     * @param depth The largest number of requests in flight per connection.
+     * @return The elapsed time in nanoseconds.
+     * @throws IOException If a connection fails.
+     */
+    static long run(String host, int port, int connections, int requests, int payloadBytes, int depth)
+            throws IOException {
+        byte[] payload = new byte[payloadBytes];
+        new Random(42).nextBytes(payload);
+        ExecutorService threads = Executors.newFixedThreadPool(connections);
+        try {
+            List<CipherClient> clients = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                clients.add(new CipherClient(host, port));
+            }
+            long start = System.nanoTime();
+            List<Future<Void>> results = new ArrayList<>();
+            for (CipherClient client : clients) {
+                results.add(threads.submit(() -> {
+                    try (client) {
+                        runConnection(client, payload, requests, depth);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+            return System.nanoTime() - start;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Benchmark interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Benchmark connection failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    /**
+     * Sends the requests of one connection, keeping up to {@code depth} of
+     * them in flight.
+     *
+     * @param client The connection.
+     * @param payload The payload of every request.
+     * @param requests The number of requests.
+     * @param depth The largest number of requests in flight.
+     * @throws IOException If the connection fails or a response has the wrong
+     * length.
+     */
+    private static void runConnection(CipherClient client, byte[] payload, int requests, int depth)
+            throws IOException {
+        int sent = 0;
+        int received = 0;
+        while (received < requests) {
+            while (sent < requests && sent - received < depth) {
+                client.send(CipherDirection.ENCRYPT, RAILS, payload);
+                sent++;
+            }
+            client.flush();
+            if (client.receive().length != payload.length) {
+                throw new IOException("Response of unexpected length");
+            }
+            received++;
+        }
+    }
+}
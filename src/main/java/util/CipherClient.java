@@ -0,0 +1,147 @@
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import model.CipherDirection;
+
+/**
+ * Blocking client of {@link CipherServer}.
+ *
+ * {@link #encrypt(byte[], int)} and {@link #decrypt(byte[], int)} send one
+ * request and wait for its response. To pipeline requests, call
+ * {@link #send(CipherDirection, int, byte[])} several times, then
+ * {@link #flush()}, then {@link #receive()} once per request; the responses
+ * arrive in the order of the requests.
+ *
+ * A client is not thread safe.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class CipherClient implements AutoCloseable {
+
+    /**
+     * Size of the socket stream buffers.
+     */
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The socket connected to the server.
+     */
+    private final Socket socket;
+
+    /**
+     * Buffered stream of the requests.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * Buffered stream of the responses.
+     */
+    private final DataInputStream in;
+
+    /**
+     * Connects to a server.
+     *
+     * @param host The host name of the server.
+     * @param port The port of the server.
+     * @throws IOException If the connection fails.
+     */
+    public CipherClient(String host, int port) throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), STREAM_BUFFER_SIZE));
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), STREAM_BUFFER_SIZE));
+    }
+
+    /**
+     * Encrypts bytes on the server.
+     *
+     * @param payload The plain text bytes.
+     * @param rails The number of rails.
+     * @return The encrypted bytes.
+     * @throws IOException If the connection fails or the server reports an
+     * error.
+     */
+    public byte[] encrypt(byte[] payload, int rails) throws IOException {
+        send(CipherDirection.ENCRYPT, rails, payload);
+        flush();
+        return receive();
+    }
+
+    /**
+     * Decrypts bytes on the server.
+     *
+     * @param payload The encrypted bytes.
+     * @param rails The number of rails.
+     * @return The decrypted bytes.
+     * @throws IOException If the connection fails or the server reports an
+     * error.
+     */
+    public byte[] decrypt(byte[] payload, int rails) throws IOException {
+        send(CipherDirection.DECRYPT, rails, payload);
+        flush();
+        return receive();
+    }
+
+    /**
+     * Buffers a request without waiting for its response.
+     *
+     * @param direction The direction of the operation.
+     * @param rails The number of rails.
+     * @param payload The bytes to process.
+     * @throws IOException If the connection fails.
+     */
+    public void send(CipherDirection direction, int rails, byte[] payload) throws IOException {
+        out.writeInt(CipherProtocol.REQUEST_HEADER_BYTES + payload.length);
+        out.writeByte(direction.getSymbol());
+        out.writeInt(rails);
+        out.write(payload);
+    }
+
+    /**
+     * Sends the buffered requests.
+     *
+     * @throws IOException If the connection fails.
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Waits for the response to the oldest unanswered request.
+     *
+     * @return The processed bytes.
+     * @throws IOException If the connection fails or the server reports an
+     * error, in which case the message of the exception is the message of the
+     * server and later responses can still be received.
+     */
+    public byte[] receive() throws IOException {
+        int length = in.readInt();
+        if (length < CipherProtocol.RESPONSE_HEADER_BYTES) {
+            throw new IOException("Invalid response frame length: " + length);
+        }
+        byte status = in.readByte();
+        byte[] body = new byte[length - CipherProtocol.RESPONSE_HEADER_BYTES];
+        in.readFully(body);
+        if (status != CipherProtocol.STATUS_OK) {
+            throw new IOException(new String(body, StandardCharsets.UTF_8));
+        }
+        return body;
+    }
+
+    /**
+     * Closes the connection.
+     *
+     * @throws IOException If the socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
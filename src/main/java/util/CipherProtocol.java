@@ -0,0 +1,64 @@
+package util;
+
+/**
+ * Constants of the binary frame protocol spoken by {@link CipherServer} and
+ * {@link CipherClient}.
+ *
+ * Every frame starts with a big-endian int giving the number of bytes that
+ * follow it. A request continues with a one byte operation ('E' to encrypt,
+ * 'D' to decrypt), a big-endian int number of rails and the payload. A
+ * response continues with a one byte status and either the processed payload
+ * or, for errors, a UTF-8 message. The payload is processed as single byte
+ * units, so it may be Latin-1 text or binary data.
+ *
+ * A client may send several requests without waiting; the responses come back
+ * in the order of the requests.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class CipherProtocol {
+
+    /**
+     * Default TCP port of the server.
+     */
+    public static final int DEFAULT_PORT = 7070;
+
+    /**
+     * Number of bytes of the length prefix of a frame.
+     */
+    public static final int LENGTH_BYTES = 4;
+
+    /**
+     * Number of bytes of a request frame before the payload, not counting the
+     * length prefix: the operation and the number of rails.
+     */
+    public static final int REQUEST_HEADER_BYTES = 5;
+
+    /**
+     * Number of bytes of a response frame before the payload, not counting the
+     * length prefix: the status.
+     */
+    public static final int RESPONSE_HEADER_BYTES = 1;
+
+    /**
+     * Default largest accepted frame, not counting the length prefix.
+     */
+    public static final int DEFAULT_MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * Status of a successful response.
+     */
+    public static final byte STATUS_OK = 0;
+
+    /**
+     * Status of a failed response, followed by a UTF-8 error message.
+     */
+    public static final byte STATUS_ERROR = 1;
+
+    /**
+     * Private constructor, this class only holds constants.
+     */
+    private CipherProtocol() {
+    }
+}
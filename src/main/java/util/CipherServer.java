@@ -0,0 +1,914 @@
+package util;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import model.ByteSegment;
+import model.CipherDirection;
+import model.HistoryShards;
+import model.InvalidRailNumberException;
+import model.OffHeapRailFenceEngine;
+import model.RailFenceEngine;
+import model.RailFenceModel;
+
+/**
+ * Standalone TCP server for the Rail Fence Cipher speaking the binary frame
+ * protocol described in {@link CipherProtocol}, for clients that do not need
+ * the web pages.
+ *
+ * One thread runs a non-blocking Selector over all connections. Requests are
+ * parsed out of a pooled direct read buffer, copied into another pooled
+ * buffer and processed by {@link OffHeapRailFenceEngine} on a fixed pool of
+ * worker threads into a pooled direct response buffer, so small requests do
+ * not allocate on the heap and a long request never stalls the selector. The
+ * workers hand the responses back to the selector thread, which sends them.
+ * A request arriving while the queue of the workers is full is answered with
+ * an error. Only frames larger than a pool buffer are collected in a heap
+ * array. The arrays of all connections share
+ * one byte budget; a large frame arriving while the budget is used up is
+ * answered with an error and its payload discarded, so a burst of large
+ * frames cannot exhaust the heap. Several requests of one connection may
+ * be in flight, their responses are queued in order and written with gathering
+ * writes, and a connection stops being read while too many response bytes are
+ * waiting to be sent.
+ *
+ * Optionally each operation is recorded in the history through
+ * {@link RailFenceModel}. Like file uploads, only the size and SHA-256 digests
+ * are stored. The records are written by a separate thread from a bounded
+ * queue, so a slow database never stalls the selector; records that do not
+ * fit in the queue are dropped and counted.
+ *
+ * Usage: {@code CipherServer [port] [--history]}
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class CipherServer implements AutoCloseable {
+
+    /**
+     * Logger for logging information, warnings, and errors.
+     */
+    private static final Logger LOGGER = Logger.getLogger(CipherServer.class.getName());
+
+    /**
+     * Capacity of the pooled read and response buffers.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Largest number of idle buffers kept in the pool.
+     */
+    private static final int MAX_IDLE_BUFFERS = 256;
+
+    /**
+     * Number of queued response bytes above which a connection is not read.
+     */
+    private static final long MAX_PENDING_BYTES = 4L * 1024 * 1024;
+
+    /**
+     * Default number of bytes all connections together may hold in large
+     * frame arrays.
+     */
+    public static final long DEFAULT_MAX_LARGE_FRAME_BYTES = 256L * 1024 * 1024;
+
+    /**
+     * Largest number of responses passed to one gathering write.
+     */
+    private static final int MAX_WRITE_BATCH = 64;
+
+    /**
+     * Number of history records that may wait to be written.
+     */
+    private static final int HISTORY_QUEUE_SIZE = 10_000;
+
+    /**
+     * Number of requests that may wait for a worker thread.
+     */
+    private static final int WORK_QUEUE_SIZE = 1024;
+
+    /**
+     * The address to listen on.
+     */
+    private final InetSocketAddress address;
+
+    /**
+     * Largest accepted frame, not counting the length prefix.
+     */
+    private final int maxFrameBytes;
+
+    /**
+     * Number of bytes all connections together may hold in large frame
+     * arrays.
+     */
+    private final long maxLargeFrameBytes;
+
+    /**
+     * The model recording the history, null if the history is not recorded.
+     */
+    private final RailFenceModel historyModel;
+
+    /**
+     * Thread writing the history records, null if the history is not
+     * recorded.
+     */
+    private final ThreadPoolExecutor historyWriter;
+
+    /**
+     * Threads processing the requests.
+     */
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * Connections with responses handed back by the workers, to be sent by
+     * the selector thread.
+     */
+    private final ConcurrentLinkedQueue<Connection> completed = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Pool of the read and response buffers.
+     */
+    private final DirectBufferPool pool = new DirectBufferPool(BUFFER_SIZE, MAX_IDLE_BUFFERS);
+
+    /**
+     * Number of processed requests, including failed ones.
+     */
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * Number of error responses.
+     */
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * Number of history records dropped because the queue was full.
+     */
+    private final AtomicLong droppedHistory = new AtomicLong();
+
+    /**
+     * Number of bytes currently held in large frame arrays.
+     */
+    private final AtomicLong largeFrameBytes = new AtomicLong();
+
+    /**
+     * Number of large frames rejected because the budget was used up.
+     */
+    private final AtomicLong rejectedLargeFrames = new AtomicLong();
+
+    /**
+     * The selector of the server socket and all connections.
+     */
+    private Selector selector;
+
+    /**
+     * The listening socket.
+     */
+    private ServerSocketChannel server;
+
+    /**
+     * The thread running the selector.
+     */
+    private Thread thread;
+
+    /**
+     * Whether the server should keep running.
+     */
+    private volatile boolean running;
+
+    /**
+     * Creates a server that is not yet listening.
+     *
+     * @param address The address to listen on, port 0 for any free port.
+     * @param maxFrameBytes The largest accepted frame.
+     * @param historyModel The model recording the history, or null to not
+     * record it.
+     */
+    public CipherServer(InetSocketAddress address, int maxFrameBytes, RailFenceModel historyModel) {
+        this(address, maxFrameBytes, DEFAULT_MAX_LARGE_FRAME_BYTES, historyModel);
+    }
+
+    /**
+     * Creates a server that is not yet listening, with a budget for the
+     * arrays of large frames.
+     *
+     * @param address The address to listen on, port 0 for any free port.
+     * @param maxFrameBytes The largest accepted frame.
+     * @param maxLargeFrameBytes The number of bytes all connections together
+     * may hold in large frame arrays.
+     * @param historyModel The model recording the history, or null to not
+     * record it.
+     */
+    public CipherServer(InetSocketAddress address, int maxFrameBytes, long maxLargeFrameBytes,
+            RailFenceModel historyModel) {
+        this.address = address;
+        this.maxFrameBytes = maxFrameBytes;
+        this.maxLargeFrameBytes = maxLargeFrameBytes;
+        this.historyModel = historyModel;
+        int threads = Runtime.getRuntime().availableProcessors();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(WORK_QUEUE_SIZE), runnable -> {
+                    Thread worker = new Thread(runnable, "cipher-server-worker");
+                    worker.setDaemon(true);
+                    return worker;
+                });
+        if (historyModel != null) {
+            this.historyWriter = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(HISTORY_QUEUE_SIZE), runnable -> {
+                        Thread writer = new Thread(runnable, "cipher-server-history");
+                        writer.setDaemon(true);
+                        return writer;
+                    });
+        } else {
+            this.historyWriter = null;
+        }
+    }
+
+    /**
+     * Binds the server socket and starts the selector thread.
+     *
+     * @throws IOException If the socket cannot be bound.
+     */
+    public synchronized void start() throws IOException {
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        thread = new Thread(this::run, "cipher-server");
+        thread.start();
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return The local port.
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Gets the number of processed requests.
+     *
+     * @return The number of requests, including failed ones.
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Gets the number of error responses.
+     *
+     * @return The number of error responses.
+     */
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    /**
+     * Gets the number of history records dropped because the history writer
+     * could not keep up.
+     *
+     * @return The number of dropped records.
+     */
+    public long getDroppedHistoryCount() {
+        return droppedHistory.get();
+    }
+
+    /**
+     * Gets the number of bytes currently held in large frame arrays.
+     *
+     * @return The number of bytes.
+     */
+    public long getLargeFrameBytes() {
+        return largeFrameBytes.get();
+    }
+
+    /**
+     * Gets the number of large frames rejected because the budget for large
+     * frame arrays was used up.
+     *
+     * @return The number of rejected frames.
+     */
+    public long getRejectedLargeFrameCount() {
+        return rejectedLargeFrames.get();
+    }
+
+    /**
+     * Stops the server, waits for the requests being processed, closes all
+     * connections and waits for queued history records to be written.
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (historyWriter != null) {
+            historyWriter.shutdown();
+            try {
+                historyWriter.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Runs the selector loop until the server is closed.
+     */
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                Connection done;
+                while ((done = completed.poll()) != null) {
+                    try {
+                        done.drain();
+                    } catch (IOException e) {
+                        LOGGER.log(Level.FINE, "Closing cipher connection", e);
+                        done.close();
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.write();
+                        }
+                    } catch (IOException e) {
+                        LOGGER.log(Level.FINE, "Closing cipher connection", e);
+                        connection.close();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Cipher server failed", e);
+        } finally {
+            workers.shutdown();
+            try {
+                workers.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    ((Connection) key.attachment()).close();
+                }
+            }
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Error closing cipher server", e);
+            }
+        }
+    }
+
+    /**
+     * Accepts all pending connections.
+     *
+     * @throws IOException If the server socket fails.
+     */
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new Connection(channel, key));
+        }
+    }
+
+    /**
+     * Response of a request, filled in by a worker thread.
+     */
+    private static final class Reply {
+
+        /**
+         * Number of bytes reserved for the response in the pending bytes of
+         * the connection.
+         */
+        private final long reserved;
+
+        /**
+         * The response, ready to be written, null while being processed.
+         */
+        private volatile ByteBuffer response;
+
+        /**
+         * Creates a reply.
+         *
+         * @param reserved The number of bytes reserved for the response.
+         */
+        private Reply(long reserved) {
+            this.reserved = reserved;
+        }
+    }
+
+    /**
+     * State of one client connection. Only used by the selector thread,
+     * except for {@link #process} run by the workers.
+     */
+    private final class Connection {
+
+        /**
+         * The socket of the connection.
+         */
+        private final SocketChannel channel;
+
+        /**
+         * The selection key of the connection.
+         */
+        private final SelectionKey key;
+
+        /**
+         * Pooled buffer receiving the requests, in write mode between reads.
+         */
+        private ByteBuffer in = pool.acquire();
+
+        /**
+         * Responses waiting to be written, in request order.
+         */
+        private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+
+        /**
+         * Replies of requests after the first one still being processed, in
+         * request order; they are moved to {@link #out} once complete.
+         */
+        private final ArrayDeque<Reply> inFlight = new ArrayDeque<>();
+
+        /**
+         * Reused array of the responses passed to a gathering write.
+         */
+        private final ByteBuffer[] batch = new ByteBuffer[MAX_WRITE_BATCH];
+
+        /**
+         * Number of response bytes waiting to be written or reserved for
+         * requests being processed.
+         */
+        private long pendingBytes;
+
+        /**
+         * Payload of a request larger than the read buffer, null if none is
+         * being received.
+         */
+        private byte[] large;
+
+        /**
+         * Number of bytes of {@link #large} received so far.
+         */
+        private int largeFilled;
+
+        /**
+         * Number of payload bytes of a rejected large request still to be
+         * discarded.
+         */
+        private int skipping;
+
+        /**
+         * Operation of the large request.
+         */
+        private byte largeOp;
+
+        /**
+         * Number of rails of the large request.
+         */
+        private int largeRails;
+
+        /**
+         * Whether the connection is closed once the queued responses are
+         * written, after a malformed frame.
+         */
+        private boolean closing;
+
+        /**
+         * Creates the state of a new connection.
+         *
+         * @param channel The socket of the connection.
+         * @param key The selection key of the connection.
+         */
+        private Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        /**
+         * Reads available bytes, answers all complete requests and starts
+         * writing the responses.
+         *
+         * @throws IOException If the socket fails.
+         */
+        private void read() throws IOException {
+            int read = channel.read(in);
+            if (read < 0) {
+                close();
+                return;
+            }
+            in.flip();
+            parse();
+            in.compact();
+            write();
+        }
+
+        /**
+         * Answers the complete requests in the read buffer.
+         */
+        private void parse() {
+            while (!closing) {
+                if (skipping > 0) {
+                    int take = Math.min(in.remaining(), skipping);
+                    in.position(in.position() + take);
+                    skipping -= take;
+                    if (skipping > 0) {
+                        return;
+                    }
+                    continue;
+                }
+                if (large != null) {
+                    int take = Math.min(in.remaining(), large.length - largeFilled);
+                    in.get(large, largeFilled, take);
+                    largeFilled += take;
+                    if (largeFilled < large.length) {
+                        return;
+                    }
+                    ByteBuffer payload = ByteBuffer.wrap(large);
+                    large = null;
+                    respond(largeOp, largeRails, payload, payload.capacity());
+                    continue;
+                }
+                if (in.remaining() < CipherProtocol.LENGTH_BYTES) {
+                    return;
+                }
+                int frameLength = in.getInt(in.position());
+                if (frameLength < CipherProtocol.REQUEST_HEADER_BYTES || frameLength > maxFrameBytes) {
+                    error("Invalid frame length: " + frameLength);
+                    closing = true;
+                    in.position(in.limit());
+                    return;
+                }
+                if (in.remaining() < CipherProtocol.LENGTH_BYTES + CipherProtocol.REQUEST_HEADER_BYTES) {
+                    return;
+                }
+                int total = CipherProtocol.LENGTH_BYTES + frameLength;
+                int payloadLength = frameLength - CipherProtocol.REQUEST_HEADER_BYTES;
+                if (in.remaining() >= total) {
+                    in.getInt();
+                    byte op = in.get();
+                    int rails = in.getInt();
+                    ByteBuffer payload = in.slice();
+                    payload.limit(payloadLength);
+                    in.position(in.position() + payloadLength);
+                    respond(op, rails, payload, 0);
+                } else if (total > in.capacity()) {
+                    in.getInt();
+                    byte op = in.get();
+                    int rails = in.getInt();
+                    if (largeFrameBytes.addAndGet(payloadLength) > maxLargeFrameBytes) {
+                        largeFrameBytes.addAndGet(-payloadLength);
+                        rejectedLargeFrames.incrementAndGet();
+                        requests.incrementAndGet();
+                        error("Server is busy, too many large requests.");
+                        skipping = payloadLength;
+                        continue;
+                    }
+                    largeOp = op;
+                    largeRails = rails;
+                    large = new byte[payloadLength];
+                    largeFilled = 0;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Returns the array of the large request to the budget.
+         */
+        private void releaseLarge() {
+            largeFrameBytes.addAndGet(-large.length);
+            large = null;
+        }
+
+        /**
+         * Checks one request and hands it to a worker, or queues an error
+         * response.
+         *
+         * @param op The operation byte.
+         * @param rails The number of rails.
+         * @param payload The payload, between position and limit.
+         * @param budget The number of bytes of the large frame budget held by
+         * the payload array, 0 if the payload is a slice of the read buffer.
+         * The budget is returned once the request is processed.
+         */
+        private void respond(byte op, int rails, ByteBuffer payload, int budget) {
+            requests.incrementAndGet();
+            CipherDirection direction;
+            if (op == (byte) CipherDirection.ENCRYPT.getSymbol()) {
+                direction = CipherDirection.ENCRYPT;
+            } else if (op == (byte) CipherDirection.DECRYPT.getSymbol()) {
+                direction = CipherDirection.DECRYPT;
+            } else {
+                largeFrameBytes.addAndGet(-budget);
+                error("Unknown operation: " + (op & 0xFF));
+                return;
+            }
+            try {
+                RailFenceEngine.checkRails(rails);
+            } catch (InvalidRailNumberException e) {
+                largeFrameBytes.addAndGet(-budget);
+                error(e.getMessage());
+                return;
+            }
+            ByteBuffer input = budget > 0 ? payload : pool.acquire().put(payload).flip();
+            Reply reply = new Reply(CipherProtocol.LENGTH_BYTES + CipherProtocol.RESPONSE_HEADER_BYTES
+                    + input.remaining());
+            try {
+                workers.execute(() -> process(reply, direction, rails, input, budget));
+            } catch (RejectedExecutionException e) {
+                pool.release(input);
+                largeFrameBytes.addAndGet(-budget);
+                error("Server is busy, too many requests.");
+                return;
+            }
+            inFlight.add(reply);
+            pendingBytes += reply.reserved;
+        }
+
+        /**
+         * Processes one request on a worker thread and hands the response
+         * back to the selector thread.
+         *
+         * @param reply The reply receiving the response.
+         * @param direction The direction of the operation.
+         * @param rails The number of rails.
+         * @param input The payload, owned by this method.
+         * @param budget The number of bytes of the large frame budget to
+         * return.
+         */
+        private void process(Reply reply, CipherDirection direction, int rails, ByteBuffer input, int budget) {
+            ByteBuffer response = null;
+            try {
+                int length = input.remaining();
+                int frameLength = CipherProtocol.RESPONSE_HEADER_BYTES + length;
+                int total = CipherProtocol.LENGTH_BYTES + frameLength;
+                ByteBuffer buffer = total <= pool.getBufferSize() ? pool.acquire() : ByteBuffer.allocate(total);
+                buffer.putInt(frameLength).put(CipherProtocol.STATUS_OK);
+                ByteBuffer body = buffer.slice();
+                body.limit(length);
+                try {
+                    if (direction == CipherDirection.ENCRYPT) {
+                        OffHeapRailFenceEngine.encrypt(ByteSegment.wrap(input), ByteSegment.wrap(body), rails);
+                    } else {
+                        OffHeapRailFenceEngine.decrypt(ByteSegment.wrap(input), ByteSegment.wrap(body), rails);
+                    }
+                } catch (InvalidRailNumberException e) {
+                    pool.release(buffer);
+                    response = errorResponse(e.getMessage());
+                    return;
+                }
+                if (historyWriter != null) {
+                    record(direction, rails, input, body);
+                }
+                buffer.position(buffer.position() + length);
+                buffer.flip();
+                response = buffer;
+            } finally {
+                pool.release(input);
+                largeFrameBytes.addAndGet(-budget);
+                reply.response = response != null ? response : errorResponse("Request failed.");
+                completed.add(this);
+                selector.wakeup();
+            }
+        }
+
+        /**
+         * Moves the complete replies at the head of the in-flight queue to
+         * the write queue and writes them. Replies completing after the
+         * connection is closed only return their buffers to the pool.
+         *
+         * @throws IOException If the socket fails.
+         */
+        private void drain() throws IOException {
+            while (!inFlight.isEmpty() && inFlight.peek().response != null) {
+                Reply reply = inFlight.poll();
+                if (in == null) {
+                    pool.release(reply.response);
+                    continue;
+                }
+                out.add(reply.response);
+                pendingBytes += reply.response.remaining() - reply.reserved;
+            }
+            if (in != null) {
+                write();
+            }
+        }
+
+        /**
+         * Queues an error response.
+         *
+         * @param message The error message.
+         */
+        private void error(String message) {
+            queue(errorResponse(message));
+        }
+
+        /**
+         * Appends a response to the write queue, behind the requests still
+         * being processed.
+         *
+         * @param response The response, ready to be written.
+         */
+        private void queue(ByteBuffer response) {
+            if (inFlight.isEmpty()) {
+                out.add(response);
+            } else {
+                Reply reply = new Reply(response.remaining());
+                reply.response = response;
+                inFlight.add(reply);
+            }
+            pendingBytes += response.remaining();
+        }
+
+        /**
+         * Writes as many queued responses as the socket accepts and updates
+         * the interest of the connection.
+         *
+         * @throws IOException If the socket fails.
+         */
+        private void write() throws IOException {
+            while (!out.isEmpty()) {
+                int count = 0;
+                for (ByteBuffer response : out) {
+                    batch[count++] = response;
+                    if (count == batch.length) {
+                        break;
+                    }
+                }
+                pendingBytes -= channel.write(batch, 0, count);
+                boolean socketFull = batch[count - 1].hasRemaining();
+                Arrays.fill(batch, 0, count, null);
+                while (!out.isEmpty() && !out.peek().hasRemaining()) {
+                    pool.release(out.poll());
+                }
+                if (socketFull) {
+                    break;
+                }
+            }
+            if (out.isEmpty() && inFlight.isEmpty() && closing) {
+                close();
+                return;
+            }
+            int ops = 0;
+            if (!closing && pendingBytes < MAX_PENDING_BYTES) {
+                ops |= SelectionKey.OP_READ;
+            }
+            if (!out.isEmpty()) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(ops);
+        }
+
+        /**
+         * Closes the socket and returns the buffers to the pool.
+         */
+        private void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Error closing cipher connection", e);
+            }
+            if (in != null) {
+                pool.release(in);
+                in = null;
+            }
+            if (large != null) {
+                releaseLarge();
+            }
+            for (ByteBuffer response : out) {
+                pool.release(response);
+            }
+            out.clear();
+            closing = true;
+            while (!inFlight.isEmpty() && inFlight.peek().response != null) {
+                pool.release(inFlight.poll().response);
+            }
+        }
+    }
+
+    /**
+     * Builds an error response and counts it.
+     *
+     * @param message The error message.
+     * @return The response, ready to be written.
+     */
+    private ByteBuffer errorResponse(String message) {
+        errors.incrementAndGet();
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer response = ByteBuffer.allocate(CipherProtocol.LENGTH_BYTES + CipherProtocol.RESPONSE_HEADER_BYTES
+                + text.length);
+        response.putInt(CipherProtocol.RESPONSE_HEADER_BYTES + text.length).put(CipherProtocol.STATUS_ERROR)
+                .put(text).flip();
+        return response;
+    }
+
+    /**
+     * Hands a history record of an operation to the history writer.
+     *
+     * @param direction The direction of the operation.
+     * @param rails The number of rails.
+     * @param input The input bytes, between position and limit.
+     * @param output The output bytes, between position and limit.
+     */
+    private void record(CipherDirection direction, int rails, ByteBuffer input, ByteBuffer output) {
+        String original = input.remaining() + " bytes, SHA-256 " + Fingerprints.sha256(input.duplicate());
+        String processed = "SHA-256 " + Fingerprints.sha256(output.duplicate());
+        String type = direction == CipherDirection.ENCRYPT ? "Encrypt" : "Decrypt";
+        try {
+            historyWriter.execute(() -> historyModel.createOperationHistory(type, original, processed, rails));
+        } catch (RejectedExecutionException e) {
+            droppedHistory.incrementAndGet();
+        }
+    }
+
+    /**
+     * Runs the server until the process is stopped.
+     *
+     * @param args The optional port and the optional "--history" flag.
+     */
+    public static void main(String[] args) {
+        int port = CipherProtocol.DEFAULT_PORT;
+        boolean history = false;
+        for (String arg : args) {
+            if ("--history".equals(arg)) {
+                history = true;
+            } else {
+                try {
+                    port = Integer.parseInt(arg);
+                } catch (NumberFormatException e) {
+                    System.err.println("Usage: CipherServer [port] [--history]");
+                    System.exit(2);
+                }
+            }
+        }
+        EntityManagerFactory emf = history ? Persistence.createEntityManagerFactory("RFCipher") : null;
+        HistoryShards shards = emf != null
+                ? new HistoryShards(Collections.singletonList(emf), HistoryShards.Routing.HASH) : null;
+        CipherServer cipherServer = new CipherServer(new InetSocketAddress(port), CipherProtocol.DEFAULT_MAX_FRAME_BYTES,
+                shards != null ? new RailFenceModel(shards) : null);
+        try {
+            cipherServer.start();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            cipherServer.close();
+            if (shards != null) {
+                shards.close();
+                emf.close();
+            }
+        }));
+        System.out.println("Cipher server listening on port " + cipherServer.getPort());
+    }
+}
@@ -0,0 +1,102 @@
+package util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct ByteBuffers of one size. Direct buffers are expensive to
+ * allocate and are only freed by the garbage collector, so they are reused
+ * instead of being allocated per connection or per response.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class DirectBufferPool {
+
+    /**
+     * Capacity of every buffer of the pool.
+     */
+    private final int bufferSize;
+
+    /**
+     * Largest number of idle buffers kept by the pool.
+     */
+    private final int maxIdle;
+
+    /**
+     * The idle buffers.
+     */
+    private final ConcurrentLinkedQueue<ByteBuffer> idle = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of idle buffers, kept separately because the size of the queue
+     * is not constant time.
+     */
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param bufferSize The capacity of every buffer.
+     * @param maxIdle The largest number of idle buffers to keep.
+     */
+    public DirectBufferPool(int bufferSize, int maxIdle) {
+        if (bufferSize < 1 || maxIdle < 0) {
+            throw new IllegalArgumentException("Invalid buffer pool size.");
+        }
+        this.bufferSize = bufferSize;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Gets the capacity of the buffers of the pool.
+     *
+     * @return The buffer size in bytes.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Takes a cleared buffer from the pool, allocating a new one if none is
+     * idle.
+     *
+     * @return A direct buffer of {@link #getBufferSize()} bytes.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = idle.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        idleCount.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. Buffers that were not obtained from a pool
+     * of this size are ignored, as are buffers beyond the idle limit.
+     *
+     * @param buffer The buffer to return.
+     */
+    public void release(ByteBuffer buffer) {
+        if (!buffer.isDirect() || buffer.capacity() != bufferSize) {
+            return;
+        }
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        buffer.clear();
+        idle.offer(buffer);
+    }
+
+    /**
+     * Gets the number of idle buffers.
+     *
+     * @return The number of buffers waiting in the pool.
+     */
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+}
@@ -0,0 +1,99 @@
+package util;
+
+import jakarta.inject.Inject;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import model.AdaptiveCipherDispatcher;
+import model.CipherService;
+import model.EngineProfile;
+
+/**
+ * ServletContextListener that installs a calibrated engine profile in the
+ * dispatcher of the {@link CipherService} when the web application starts.
+ *
+ * If the "engineProfile" context parameter names a profile file saved on a
+ * host with the same number of processors, the profile is loaded from it.
+ * Otherwise the engines are calibrated on a background thread and the result
+ * is saved to that file, if one is configured. Until then every call uses the
+ * default engine. A calibration still running when the application is
+ * undeployed is cancelled.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+@WebListener
+public class EngineCalibrationListener implements ServletContextListener {
+
+    /**
+     * Logger for the calibration.
+     */
+    private static final Logger LOGGER = Logger.getLogger(EngineCalibrationListener.class.getName());
+
+    /**
+     * The application-wide service owning the engine dispatcher.
+     */
+    @Inject
+    private CipherService cipherService;
+
+    /**
+     * Loads or calibrates the engine profile.
+     *
+     * @param sce ServletContextEvent provided by the container.
+     */
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        Path file = getProfileFile(sce.getServletContext().getInitParameter("engineProfile"));
+        AdaptiveCipherDispatcher dispatcher = cipherService.getEngineDispatcher();
+        if (file != null && Files.isRegularFile(file)) {
+            try {
+                EngineProfile profile = EngineProfile.load(file);
+                if (profile.getProcessors() == Runtime.getRuntime().availableProcessors()) {
+                    dispatcher.setProfile(profile);
+                    return;
+                }
+                LOGGER.log(Level.INFO, "Engine profile {0} was made on another host, recalibrating", file);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Cannot load engine profile " + file + ", recalibrating", e);
+            }
+        }
+        CompletableFuture<EngineProfile> calibration = dispatcher.recalibrateAsync();
+        if (calibration != null && file != null) {
+            calibration.thenAccept(profile -> {
+                try {
+                    profile.save(file);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Cannot save engine profile " + file, e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Cancels a running calibration and waits for its thread to end, so it
+     * does not outlive the application.
+     *
+     * @param sce ServletContextEvent provided by the container.
+     */
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        cipherService.getEngineDispatcher().cancelCalibration();
+    }
+
+    /**
+     * Resolves the "engineProfile" context parameter.
+     *
+     * @param parameter The value of the parameter, may be null.
+     * @return The profile file, or null if none is configured.
+     */
+    public static Path getProfileFile(String parameter) {
+        return parameter == null || parameter.isBlank() ? null : Paths.get(parameter.trim());
+    }
+}
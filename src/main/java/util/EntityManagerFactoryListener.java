@@ -1,10 +1,25 @@
 package util;
 
+import jakarta.inject.Inject;
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
 import jakarta.servlet.annotation.WebListener;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Persistence;
+import jakarta.servlet.ServletContext;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import model.CipherService;
+import model.HistoryLog;
+import model.HistoryReplayer;
+import model.HistoryShards;
+import model.RailFenceModel;
 
 /**
  * ServletContextListener that manages the lifecycle of the
@@ -16,7 +31,21 @@ import jakarta.persistence.Persistence;
  * closed when the web application is shut down.
  *
  * The EntityManagerFactory is created for the "RFCipher" persistence unit as
- * defined in the persistence.xml.
+ * defined in the persistence.xml. Once it is available, the in-memory read
+ * model of recent history and the index of the history texts, both owned by
+ * the {@link CipherService}, are loaded on a background thread.
+ *
+ * The history can be split across several databases by listing their JDBC
+ * URLs, separated by commas, in the "historyShardUrls" context parameter. One
+ * EntityManagerFactory of the "RFCipher" unit is then created per URL, and the
+ * "historyShardRouting" parameter selects how new records are routed ("hash",
+ * the default, or "time").
+ *
+ * When the "historyLogDirectory" parameter names a local directory, new
+ * history records are written to a {@link HistoryLog} there and moved to the
+ * databases by a {@link HistoryReplayer}. The "historyLogSyncRecords" (64 by
+ * default) and "historyLogSyncMillis" (5 by default) parameters set its group
+ * commit, and "historyLogSegmentSize" the size of its segment files.
  *
  * @author Magdalena Koncowicz
  * @version 1.0
@@ -24,6 +53,28 @@ import jakarta.persistence.Persistence;
 @WebListener
 public class EntityManagerFactoryListener implements ServletContextListener {
 
+    /**
+     * Logger for logging information, warnings, and errors.
+     */
+    private static final Logger LOGGER = Logger.getLogger(EntityManagerFactoryListener.class.getName());
+
+    /**
+     * The default number of pending history log records starting a sync.
+     */
+    private static final int DEFAULT_SYNC_RECORDS = 64;
+
+    /**
+     * The default longest wait of a history log record for a sync, in
+     * milliseconds.
+     */
+    private static final int DEFAULT_SYNC_MILLIS = 5;
+
+    /**
+     * The application-wide service owning the in-memory views of the history.
+     */
+    @Inject
+    private CipherService cipherService;
+
     /**
      * Static instance of EntityManagerFactory used across the application.
      *
@@ -32,27 +83,79 @@ public class EntityManagerFactoryListener implements ServletContextListener {
      */
     private static EntityManagerFactory emf;
 
+    /**
+     * The factories of all history shards, the first one being {@link #emf}.
+     */
+    private static List<EntityManagerFactory> factories = Collections.emptyList();
+
+    /**
+     * The history shards built from {@link #factories}.
+     */
+    private static HistoryShards shards;
+
+    /**
+     * The write-ahead log of the history, null if it is not enabled.
+     */
+    private static HistoryLog historyLog;
+
+    /**
+     * The replayer of {@link #historyLog}, null if it is not enabled.
+     */
+    private static HistoryReplayer replayer;
+
     /**
      * Initializes the EntityManagerFactory when the web application context is
-     * initialized.
+     * initialized and starts loading the history read model and index.
      *
      * @param sce ServletContextEvent provided by the container.
      */
     @Override
     public void contextInitialized(ServletContextEvent sce) {
-        emf = Persistence.createEntityManagerFactory("RFCipher");
+        String urls = sce.getServletContext().getInitParameter("historyShardUrls");
+        List<EntityManagerFactory> created = new ArrayList<>();
+        if (urls == null || urls.isBlank()) {
+            created.add(Persistence.createEntityManagerFactory("RFCipher"));
+        } else {
+            for (String url : urls.split(",")) {
+                created.add(Persistence.createEntityManagerFactory("RFCipher",
+                        Map.of("jakarta.persistence.jdbc.url", url.trim())));
+            }
+        }
+        String routing = sce.getServletContext().getInitParameter("historyShardRouting");
+        factories = created;
+        emf = created.get(0);
+        shards = new HistoryShards(created, "time".equalsIgnoreCase(routing)
+                ? HistoryShards.Routing.TIME_BUCKET : HistoryShards.Routing.HASH);
+        RailFenceModel model = cipherService.getHistoryModel();
+        openHistoryLog(sce.getServletContext(), model);
+        Thread indexer = new Thread(() -> {
+            model.warmHistoryReadModel();
+            model.buildHistoryIndex();
+        }, "history-index");
+        indexer.setDaemon(true);
+        indexer.start();
     }
 
     /**
-     * Closes the EntityManagerFactory when the web application context is
-     * destroyed.
+     * Stops the history log and closes the EntityManagerFactories of all
+     * shards when the web application context is destroyed.
      *
      * @param sce ServletContextEvent provided by the container.
      */
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
-        if (emf != null) {
-            emf.close();
+        if (historyLog != null) {
+            RailFenceModel.setHistoryLog(null);
+            replayer.close();
+            historyLog.close();
+            replayer = null;
+            historyLog = null;
+        }
+        if (shards != null) {
+            shards.close();
+        }
+        for (EntityManagerFactory factory : factories) {
+            factory.close();
         }
     }
 
@@ -64,4 +167,86 @@ public class EntityManagerFactoryListener implements ServletContextListener {
     public static EntityManagerFactory getEntityManagerFactory() {
         return emf;
     }
+
+    /**
+     * Provides the history shards.
+     *
+     * @return The history shards, or null if the context has not been
+     * initialized.
+     */
+    public static HistoryShards getHistoryShards() {
+        return shards;
+    }
+
+    /**
+     * Provides the write-ahead log of the history.
+     *
+     * @return The history log, or null if it is not enabled.
+     */
+    public static HistoryLog getHistoryLog() {
+        return historyLog;
+    }
+
+    /**
+     * Provides the replayer of the history log.
+     *
+     * @return The replayer, or null if the history log is not enabled.
+     */
+    public static HistoryReplayer getHistoryReplayer() {
+        return replayer;
+    }
+
+    /**
+     * Opens the history log and starts its replayer if the
+     * "historyLogDirectory" parameter is set. If the log cannot be opened,
+     * history records are written directly to the databases.
+     *
+     * @param context The servlet context.
+     * @param model The model the log is replayed into.
+     */
+    private static void openHistoryLog(ServletContext context, RailFenceModel model) {
+        String directory = context.getInitParameter("historyLogDirectory");
+        if (directory == null || directory.isBlank()) {
+            return;
+        }
+        try {
+            HistoryLog log = new HistoryLog(Path.of(directory.trim()),
+                    intParameter(context, "historyLogSegmentSize", HistoryLog.DEFAULT_SEGMENT_SIZE),
+                    intParameter(context, "historyLogSyncRecords", DEFAULT_SYNC_RECORDS),
+                    intParameter(context, "historyLogSyncMillis", DEFAULT_SYNC_MILLIS));
+            replayer = new HistoryReplayer(log, model, HistoryReplayer.DEFAULT_BATCH_SIZE);
+            replayer.start();
+            historyLog = log;
+            RailFenceModel.setHistoryLog(log);
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.log(Level.SEVERE, "Cannot open history log " + directory + ", writing history directly", e);
+        }
+    }
+
+    /**
+     * Reads a positive number context parameter.
+     *
+     * @param context The servlet context.
+     * @param name The name of the context parameter.
+     * @param defaultValue The value used when the parameter is not set.
+     * @return The value of the parameter.
+     * @throws IllegalArgumentException If the parameter is not a positive
+     * number.
+     */
+    private static int intParameter(ServletContext context, String name, int defaultValue) {
+        String value = context.getInitParameter(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        int number;
+        try {
+            number = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value of context parameter " + name + ": " + value, e);
+        }
+        if (number <= 0) {
+            throw new IllegalArgumentException("Invalid value of context parameter " + name + ": " + value);
+        }
+        return number;
+    }
 }
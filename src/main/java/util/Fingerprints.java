@@ -0,0 +1,114 @@
+package util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Describes file and binary contents for the operation history, which records
+ * a safe file name, the size and the SHA-256 digest of a content instead of
+ * the content itself.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class Fingerprints {
+
+    /**
+     * Size of the buffer used to digest files, in bytes.
+     */
+    private static final int DIGEST_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Longest sanitized file name, in characters.
+     */
+    private static final int MAX_FILE_NAME_LENGTH = 100;
+
+    /**
+     * Prevents instantiation.
+     */
+    private Fingerprints() {
+    }
+
+    /**
+     * Creates a SHA-256 digest.
+     *
+     * @return A new MessageDigest.
+     */
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Computes the SHA-256 digest of the remaining bytes of a buffer.
+     *
+     * @param bytes The bytes to digest, consumed by this method.
+     * @return The digest as lowercase hexadecimal digits.
+     */
+    public static String sha256(ByteBuffer bytes) {
+        MessageDigest digest = sha256();
+        digest.update(bytes);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Computes the SHA-256 digest of a file.
+     *
+     * @param file The file.
+     * @return The digest as lowercase hexadecimal digits.
+     * @throws IOException If the file cannot be read.
+     */
+    public static String sha256(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[DIGEST_BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Formats bytes as lowercase hexadecimal digits.
+     *
+     * @param bytes The bytes to format.
+     * @return The hexadecimal string.
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Reduces a submitted file name to its last path component made of safe
+     * characters, so that it can be used in a header and in the history.
+     *
+     * @param fileName The submitted file name, may be null.
+     * @return The sanitized name, "upload" if nothing is left.
+     */
+    public static String sanitizeFileName(String fileName) {
+        if (fileName == null) {
+            return "upload";
+        }
+        String name = fileName.substring(Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\')) + 1);
+        StringBuilder safe = new StringBuilder(name.length());
+        for (int i = 0; i < name.length() && safe.length() < MAX_FILE_NAME_LENGTH; i++) {
+            char c = name.charAt(i);
+            safe.append(Character.isLetterOrDigit(c) || c == '.' || c == '-' || c == '_' ? c : '_');
+        }
+        return safe.length() == 0 ? "upload" : safe.toString();
+    }
+}
@@ -0,0 +1,59 @@
+package util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import model.InvalidRailNumberException;
+import model.OffHeapRailFenceEngine;
+
+/**
+ * Command line tool that encrypts or decrypts a file with the Rail Fence
+ * Cipher. Files are processed through memory-mapped segments by
+ * {@link OffHeapRailFenceEngine}, so their size is not limited by the Java
+ * heap or by the maximum array length.
+ *
+ * Usage: {@code RailFenceFileTool encrypt|decrypt <rails> <source> <target>}
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public final class RailFenceFileTool {
+
+    /**
+     * Private constructor, this class is only used through its main method.
+     */
+    private RailFenceFileTool() {
+    }
+
+    /**
+     * Runs the tool.
+     *
+     * @param args The operation, the number of rails, the source file and the
+     * target file.
+     */
+    public static void main(String[] args) {
+        if (args.length != 4) {
+            System.err.println("Usage: RailFenceFileTool encrypt|decrypt <rails> <source> <target>");
+            System.exit(2);
+        }
+        try {
+            int rails = Integer.parseInt(args[1]);
+            Path source = Paths.get(args[2]);
+            Path target = Paths.get(args[3]);
+            if ("encrypt".equalsIgnoreCase(args[0])) {
+                OffHeapRailFenceEngine.encryptFile(source, target, rails);
+            } else if ("decrypt".equalsIgnoreCase(args[0])) {
+                OffHeapRailFenceEngine.decryptFile(source, target, rails);
+            } else {
+                System.err.println("Unknown operation: " + args[0]);
+                System.exit(2);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number format for rails.");
+            System.exit(2);
+        } catch (InvalidRailNumberException | IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -5,6 +5,7 @@
 --%>
 
 <%@page contentType="text/html" pageEncoding="UTF-8"%>
+<%@taglib prefix="c" uri="jakarta.tags.core"%>
 <!DOCTYPE html>
 <html>
     <head>
@@ -14,7 +15,7 @@
         <!-- Page Heading -->
         <h1>Decrypted Text</h1>
         <!-- Display Decrypted Text -->
-        <p>${decryptedText}</p>
+        <p><c:out value="${decryptedText}"/></p>
         <!-- Link to go back to the main page -->
         <a href="index.html">Back to Home</a>
     </body>
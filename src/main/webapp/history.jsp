@@ -6,7 +6,8 @@
 
 <%@ page contentType="text/html" pageEncoding="UTF-8" %>
 <%@ page import="java.util.List" %>
-<%@ page import="model.OperationHistory" %>  <!-- Update with the correct package name -->
+<%@ page import="model.HistorySummary" %>
+<%@ taglib prefix="c" uri="jakarta.tags.core" %>
 
 <!DOCTYPE html>
 <html>
@@ -21,40 +22,116 @@
             History Table Display:
             This section is responsible for displaying the history of operations 
             stored in the database. It checks if the 'history' attribute is present 
-            and not empty, and then iterates over the list of OperationHistory objects
-            to display each operation's details in a table format. 
+            and not empty, and then iterates over the list of HistorySummary objects
+            to display each operation's details in a table format. Long texts are
+            shown as a preview with their length; the full texts are on the
+            detail page of the operation.
             If the history is empty, it displays a message to the user.
+            The table is always rendered so that live updates can be appended to it.
         -->
         <% 
-        List<OperationHistory> history = (List<OperationHistory>) request.getAttribute("history");
+        List<HistorySummary> history = (List<HistorySummary>) request.getAttribute("history");
         String historyMessage = (String) request.getAttribute("historyMessage");
-        if (history != null && !history.isEmpty()) {
+        Integer pageAttribute = (Integer) request.getAttribute("page");
+        int pageNumber = pageAttribute != null ? pageAttribute : 0;
+        boolean hasOlder = Boolean.TRUE.equals(request.getAttribute("hasOlder"));
+        StringBuilder shownIds = new StringBuilder();
+        boolean empty = history == null || history.isEmpty();
         %>
-        <table border='1'>
+        <p id="historyMessage"<%= empty ? "" : " hidden" %>><%= historyMessage != null ? historyMessage : "No operation history available." %></p>
+        <table id="historyTable" border='1'<%= empty ? " hidden" : "" %>>
             <tr>
                 <th>Operation Type</th>
                 <th>Original Text</th>
                 <th>Processed Text</th>
                 <th>Rails</th>
                 <th>Timestamp</th>
+                <th>Details</th>
             </tr>
 
-            <% for (OperationHistory operation : history) { %>
+            <% if (!empty) {
+                for (HistorySummary operation : history) {
+                    pageContext.setAttribute("operation", operation);
+                    if (operation.getId() != null) {
+                        shownIds.append(shownIds.length() == 0 ? "" : ",").append(operation.getId());
+                    } %>
             <tr>
                 <td><%= operation.getOperationType() %></td>
-                <td><%= operation.getOriginalText() %></td>
-                <td><%= operation.getProcessedText() %></td>
+                <td><c:out value="${operation.originalPreview}"/><%= operation.isOriginalTruncated() ? "&hellip; (" + operation.getOriginalLength() + " characters)" : "" %></td>
+                <td><c:out value="${operation.processedPreview}"/><%= operation.isProcessedTruncated() ? "&hellip; (" + operation.getProcessedLength() + " characters)" : "" %></td>
                 <td><%= operation.getRails() %></td>
                 <td><%= operation.getTimestamp() %></td>
+                <td><% if (operation.getId() != null) { %><a href="HistoryDetailServlet?id=<%= operation.getId() %>">Show</a><% } %></td>
             </tr>
-            <% } %>
+            <% }
+            } %>
         </table>
-        <%
-        }
-        else {
-            out.print(historyMessage != null ? historyMessage : "No operation history available.");
-        }
-        %>
+        <!-- 
+            Paging:
+            Page 0 shows the most recent operations; older ones are reached
+            through the "Older" link.
+        -->
+        <p>
+            <% if (pageNumber > 0) { %>
+            <a href="DisplayHistoryServlet?page=<%= pageNumber - 1 %>">Newer</a>
+            <% } %>
+            <% if (hasOlder) { %>
+            <a href="DisplayHistoryServlet?page=<%= pageNumber + 1 %>">Older</a>
+            <% } %>
+        </p>
+        <!-- 
+            Live Updates:
+            New operations are pushed by HistoryEventsServlet as Server-Sent Events
+            and appended to the table, so the page does not have to be reloaded.
+            Events for operations already shown in the table are ignored. IDs are
+            compared by set rather than by order, since the shards hand out ID
+            ranges of their own and a newer record can have a lower ID. Only
+            the page of the most recent operations is updated.
+        -->
+        <% if (pageNumber == 0) { %>
+        <script>
+            (function () {
+                var seen = {};
+                [<%= shownIds %>].forEach(function (id) {
+                    seen[id] = true;
+                });
+                var table = document.getElementById('historyTable');
+                var message = document.getElementById('historyMessage');
+                var source = new EventSource('HistoryEventsServlet');
+                function preview(text, length) {
+                    return length > text.length ? text + '\u2026 (' + length + ' characters)' : text;
+                }
+                source.addEventListener('history', function (event) {
+                    var operation = JSON.parse(event.data);
+                    if (operation.id !== undefined) {
+                        if (seen[operation.id]) {
+                            return;
+                        }
+                        seen[operation.id] = true;
+                    }
+                    var row = table.insertRow(-1);
+                    [operation.operationType,
+                        preview(operation.originalPreview, operation.originalLength),
+                        preview(operation.processedPreview, operation.processedLength),
+                        operation.rails, operation.timestamp].forEach(function (value) {
+                        row.insertCell(-1).textContent = value;
+                    });
+                    var details = row.insertCell(-1);
+                    if (operation.id !== undefined) {
+                        var link = document.createElement('a');
+                        link.href = 'HistoryDetailServlet?id=' + operation.id;
+                        link.textContent = 'Show';
+                        details.appendChild(link);
+                    }
+                    table.hidden = false;
+                    message.hidden = true;
+                });
+                source.addEventListener('dropped', function () {
+                    window.location.reload();
+                });
+            })();
+        </script>
+        <% } %>
         <!-- Link to go back to the main page -->
         <a href="index.html">Back</a>
     </body>
@@ -0,0 +1,26 @@
+<%-- 
+    Document   : historyDetail
+    Author     : Magdalena Koncowicz
+--%>
+
+<%@page contentType="text/html" pageEncoding="UTF-8"%>
+<%@taglib prefix="c" uri="jakarta.tags.core"%>
+<!DOCTYPE html>
+<html>
+    <head>
+        <title>Operation Details</title>
+    </head>
+    <body>
+        <!-- Page Heading -->
+        <h1><c:out value="${operation.operationType}"/> with <c:out value="${operation.rails}"/> rails</h1>
+        <p><c:out value="${operation.timestamp}"/></p>
+        <!-- Full Texts of the Operation -->
+        <h2>Original Text (<c:out value="${operation.originalLength}"/> characters)</h2>
+        <pre><c:out value="${operation.originalText}"/></pre>
+        <h2>Processed Text (<c:out value="${operation.processedLength}"/> characters)</h2>
+        <pre><c:out value="${operation.processedText}"/></pre>
+        <!-- Links to go back to the history and the main page -->
+        <a href="DisplayHistoryServlet">Back to History</a>
+        <a href="index.html">Back to Home</a>
+    </body>
+</html>
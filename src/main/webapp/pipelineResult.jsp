@@ -0,0 +1,23 @@
+<%-- 
+    Document   : pipelineResult
+    Author     : Magdalena Koncowicz
+--%>
+
+<%@page contentType="text/html" pageEncoding="UTF-8"%>
+<%@taglib prefix="c" uri="jakarta.tags.core"%>
+<!DOCTYPE html>
+<html>
+    <head>
+        <title>Pipeline Result</title>
+    </head>
+    <body>
+        <!-- Page Heading -->
+        <h1>Pipeline Result</h1>
+        <!-- Display the applied stages -->
+        <p>Stages: <c:out value="${pipeline}"/></p>
+        <!-- Display Processed Text -->
+        <p><c:out value="${processedText}"/></p>
+        <!-- Link to go back to the main page -->
+        <a href="index.html">Back to Home</a>
+    </body>
+</html>
@@ -0,0 +1,54 @@
+<%-- 
+    Document   : searchResult
+    Author     : Magdalena Koncowicz
+--%>
+
+<%@ page contentType="text/html" pageEncoding="UTF-8" %>
+<%@ taglib prefix="c" uri="jakarta.tags.core" %>
+
+<!DOCTYPE html>
+<html>
+    <head>
+        <!-- Page Metadata -->
+        <title>History Search</title>
+    </head>
+    <body>
+        <!-- Page heading -->
+        <h1>Operations containing "<c:out value="${query}"/>"</h1>
+        <!-- 
+            Search Result Display:
+            Lists the operations whose original or processed text contains
+            the searched text, or a message if there are none. Long texts are
+            shown as a preview with a link to the detail page.
+        -->
+        <c:choose>
+            <c:when test="${not empty history}">
+                <table border='1'>
+                    <tr>
+                        <th>Operation Type</th>
+                        <th>Original Text</th>
+                        <th>Processed Text</th>
+                        <th>Rails</th>
+                        <th>Timestamp</th>
+                        <th>Details</th>
+                    </tr>
+                    <c:forEach var="operation" items="${history}">
+                        <tr>
+                            <td><c:out value="${operation.operationType}"/></td>
+                            <td><c:out value="${operation.originalPreview}"/><c:if test="${operation.originalTruncated}">&hellip; (${operation.originalLength} characters)</c:if></td>
+                            <td><c:out value="${operation.processedPreview}"/><c:if test="${operation.processedTruncated}">&hellip; (${operation.processedLength} characters)</c:if></td>
+                            <td><c:out value="${operation.rails}"/></td>
+                            <td><c:out value="${operation.timestamp}"/></td>
+                            <td><a href="HistoryDetailServlet?id=${operation.id}">Show</a></td>
+                        </tr>
+                    </c:forEach>
+                </table>
+            </c:when>
+            <c:otherwise>
+                <p><c:out value="${historyMessage}"/></p>
+            </c:otherwise>
+        </c:choose>
+        <!-- Link to go back to the main page -->
+        <a href="index.html">Back</a>
+    </body>
+</html>
@@ -0,0 +1,152 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for AdaptiveCipherDispatcher and EngineProfile. It checks that
+ * all engines agree, that calls are routed and counted per bucket, and that a
+ * calibrated profile survives saving and loading.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class AdaptiveCipherDispatcherTest {
+
+    /**
+     * Parameterized test comparing every engine supporting a text with the
+     * scalar engine.
+     *
+     * @param input The input string to be processed.
+     * @param rails The number of rails.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    @ParameterizedTest
+    @CsvSource({
+        "WeAreDiscoveredFleeAtOnce, 3",
+        "WeAreDiscoveredFleeAtOnce, 40",
+        "'αβγδεζη', 2",
+        "'😀ab😁cd😂', 4",
+        "'', 3"
+    })
+    public void testEnginesAgree(String input, int rails) throws InvalidRailNumberException {
+        String encrypted = CipherEngine.SCALAR.apply(CipherDirection.ENCRYPT, input, rails);
+        for (CipherEngine engine : CipherEngine.values()) {
+            if (engine.supports(input)) {
+                assertEquals(encrypted, engine.apply(CipherDirection.ENCRYPT, input, rails), engine.name());
+                assertEquals(input, engine.apply(CipherDirection.DECRYPT, encrypted, rails), engine.name());
+            }
+        }
+    }
+
+    /**
+     * Tests that short Latin-1 texts go to the scratch engine by default,
+     * that texts unsupported by the chosen engine fall back to the scalar
+     * engine and that calls are counted in their bucket.
+     *
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    @Test
+    public void testRoutingAndStatistics() throws InvalidRailNumberException {
+        AdaptiveCipherDispatcher dispatcher = new AdaptiveCipherDispatcher(EngineProfile.defaults());
+        assertFalse(dispatcher.getProfile().isCalibrated());
+        CipherStrategy encrypt = dispatcher.strategy(CipherDirection.ENCRYPT);
+        assertEquals("WECRLTEERDSOEEFEAOCAIVDEN", encrypt.apply("WEAREDISCOVEREDFLEEATONCE", 3));
+        assertEquals("αβγ", dispatcher.apply(CipherDirection.DECRYPT, dispatcher.apply(CipherDirection.ENCRYPT,
+                "αβγ", 5), 5));
+
+        assertEquals(1, dispatcher.getCalls(0, EngineProfile.railBucket(3), CipherEngine.SCRATCH));
+        assertEquals(2, dispatcher.getCalls(0, EngineProfile.railBucket(5), CipherEngine.SCALAR));
+        assertEquals(CipherEngine.SCALAR, dispatcher.getProfile().choose(1 << 20, 3));
+        assertEquals(0, dispatcher.getCalls(0, 0, CipherEngine.PARALLEL));
+        assertThrows(InvalidRailNumberException.class, () -> encrypt.apply("text", 1));
+    }
+
+    /**
+     * Tests that every text length and number of rails falls in a bucket.
+     */
+    @Test
+    public void testBuckets() {
+        assertEquals(0, EngineProfile.lengthBucket(0));
+        assertEquals(0, EngineProfile.lengthBucket(64));
+        assertEquals(1, EngineProfile.lengthBucket(65));
+        assertEquals(EngineProfile.getLengthBucketCount() - 1, EngineProfile.lengthBucket(Integer.MAX_VALUE));
+        assertEquals(0, EngineProfile.railBucket(2));
+        assertEquals(1, EngineProfile.railBucket(3));
+        assertEquals(EngineProfile.getRailBucketCount() - 1, EngineProfile.railBucket(1000));
+    }
+
+    /**
+     * Tests that cancelling a background calibration ends its thread and
+     * leaves the profile in place.
+     *
+     * @throws Exception If the thread is interrupted.
+     */
+    @Test
+    public void testCancelCalibration() throws Exception {
+        EngineProfile defaults = EngineProfile.defaults();
+        AdaptiveCipherDispatcher dispatcher = new AdaptiveCipherDispatcher(defaults);
+        dispatcher.cancelCalibration();
+        CompletableFuture<EngineProfile> calibration = dispatcher.recalibrateAsync();
+        dispatcher.cancelCalibration();
+        assertTrue(calibration.isDone());
+        assertFalse(dispatcher.isCalibrating());
+        if (calibration.isCompletedExceptionally()) {
+            assertEquals(defaults, dispatcher.getProfile());
+        }
+    }
+
+    /**
+     * Tests that a background recalibration runs once at a time, leaves the
+     * pipeline cache alone and installs a measured profile that is saved and
+     * loaded unchanged.
+     *
+     * @param directory A temporary directory for the profile file.
+     * @throws Exception If the profile cannot be saved or loaded, or the
+     * calibration fails.
+     */
+    @Test
+    public void testRecalibrateSaveAndLoad(@TempDir Path directory) throws Exception {
+        AdaptiveCipherDispatcher dispatcher = new AdaptiveCipherDispatcher(EngineProfile.defaults());
+        CipherPipeline.clearCache();
+        CompletableFuture<EngineProfile> calibration = dispatcher.recalibrateAsync();
+        assertTrue(dispatcher.isCalibrating());
+        assertNull(dispatcher.recalibrateAsync());
+        EngineProfile profile = calibration.get(5, TimeUnit.MINUTES);
+        assertFalse(dispatcher.isCalibrating());
+        assertTrue(profile.isCalibrated());
+        assertEquals(profile, dispatcher.getProfile());
+        assertEquals(0, CipherPipeline.getCacheSize());
+
+        Path file = directory.resolve("engines.properties");
+        profile.save(file);
+        EngineProfile loaded = EngineProfile.load(file);
+        assertEquals(profile.getProcessors(), loaded.getProcessors());
+        for (int i = 0; i < EngineProfile.getLengthBucketCount(); i++) {
+            for (int j = 0; j < EngineProfile.getRailBucketCount(); j++) {
+                assertEquals(profile.getChoice(i, j), loaded.getChoice(i, j));
+                for (CipherEngine engine : CipherEngine.values()) {
+                    boolean supported = engine != CipherEngine.SCRATCH
+                            || EngineProfile.getLengthBound(i) <= ScratchRailFenceEngine.SCRATCH_LIMIT;
+                    assertEquals(supported, profile.getCalibrationNanos(i, j, engine) > 0, engine.name());
+                    assertEquals(profile.getCalibrationNanos(i, j, engine), loaded.getCalibrationNanos(i, j, engine));
+                }
+            }
+        }
+
+        Files.writeString(file, "lengths=1,2\n");
+        assertThrows(IOException.class, () -> EngineProfile.load(file));
+    }
+}
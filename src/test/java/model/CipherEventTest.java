@@ -0,0 +1,69 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for the flight recorder events of the cipher engines. It runs a
+ * recording in the test JVM and checks the recorded fields.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class CipherEventTest {
+
+    /**
+     * Tests that every engine records its operation, input length, rails and
+     * name.
+     */
+    @Test
+    public void testCipherEventsRecorded(@TempDir Path directory) throws IOException, InvalidRailNumberException {
+        Path file = directory.resolve("cipher.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("railfence.Cipher");
+            recording.start();
+            RailFenceEngine.encrypt("WEAREDISCOVEREDFLEEATONCE", 3);
+            RailFenceEngine.decrypt("Łódź", 2);
+            RailFenceEngine.encrypt("a😀b", 2);
+            OffHeapRailFenceEngine.encrypt(ByteSegment.allocate(10), ByteSegment.allocate(10), 4);
+            CipherPipeline.parse("E3,D5").apply("pipeline");
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        events.removeIf(event -> Thread.currentThread().getId() != event.getThread().getJavaThreadId());
+        assertEquals(5, events.size());
+        assertEvent(events.get(0), "Encrypt", 25, 3, CipherEvent.LATIN1_ENGINE);
+        assertEvent(events.get(1), "Decrypt", 4, 2, CipherEvent.CHAR_ENGINE);
+        assertEvent(events.get(2), "Encrypt", 4, 2, CipherEvent.CODE_POINT_ENGINE);
+        assertEvent(events.get(3), "Encrypt", 10, 4, CipherEvent.OFF_HEAP_ENGINE);
+        assertEvent(events.get(4), "Pipeline", 8, 5, CipherEvent.PIPELINE_ENGINE);
+    }
+
+    /**
+     * Checks the fields of a recorded cipher event.
+     *
+     * @param event The recorded event.
+     * @param operation The expected operation.
+     * @param inputLength The expected input length.
+     * @param rails The expected number of rails.
+     * @param engine The expected engine.
+     */
+    private static void assertEvent(RecordedEvent event, String operation, long inputLength, int rails, String engine) {
+        assertEquals("railfence.Cipher", event.getEventType().getName());
+        assertEquals(operation, event.getString("operation"));
+        assertEquals(inputLength, event.getLong("inputLength"));
+        assertEquals(rails, event.getInt("rails"));
+        assertEquals(engine, event.getString("engine"));
+        assertTrue(!event.getDuration().isNegative());
+    }
+}
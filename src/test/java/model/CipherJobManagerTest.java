@@ -0,0 +1,101 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test class for CipherJobManager. It checks the results of jobs, the bound of
+ * the queue and the expiry of finished jobs. The history is not recorded.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class CipherJobManagerTest {
+
+    /**
+     * Tests that submitted jobs finish with the same result as the sequential
+     * engine and that their input files are removed.
+     */
+    @Test
+    public void testJobsComplete(@TempDir Path directory) throws Exception {
+        try (CipherJobManager manager = new CipherJobManager(directory, 4, 2, 10, 60_000, null)) {
+            byte[][] inputs = new byte[5][];
+            CipherJob[] jobs = new CipherJob[inputs.length];
+            Random random = new Random(3);
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = new byte[300_000 * (i + 1)];
+                random.nextBytes(inputs[i]);
+                jobs[i] = manager.submit(CipherDirection.ENCRYPT, 3 + i, i, "file" + i, new ByteArrayInputStream(inputs[i]),
+                        inputs[i].length);
+            }
+            for (int i = 0; i < jobs.length; i++) {
+                awaitFinished(jobs[i]);
+                assertEquals(CipherJob.State.DONE, jobs[i].getState());
+                assertEquals(1.0, jobs[i].getProgress());
+                assertArrayEquals(RailFenceEngine.encrypt(inputs[i], 3 + i), Files.readAllBytes(jobs[i].getResult()));
+                assertFalse(Files.exists(directory.resolve(jobs[i].getId() + ".in")));
+            }
+        }
+    }
+
+    /**
+     * Tests that submissions beyond the queue bound are rejected and invalid
+     * rails are refused before anything is stored.
+     */
+    @Test
+    public void testRejectedSubmissions(@TempDir Path directory) throws Exception {
+        try (CipherJobManager manager = new CipherJobManager(directory, 1, 1, 0, 60_000, null)) {
+            assertThrows(RejectedExecutionException.class, () -> manager.submit(CipherDirection.ENCRYPT, 3, 5, "f",
+                    new ByteArrayInputStream(new byte[10]), 10));
+            assertThrows(InvalidRailNumberException.class, () -> manager.submit(CipherDirection.ENCRYPT, 1, 5, "f",
+                    new ByteArrayInputStream(new byte[10]), 10));
+        }
+    }
+
+    /**
+     * Tests that finished jobs and their results are removed after their time
+     * to live.
+     */
+    @Test
+    public void testResultsExpire(@TempDir Path directory) throws Exception {
+        try (CipherJobManager manager = new CipherJobManager(directory, 2, 1, 10, 50, null)) {
+            CipherJob job = manager.submit(CipherDirection.DECRYPT, 4, 5, "f", new ByteArrayInputStream(new byte[1000]),
+                    1000);
+            awaitFinished(job);
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (manager.getJob(job.getId()) != null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertNull(manager.getJob(job.getId()));
+            assertFalse(Files.exists(job.getResult()));
+        }
+    }
+
+    /**
+     * Waits until a job is done or failed.
+     *
+     * @param job The job.
+     * @throws InterruptedException If the wait is interrupted.
+     * @throws IOException If the job does not finish in time.
+     */
+    private static void awaitFinished(CipherJob job) throws InterruptedException, IOException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (job.getState() == CipherJob.State.QUEUED || job.getState() == CipherJob.State.RUNNING) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("Job did not finish in time");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
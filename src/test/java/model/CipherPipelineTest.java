@@ -0,0 +1,103 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for CipherPipeline. It checks that a composed pipeline gives the
+ * same result as applying its stages one after another.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class CipherPipelineTest {
+
+    /**
+     * Parameterized test comparing a pipeline with the sequential application
+     * of its stages.
+     *
+     * @param input The input string to be processed.
+     * @param specification The pipeline specification.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    @ParameterizedTest
+    @CsvSource({
+        "HelloWorld, E3",
+        "WeAreDiscoveredFleeAtOnce, 'E3,E5,D4'",
+        "WeAreDiscoveredFleeAtOnce, 'd2 e7 E2'",
+        "'αβγδεζη', 'E2,E3'",
+        "'😀ab😁cd😂', 'E3,D2,E4'",
+        "'', 'E3,D3'"
+    })
+    public void testPipelineMatchesSequentialStages(String input, String specification) throws InvalidRailNumberException {
+        CipherPipeline pipeline = CipherPipeline.parse(specification);
+        String expected = input;
+        for (CipherPipeline.Stage stage : pipeline.getStages()) {
+            expected = stage.getDirection().apply(expected, stage.getRails());
+        }
+        assertEquals(expected, pipeline.apply(input));
+    }
+
+    /**
+     * Tests that encrypting and then decrypting with the same rails gives the
+     * original text back.
+     *
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    @Test
+    public void testInversePipelineIsIdentity() throws InvalidRailNumberException {
+        CipherPipeline pipeline = CipherPipeline.parse("E3,E5,D5,D3");
+        assertEquals("WeAreDiscoveredFleeAtOnce", pipeline.apply("WeAreDiscoveredFleeAtOnce"));
+    }
+
+    /**
+     * Tests that the composed permutation is cached per text length.
+     *
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    @Test
+    public void testPermutationIsCached() throws InvalidRailNumberException {
+        CipherPipeline pipeline = CipherPipeline.parse("E3,D4");
+        assertSame(pipeline.permutation(100), CipherPipeline.parse("e3, d4").permutation(100));
+    }
+
+    /**
+     * Tests that the cache is bounded by the total size of its maps, evicting
+     * the least recently used ones.
+     *
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    @Test
+    public void testCacheIsBoundedBySize() throws InvalidRailNumberException {
+        CipherPipeline.clearCache();
+        CipherPipeline pipeline = CipherPipeline.parse("E3,D7");
+        int[] first = pipeline.permutation(200_000);
+        for (int length = 200_001; length < 200_020; length++) {
+            pipeline.permutation(length);
+            assertTrue(CipherPipeline.getCacheBytes() <= 4L * 1024 * 1024);
+        }
+        assertNotSame(first, pipeline.permutation(200_000));
+        assertTrue(CipherPipeline.getCacheSize() > 0);
+        CipherPipeline.clearCache();
+        assertEquals(0, CipherPipeline.getCacheBytes());
+    }
+
+    /**
+     * Tests that malformed specifications and invalid rails are rejected.
+     */
+    @Test
+    public void testInvalidSpecification() {
+        assertThrows(InvalidRailNumberException.class, () -> CipherPipeline.parse("E3,D1"));
+        assertThrows(IllegalArgumentException.class, () -> CipherPipeline.parse("X3"));
+        assertThrows(IllegalArgumentException.class, () -> CipherPipeline.parse("E"));
+        assertThrows(IllegalArgumentException.class, () -> CipherPipeline.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> CipherPipeline.parse("E3,".repeat(17)));
+        assertThrows(IllegalArgumentException.class, () -> CipherPipeline.parse("E" + "0".repeat(300) + "3"));
+    }
+}
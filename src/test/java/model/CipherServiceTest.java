@@ -0,0 +1,207 @@
+package model;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for CipherService. It runs many threads against one service,
+ * checking every result against the engine and every recorded operation in
+ * an embedded Derby database on local disk, and checks the lifecycle of the
+ * service.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class CipherServiceTest {
+
+    /**
+     * Number of threads of the stress test.
+     */
+    private static final int THREADS = 32;
+
+    /**
+     * Number of operations per thread of the stress test.
+     */
+    private static final int OPERATIONS = 200;
+
+    /**
+     * Temporary directory holding the database.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * The factory of the database.
+     */
+    private EntityManagerFactory factory;
+
+    /**
+     * The shards over the database.
+     */
+    private HistoryShards shards;
+
+    /**
+     * Opens the database.
+     */
+    @BeforeEach
+    public void openDatabase() {
+        System.setProperty("derby.stream.error.file", directory.resolve("derby.log").toString());
+        factory = Persistence.createEntityManagerFactory("RFCipher", Map.of(
+                "jakarta.persistence.jdbc.url", "jdbc:derby:" + directory.resolve("history") + ";create=true",
+                "jakarta.persistence.jdbc.driver", "org.apache.derby.jdbc.EmbeddedDriver",
+                "eclipselink.logging.level", "WARNING"));
+        shards = new HistoryShards(List.of(factory), HistoryShards.Routing.HASH);
+    }
+
+    /**
+     * Closes the database.
+     */
+    @AfterEach
+    public void closeDatabase() {
+        shards.close();
+        factory.close();
+    }
+
+    /**
+     * Tests that concurrent encryptions and decryptions of texts of every
+     * representation, below and above the scratch limit, give the engine's
+     * results, and that concurrently recorded operations are all stored.
+     *
+     * @throws Exception If a thread fails.
+     */
+    @Test
+    public void testConcurrentUse() throws Exception {
+        CipherService service = new CipherService(shards);
+        service.start();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int seed = t;
+                futures.add(pool.submit(() -> {
+                    Random random = new Random(seed);
+                    start.await();
+                    int recorded = 0;
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        String text = randomText(random);
+                        int rails = 2 + random.nextInt(20);
+                        String encrypted = service.encrypt(text, rails);
+                        assertEquals(RailFenceEngine.encrypt(text, rails), encrypted);
+                        assertEquals(text, service.decrypt(encrypted, rails));
+                        if (i % 20 == 0) {
+                            service.recordOperation("Encrypt", text, encrypted, rails);
+                            recorded++;
+                        }
+                    }
+                    return recorded;
+                }));
+            }
+            start.countDown();
+            int recorded = 0;
+            for (Future<Integer> future : futures) {
+                recorded += future.get(120, TimeUnit.SECONDS);
+            }
+            List<HistorySummary> history = new RailFenceModel(shards).getOperationHistory();
+            assertEquals(recorded, history.size());
+            Set<Long> ids = new HashSet<>();
+            for (HistorySummary summary : history) {
+                assertTrue(ids.add(summary.getId()));
+            }
+        } finally {
+            pool.shutdownNow();
+            service.stop();
+        }
+    }
+
+    /**
+     * Tests that a stopped service refuses work, that its operations are
+     * counted by its own dispatcher only, and that a service without history
+     * databases still ciphers but records nothing.
+     *
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    @Test
+    public void testLifecycle() throws InvalidRailNumberException {
+        CipherService service = new CipherService(null);
+        assertFalse(service.isRunning());
+        assertThrows(IllegalStateException.class, () -> service.encrypt("text", 3));
+        service.start();
+        assertTrue(service.isRunning());
+        CipherService other = new CipherService(null);
+        assertEquals(0, countCalls(service, EngineProfile.railBucket(3)));
+        assertEquals("WECRUOERDSOEERNTNEAIVDAC", service.encrypt("WEAREDISCOVEREDRUNATONCE", 3));
+        assertEquals(1, countCalls(service, EngineProfile.railBucket(3)));
+        assertEquals(0, countCalls(other, EngineProfile.railBucket(3)));
+        assertThrows(InvalidRailNumberException.class, () -> service.decrypt("text", 1));
+        service.recordOperation("Encrypt", "text", "txet", 3);
+        assertTrue(service.getOperationHistoryPage(0, 10).isEmpty());
+        assertNull(service.getHistoryVersion());
+        service.stop();
+        assertFalse(service.isRunning());
+        assertThrows(IllegalStateException.class, () -> service.recordOperation("Encrypt", "a", "a", 2));
+    }
+
+    /**
+     * Counts the calls of the dispatcher of a service for short texts, over
+     * every engine.
+     *
+     * @param service The service.
+     * @param railBucket The index of the rail bucket.
+     * @return The number of calls.
+     */
+    private static long countCalls(CipherService service, int railBucket) {
+        long calls = 0;
+        for (CipherEngine engine : CipherEngine.values()) {
+            calls += service.getEngineDispatcher().getCalls(0, railBucket, engine);
+        }
+        return calls;
+    }
+
+    /**
+     * Builds a random text: short or long, Latin-1, other BMP characters or
+     * with supplementary characters.
+     *
+     * @param random The source of randomness.
+     * @return The text.
+     */
+    private static String randomText(Random random) {
+        int length = random.nextInt(10) == 0 ? ScratchRailFenceEngine.SCRATCH_LIMIT + random.nextInt(1000)
+                : random.nextInt(300);
+        int kind = random.nextInt(3);
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            int c = 'a' + random.nextInt(26);
+            if (kind == 1 && random.nextInt(4) == 0) {
+                c = 0x3B1 + random.nextInt(20);
+            } else if (kind == 2 && random.nextInt(8) == 0) {
+                c = 0x1F600 + random.nextInt(50);
+            } else if (kind == 0 && random.nextInt(8) == 0) {
+                c = 0xC0 + random.nextInt(60);
+            }
+            text.appendCodePoint(c);
+        }
+        return text.toString();
+    }
+}
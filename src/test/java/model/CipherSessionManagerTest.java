@@ -0,0 +1,158 @@
+package model;
+
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for the incremental encoder and decoder and the
+ * CipherSessionManager. It checks that texts fed in random chunks give the
+ * same results as the whole-text engine, and the bounds and eviction of
+ * sessions.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class CipherSessionManagerTest {
+
+    /**
+     * Texts covering Latin-1, other BMP characters and surrogate pairs.
+     */
+    private static final String[] TEXTS = {
+        "WeAreDiscoveredFleeAtOnce",
+        "Zażółć gęślą jaźń, αβγδεζηθ",
+        "😀ab😁cd😂ef😃",
+        ""
+    };
+
+    /**
+     * Rail counts, including ones beyond the length of the texts.
+     */
+    private static final int[] RAILS = {2, 3, 4, 5, 6, 7, 30, Integer.MAX_VALUE};
+
+    /**
+     * Tests that the encoder matches the engine after every chunk, including
+     * chunks splitting surrogate pairs.
+     *
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    @Test
+    public void testEncoderMatchesEngine() throws InvalidRailNumberException {
+        Random random = new Random(7);
+        for (String text : TEXTS) {
+            for (int rails : RAILS) {
+                RailFenceEncoder encoder = new RailFenceEncoder(rails);
+                int from = 0;
+                while (from < text.length()) {
+                    int to = Math.min(text.length(), from + 1 + random.nextInt(4));
+                    encoder.append(text.substring(from, to));
+                    from = to;
+                    String expected = Character.isHighSurrogate(text.charAt(to - 1)) ? text.substring(0, to - 1)
+                            : text.substring(0, to);
+                    assertEquals(RailFenceEngine.encrypt(expected, rails), encoder.ciphertext());
+                }
+                assertEquals(RailFenceEngine.encrypt(text, rails), encoder.ciphertext());
+            }
+        }
+    }
+
+    /**
+     * Tests that the decoder emits a growing prefix of the plaintext and ends
+     * with the whole plaintext.
+     *
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    @Test
+    public void testDecoderMatchesEngine() throws InvalidRailNumberException {
+        Random random = new Random(11);
+        for (String text : TEXTS) {
+            for (int rails : RAILS) {
+                String ciphertext = RailFenceEngine.encrypt(text, rails);
+                RailFenceDecoder decoder = new RailFenceDecoder(rails, (int) text.codePoints().count());
+                StringBuilder emitted = new StringBuilder();
+                int from = 0;
+                while (from < ciphertext.length()) {
+                    int to = Math.min(ciphertext.length(), from + 1 + random.nextInt(4));
+                    emitted.append(decoder.append(ciphertext.substring(from, to)));
+                    from = to;
+                    assertTrue(text.startsWith(emitted.toString()));
+                    assertEquals(emitted.toString(), decoder.plaintext());
+                }
+                assertTrue(decoder.isComplete());
+                assertEquals(text, emitted.toString());
+            }
+        }
+    }
+
+    /**
+     * Tests that the decoder refuses ciphertext beyond its announced length.
+     *
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    @Test
+    public void testDecoderRejectsExtraText() throws InvalidRailNumberException {
+        RailFenceDecoder decoder = new RailFenceDecoder(3, 4);
+        decoder.append("abc");
+        assertThrows(IllegalArgumentException.class, () -> decoder.append("de"));
+        assertEquals(3, decoder.getReceivedLength());
+        decoder.append("d");
+        assertTrue(decoder.isComplete());
+        assertEquals(RailFenceEngine.decrypt("abcd", 3), decoder.plaintext());
+    }
+
+    /**
+     * Tests opening, appending to and closing sessions, and the bounds on
+     * their number and length.
+     *
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    @Test
+    public void testSessions() throws InvalidRailNumberException {
+        try (CipherSessionManager manager = new CipherSessionManager(60_000, 2, 10)) {
+            CipherSession encrypt = manager.open(CipherDirection.ENCRYPT, 3, -1);
+            encrypt.append("HELLO");
+            encrypt.append("WORLD");
+            assertThrows(IllegalArgumentException.class, () -> encrypt.append("!"));
+            assertEquals(RailFenceEngine.encrypt("HELLOWORLD", 3), manager.getSession(encrypt.getId()).getText());
+
+            CipherSession decrypt = manager.open(CipherDirection.DECRYPT, 3, 5);
+            assertThrows(RejectedExecutionException.class, () -> manager.open(CipherDirection.ENCRYPT, 3, -1));
+            decrypt.append(RailFenceEngine.encrypt("HELLO", 3));
+            assertTrue(decrypt.isComplete());
+            assertEquals("HELLO", decrypt.getText());
+
+            assertEquals(decrypt, manager.remove(decrypt.getId()));
+            assertNull(manager.getSession(decrypt.getId()));
+            assertThrows(IllegalArgumentException.class, () -> manager.open(CipherDirection.DECRYPT, 3, 11));
+            assertThrows(InvalidRailNumberException.class, () -> manager.open(CipherDirection.ENCRYPT, 1, -1));
+            manager.open(CipherDirection.ENCRYPT, 2, -1);
+            assertEquals(2, manager.getSessionCount());
+        }
+    }
+
+    /**
+     * Tests that idle sessions are evicted while accessed ones are kept.
+     *
+     * @throws Exception If the test is interrupted or the rails are invalid.
+     */
+    @Test
+    public void testIdleSessionsAreEvicted() throws Exception {
+        try (CipherSessionManager manager = new CipherSessionManager(200, 10, 100)) {
+            CipherSession idle = manager.open(CipherDirection.ENCRYPT, 3, -1);
+            CipherSession active = manager.open(CipherDirection.ENCRYPT, 3, -1);
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (manager.getSessionCount() > 1 && System.currentTimeMillis() < deadline) {
+                active.append("x");
+                Thread.sleep(20);
+            }
+            assertNull(manager.getSession(idle.getId()));
+            assertEquals(active, manager.getSession(active.getId()));
+            assertFalse(active.getText().isEmpty());
+        }
+    }
+}
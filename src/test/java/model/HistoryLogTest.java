@@ -0,0 +1,302 @@
+package model;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for HistoryLog and HistoryReplayer. It writes history records
+ * through the log from many threads into an embedded Derby database on local
+ * disk, and checks that a log damaged by a crash is cut at the damaged record
+ * that a replay after a lost checkpoint stores no record twice, and that the
+ * replay survives failing batches.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class HistoryLogTest {
+
+    /**
+     * Number of writing threads.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * Number of records written per thread.
+     */
+    private static final int RECORDS = 50;
+
+    /**
+     * Segment size small enough for the tests to fill several segments.
+     */
+    private static final int SEGMENT_SIZE = 4 * HistoryLog.MIN_SEGMENT_SIZE;
+
+    /**
+     * Temporary directory holding the database and the log.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * The factory of the database.
+     */
+    private EntityManagerFactory factory;
+
+    /**
+     * The shards over the database.
+     */
+    private HistoryShards shards;
+
+    /**
+     * Opens the database.
+     */
+    @BeforeEach
+    public void openDatabase() {
+        System.setProperty("derby.stream.error.file", directory.resolve("derby.log").toString());
+        factory = Persistence.createEntityManagerFactory("RFCipher", Map.of(
+                "jakarta.persistence.jdbc.url", "jdbc:derby:" + directory.resolve("history") + ";create=true",
+                "jakarta.persistence.jdbc.driver", "org.apache.derby.jdbc.EmbeddedDriver",
+                "eclipselink.logging.level", "WARNING"));
+        shards = new HistoryShards(List.of(factory), HistoryShards.Routing.HASH);
+    }
+
+    /**
+     * Closes the database.
+     */
+    @AfterEach
+    public void closeDatabase() {
+        RailFenceModel.setHistoryLog(null);
+        shards.close();
+        factory.close();
+    }
+
+    /**
+     * Tests that records written concurrently through the model share syncs,
+     * are all stored exactly once by the replayer, and that the replayed
+     * segments are deleted.
+     *
+     * @throws Exception If a thread fails.
+     */
+    @Test
+    public void testGroupCommitAndReplay() throws Exception {
+        RailFenceModel model = new RailFenceModel(shards);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try (HistoryLog log = new HistoryLog(directory.resolve("log"), SEGMENT_SIZE, 16, 5);
+                HistoryReplayer replayer = new HistoryReplayer(log, model, 50)) {
+            replayer.start();
+            RailFenceModel.setHistoryLog(log);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < RECORDS; i++) {
+                        String text = "record " + thread + "-" + i + " zażółć 😀 " + "x".repeat(i);
+                        model.createOperationHistory("Encrypt", text, new StringBuilder(text).reverse().toString(),
+                                2 + i % 10);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            RailFenceModel.setHistoryLog(null);
+            int total = THREADS * RECORDS;
+            await(() -> log.getCheckpoint() == total);
+
+            assertEquals(total, log.getAppendedRecords());
+            assertEquals(total, log.getSyncedSequence());
+            assertTrue(log.getSyncCount() > 0 && log.getSyncCount() < total);
+            assertTrue(log.getMaxSyncNanos() >= log.getAverageSyncNanos());
+            assertTrue(log.getAppendedRecordsPerSecond() > 0);
+            assertEquals(total, replayer.getReplayedRecords());
+            assertEquals(0, replayer.getLag());
+            assertTrue(replayer.getReplayedRecordsPerSecond() > 0);
+            assertEquals(1, log.getSegmentCount());
+            assertEquals(1, segmentFiles().size());
+
+            List<HistorySummary> history = model.getOperationHistory();
+            assertEquals(total, history.size());
+            Set<String> texts = new HashSet<>();
+            for (HistorySummary summary : history) {
+                assertTrue(texts.add(summary.getOriginalPreview()));
+            }
+            OperationHistory first = model.getOperationHistory(history.get(0).getId());
+            assertTrue(first.getWalSequence() >= 1 && first.getWalSequence() <= total);
+            assertTrue(first.getOriginalText().contains("zażółć 😀"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that a record damaged by a crash is cut from the log and its
+     * sequence number reused, and that after the checkpoint is lost the
+     * records already stored are skipped rather than stored again.
+     *
+     * @throws Exception If the log fails.
+     */
+    @Test
+    public void testRecovery() throws Exception {
+        Path logDirectory = directory.resolve("log");
+        try (HistoryLog log = new HistoryLog(logDirectory, SEGMENT_SIZE, 1, 0)) {
+            for (int i = 1; i <= 31; i++) {
+                assertEquals(i, log.append(record("text " + i)));
+            }
+        }
+        corruptLastRecord(segmentFiles().get(0));
+
+        RailFenceModel model = new RailFenceModel(shards);
+        try (HistoryLog log = new HistoryLog(logDirectory, SEGMENT_SIZE, 1, 0)) {
+            assertEquals(30, log.getRecoveredRecords());
+            assertEquals(31, log.append(record("text 31 again")));
+            try (HistoryReplayer replayer = new HistoryReplayer(log, model, 7)) {
+                replayer.start();
+                await(() -> log.getCheckpoint() == 31);
+                assertEquals(31, replayer.getReplayedRecords());
+            }
+        }
+        assertEquals(31, model.getOperationHistory().size());
+        assertEquals("text 31 again", model.getOperationHistory().get(30).getOriginalPreview());
+
+        Files.writeString(logDirectory.resolve("checkpoint"), "10");
+        try (HistoryLog log = new HistoryLog(logDirectory, SEGMENT_SIZE, 1, 0)) {
+            assertEquals(21, log.getRecoveredRecords());
+            try (HistoryReplayer replayer = new HistoryReplayer(log, model, 7)) {
+                replayer.start();
+                await(() -> log.getCheckpoint() == 31);
+                assertEquals(21, replayer.getSkippedRecords());
+                assertEquals(32, log.append(record("text 32")));
+                await(() -> log.getCheckpoint() == 32);
+                assertEquals(1, replayer.getReplayedRecords());
+            }
+        }
+        List<HistorySummary> history = model.getOperationHistory();
+        assertEquals(32, history.size());
+        assertEquals(32, history.stream().map(HistorySummary::getOriginalPreview).distinct().count());
+    }
+
+    /**
+     * Tests that a batch failing with an unexpected exception is retried
+     * rather than ending the replay, that the failure is reported meanwhile,
+     * and that every record is then stored once.
+     *
+     * @throws Exception If the log fails.
+     */
+    @Test
+    public void testReplayRetriesAfterFailure() throws Exception {
+        AtomicInteger failures = new AtomicInteger(2);
+        RailFenceModel model = new RailFenceModel(shards) {
+            @Override
+            void replayOperationHistory(List<OperationHistory> batch) {
+                if (failures.getAndDecrement() > 0) {
+                    throw new IllegalStateException("Simulated replay failure");
+                }
+                super.replayOperationHistory(batch);
+            }
+        };
+        try (HistoryLog log = new HistoryLog(directory.resolve("log"), SEGMENT_SIZE, 1, 0);
+                HistoryReplayer replayer = new HistoryReplayer(log, model, 4)) {
+            for (int i = 1; i <= 10; i++) {
+                log.append(record("text " + i));
+            }
+            replayer.start();
+            await(() -> replayer.getLastFailure() != null);
+            assertFalse(log.isSyncFailing());
+            await(() -> log.getCheckpoint() == 10);
+            assertEquals(2, replayer.getFailedBatches());
+            assertNull(replayer.getLastFailure());
+            assertEquals(10, replayer.getReplayedRecords());
+        }
+        List<HistorySummary> history = model.getOperationHistory();
+        assertEquals(10, history.size());
+        assertEquals(10, history.stream().map(HistorySummary::getOriginalPreview).distinct().count());
+    }
+
+    /**
+     * Builds a record to append.
+     *
+     * @param text The original text.
+     * @return The record.
+     */
+    private static OperationHistory record(String text) {
+        return new OperationHistory("Encrypt", text, new StringBuilder(text).reverse().toString(), 3);
+    }
+
+    /**
+     * Flips a byte in the payload of the last record of a segment, as a write
+     * torn by a crash would.
+     *
+     * @param segment The segment file.
+     * @throws Exception If the file cannot be changed.
+     */
+    private static void corruptLastRecord(Path segment) throws Exception {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            channel.read(buffer, 0);
+            int offset = 0;
+            int last = 0;
+            while (buffer.getInt(offset) != 0) {
+                last = offset;
+                offset += 16 + buffer.getInt(offset);
+            }
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) ~buffer.get(last + 20)}), last + 20);
+        }
+    }
+
+    /**
+     * Lists the segment files of the log.
+     *
+     * @return The segment files in name order.
+     * @throws Exception If the directory cannot be listed.
+     */
+    private List<Path> segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory.resolve("log"))) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".wal")).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Waits up to 30 seconds for a condition.
+     *
+     * @param condition The condition.
+     * @throws InterruptedException If the thread is interrupted.
+     */
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + 30_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < end) {
+            Thread.sleep(20);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,119 @@
+package model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for HistoryReadModel. It checks paging, eviction of old records
+ * and records appended during the warm-up.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class HistoryReadModelTest {
+
+    /**
+     * Tests that pages are counted from the most recent records and that the
+     * stored columns are restored.
+     */
+    @Test
+    public void testPagesOfWholeTable() {
+        HistoryReadModel view = new HistoryReadModel(10);
+        view.warm(summaries(records(1, 5)), true);
+
+        List<HistorySummary> newest = view.page(0, 2);
+        assertEquals(2, newest.size());
+        assertEquals(4L, newest.get(0).getId());
+        assertEquals(5L, newest.get(1).getId());
+        assertEquals("Encryption", newest.get(1).getOperationType());
+        assertEquals("text5", newest.get(1).getOriginalPreview());
+        assertEquals(10, newest.get(1).getProcessedLength());
+        assertEquals(5, newest.get(1).getRails());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 0, 0, 5, 123), newest.get(1).getTimestamp());
+
+        List<HistorySummary> oldest = view.page(2, 2);
+        assertEquals(1, oldest.size());
+        assertEquals(1L, oldest.get(0).getId());
+        assertTrue(view.page(3, 2).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> view.page(-1, 2));
+        assertThrows(IllegalArgumentException.class, () -> view.page(0, 0));
+    }
+
+    /**
+     * Tests that evicted records are no longer served and pages reaching past
+     * the retained window are left to the database.
+     */
+    @Test
+    public void testEviction() {
+        HistoryReadModel view = new HistoryReadModel(4);
+        view.warm(new ArrayList<>(), true);
+        for (OperationHistory history : records(1, 6)) {
+            view.append(history);
+        }
+
+        assertArrayEquals(new long[]{3, 4, 5, 6}, view.heldIds());
+        assertEquals(2, view.page(1, 2).size());
+        assertNull(view.page(2, 2));
+        assertNull(view.page(1, 3));
+    }
+
+    /**
+     * Tests that the view answers nothing before the warm-up and keeps
+     * records appended while the warm-up was loading.
+     */
+    @Test
+    public void testWarmKeepsAppendedRecords() {
+        HistoryReadModel view = new HistoryReadModel(10);
+        view.append(records(3, 3).get(0));
+        view.append(records(4, 4).get(0));
+        assertNull(view.page(0, 2));
+
+        view.warm(summaries(records(1, 3)), false);
+
+        assertArrayEquals(new long[]{1, 2, 3, 4}, view.heldIds());
+        assertNull(view.page(1, 3));
+    }
+
+    /**
+     * Creates the summaries of records.
+     *
+     * @param records The records.
+     * @return The summaries, in the same order.
+     */
+    private static List<HistorySummary> summaries(List<OperationHistory> records) {
+        List<HistorySummary> summaries = new ArrayList<>();
+        for (OperationHistory history : records) {
+            summaries.add(HistorySummary.of(history));
+        }
+        return summaries;
+    }
+
+    /**
+     * Creates records with consecutive IDs.
+     *
+     * @param from The first ID.
+     * @param to The last ID.
+     * @return The records, oldest first.
+     */
+    private static List<OperationHistory> records(long from, long to) {
+        List<OperationHistory> records = new ArrayList<>();
+        for (long id = from; id <= to; id++) {
+            OperationHistory history = new OperationHistory();
+            history.setId(id);
+            history.setOperationType(id % 2 == 0 ? "Decryption" : "Encryption");
+            history.setOriginalText("text" + id);
+            history.setProcessedText("processed" + id);
+            history.setRails((int) id);
+            history.setTimestamp(LocalDateTime.of(2024, 1, 1, 0, 0, (int) id, 123));
+            records.add(history);
+        }
+        return records;
+    }
+}
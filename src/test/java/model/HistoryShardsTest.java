@@ -0,0 +1,164 @@
+package model;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for HistoryShards. It stores history records in three embedded
+ * Derby databases on local disk and reads them back through the model.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class HistoryShardsTest {
+
+    /**
+     * Number of shards used by the tests.
+     */
+    private static final int SHARDS = 3;
+
+    /**
+     * Temporary directory holding the shard databases.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * The factories of the shards.
+     */
+    private final List<EntityManagerFactory> factories = new ArrayList<>();
+
+    /**
+     * The shards under test.
+     */
+    private HistoryShards shards;
+
+    /**
+     * Opens the shard databases.
+     */
+    @BeforeEach
+    public void openShards() {
+        System.setProperty("derby.stream.error.file", directory.resolve("derby.log").toString());
+        for (int i = 0; i < SHARDS; i++) {
+            factories.add(Persistence.createEntityManagerFactory("RFCipher", Map.of(
+                    "jakarta.persistence.jdbc.url", "jdbc:derby:" + directory.resolve("shard" + i) + ";create=true",
+                    "jakarta.persistence.jdbc.driver", "org.apache.derby.jdbc.EmbeddedDriver",
+                    "eclipselink.logging.level", "WARNING")));
+        }
+        shards = new HistoryShards(factories, HistoryShards.Routing.HASH);
+    }
+
+    /**
+     * Closes the shard databases.
+     */
+    @AfterEach
+    public void closeShards() {
+        shards.close();
+        for (EntityManagerFactory factory : factories) {
+            factory.close();
+        }
+    }
+
+    /**
+     * Tests that records are spread over all shards with unique IDs that
+     * identify their shard, and that the listing merges them by timestamp.
+     */
+    @Test
+    public void testWritesAreSpreadAndListingIsMerged() {
+        RailFenceModel model = new RailFenceModel(shards);
+        for (int i = 0; i < 30; i++) {
+            model.createOperationHistory("Encrypt", "text" + i, "txet" + i, 2 + i % 5);
+        }
+
+        List<HistorySummary> history = model.getOperationHistory();
+        assertEquals(30, history.size());
+
+        Set<Long> ids = new HashSet<>();
+        Set<Integer> used = new HashSet<>();
+        LocalDateTime previous = LocalDateTime.MIN;
+        for (HistorySummary operation : history) {
+            assertTrue(ids.add(operation.getId()));
+            used.add(shards.shardOf(operation.getId()));
+            assertTrue(!operation.getTimestamp().isBefore(previous));
+            previous = operation.getTimestamp();
+        }
+        assertEquals(SHARDS, used.size());
+    }
+
+    /**
+     * Tests that every page read from the shards holds the same records as
+     * the merged listing, and that pages past the end are empty.
+     */
+    @Test
+    public void testPagesMatchListing() {
+        RailFenceModel model = new RailFenceModel(shards);
+        for (int i = 0; i < 30; i++) {
+            model.createOperationHistory("Encrypt", "text" + i, "txet" + i, 2 + i % 5);
+        }
+        List<Long> all = new ArrayList<>();
+        for (HistorySummary operation : model.getOperationHistory()) {
+            all.add(operation.getId());
+        }
+
+        for (int page = 0; page < 8; page++) {
+            List<Long> ids = new ArrayList<>();
+            for (HistorySummary operation : model.getOperationHistoryPage(page, 4)) {
+                ids.add(operation.getId());
+            }
+            assertEquals(all.subList(Math.max(0, 26 - 4 * page), 30 - 4 * page), ids);
+        }
+        assertTrue(model.getOperationHistoryPage(8, 4).isEmpty());
+        assertTrue(model.getOperationHistoryPage(Integer.MAX_VALUE, 50).isEmpty());
+        assertTrue(model.getOperationHistoryPage(-1, 4).isEmpty());
+        assertTrue(model.getOperationHistoryPage(0, 0).isEmpty());
+    }
+
+    /**
+     * Tests that a shard near the end of its ID range is closed after its
+     * next record and the following records go to the other shards.
+     */
+    @Test
+    public void testFullShardIsClosed() {
+        EntityManager em = factories.get(0).createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery("ALTER TABLE OPERATIONHISTORY ALTER COLUMN ID RESTART WITH "
+                    + ((1L << HistoryShards.SHARD_ID_BITS) - HistoryShards.ID_HEADROOM)).executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+        RailFenceModel model = new RailFenceModel(shards);
+        for (int i = 0; i < 30; i++) {
+            model.createOperationHistory("Encrypt", "text" + i, "txet" + i, 2 + i % 5);
+        }
+
+        long inFirstShard = model.getOperationHistory().stream()
+                .filter(operation -> shards.shardOf(operation.getId()) == 0).count();
+        assertEquals(1, inFirstShard);
+    }
+
+    /**
+     * Tests that the k-way merge keeps the global order.
+     */
+    @Test
+    public void testMerge() {
+        List<Integer> merged = HistoryShards.merge(List.of(List.of(1, 4, 7), List.of(), List.of(2, 3, 9), List.of(5)),
+                Integer::compare);
+        assertEquals(List.of(1, 2, 3, 4, 5, 7, 9), merged);
+    }
+}
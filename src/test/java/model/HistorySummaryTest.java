@@ -0,0 +1,196 @@
+package model;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for HistorySummary. It stores history records with long texts in
+ * an embedded Derby database on local disk and checks that listings carry
+ * previews only, that the detail view carries the full texts and that old
+ * history tables are upgraded.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class HistorySummaryTest {
+
+    /**
+     * Length of the texts stored by the tests.
+     */
+    private static final int TEXT_LENGTH = 20000;
+
+    /**
+     * Temporary directory holding the database.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * The factory of the database.
+     */
+    private EntityManagerFactory factory;
+
+    /**
+     * Opens the database.
+     */
+    @BeforeEach
+    public void openDatabase() {
+        System.setProperty("derby.stream.error.file", directory.resolve("derby.log").toString());
+        factory = Persistence.createEntityManagerFactory("RFCipher", Map.of(
+                "jakarta.persistence.jdbc.url", "jdbc:derby:" + directory.resolve("history") + ";create=true",
+                "jakarta.persistence.jdbc.driver", "org.apache.derby.jdbc.EmbeddedDriver",
+                "eclipselink.logging.level", "WARNING"));
+    }
+
+    /**
+     * Closes the database.
+     */
+    @AfterEach
+    public void closeDatabase() {
+        factory.close();
+    }
+
+    /**
+     * Tests that listings and searches return previews and lengths, and that a
+     * single record is loaded with its full texts.
+     */
+    @Test
+    public void testListingCarriesPreviewsAndDetailCarriesTexts() {
+        try (HistoryShards shards = new HistoryShards(List.of(factory), HistoryShards.Routing.HASH)) {
+            RailFenceModel model = new RailFenceModel(shards);
+            model.createOperationHistory("Encrypt", "short", "sotrh", 3);
+            model.createOperationHistory("Encrypt", text('a'), text('b'), 4);
+
+            List<HistorySummary> history = model.getOperationHistory();
+            assertEquals(2, history.size());
+            assertEquals("short", history.get(0).getOriginalPreview());
+            assertFalse(history.get(0).isOriginalTruncated());
+            HistorySummary large = history.get(1);
+            assertEquals(TEXT_LENGTH, large.getOriginalLength());
+            assertEquals(OperationHistory.PREVIEW_LENGTH, large.getProcessedPreview().length());
+            assertTrue(large.isProcessedTruncated());
+
+            List<HistorySummary> found = model.searchOperationHistory("BBB");
+            assertEquals(1, found.size());
+            assertEquals(large.getId(), found.get(0).getId());
+            model.createOperationHistory("Encrypt", text('c') + "needle", "needle", 5);
+            assertEquals(1, model.searchOperationHistory("NEEDLE").size());
+            assertEquals(0, model.searchOperationHistory("cneedle").size());
+
+            OperationHistory detail = model.getOperationHistory(large.getId());
+            assertEquals(text('a'), detail.getOriginalText());
+            assertEquals(text('b'), detail.getProcessedText());
+            assertNull(model.getOperationHistory(large.getId() + 100));
+        }
+    }
+
+    /**
+     * Tests that a history table with VARCHAR text columns gets preview
+     * columns and CLOB text columns, keeping its records.
+     */
+    @Test
+    public void testOldTableIsUpgraded() {
+        EntityManager em = factory.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery("DROP TABLE OPERATIONHISTORY").executeUpdate();
+            em.createNativeQuery("CREATE TABLE OPERATIONHISTORY (ID BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL, "
+                    + "OPERATIONTYPE VARCHAR(255), ORIGINALTEXT VARCHAR(255), PROCESSEDTEXT VARCHAR(255), "
+                    + "RAILS INTEGER, TIMESTAMP TIMESTAMP, PRIMARY KEY (ID))").executeUpdate();
+            em.createNativeQuery("INSERT INTO OPERATIONHISTORY (OPERATIONTYPE, ORIGINALTEXT, PROCESSEDTEXT, RAILS, "
+                    + "TIMESTAMP) VALUES ('Encrypt', '" + "x".repeat(200) + "', 'HELLO', 3, CURRENT_TIMESTAMP)")
+                    .executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+
+        try (HistoryShards shards = new HistoryShards(List.of(factory), HistoryShards.Routing.HASH)) {
+            RailFenceModel model = new RailFenceModel(shards);
+            model.createOperationHistory("Decrypt", text('c'), "done", 2);
+
+            List<HistorySummary> history = model.getOperationHistory();
+            assertEquals(2, history.size());
+            assertEquals(200, history.get(0).getOriginalLength());
+            assertEquals("x".repeat(OperationHistory.PREVIEW_LENGTH), history.get(0).getOriginalPreview());
+            assertEquals("HELLO", history.get(0).getProcessedPreview());
+            assertEquals("x".repeat(200), model.getOperationHistory(history.get(0).getId()).getOriginalText());
+            assertEquals(text('c'), model.getOperationHistory(history.get(1).getId()).getOriginalText());
+        }
+    }
+
+    /**
+     * Tests that reading a page of summaries allocates a small fraction of
+     * the memory needed to read the same page as entities.
+     */
+    @Test
+    public void testProjectionAllocatesLessThanEntities() {
+        try (HistoryShards shards = new HistoryShards(List.of(factory), HistoryShards.Routing.HASH)) {
+            RailFenceModel model = new RailFenceModel(shards);
+            for (int i = 0; i < 50; i++) {
+                model.createOperationHistory("Encrypt", text('d'), text('e'), 3);
+            }
+            for (int i = 0; i < 3; i++) {
+                allocatedBy(() -> readEntities());
+                allocatedBy(() -> model.getOperationHistory());
+            }
+            long entities = allocatedBy(() -> readEntities());
+            long summaries = allocatedBy(() -> model.getOperationHistory());
+            assertTrue(summaries * 10 < entities, summaries + " bytes for summaries, " + entities + " for entities");
+        }
+    }
+
+    /**
+     * Reads all records as entities, the way listings worked before
+     * projections.
+     */
+    private void readEntities() {
+        EntityManager em = factory.createEntityManager();
+        try {
+            for (OperationHistory history : em.createQuery("SELECT h FROM OperationHistory h ORDER BY h.id",
+                    OperationHistory.class).getResultList()) {
+                history.getOriginalText();
+                history.getProcessedText();
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Measures the heap memory allocated by the current thread while running
+     * an action.
+     *
+     * @param action The action to run.
+     * @return The number of bytes allocated.
+     */
+    private static long allocatedBy(Runnable action) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        action.run();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+    }
+
+    /**
+     * Builds a long text of one repeated letter.
+     *
+     * @param letter The letter.
+     * @return The text.
+     */
+    private static String text(char letter) {
+        return String.valueOf(letter).repeat(TEXT_LENGTH);
+    }
+}
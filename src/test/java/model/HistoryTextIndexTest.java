@@ -0,0 +1,130 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Test class for HistoryTextIndex. It checks candidate selection, ordering of
+ * the posting lists, the memory budget and the cutoff of a full index.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class HistoryTextIndexTest {
+
+    /**
+     * Tests that the candidates of a query are the records containing all of
+     * its trigrams, ignoring case.
+     */
+    @Test
+    public void testCandidatesContainAllTrigrams() {
+        HistoryTextIndex index = new HistoryTextIndex(1 << 20);
+        index.add(1, "HelloWorld", "HolelWrdlo");
+        index.add(2, "SingleRow", "SnlRwigeo");
+        index.add(3, "Yellow submarine", null);
+        index.markReady();
+
+        assertArrayEquals(new int[]{1, 3}, index.candidates("ELLO"));
+        assertArrayEquals(new int[]{2}, index.candidates("gleR"));
+        assertArrayEquals(new int[0], index.candidates("xyz"));
+    }
+
+    /**
+     * Tests that records added out of order or twice keep the posting lists
+     * sorted and free of duplicates.
+     */
+    @Test
+    public void testOutOfOrderAndDuplicateRecords() {
+        HistoryTextIndex index = new HistoryTextIndex(1 << 20);
+        index.add(300, "abc");
+        index.add(5, "abcd");
+        index.add(70000, "zabc");
+        index.add(5, "abcd");
+        index.markReady();
+
+        assertArrayEquals(new int[]{5, 300, 70000}, index.candidates("abc"));
+    }
+
+    /**
+     * Tests that only the indexed prefix of a long text is searched, so a
+     * long text is not a candidate of every query.
+     */
+    @Test
+    public void testOnlyPrefixIsIndexed() {
+        HistoryTextIndex index = new HistoryTextIndex(1 << 20);
+        index.add(1, "a".repeat(HistoryTextIndex.MAX_INDEXED_CHARS) + "needle");
+        index.add(2, "needle");
+        index.add(3, "haystack" + "a".repeat(HistoryTextIndex.MAX_INDEXED_CHARS));
+        index.markReady();
+
+        assertArrayEquals(new int[]{2}, index.candidates("needle"));
+        assertArrayEquals(new int[]{3}, index.candidates("hay"));
+        assertArrayEquals(new int[0], index.candidates("qqq"));
+    }
+
+    /**
+     * Tests that the index cannot answer queries before it is ready or for
+     * queries that are too short.
+     */
+    @Test
+    public void testIndexUnavailable() {
+        HistoryTextIndex index = new HistoryTextIndex(1 << 20);
+        index.add(1, "HelloWorld");
+        assertNull(index.candidates("Hello"));
+
+        index.markReady();
+        assertNull(index.candidates("He"));
+    }
+
+    /**
+     * Tests that an index over its budget keeps serving the records it holds
+     * and moves the cutoff down to the first record it could not take.
+     */
+    @Test
+    public void testFullIndexKeepsServing() {
+        HistoryTextIndex index = new HistoryTextIndex(2048);
+        index.markReady();
+        assertEquals(Long.MAX_VALUE, index.getCutoff());
+        index.add(1, "fox");
+        index.add(2, "The quick brown fox jumps over the lazy dog");
+        index.add(3, "fox");
+        index.add(5L + Integer.MAX_VALUE, "fox");
+
+        assertEquals(2, index.getCutoff());
+        assertArrayEquals(new int[]{1}, index.candidates("fox"));
+
+        HistoryTextIndex wide = new HistoryTextIndex(1 << 20);
+        wide.markReady();
+        wide.add(1, "fox");
+        wide.add(5L + Integer.MAX_VALUE, "fox");
+        wide.add(2, "fox");
+        assertEquals(2, wide.getCutoff());
+        assertArrayEquals(new int[]{1}, wide.candidates("fox"));
+    }
+
+    /**
+     * Tests that IDs of interleaved ID ranges, as added by shards committing
+     * concurrently, are all found in order whether or not their buffer has
+     * been merged yet.
+     */
+    @Test
+    public void testInterleavedIdRanges() {
+        HistoryTextIndex index = new HistoryTextIndex(1 << 20);
+        index.markReady();
+        int[] expected = new int[2 * 1000];
+        for (int i = 0; i < 1000; i++) {
+            int high = (1 << HistoryShards.SHARD_ID_BITS) + i;
+            index.add(high, "interleaved");
+            index.add(i, "interleaved", "interleaved");
+            expected[i] = i;
+            expected[1000 + i] = high;
+            if (i % 7 == 0) {
+                index.add(i / 2, "interleaved");
+            }
+        }
+
+        assertArrayEquals(expected, index.candidates("leave"));
+    }
+}
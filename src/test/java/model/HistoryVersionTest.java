@@ -0,0 +1,40 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for HistoryVersion. It checks the version token and that the
+ * time of the last change advances on every change.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class HistoryVersionTest {
+
+    /**
+     * Tests that changes within the same second still give a later
+     * Last-Modified time, in whole seconds.
+     */
+    @Test
+    public void testLastModifiedAdvancesOnEveryChange() {
+        HistoryVersion version = new HistoryVersion();
+        assertNull(version.getToken());
+        assertEquals(-1, version.getLastModified());
+        version.recordInsert(1);
+        assertNull(version.getToken());
+
+        version.initialize(10, 5);
+        long previous = version.getLastModified();
+        for (int id = 11; id <= 13; id++) {
+            version.recordInsert(id);
+            long lastModified = version.getLastModified();
+            assertTrue(lastModified >= previous + 1000);
+            assertEquals(0, lastModified % 1000);
+            previous = lastModified;
+        }
+        assertEquals("13-8", version.getToken());
+    }
+}
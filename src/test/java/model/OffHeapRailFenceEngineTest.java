@@ -0,0 +1,141 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test class for OffHeapRailFenceEngine. Segments use very small chunks so
+ * that the rail walks cross many chunk boundaries.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class OffHeapRailFenceEngineTest {
+
+    /**
+     * Chunk size used by the tests, 16 bytes per chunk.
+     */
+    private static final int SMALL_CHUNK_SHIFT = 4;
+
+    /**
+     * Parameterized test comparing the off-heap engine with the array engine.
+     *
+     * @param length The length of the generated input.
+     * @param rails The number of rails to use in the Rail Fence Cipher.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    @ParameterizedTest
+    @CsvSource({
+        "0, 3",
+        "1, 2",
+        "100, 2",
+        "257, 3",
+        "1000, 7",
+        "1000, 1500"
+    })
+    public void testMatchesArrayEngine(int length, int rails) throws InvalidRailNumberException {
+        byte[] plain = new byte[length];
+        for (int i = 0; i < length; i++) {
+            plain[i] = (byte) (i * 31 + 7);
+        }
+        ByteSegment input = ByteSegment.allocate(length, SMALL_CHUNK_SHIFT);
+        for (int i = 0; i < length; i++) {
+            input.put(i, plain[i]);
+        }
+
+        ByteSegment encrypted = ByteSegment.allocate(length, SMALL_CHUNK_SHIFT);
+        OffHeapRailFenceEngine.encrypt(input, encrypted, rails);
+        assertArrayEquals(RailFenceEngine.encrypt(plain, rails), encrypted.toByteArray());
+
+        ByteSegment decrypted = ByteSegment.allocate(length, SMALL_CHUNK_SHIFT);
+        OffHeapRailFenceEngine.decrypt(encrypted, decrypted, rails);
+        assertArrayEquals(plain, decrypted.toByteArray());
+    }
+
+    /**
+     * Tests encryption and decryption of files through memory-mapped
+     * segments, including in place.
+     *
+     * @param directory Temporary directory for the test files.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     * @throws IOException If the test files cannot be written.
+     */
+    @Test
+    public void testFileRoundTrip(@TempDir Path directory) throws InvalidRailNumberException, IOException {
+        byte[] plain = "WEAREDISCOVEREDFLEEATONCE".getBytes(StandardCharsets.ISO_8859_1);
+        Path source = Files.write(directory.resolve("plain.txt"), plain);
+        Path encrypted = directory.resolve("encrypted.txt");
+        Path decrypted = directory.resolve("decrypted.txt");
+
+        OffHeapRailFenceEngine.encryptFile(source, encrypted, 3);
+        assertArrayEquals("WECRLTEERDSOEEFEAOCAIVDEN".getBytes(StandardCharsets.ISO_8859_1),
+                Files.readAllBytes(encrypted));
+
+        OffHeapRailFenceEngine.decryptFile(encrypted, decrypted, 3);
+        assertArrayEquals(plain, Files.readAllBytes(decrypted));
+
+        OffHeapRailFenceEngine.encryptFile(source, source, 3);
+        assertArrayEquals(Files.readAllBytes(encrypted), Files.readAllBytes(source));
+        OffHeapRailFenceEngine.decryptFile(source, source, 3);
+        assertArrayEquals(plain, Files.readAllBytes(source));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(3, files.count());
+        }
+    }
+
+    /**
+     * Tests that segments of different sizes are rejected.
+     */
+    @Test
+    public void testMismatchedSizes() {
+        assertThrows(IllegalArgumentException.class,
+                () -> OffHeapRailFenceEngine.encrypt(ByteSegment.allocate(10), ByteSegment.allocate(11), 3));
+    }
+
+    /**
+     * Tests that streams are transformed the same way in memory and through
+     * spilled temporary files, and that only the announced length is read.
+     *
+     * @param spillThreshold The largest input processed in memory.
+     */
+    @ParameterizedTest
+    @CsvSource({"1024", "4"})
+    public void testTransformStream(long spillThreshold) throws InvalidRailNumberException, IOException {
+        byte[] plain = "WEAREDISCOVEREDFLEEATONCE".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] body = "WEAREDISCOVEREDFLEEATONCE--trailing".getBytes(StandardCharsets.ISO_8859_1);
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        OffHeapRailFenceEngine.transform(CipherDirection.ENCRYPT, new ByteArrayInputStream(body), plain.length,
+                encrypted, 3, spillThreshold);
+        assertArrayEquals("WECRLTEERDSOEEFEAOCAIVDEN".getBytes(StandardCharsets.ISO_8859_1), encrypted.toByteArray());
+
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        OffHeapRailFenceEngine.transform(CipherDirection.DECRYPT, new ByteArrayInputStream(encrypted.toByteArray()),
+                plain.length, decrypted, 3, spillThreshold);
+        assertArrayEquals(plain, decrypted.toByteArray());
+    }
+
+    /**
+     * Tests that a stream shorter than its announced length is rejected.
+     *
+     * @param spillThreshold The largest input processed in memory.
+     */
+    @ParameterizedTest
+    @CsvSource({"1024", "4"})
+    public void testTransformTruncatedStream(long spillThreshold) {
+        assertThrows(EOFException.class, () -> OffHeapRailFenceEngine.transform(CipherDirection.ENCRYPT,
+                new ByteArrayInputStream(new byte[10]), 20, new ByteArrayOutputStream(), 3, spillThreshold));
+    }
+}
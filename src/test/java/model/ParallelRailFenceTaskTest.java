@@ -0,0 +1,49 @@
+package model;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test class for ParallelRailFenceTask. The results are compared with the
+ * sequential byte array engine, for inputs small enough to run as one task
+ * per rail and large enough to be split into many ranges.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class ParallelRailFenceTaskTest {
+
+    /**
+     * Tests that parallel encryption and decryption match the sequential
+     * engine and report every byte as processed.
+     *
+     * @param length The length of the input.
+     * @param rails The number of rails.
+     */
+    @ParameterizedTest
+    @CsvSource({"0, 3", "1, 2", "2, 5", "25, 3", "1000, 7", "1000, 1500", "9, 2147483647", "1500000, 2", "1500000, 3", "2000001, 9"})
+    public void testMatchesSequentialEngine(int length, int rails) throws InvalidRailNumberException {
+        byte[] plain = new byte[length];
+        new Random(length).nextBytes(plain);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ByteSegment encrypted = ByteSegment.allocate(length);
+            AtomicLong progress = new AtomicLong();
+            pool.invoke(ParallelRailFenceTask.of(CipherDirection.ENCRYPT, ByteSegment.wrap(plain), encrypted, rails,
+                    progress));
+            assertArrayEquals(RailFenceEngine.encrypt(plain, rails), encrypted.toByteArray());
+            assertEquals(length, progress.get());
+
+            ByteSegment decrypted = ByteSegment.allocate(length);
+            pool.invoke(ParallelRailFenceTask.of(CipherDirection.DECRYPT, encrypted, decrypted, rails, new AtomicLong()));
+            assertArrayEquals(plain, decrypted.toByteArray());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package model;
+
+import java.util.BitSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test class for RailFanOut. It checks that every result of a fan-out equals
+ * the result of a separate operation with the same number of rails.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class RailFanOutTest {
+
+    /**
+     * Parameterized test comparing the results of a fan-out with separate
+     * encryptions and decryptions.
+     *
+     * @param input The input string to be processed.
+     * @param minRails The smallest number of rails.
+     * @param maxRails The largest number of rails.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    @ParameterizedTest
+    @CsvSource({
+        "WeAreDiscoveredFleeAtOnce, 2, 30",
+        "'αβγδεζη', 3, 9",
+        "'😀ab😁cd😂', 2, 5",
+        "'', 2, 4"
+    })
+    public void testFanOutMatchesSeparateOperations(String input, int minRails, int maxRails)
+            throws InvalidRailNumberException {
+        String[] encrypted = RailFanOut.apply(CipherDirection.ENCRYPT, input, minRails, maxRails);
+        String[] decrypted = RailFanOut.apply(CipherDirection.DECRYPT, input, minRails, maxRails);
+        for (int rails = minRails; rails <= maxRails; rails++) {
+            assertEquals(RailFenceEngine.encrypt(input, rails), encrypted[rails - minRails]);
+            assertEquals(RailFenceEngine.decrypt(input, rails), decrypted[rails - minRails]);
+        }
+    }
+
+    /**
+     * Tests a text spanning several blocks under enough rail counts to be
+     * split into parallel groups, and that every result is streamed once.
+     *
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    @Test
+    public void testParallelStreaming() throws InvalidRailNumberException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            text.append((char) ('A' + i % 26));
+        }
+        String input = text.toString();
+        BitSet seen = new BitSet();
+        RailFanOut.apply(CipherDirection.ENCRYPT, input, 2, 40, (result, rails) -> {
+            assertEquals(false, seen.get(rails));
+            seen.set(rails);
+            try {
+                assertEquals(RailFenceEngine.encrypt(input, rails), result);
+            } catch (InvalidRailNumberException e) {
+                throw new AssertionError(e);
+            }
+        });
+        assertEquals(39, seen.cardinality());
+    }
+
+    /**
+     * Tests that invalid ranges of rails are rejected.
+     */
+    @Test
+    public void testInvalidRanges() {
+        assertThrows(InvalidRailNumberException.class, () -> RailFanOut.apply(CipherDirection.ENCRYPT, "text", 1, 5));
+        assertThrows(InvalidRailNumberException.class, () -> RailFanOut.apply(CipherDirection.ENCRYPT, "text", 5, 4));
+        assertThrows(InvalidRailNumberException.class, () -> RailFanOut.apply(CipherDirection.ENCRYPT, "text", 2,
+                2 + RailFanOut.MAX_RAIL_COUNTS));
+    }
+}
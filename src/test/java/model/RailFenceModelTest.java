@@ -167,6 +167,29 @@ public class RailFenceModelTest {
         assertEquals(expected, model.decrypt(input, rails));
     }
 
+    /**
+     * Parameterized test checking that a number of rails far beyond the length
+     * of the text leaves every representation of the text unchanged, without
+     * overflowing the zigzag period or looping over every rail.
+     *
+     * @param input The input string.
+     * @param rails The number of rails to use in the Rail Fence Cipher.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    @ParameterizedTest
+    @CsvSource({
+        "'hello world', 1073741824",
+        "'hello world', 2147483647",
+        "'αβγδ', 2147483647",
+        "'𝄞music♫', 2147483647"
+    })
+    public void testHugeRailCounts(String input, int rails) throws InvalidRailNumberException {
+        assertEquals(input, model.encrypt(input, rails));
+        assertEquals(input, model.decrypt(input, rails));
+        assertEquals(input.length(), RailFenceEngine.encryptPermutation(input.length(), rails).length);
+        assertEquals(2, RailFenceEngine.railLengths(1, rails).length);
+    }
+
     //Parametrized Tests
     /**
      * Parameterized test to verify the encryption functionality of the
@@ -210,4 +233,68 @@ public class RailFenceModelTest {
     public void testEncryptWithInvalidRails(String input, int rails) {
         assertThrows(InvalidRailNumberException.class, () -> model.encrypt(input, rails));
     }
+
+    //Character Set Situations
+    /**
+     * Tests that Latin-1 text outside the English alphabet is encrypted with
+     * the compact byte form and can be decrypted back.
+     *
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    @Test
+    public void testEncryptWithLatin1Input() throws InvalidRailNumberException {
+        String input = "Gr\u00fc\u00dfe, caf\u00e9!";
+        String encrypted = model.encrypt(input, 3);
+        assertEquals("Gear\u00df,cf!\u00fc \u00e9", encrypted);
+        assertEquals(input, model.decrypt(encrypted, 3));
+    }
+
+    /**
+     * Tests that text with characters outside Latin-1 is permuted per UTF-16
+     * character.
+     *
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    @Test
+    public void testEncryptWithNonLatin1Input() throws InvalidRailNumberException {
+        String input = "\u0417\u0434\u0440\u0430\u0432\u0441\u0442\u0432\u0443\u0439";
+        String encrypted = model.encrypt(input, 2);
+        assertEquals("\u0417\u0440\u0432\u0442\u0443\u0434\u0430\u0441\u0432\u0439", encrypted);
+        assertEquals(input, model.decrypt(encrypted, 2));
+    }
+
+    /**
+     * Tests that supplementary characters are moved as whole code points, so
+     * the encrypted text contains no broken surrogate pairs.
+     *
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    @Test
+    public void testEncryptKeepsSurrogatePairs() throws InvalidRailNumberException {
+        String input = "a\uD83D\uDE00b\uD83D\uDE01c";
+        String encrypted = model.encrypt(input, 2);
+        assertEquals("abc\uD83D\uDE00\uD83D\uDE01", encrypted);
+        assertEquals(input, model.decrypt(encrypted, 2));
+    }
+
+    /**
+     * Parameterized test checking that decryption reverses encryption for
+     * inputs of every representation and several rail counts.
+     *
+     * @param input The input string to be encrypted.
+     * @param rails The number of rails to use in the Rail Fence Cipher.
+     * @throws InvalidRailNumberException If the number of rails is invalid.
+     */
+    @ParameterizedTest
+    @CsvSource({
+        "WeAreDiscoveredFleeAtOnce, 2",
+        "WeAreDiscoveredFleeAtOnce, 4",
+        "WeAreDiscoveredFleeAtOnce, 40",
+        "'\u00e0 la carte', 3",
+        "'\u03b1\u03b2\u03b3\u03b4\u03b5\u03b6\u03b7', 3",
+        "'\uD834\uDD1Emusic\uD834\uDD1E\u266B', 5"
+    })
+    public void testDecryptReversesEncrypt(String input, int rails) throws InvalidRailNumberException {
+        assertEquals(input, model.decrypt(model.encrypt(input, rails), rails));
+    }
 }
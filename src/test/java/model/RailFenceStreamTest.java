@@ -0,0 +1,171 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test class for the rail fence streams, readers and writers. It checks both
+ * the whole-message mode against the engine and the block mode round trip,
+ * with and without a background thread.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class RailFenceStreamTest {
+
+    /**
+     * Tests that the whole-message streams give the same result as the
+     * engine.
+     *
+     * @throws Exception If the streams fail.
+     */
+    @Test
+    public void testWholeMessageMatchesEngine() throws Exception {
+        byte[] input = "WeAreDiscoveredFleeAtOnce".getBytes(StandardCharsets.ISO_8859_1);
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        try (OutputStream out = new RailFenceOutputStream(encrypted, 3)) {
+            out.write(input, 0, 10);
+            out.write(input, 10, input.length - 10);
+        }
+        assertArrayEquals(RailFenceEngine.encrypt(input, 3), encrypted.toByteArray());
+        try (InputStream in = new RailFenceInputStream(new ByteArrayInputStream(encrypted.toByteArray()), 3)) {
+            assertArrayEquals(input, in.readAllBytes());
+        }
+
+        String text = "Zażółć 😀 gęślą jaźń";
+        StringWriter writer = new StringWriter();
+        try (Writer out = new RailFenceWriter(writer, 4)) {
+            out.write(text);
+        }
+        assertEquals(RailFenceEngine.encrypt(text, 4), writer.toString());
+        try (RailFenceReader in = new RailFenceReader(new StringReader(writer.toString()), 4)) {
+            assertEquals(text, read(in));
+        }
+    }
+
+    /**
+     * Tests the block-mode byte streams: every block is the engine's
+     * ciphertext of the block, and reading gives back the input.
+     *
+     * @param length The number of bytes.
+     * @param blockSize The block size.
+     * @param background Whether to use a background thread.
+     * @throws Exception If the streams fail.
+     */
+    @ParameterizedTest
+    @CsvSource({
+        "0, 16, false",
+        "100, 16, false",
+        "96, 16, true",
+        "1000000, 4096, true",
+        "1000000, 65536, false"
+    })
+    public void testBlockStreams(int length, int blockSize, boolean background) throws Exception {
+        byte[] input = new byte[length];
+        new Random(length).nextBytes(input);
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        try (OutputStream out = RailFenceOutputStream.blocks(encrypted, 5, blockSize, background)) {
+            Random random = new Random(1);
+            int off = 0;
+            while (off < length) {
+                int n = Math.min(length - off, random.nextInt(3 * blockSize));
+                if (n == 1) {
+                    out.write(input[off]);
+                } else {
+                    out.write(input, off, n);
+                }
+                off += n;
+            }
+        }
+        byte[] ciphertext = encrypted.toByteArray();
+        byte[] header = ("RFB1 " + blockSize + "\n").getBytes(StandardCharsets.US_ASCII);
+        assertArrayEquals(header, Arrays.copyOf(ciphertext, header.length));
+        assertEquals(header.length + length, ciphertext.length);
+        for (int from = 0; from < length; from += blockSize) {
+            int to = Math.min(length, from + blockSize);
+            assertArrayEquals(RailFenceEngine.encrypt(Arrays.copyOfRange(input, from, to), 5),
+                    Arrays.copyOfRange(ciphertext, header.length + from, header.length + to));
+        }
+        try (InputStream in = RailFenceInputStream.blocks(new ByteArrayInputStream(ciphertext), 5, background)) {
+            assertArrayEquals(input, in.readAllBytes());
+        }
+    }
+
+    /**
+     * Tests the block-mode reader and writer with blocks ending inside
+     * surrogate pairs.
+     *
+     * @throws Exception If the readers or writers fail.
+     */
+    @Test
+    public void testBlockReaderAndWriter() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        Random random = new Random(5);
+        for (int i = 0; i < 20000; i++) {
+            int kind = random.nextInt(3);
+            builder.appendCodePoint(kind == 0 ? 'a' + random.nextInt(26) : kind == 1 ? 0x3B1 + random.nextInt(20)
+                    : 0x1F600 + random.nextInt(50));
+        }
+        String text = builder.toString();
+        for (boolean background : new boolean[] {false, true}) {
+            StringWriter encrypted = new StringWriter();
+            try (RailFenceWriter out = RailFenceWriter.blocks(encrypted, 3, 777, background)) {
+                for (int off = 0; off < text.length(); off += 101) {
+                    out.write(text, off, Math.min(101, text.length() - off));
+                }
+            }
+            String ciphertext = encrypted.toString();
+            assertEquals("RFB1 777\n" + RailFenceEngine.encrypt(text.substring(0, text.offsetByCodePoints(0, 777)), 3),
+                    ciphertext.substring(0, 9 + text.offsetByCodePoints(0, 777)));
+            try (RailFenceReader in = RailFenceReader.blocks(new StringReader(ciphertext), 3, background)) {
+                assertEquals(text, read(in));
+            }
+        }
+    }
+
+    /**
+     * Tests that invalid headers and block sizes are rejected.
+     */
+    @Test
+    public void testInvalidHeaders() {
+        assertThrows(IOException.class, () -> RailFenceInputStream.blocks(
+                new ByteArrayInputStream("plain text".getBytes(StandardCharsets.US_ASCII)), 3, false));
+        assertThrows(IOException.class, () -> RailFenceReader.blocks(new StringReader("RFB1 0\n"), 3, false));
+        assertThrows(IOException.class, () -> RailFenceReader.blocks(new StringReader("RFB1 12x\n"), 3, false));
+        assertThrows(IllegalArgumentException.class, () -> RailFenceOutputStream.blocks(new ByteArrayOutputStream(), 3,
+                0, false));
+        assertThrows(InvalidRailNumberException.class, () -> RailFenceWriter.blocks(new StringWriter(), 1, 16, false));
+    }
+
+    /**
+     * Reads a reader to its end.
+     *
+     * @param reader The reader.
+     * @return The text read.
+     * @throws IOException If the reader fails.
+     */
+    private static String read(RailFenceReader reader) throws IOException {
+        StringBuilder text = new StringBuilder();
+        char[] chunk = new char[333];
+        int n;
+        while ((n = reader.read(chunk)) != -1) {
+            text.append(chunk, 0, n);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,93 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Test class for BroadcastRing. It checks ordering, independent cursors and
+ * the counting of values lost by slow readers.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class BroadcastRingTest {
+
+    /**
+     * Tests that every cursor reads all values in publication order.
+     */
+    @Test
+    public void testCursorsReadInOrder() {
+        BroadcastRing<Integer> ring = new BroadcastRing<>(8);
+        BroadcastRing<Integer>.Cursor first = ring.latestCursor();
+        ring.publish(1);
+        BroadcastRing<Integer>.Cursor second = ring.oldestCursor();
+        ring.publish(2);
+
+        assertEquals(1, first.poll());
+        assertEquals(2, first.poll());
+        assertNull(first.poll());
+        assertEquals(1, second.poll());
+        assertEquals(2, second.poll());
+        assertNull(second.poll());
+    }
+
+    /**
+     * Tests that a cursor which falls behind skips to the oldest available
+     * value and counts the lost ones.
+     */
+    @Test
+    public void testSlowCursorCountsDroppedValues() {
+        BroadcastRing<Integer> ring = new BroadcastRing<>(4);
+        BroadcastRing<Integer>.Cursor cursor = ring.latestCursor();
+        for (int i = 0; i < 10; i++) {
+            ring.publish(i);
+        }
+
+        List<Integer> read = new ArrayList<>();
+        Integer value;
+        while ((value = cursor.poll()) != null) {
+            read.add(value);
+        }
+        assertEquals(List.of(6, 7, 8, 9), read);
+        assertEquals(6, cursor.getLost());
+        assertEquals(6, ring.getDropped());
+    }
+
+    /**
+     * Tests that values published concurrently by several writers are all
+     * delivered when the ring is large enough.
+     *
+     * @throws InterruptedException If the test is interrupted.
+     */
+    @Test
+    public void testConcurrentWriters() throws InterruptedException {
+        BroadcastRing<Integer> ring = new BroadcastRing<>(1 << 16);
+        BroadcastRing<Integer>.Cursor cursor = ring.latestCursor();
+        Thread[] writers = new Thread[4];
+        for (int w = 0; w < writers.length; w++) {
+            writers[w] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    ring.publish(i);
+                }
+            });
+            writers[w].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        long sum = 0;
+        int count = 0;
+        Integer value;
+        while ((value = cursor.poll()) != null) {
+            sum += value;
+            count++;
+        }
+        assertEquals(40000, count);
+        assertEquals(4L * 9999 * 10000 / 2, sum);
+        assertEquals(0, ring.getDropped());
+    }
+}
@@ -0,0 +1,184 @@
+package util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import model.CipherDirection;
+import model.RailFenceEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test class for CipherServer and CipherClient. It checks pipelined requests,
+ * requests larger than the server buffers, error responses and the budget
+ * for large frames.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class CipherServerTest {
+
+    /**
+     * The server under test, with a frame limit of 1 MB.
+     */
+    private CipherServer server;
+
+    /**
+     * Starts the server on a free local port.
+     *
+     * @throws IOException If the server cannot be started.
+     */
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = new CipherServer(new InetSocketAddress("localhost", 0), 1024 * 1024, null);
+        server.start();
+    }
+
+    /**
+     * Stops the server.
+     */
+    @AfterEach
+    public void stopServer() {
+        server.close();
+    }
+
+    /**
+     * Tests a single encryption and decryption.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        try (CipherClient client = new CipherClient("localhost", server.getPort())) {
+            byte[] encrypted = client.encrypt("WEAREDISCOVEREDFLEEATONCE".getBytes(StandardCharsets.ISO_8859_1), 3);
+            assertEquals("WECRLTEERDSOEEFEAOCAIVDEN", new String(encrypted, StandardCharsets.ISO_8859_1));
+            assertEquals("WEAREDISCOVEREDFLEEATONCE",
+                    new String(client.decrypt(encrypted, 3), StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    /**
+     * Tests that pipelined requests of mixed sizes, including ones larger
+     * than the server buffers, are answered in order.
+     */
+    @Test
+    public void testPipelinedRequests() throws IOException {
+        Random random = new Random(7);
+        byte[][] payloads = new byte[50][];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = new byte[i % 10 == 0 ? 200_000 + i : 1 + random.nextInt(3000)];
+            random.nextBytes(payloads[i]);
+        }
+        try (CipherClient client = new CipherClient("localhost", server.getPort())) {
+            for (int i = 0; i < payloads.length; i++) {
+                client.send(CipherDirection.ENCRYPT, 2 + i % 7, payloads[i]);
+            }
+            client.flush();
+            for (int i = 0; i < payloads.length; i++) {
+                assertArrayEquals(RailFenceEngine.encrypt(payloads[i], 2 + i % 7), client.receive());
+            }
+        }
+        assertEquals(payloads.length, server.getRequestCount());
+    }
+
+    /**
+     * Tests that invalid requests get error responses without closing the
+     * connection.
+     */
+    @Test
+    public void testErrorResponses() throws IOException {
+        try (CipherClient client = new CipherClient("localhost", server.getPort())) {
+            client.send(CipherDirection.ENCRYPT, 1, new byte[]{1, 2, 3});
+            client.send(CipherDirection.ENCRYPT, 2, new byte[]{1, 2, 3});
+            client.flush();
+            IOException error = assertThrows(IOException.class, client::receive);
+            assertEquals("Number of rails must be at least 2.", error.getMessage());
+            assertArrayEquals(new byte[]{1, 3, 2}, client.receive());
+        }
+        assertEquals(1, server.getErrorCount());
+    }
+
+    /**
+     * Tests that a rail count far above the payload length is answered with
+     * the payload unchanged instead of looping over every rail.
+     */
+    @Test
+    public void testHugeRailCount() throws IOException {
+        byte[] payload = "RAILFENCE".getBytes(StandardCharsets.ISO_8859_1);
+        try (CipherClient client = new CipherClient("localhost", server.getPort())) {
+            assertArrayEquals(payload, client.encrypt(payload, Integer.MAX_VALUE));
+            assertArrayEquals(payload, client.decrypt(payload, Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Tests that a frame above the limit is answered with an error and the
+     * connection is closed.
+     */
+    @Test
+    public void testOversizedFrame() throws IOException {
+        try (Socket socket = new Socket("localhost", server.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(2 * 1024 * 1024);
+            out.flush();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            int length = in.readInt();
+            assertEquals(CipherProtocol.STATUS_ERROR, in.readByte());
+            in.readFully(new byte[length - 1]);
+            assertEquals(-1, in.read());
+        }
+    }
+
+    /**
+     * Tests that a large frame arriving while the budget for large frames is
+     * used up is rejected without closing the connection, and accepted once
+     * the budget is free again.
+     *
+     * @throws Exception If a socket fails or the thread is interrupted.
+     */
+    @Test
+    public void testLargeFrameBudget() throws Exception {
+        int payloadLength = 200_000;
+        byte[] payload = new byte[payloadLength];
+        new Random(3).nextBytes(payload);
+        try (CipherServer budgeted = new CipherServer(new InetSocketAddress("localhost", 0), 1024 * 1024, 300_000, null)) {
+            budgeted.start();
+            try (Socket socket = new Socket("localhost", budgeted.getPort());
+                    CipherClient client = new CipherClient("localhost", budgeted.getPort())) {
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeInt(CipherProtocol.REQUEST_HEADER_BYTES + payloadLength);
+                out.writeByte(CipherDirection.ENCRYPT.getSymbol());
+                out.writeInt(3);
+                out.write(payload, 0, 1000);
+                out.flush();
+                long end = System.currentTimeMillis() + 10_000;
+                while (budgeted.getLargeFrameBytes() == 0 && System.currentTimeMillis() < end) {
+                    Thread.sleep(10);
+                }
+                assertEquals(payloadLength, budgeted.getLargeFrameBytes());
+
+                IOException error = assertThrows(IOException.class, () -> client.encrypt(payload, 3));
+                assertEquals("Server is busy, too many large requests.", error.getMessage());
+                assertArrayEquals(new byte[]{1, 3, 2}, client.encrypt(new byte[]{1, 2, 3}, 2));
+
+                out.write(payload, 1000, payloadLength - 1000);
+                out.flush();
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                byte[] response = new byte[in.readInt() - 1];
+                assertEquals(CipherProtocol.STATUS_OK, in.readByte());
+                in.readFully(response);
+                assertArrayEquals(RailFenceEngine.encrypt(payload, 3), response);
+
+                assertArrayEquals(RailFenceEngine.encrypt(payload, 3), client.encrypt(payload, 3));
+            }
+            assertEquals(1, budgeted.getRejectedLargeFrameCount());
+            assertEquals(0, budgeted.getLargeFrameBytes());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test class for Fingerprints. It checks the digests of buffers and files
+ * and the sanitizing of submitted file names.
+ *
+ * @author Magdalena Koncowicz
+ * @version 1.0
+ */
+public class FingerprintsTest {
+
+    /**
+     * The SHA-256 digest of "abc".
+     */
+    private static final String ABC_DIGEST = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    /**
+     * Temporary directory holding the digested file.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests that a buffer and a file with the same content have the same
+     * digest.
+     *
+     * @throws Exception If the file cannot be written.
+     */
+    @Test
+    public void testSha256() throws Exception {
+        Path file = Files.write(directory.resolve("abc.txt"), "abc".getBytes(StandardCharsets.US_ASCII));
+
+        assertEquals(ABC_DIGEST, Fingerprints.sha256(ByteBuffer.wrap("abc".getBytes(StandardCharsets.US_ASCII))));
+        assertEquals(ABC_DIGEST, Fingerprints.sha256(file));
+    }
+
+    /**
+     * Tests that file names are cut to their last path component and unsafe
+     * characters are replaced.
+     */
+    @Test
+    public void testSanitizeFileName() {
+        assertEquals("upload", Fingerprints.sanitizeFileName(null));
+        assertEquals("upload", Fingerprints.sanitizeFileName("C:\\data\\"));
+        assertEquals("report_1_.txt", Fingerprints.sanitizeFileName("../../etc/report 1\".txt"));
+        assertEquals(100, Fingerprints.sanitizeFileName("x".repeat(300)).length());
+    }
+}